@@ -0,0 +1,176 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/** The source files the benchmarks are run against. */
+public final class Corpus {
+    /** Corpus made of the samples used by the refactoring rules tests. */
+    public static final String SAMPLES = "samples";
+    /** Corpus made of generated Android sources, mostly made of code where no rule applies. */
+    public static final String SYNTHETIC = "synthetic";
+
+    /** System property overriding the directory where the samples are read from. */
+    public static final String SAMPLES_DIR_PROPERTY = "autorefactor.samples.dir";
+    private static final String SAMPLES_PACKAGE = "org.autorefactor.refactoring.rules.samples_in";
+    private static final String DEFAULT_SAMPLES_DIR =
+            "samples/src/test/java/" + SAMPLES_PACKAGE.replace('.', '/');
+    private static final int NB_SYNTHETIC_FILES = 200;
+
+    private Corpus() {
+        super();
+    }
+
+    /**
+     * Loads the source files of the provided corpus.
+     * <p>
+     * The synthetic sources are written to a temporary directory deleted on exit,
+     * because the parser reads the files from disk.
+     *
+     * @param corpus the corpus name, one of {@link #SAMPLES} or {@link #SYNTHETIC}
+     * @return the source files of the provided corpus
+     * @throws IOException if the samples cannot be read
+     */
+    public static List<SourceFile> load(String corpus) throws IOException {
+        if (SAMPLES.equals(corpus)) {
+            return loadSamples(getSamplesDir());
+        } else if (SYNTHETIC.equals(corpus)) {
+            return writeSyntheticSources(SyntheticAndroidSources.generate(NB_SYNTHETIC_FILES));
+        }
+        throw new IllegalArgumentException("Unknown corpus: " + corpus);
+    }
+
+    /**
+     * Returns the source directories needed to resolve the types used by the provided corpus.
+     * <p>
+     * The samples use stubs of the libraries missing from the Android jar, like the support library RecyclerView,
+     * which are declared in the source directory of the samples.
+     *
+     * @param corpus the corpus name, one of {@link #SAMPLES} or {@link #SYNTHETIC}
+     * @return the source directories needed to resolve the types used by the provided corpus
+     */
+    public static String[] getSourcepath(String corpus) {
+        if (SAMPLES.equals(corpus)) {
+            File sourceDir = getSamplesDir().getAbsoluteFile();
+            for (int i = SAMPLES_PACKAGE.split("\\.").length; i > 0 && sourceDir != null; i--) {
+                sourceDir = sourceDir.getParentFile();
+            }
+            if (sourceDir != null) {
+                return new String[] { sourceDir.getPath() };
+            }
+        }
+        return new String[0];
+    }
+
+    private static File getSamplesDir() {
+        return new File(System.getProperty(SAMPLES_DIR_PROPERTY, DEFAULT_SAMPLES_DIR));
+    }
+
+    private static List<SourceFile> loadSamples(File samplesDir) throws IOException {
+        final File[] files = samplesDir.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot find the samples in " + samplesDir.getAbsolutePath()
+                    + ", set the " + SAMPLES_DIR_PROPERTY + " system property to their directory");
+        }
+        Arrays.sort(files);
+        final List<SourceFile> results = new ArrayList<SourceFile>(files.length);
+        for (File file : files) {
+            if (file.getName().endsWith(".java")) {
+                results.add(new SourceFile(file, readAll(file)));
+            }
+        }
+        return results;
+    }
+
+    private static List<SourceFile> writeSyntheticSources(Map<String, String> sources) throws IOException {
+        final File rootDir = File.createTempFile("autorefactor-benchmarks", "");
+        final String packagePath = SyntheticAndroidSources.PACKAGE_NAME.replace('.', File.separatorChar);
+        final File packageDir = new File(rootDir, packagePath);
+        if (!rootDir.delete() || !packageDir.mkdirs()) {
+            throw new IOException("Cannot create the directory " + packageDir);
+        }
+        deleteOnExit(rootDir, packageDir);
+
+        final List<SourceFile> results = new ArrayList<SourceFile>(sources.size());
+        for (Entry<String, String> entry : sources.entrySet()) {
+            final File file = new File(packageDir, entry.getKey() + ".java");
+            file.deleteOnExit();
+            writeAll(file, entry.getValue());
+            results.add(new SourceFile(file, entry.getValue()));
+        }
+        return results;
+    }
+
+    private static void deleteOnExit(File rootDir, File dir) {
+        // files registered first are deleted last: register the parent directories first
+        final LinkedList<File> dirs = new LinkedList<File>();
+        for (File d = dir; !d.equals(rootDir); d = d.getParentFile()) {
+            dirs.addFirst(d);
+        }
+        rootDir.deleteOnExit();
+        for (File d : dirs) {
+            d.deleteOnExit();
+        }
+    }
+
+    private static void writeAll(File file, String source) throws IOException {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String readAll(File file) throws IOException {
+        final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            final StringBuilder sb = new StringBuilder();
+            final char[] buffer = new char[8192];
+            int nbRead;
+            while ((nbRead = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, nbRead);
+            }
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
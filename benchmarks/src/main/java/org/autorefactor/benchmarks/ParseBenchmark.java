@@ -0,0 +1,89 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.autorefactor.benchmarks.StandaloneRefactoringEngine.ParsedFileHandler;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures parsing the corpus with bindings resolved,
+ * i.e. the baseline cost paid before any refactoring rule runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    /** The corpus to parse. */
+    @Param({ Corpus.SAMPLES, Corpus.SYNTHETIC })
+    private String corpus;
+
+    private StandaloneRefactoringEngine engine;
+    private List<SourceFile> files;
+
+    /**
+     * Loads the corpus.
+     *
+     * @throws Exception if the corpus cannot be loaded
+     */
+    @Setup
+    public void setUp() throws Exception {
+        engine = new StandaloneRefactoringEngine(Corpus.getSourcepath(corpus));
+        files = Corpus.load(corpus);
+    }
+
+    /**
+     * Parses all the files of the corpus.
+     *
+     * @param bh consumes the parsed compilation units
+     */
+    @Benchmark
+    public void parse(final Blackhole bh) {
+        engine.parse(files, new ParsedFileHandler() {
+            @Override
+            public void handle(SourceFile file, CompilationUnit astRoot) {
+                bh.consume(astRoot);
+            }
+        });
+    }
+}
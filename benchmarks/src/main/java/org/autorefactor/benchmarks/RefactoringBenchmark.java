@@ -0,0 +1,163 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.autorefactor.benchmarks.StandaloneRefactoringEngine.ParsedFileHandler;
+import org.autorefactor.refactoring.RefactoringRule;
+import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the refactoring rules over a corpus, for all the rules together and for each rule alone.
+ * <p>
+ * {@link #visit(Blackhole)} and {@link #visitAndRewrite(Blackhole)} run on pre-parsed compilation units
+ * to isolate the cost of the rules from the cost of parsing,
+ * while {@link #parseVisitAndRewrite(Blackhole)} measures one complete pass over the corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RefactoringBenchmark {
+    /** The corpus to refactor. */
+    @Param({ Corpus.SAMPLES, Corpus.SYNTHETIC })
+    private String corpus;
+
+    /**
+     * The refactoring rules to apply: all of them or the simple class name of one of them.
+     * Each rule must be listed here, which {@link #setUp()} checks.
+     */
+    @Param({
+        StandaloneRefactoringEngine.ALL_RULES,
+        "DrawAllocationRefactoring",
+        "FloatMathRefactoring",
+        "HandlerLeakRefactoring",
+        "RecycleRefactoring",
+        "RecycleWithTryRefactoring",
+        "UseSparseArrayRefactoring",
+        "UseValueOfRefactoring",
+        "ViewHolderRefactoring" })
+    private String rule;
+
+    private StandaloneRefactoringEngine engine;
+    private List<RefactoringRule> rules;
+    private List<SourceFile> files;
+    private List<CompilationUnit> astRoots;
+
+    /**
+     * Loads and parses the corpus.
+     *
+     * @throws Exception if the corpus cannot be loaded
+     */
+    @Setup
+    public void setUp() throws Exception {
+        checkAllRulesAreBenchmarked();
+        engine = new StandaloneRefactoringEngine(Corpus.getSourcepath(corpus));
+        rules = StandaloneRefactoringEngine.getRules(rule);
+        files = Corpus.load(corpus);
+        astRoots = engine.parseAll(files);
+    }
+
+    private static void checkAllRulesAreBenchmarked() throws NoSuchFieldException {
+        final List<String> ruleParams = Arrays.asList(
+                RefactoringBenchmark.class.getDeclaredField("rule").getAnnotation(Param.class).value());
+        for (RefactoringRule refactoringRule : StandaloneRefactoringEngine.getRules(
+                StandaloneRefactoringEngine.ALL_RULES)) {
+            final String ruleName = refactoringRule.getClass().getSimpleName();
+            if (!ruleParams.contains(ruleName)) {
+                throw new IllegalStateException("Refactoring rule " + ruleName
+                        + " is missing from the values of the rule benchmark parameter");
+            }
+        }
+    }
+
+    /** Fails the benchmark if the refactoring rules logged errors while it ran. */
+    @TearDown
+    public void tearDown() {
+        engine.checkNoErrorLogged();
+    }
+
+    /**
+     * Runs the refactoring rules over the pre-parsed compilation units.
+     *
+     * @param bh consumes the computed refactorings
+     */
+    @Benchmark
+    public void visit(Blackhole bh) {
+        for (int i = 0; i < files.size(); i++) {
+            bh.consume(engine.visit(files.get(i), astRoots.get(i), rules));
+        }
+    }
+
+    /**
+     * Runs the refactoring rules over the pre-parsed compilation units and rewrites the sources.
+     *
+     * @param bh consumes the rewritten sources
+     */
+    @Benchmark
+    public void visitAndRewrite(Blackhole bh) {
+        for (int i = 0; i < files.size(); i++) {
+            final SourceFile file = files.get(i);
+            final Refactorings refactorings = engine.visit(file, astRoots.get(i), rules);
+            bh.consume(engine.rewrite(file, refactorings));
+        }
+    }
+
+    /**
+     * Parses the corpus, runs the refactoring rules and rewrites the sources.
+     *
+     * @param bh consumes the rewritten sources
+     */
+    @Benchmark
+    public void parseVisitAndRewrite(final Blackhole bh) {
+        engine.parse(files, new ParsedFileHandler() {
+            @Override
+            public void handle(SourceFile file, CompilationUnit astRoot) {
+                final Refactorings refactorings = engine.visit(file, astRoot, rules);
+                bh.consume(engine.rewrite(file, refactorings));
+            }
+        });
+    }
+}
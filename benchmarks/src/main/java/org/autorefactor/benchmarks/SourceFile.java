@@ -0,0 +1,68 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.io.File;
+
+/** A java source file fed to the benchmarks. */
+public final class SourceFile {
+    private final File file;
+    private final String source;
+
+    /**
+     * Builds a source file.
+     *
+     * @param file the file on disk, read by the parser
+     * @param source the java source, as found in the file
+     */
+    public SourceFile(File file, String source) {
+        this.file = file;
+        this.source = source;
+    }
+
+    /**
+     * Returns the file on disk.
+     *
+     * @return the file on disk
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the java source.
+     *
+     * @return the java source
+     */
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+}
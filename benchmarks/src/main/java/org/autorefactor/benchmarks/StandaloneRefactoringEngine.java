@@ -0,0 +1,315 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.autorefactor.AutoRefactorPlugin;
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.RefactoringRule;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.refactoring.rules.AggregateASTVisitor;
+import org.autorefactor.refactoring.rules.AllRefactoringRules;
+import org.autorefactor.refactoring.rules.RefactoringContext;
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.ILogListener;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.osgi.framework.Bundle;
+
+/**
+ * Runs the refactoring engine outside of Eclipse,
+ * the same way {@code ApplyRefactoringsJob} does for one pass over a compilation unit.
+ * <p>
+ * Sources are read from disk and parsed with bindings resolved against the Android jar and the running JRE.
+ */
+public final class StandaloneRefactoringEngine {
+    /** Value of the {@code rule} benchmark parameter selecting all the refactoring rules. */
+    public static final String ALL_RULES = "all";
+    private static final String JAVA_SE_VERSION = "1.7";
+    private static final String ENCODING = "UTF-8";
+    /** Minimum Android API level of the corpus, recent enough for the rules to use all the platform APIs. */
+    private static final int ANDROID_MIN_SDK_VERSION = 23;
+
+    private final String[] classpath;
+    private final String[] sourcepath;
+    private final JavaProjectOptions options = new BenchmarkJavaProjectOptions();
+
+    /**
+     * Builds a new instance of this class.
+     *
+     * @param sourcepath the source directories where the types not declared by the parsed files are looked up
+     */
+    public StandaloneRefactoringEngine(String... sourcepath) {
+        this.classpath = new String[] { getJarPath(android.app.Activity.class) };
+        this.sourcepath = sourcepath;
+        AutoRefactorPlugin.setStandaloneLog(BenchmarkLog.INSTANCE);
+    }
+
+    private static String getJarPath(Class<?> clazz) {
+        try {
+            return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the refactoring rules selected by the {@code rule} benchmark parameter.
+     *
+     * @param rule {@link #ALL_RULES} or the simple class name of a refactoring rule
+     * @return the selected refactoring rules
+     */
+    public static List<RefactoringRule> getRules(String rule) {
+        final List<RefactoringRule> allRules = AllRefactoringRules.getAllRefactoringRules();
+        if (ALL_RULES.equals(rule)) {
+            return allRules;
+        }
+        for (RefactoringRule refactoringRule : allRules) {
+            if (refactoringRule.getClass().getSimpleName().equals(rule)) {
+                return Collections.singletonList(refactoringRule);
+            }
+        }
+        throw new IllegalArgumentException("Unknown refactoring rule: " + rule);
+    }
+
+    /**
+     * Parses the provided source files in one batch and resolves their bindings,
+     * like {@code ApplyRefactoringsJob} does for the compilation units of a project.
+     *
+     * @param files the source files to parse
+     * @param handler receives each compilation unit as soon as it has been parsed
+     */
+    public void parse(List<SourceFile> files, final ParsedFileHandler handler) {
+        final Map<String, SourceFile> filesByPath = new HashMap<String, SourceFile>();
+        final String[] paths = new String[files.size()];
+        final String[] encodings = new String[files.size()];
+        for (int i = 0; i < paths.length; i++) {
+            final SourceFile file = files.get(i);
+            paths[i] = file.getFile().getPath();
+            encodings[i] = ENCODING;
+            filesByPath.put(paths[i], file);
+        }
+
+        final ASTParser parser = ASTParser.newParser(AST.JLS4);
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        final String[] sourcepathEncodings = new String[sourcepath.length];
+        Arrays.fill(sourcepathEncodings, ENCODING);
+        parser.setEnvironment(classpath, sourcepath, sourcepathEncodings, true);
+        parser.setResolveBindings(true);
+        parser.setCompilerOptions(options.getCompilerOptions());
+        parser.createASTs(paths, encodings, new String[0], new FileASTRequestor() {
+            @Override
+            public void acceptAST(String sourceFilePath, CompilationUnit astRoot) {
+                handler.handle(filesByPath.get(sourceFilePath), astRoot);
+            }
+        }, null);
+    }
+
+    /**
+     * Parses all the provided source files.
+     *
+     * @param files the source files to parse
+     * @return the parsed compilation units, in the same order as the source files
+     */
+    public List<CompilationUnit> parseAll(List<SourceFile> files) {
+        final Map<SourceFile, CompilationUnit> astRoots = new HashMap<SourceFile, CompilationUnit>();
+        parse(files, new ParsedFileHandler() {
+            @Override
+            public void handle(SourceFile file, CompilationUnit astRoot) {
+                astRoots.put(file, astRoot);
+            }
+        });
+        final List<CompilationUnit> results = new ArrayList<CompilationUnit>(files.size());
+        for (SourceFile file : files) {
+            results.add(astRoots.get(file));
+        }
+        return results;
+    }
+
+    /**
+     * Visits the provided compilation unit with the provided refactoring rules.
+     *
+     * @param file the source file the compilation unit has been parsed from
+     * @param astRoot the compilation unit to visit
+     * @param rules the refactoring rules to apply
+     * @return the refactorings computed by the refactoring rules
+     */
+    public Refactorings visit(SourceFile file, CompilationUnit astRoot, List<RefactoringRule> rules) {
+        final AggregateASTVisitor visitor = new AggregateASTVisitor(rules);
+        visitor.setRefactoringContext(
+                new RefactoringContext(file.getSource(), astRoot, options, new NullProgressMonitor()));
+        return visitor.getRefactorings(astRoot);
+    }
+
+    /**
+     * Rewrites the provided source file with the provided refactorings.
+     *
+     * @param file the source file to rewrite
+     * @param refactorings the refactorings to apply
+     * @return the rewritten source
+     */
+    public String rewrite(SourceFile file, Refactorings refactorings) {
+        final IDocument document = new Document(file.getSource());
+        if (refactorings.hasRefactorings()) {
+            try {
+                refactorings.applyTo(document, false);
+            } catch (BadLocationException e) {
+                throw new UnhandledException(null, e);
+            }
+        }
+        return document.get();
+    }
+
+    /** Receives the compilation units as they are parsed. */
+    public interface ParsedFileHandler {
+        /**
+         * Handles a parsed compilation unit.
+         *
+         * @param file the source file
+         * @param astRoot the compilation unit parsed from the source file
+         */
+        void handle(SourceFile file, CompilationUnit astRoot);
+    }
+
+    /**
+     * Fails if the refactoring engine logged an error since the previous call,
+     * so the benchmark harness reports runs where a refactoring rule failed instead of measuring them.
+     *
+     * @throws IllegalStateException if errors have been logged
+     */
+    public void checkNoErrorLogged() {
+        final List<IStatus> errors = BenchmarkLog.INSTANCE.removeErrors();
+        if (!errors.isEmpty()) {
+            final IStatus first = errors.get(0);
+            throw new IllegalStateException(
+                    errors.size() + " error(s) logged by the refactoring engine, first one: " + first.getMessage(),
+                    first.getException());
+        }
+    }
+
+    /**
+     * Log of the refactoring engine which does not need a running Eclipse.
+     * It notifies its listeners of each logged message and keeps each distinct error once,
+     * not once per benchmark iteration.
+     */
+    private static final class BenchmarkLog implements ILog {
+        private static final BenchmarkLog INSTANCE = new BenchmarkLog();
+
+        private final List<ILogListener> listeners = new CopyOnWriteArrayList<ILogListener>();
+        private final Map<String, IStatus> errors = new LinkedHashMap<String, IStatus>();
+
+        @Override
+        public void log(IStatus status) {
+            if (status.matches(IStatus.ERROR)) {
+                synchronized (errors) {
+                    if (!errors.containsKey(status.getMessage())) {
+                        errors.put(status.getMessage(), status);
+                    }
+                }
+            }
+            for (ILogListener listener : listeners) {
+                listener.logging(status, AutoRefactorPlugin.PLUGIN_ID);
+            }
+        }
+
+        private List<IStatus> removeErrors() {
+            synchronized (errors) {
+                final List<IStatus> results = new ArrayList<IStatus>(errors.values());
+                errors.clear();
+                return results;
+            }
+        }
+
+        @Override
+        public Bundle getBundle() {
+            return null;
+        }
+
+        @Override
+        public void addLogListener(ILogListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeLogListener(ILogListener listener) {
+            listeners.remove(listener);
+        }
+    }
+
+    /** Java project options which do not need a running Eclipse. */
+    private static final class BenchmarkJavaProjectOptions implements JavaProjectOptions {
+        private final Map<String, String> compilerOptions = new HashMap<String, String>();
+
+        private BenchmarkJavaProjectOptions() {
+            JavaCore.setComplianceOptions(JAVA_SE_VERSION, compilerOptions);
+        }
+
+        @Override
+        public Map<String, String> getCompilerOptions() {
+            return compilerOptions;
+        }
+
+        @Override
+        public Release getJavaSERelease() {
+            return Release.javaSE(JAVA_SE_VERSION);
+        }
+
+        @Override
+        public Integer getTabSize() {
+            return 4;
+        }
+
+        @Override
+        public int getCommentLineLength() {
+            return 80;
+        }
+
+        @Override
+        public int getAndroidMinSdkVersion() {
+            return ANDROID_MIN_SDK_VERSION;
+        }
+    }
+}
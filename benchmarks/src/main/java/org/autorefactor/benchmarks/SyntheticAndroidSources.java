@@ -0,0 +1,266 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates Android sources looking like an application code base:
+ * one file out of two exhibits the performance issues fixed by the refactoring rules,
+ * the other files are plain code where no rule applies.
+ */
+final class SyntheticAndroidSources {
+    /** Package of the generated sources. */
+    static final String PACKAGE_NAME = "org.autorefactor.benchmarks.synthetic";
+    private static final int NB_KINDS = 10;
+
+    private SyntheticAndroidSources() {
+        super();
+    }
+
+    /**
+     * Generates the provided number of java sources.
+     *
+     * @param nbFiles the number of java sources to generate
+     * @return the generated java sources, keyed by simple class name
+     */
+    static Map<String, String> generate(int nbFiles) {
+        final Map<String, String> results = new LinkedHashMap<String, String>();
+        for (int i = 0; i < nbFiles; i++) {
+            final String className;
+            final String body;
+            switch (i % NB_KINDS) {
+            case 0:
+                className = "SyntheticView" + i;
+                body = view(className);
+                break;
+            case 1:
+                className = "SyntheticAdapter" + i;
+                body = adapter(className);
+                break;
+            case 2:
+                className = "SyntheticDao" + i;
+                body = dao(className);
+                break;
+            case 3:
+                className = "SyntheticActivity" + i;
+                body = activity(className);
+                break;
+            case 4:
+                className = "SyntheticModel" + i;
+                body = model(className);
+                break;
+            default:
+                className = "SyntheticHelper" + i;
+                body = helper(className, i);
+                break;
+            }
+            results.put(className, "package " + PACKAGE_NAME + ";\n\n" + body);
+        }
+        return results;
+    }
+
+    private static String view(String className) {
+        return "import android.content.Context;\n"
+            + "import android.graphics.Canvas;\n"
+            + "import android.graphics.Paint;\n"
+            + "import android.graphics.Rect;\n"
+            + "import android.view.View;\n"
+            + "\n"
+            + "public class " + className + " extends View {\n"
+            + "    private int count;\n"
+            + "\n"
+            + "    public " + className + "(Context context) {\n"
+            + "        super(context);\n"
+            + "    }\n"
+            + "\n"
+            + "    @Override\n"
+            + "    protected void onDraw(Canvas canvas) {\n"
+            + "        super.onDraw(canvas);\n"
+            + "        Paint paint = new Paint();\n"
+            + "        Rect bounds = new Rect(0, 0, getWidth(), getHeight());\n"
+            + "        for (int i = 0; i < count; i++) {\n"
+            + "            canvas.drawRect(bounds, paint);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    @Override\n"
+            + "    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {\n"
+            + "        super.onMeasure(widthMeasureSpec, heightMeasureSpec);\n"
+            + "        Rect rect = new Rect(0, 0, 10, 10);\n"
+            + "        count = rect.width();\n"
+            + "    }\n"
+            + "}\n";
+    }
+
+    private static String adapter(String className) {
+        return "import android.content.Context;\n"
+            + "import android.view.LayoutInflater;\n"
+            + "import android.view.View;\n"
+            + "import android.view.ViewGroup;\n"
+            + "import android.widget.BaseAdapter;\n"
+            + "import android.widget.TextView;\n"
+            + "\n"
+            + "public class " + className + " extends BaseAdapter {\n"
+            + "    private final LayoutInflater inflater;\n"
+            + "    private final String[] items;\n"
+            + "\n"
+            + "    public " + className + "(Context context, String[] items) {\n"
+            + "        this.inflater = LayoutInflater.from(context);\n"
+            + "        this.items = items;\n"
+            + "    }\n"
+            + "\n"
+            + "    public int getCount() {\n"
+            + "        return items.length;\n"
+            + "    }\n"
+            + "\n"
+            + "    public Object getItem(int position) {\n"
+            + "        return items[position];\n"
+            + "    }\n"
+            + "\n"
+            + "    public long getItemId(int position) {\n"
+            + "        return position;\n"
+            + "    }\n"
+            + "\n"
+            + "    public View getView(int position, View convertView, ViewGroup parent) {\n"
+            + "        View view = inflater.inflate(android.R.layout.simple_list_item_1, null);\n"
+            + "        TextView text = (TextView) view.findViewById(android.R.id.text1);\n"
+            + "        text.setText(items[position]);\n"
+            + "        return view;\n"
+            + "    }\n"
+            + "}\n";
+    }
+
+    private static String dao(String className) {
+        return "import android.database.Cursor;\n"
+            + "import android.database.sqlite.SQLiteDatabase;\n"
+            + "\n"
+            + "public class " + className + " {\n"
+            + "    private final SQLiteDatabase db;\n"
+            + "\n"
+            + "    public " + className + "(SQLiteDatabase db) {\n"
+            + "        this.db = db;\n"
+            + "    }\n"
+            + "\n"
+            + "    public int countItems(String table) {\n"
+            + "        Cursor cursor = db.rawQuery(\"SELECT * FROM \" + table, null);\n"
+            + "        int count = 0;\n"
+            + "        while (cursor.moveToNext()) {\n"
+            + "            count++;\n"
+            + "        }\n"
+            + "        return count;\n"
+            + "    }\n"
+            + "\n"
+            + "    public String firstName(String table) {\n"
+            + "        Cursor cursor = db.query(table, new String[] { \"name\" }, null, null, null, null, null);\n"
+            + "        if (cursor.moveToFirst()) {\n"
+            + "            return cursor.getString(0);\n"
+            + "        }\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "}\n";
+    }
+
+    private static String activity(String className) {
+        return "import android.app.Activity;\n"
+            + "import android.os.Bundle;\n"
+            + "import android.os.Handler;\n"
+            + "import android.os.Message;\n"
+            + "\n"
+            + "public class " + className + " extends Activity {\n"
+            + "    private int nbMessages;\n"
+            + "\n"
+            + "    private final Handler handler = new Handler() {\n"
+            + "        @Override\n"
+            + "        public void handleMessage(Message msg) {\n"
+            + "            nbMessages++;\n"
+            + "        }\n"
+            + "    };\n"
+            + "\n"
+            + "    @Override\n"
+            + "    protected void onCreate(Bundle savedInstanceState) {\n"
+            + "        super.onCreate(savedInstanceState);\n"
+            + "        handler.sendEmptyMessage(0);\n"
+            + "    }\n"
+            + "}\n";
+    }
+
+    private static String model(String className) {
+        return "import java.util.HashMap;\n"
+            + "import java.util.Map;\n"
+            + "\n"
+            + "import android.util.FloatMath;\n"
+            + "\n"
+            + "public class " + className + " {\n"
+            + "    private final Map<Integer, String> names = new HashMap<Integer, String>();\n"
+            + "    private final Map<Integer, Integer> counts = new HashMap<Integer, Integer>();\n"
+            + "\n"
+            + "    public void put(int id, String name) {\n"
+            + "        names.put(new Integer(id), name);\n"
+            + "        counts.put(id, new Integer(name.length()));\n"
+            + "    }\n"
+            + "\n"
+            + "    public float distance(float x, float y) {\n"
+            + "        return FloatMath.sqrt(x * x + y * y);\n"
+            + "    }\n"
+            + "}\n";
+    }
+
+    private static String helper(String className, int seed) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("import java.util.ArrayList;\n")
+            .append("import java.util.List;\n")
+            .append("\n")
+            .append("public class ").append(className).append(" {\n")
+            .append("    private final List<String> values = new ArrayList<String>();\n");
+        final int nbMethods = 5 + seed % 7;
+        for (int m = 0; m < nbMethods; m++) {
+            sb.append("\n")
+                .append("    public int compute").append(m).append("(int a, int b) {\n")
+                .append("        int result = 0;\n")
+                .append("        for (int i = a; i < b; i++) {\n")
+                .append("            if (i % ").append(m + 2).append(" == 0) {\n")
+                .append("                result += i * ").append(seed).append(";\n")
+                .append("            } else {\n")
+                .append("                result -= values.size();\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        return result;\n")
+                .append("    }\n")
+                .append("\n")
+                .append("    public String describe").append(m).append("(String prefix) {\n")
+                .append("        StringBuilder sb = new StringBuilder(prefix);\n")
+                .append("        for (String value : values) {\n")
+                .append("            sb.append(value).append(',');\n")
+                .append("        }\n")
+                .append("        return sb.toString();\n")
+                .append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+import static org.autorefactor.test.TestHelper.*;
+import static org.junit.Assert.*;
+
+public class ControlFlowGraphCacheTest {
+
+    private static final String SOURCE = "class A {\n"
+            + "  int m1(int i) {\n    return i + 1;\n  }\n"
+            + "  int m2(int i) {\n    return i - 1;\n  }\n"
+            + "  native void m3();\n"
+            + "}";
+
+    @Test
+    public void cachesControlFlowGraphsUntilInvalidated() throws Exception {
+        final MethodDeclaration[] methods = ((TypeDeclaration) parse(SOURCE).types().get(0)).getMethods();
+        final ControlFlowGraphCache cache = new ControlFlowGraphCache(SOURCE, newJavaProjectOptions());
+
+        final ControlFlowGraph cfg1 = cache.getControlFlowGraph(methods[0]);
+        assertNotNull(cfg1);
+        assertSame(cfg1, cache.getControlFlowGraph(methods[0]));
+        assertSame(cache.getDataflow(methods[0]).getControlFlowGraph(), cfg1);
+        assertNotNull(cache.getControlFlowGraph(methods[1]));
+        assertNull("no body", cache.getControlFlowGraph(methods[2]));
+        assertNull(cache.getControlFlowGraph(methods[2]));
+        assertEquals(3, cache.getNbMisses());
+        assertEquals(3, cache.getNbHits());
+
+        cache.invalidate((ASTNode) methods[0].getBody().statements().get(0));
+        assertEquals(1, cache.getNbInvalidations());
+        assertNotSame(cfg1, cache.getControlFlowGraph(methods[0]));
+        assertEquals(4, cache.getNbMisses());
+        cache.getControlFlowGraph(methods[1]);
+        assertEquals(4, cache.getNbHits());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.BitSet;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.NodeFinder;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+import static org.autorefactor.test.TestHelper.*;
+import static org.junit.Assert.*;
+
+public class ControlFlowGraphTest {
+
+    private String source;
+    private CompilationUnit astRoot;
+    private ControlFlowGraph cfg;
+
+    @Test
+    public void dominators() throws Exception {
+        buildCFG("void m(boolean b) {\n"
+                + "  int i = 0;\n"
+                + "  if (b) {\n"
+                + "    i = 1;\n"
+                + "  } else {\n"
+                + "    i = 2;\n"
+                + "  }\n"
+                + "  i = 3;\n"
+                + "}");
+        final int entry = 0;
+        final int decl = block("int i = 0;");
+        final int then = block("i = 1;");
+        final int els = block("i = 2;");
+        final int join = block("i = 3;");
+        assertTrue(cfg.dominates(entry, join));
+        assertTrue(cfg.dominates(decl, then));
+        assertFalse(cfg.dominates(then, join));
+        assertTrue(cfg.dominates(join, join));
+        assertEquals(block("if (b)"), cfg.getImmediateDominator(join));
+        assertEquals(-1, cfg.getImmediateDominator(entry));
+
+        assertTrue(cfg.postDominates(join, then));
+        assertTrue(cfg.postDominates(join, entry));
+        assertFalse(cfg.postDominates(then, decl));
+        assertEquals(join, cfg.getImmediatePostDominator(els));
+    }
+
+    @Test
+    public void reachability() throws Exception {
+        buildCFG("int m(boolean b) {\n"
+                + "  int i = 0;\n"
+                + "  if (b) {\n"
+                + "    return 1;\n"
+                + "  }\n"
+                + "  while (i < 10) {\n"
+                + "    i++;\n"
+                + "  }\n"
+                + "  return i;\n"
+                + "}");
+        assertTrue(cfg.isReachable(block("int i = 0;"), block("return i;")));
+        assertFalse(cfg.isReachable(block("return 1;"), block("return i;")));
+        assertTrue("loops reach themselves", cfg.isReachable(block("i++;"), block("while")));
+
+        final BitSet targets = new BitSet();
+        targets.set(block("i++;"));
+        assertFalse(cfg.allPathsReach(block("int i = 0;"), targets));
+        targets.set(block("return 1;"));
+        assertFalse("the loop body may not be executed", cfg.allPathsReach(block("int i = 0;"), targets));
+        targets.set(block("return i;"));
+        assertTrue(cfg.allPathsReach(block("int i = 0;"), targets));
+    }
+
+    @Test
+    public void pathQueriesDoNotEnumeratePaths() throws Exception {
+        final StringBuilder sb = new StringBuilder("void m(boolean b) {\n  int i = 0;\n");
+        for (int j = 0; j < 64; j++) {
+            sb.append("  if (b) {\n    i++;\n  }\n");
+        }
+        sb.append("  i = -1;\n}");
+        buildCFG(sb.toString());
+        final BitSet targets = new BitSet();
+        targets.set(block("i = -1;"));
+        assertTrue(cfg.allPathsReach(0, targets));
+        assertTrue(cfg.postDominates(block("i = -1;"), block("int i = 0;")));
+    }
+
+    private void buildCFG(String methodSource) throws Exception {
+        source = "class A {\n" + methodSource + "\n}";
+        astRoot = parse(source);
+
+        final TypeDeclaration type = (TypeDeclaration) astRoot.types().get(0);
+        final MethodDeclaration method = type.getMethods()[0];
+        cfg = ControlFlowGraph.of(new CFGBuilder(source, newJavaProjectOptions()).buildCFG(method));
+    }
+
+    /** Returns the number of the block evaluating the first statement starting with the provided code. */
+    private int block(String code) {
+        final int index = cfg.getBlockIndex(NodeFinder.perform(astRoot, source.indexOf(code), 0));
+        assertTrue("No block found for " + code, index >= 0);
+        return index;
+    }
+}
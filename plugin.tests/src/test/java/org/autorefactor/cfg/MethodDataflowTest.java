@@ -0,0 +1,157 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.NodeFinder;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclaration;
+import org.junit.Test;
+
+import static org.autorefactor.test.TestHelper.*;
+import static org.junit.Assert.*;
+
+public class MethodDataflowTest {
+
+    private String source;
+    private CompilationUnit astRoot;
+
+    @Test
+    public void liveness() throws Exception {
+        final MethodDataflow dataflow = dataflow(
+                "int m(int a) {\n"
+                + "  int b = a + 1;\n"
+                + "  int c = 2;\n"
+                + "  c = b;\n"
+                + "  return c;\n"
+                + "}");
+        assertFalse("a is not read after its last use", dataflow.isLiveAfter(name("a", 1)));
+        assertFalse("the value assigned to c is never read", dataflow.isLiveAfter(name("c", 0)));
+        assertTrue(dataflow.isLiveAfter(name("c", 1)));
+        assertFalse(dataflow.isLiveAfter(name("c", 2)));
+    }
+
+    @Test
+    public void livenessInLoops() throws Exception {
+        final MethodDataflow dataflow = dataflow(
+                "int m(int n) {\n"
+                + "  int sum = 0;\n"
+                + "  for (int i = 0; i < n; i++) {\n"
+                + "    sum += i;\n"
+                + "  }\n"
+                + "  return sum;\n"
+                + "}");
+        assertTrue("n is read again by the loop condition", dataflow.isLiveAfter(name("n", 1)));
+        assertTrue(dataflow.isLiveAfter(name("sum", 1)));
+        assertTrue("i is read by the loop condition after being incremented", dataflow.isLiveAfter(name("i", 3)));
+        assertTrue("i is read by the loop body", dataflow.isLiveAfter(name("i", 1)));
+        assertFalse(dataflow.isLiveAfter(name("sum", 2)));
+    }
+
+    @Test
+    public void reachingDefinitions() throws Exception {
+        final MethodDataflow dataflow = dataflow(
+                "int m(boolean b) {\n"
+                + "  int x = 0;\n"
+                + "  if (b) {\n"
+                + "    x = 1;\n"
+                + "  }\n"
+                + "  int y = x;\n"
+                + "  x = 2;\n"
+                + "  return x + y;\n"
+                + "}");
+        final List<ASTNode> beforeY = dataflow.getReachingDefinitions(name("x", 2));
+        assertEquals(2, beforeY.size());
+        assertTrue(beforeY.get(0) instanceof VariableDeclaration);
+        assertTrue(beforeY.get(1) instanceof Assignment);
+
+        final List<ASTNode> beforeReturn = dataflow.getReachingDefinitions(name("x", 4));
+        assertEquals(1, beforeReturn.size());
+        assertEquals("x=2", beforeReturn.get(0).toString());
+    }
+
+    @Test
+    public void definiteAssignment() throws Exception {
+        final MethodDataflow dataflow = dataflow(
+                "int m(boolean b) {\n"
+                + "  int x;\n"
+                + "  int y;\n"
+                + "  if (b) {\n"
+                + "    x = 1;\n"
+                + "    y = 1;\n"
+                + "  } else {\n"
+                + "    x = 2;\n"
+                + "  }\n"
+                + "  if (b) {\n"
+                + "    return y;\n"
+                + "  }\n"
+                + "  return x;\n"
+                + "}");
+        assertTrue(dataflow.isDefinitelyAssigned(name("b", 1)));
+        assertTrue(dataflow.isDefinitelyAssigned(name("x", 3)));
+        assertFalse(dataflow.isDefinitelyAssigned(name("y", 2)));
+    }
+
+    @Test
+    public void fieldsAreIgnored() throws Exception {
+        final MethodDataflow dataflow = dataflow(
+                "int m(int a) {\n"
+                + "  f = a;\n"
+                + "  return f;\n"
+                + "}");
+        assertEquals(1, dataflow.getLocalVariables().size());
+        assertEquals("a", dataflow.getLocalVariables().get(0).getName());
+    }
+
+    private MethodDataflow dataflow(String methodSource) throws Exception {
+        source = "class A {\n  int f;\n" + methodSource + "\n}";
+        astRoot = parse(source);
+
+        final TypeDeclaration type = (TypeDeclaration) astRoot.types().get(0);
+        final MethodDeclaration method = type.getMethods()[0];
+        final CFGBuilder builder = new CFGBuilder(source, newJavaProjectOptions());
+        return new MethodDataflow(builder.buildCFG(method));
+    }
+
+    /** Returns the n-th occurrence, starting at 0, of the identifier in the method source. */
+    private SimpleName name(String identifier, int occurrence) {
+        int position = source.indexOf("int m(");
+        for (int i = 0; i <= occurrence; i++) {
+            position = source.indexOf(identifier, position + 1);
+            while (Character.isJavaIdentifierPart(source.charAt(position - 1))
+                    || Character.isJavaIdentifierPart(source.charAt(position + identifier.length()))) {
+                position = source.indexOf(identifier, position + 1);
+            }
+        }
+        return (SimpleName) NodeFinder.perform(astRoot, position, identifier.length());
+    }
+}
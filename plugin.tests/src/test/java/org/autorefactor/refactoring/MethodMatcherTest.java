@@ -0,0 +1,128 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.autorefactor.test.TestHelper.*;
+import static org.junit.Assert.*;
+
+public class MethodMatcherTest {
+
+    static final String SOURCE = "class A {\n"
+            + "  void m(int i) {}\n"
+            + "  void m(String s) {}\n"
+            + "  void n() {}\n"
+            + "}\n"
+            + "class B extends A {\n"
+            + "  void m(int i) {}\n"
+            + "}\n";
+
+    private ITypeBinding[] types;
+
+    @Before
+    public void setUp() {
+        types = parseTypes(SOURCE);
+    }
+
+    @Test
+    public void matchesTheMethodsOverridingASignature() throws Exception {
+        final MethodMatcher matcher = new MethodMatcher().add("A", "m", "int");
+
+        assertTrue(matcher.matches(getMethod(types[0], "m", "int")));
+        assertTrue(matcher.matches(getMethod(types[1], "m", "int")));
+        assertFalse(matcher.matches(getMethod(types[0], "m", "java.lang.String")));
+        assertFalse(matcher.matches(getMethod(types[0], "n")));
+        assertFalse(matcher.matches((IMethodBinding) null));
+    }
+
+    @Test
+    public void returnsTheIndexesOfAllTheMatchingSignatures() throws Exception {
+        final MethodMatcher matcher = new MethodMatcher()
+                .add("A", "n")
+                .addIgnoringParameters("A", "m")
+                .add("B", "m", "int")
+                .add("A", "m", "int");
+        final IMethodBinding method = getMethod(types[1], "m", "int");
+
+        assertEquals(1, matcher.indexOf(method));
+        assertEquals("[1, 2, 3]", Arrays.toString(matcher.indexesOf(method)));
+        assertEquals("[1]", Arrays.toString(matcher.indexesOf(getMethod(types[0], "m", "java.lang.String"))));
+        assertEquals(MethodMatcher.NO_MATCH, new MethodMatcher().add("B", "n").indexOf(getMethod(types[0], "n")));
+        assertEquals(Arrays.asList("A", "B"), Arrays.asList(matcher.getDeclaringTypeNames().toArray()));
+    }
+
+    @Test
+    public void memoizesTheMatchesOfEachThread() throws Exception {
+        final MethodMatcher matcher = new MethodMatcher().add("A", "m", "int");
+        final IMethodBinding method = getMethod(types[1], "m", "int");
+        final int[] results = matcher.indexesOf(method);
+        assertSame(results, matcher.indexesOf(method));
+
+        final int[][] otherThreadResults = new int[1][];
+        final Thread otherThread = new Thread() {
+            @Override
+            public void run() {
+                otherThreadResults[0] = matcher.indexesOf(method);
+            }
+        };
+        otherThread.start();
+        otherThread.join();
+        assertNotSame(results, otherThreadResults[0]);
+        assertArrayEquals(results, otherThreadResults[0]);
+    }
+
+    @Test
+    public void forgetsTheMatchesWhenASignatureIsAdded() throws Exception {
+        final MethodMatcher matcher = new MethodMatcher().add("A", "n");
+        final IMethodBinding method = getMethod(types[1], "m", "int");
+        assertFalse(matcher.matches(method));
+
+        matcher.add("A", "m", "int");
+        assertEquals(1, matcher.indexOf(method));
+    }
+
+    static IMethodBinding getMethod(ITypeBinding type, String methodName, String... parameterTypeNames) {
+        for (IMethodBinding method : type.getDeclaredMethods()) {
+            if (method.getName().equals(methodName)
+                    && method.getParameterTypes().length == parameterTypeNames.length) {
+                boolean sameParameters = true;
+                for (int i = 0; i < parameterTypeNames.length; i++) {
+                    sameParameters &= parameterTypeNames[i].equals(method.getParameterTypes()[i].getQualifiedName());
+                }
+                if (sameParameters) {
+                    return method;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No method " + methodName + " in " + type.getQualifiedName());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.autorefactor.refactoring.MethodMatcherTest.*;
+import static org.autorefactor.test.TestHelper.*;
+import static org.junit.Assert.*;
+
+public class MethodTableTest {
+
+    private ITypeBinding[] types;
+
+    @Before
+    public void setUp() {
+        types = parseTypes(SOURCE);
+    }
+
+    @Test
+    public void returnsTheValueOfTheFirstMatchingSignature() throws Exception {
+        final MethodTable<String> table = new MethodTable<String>()
+                .put("int", "A", "m", "int")
+                .put("string", "A", "m", "java.lang.String")
+                .putIgnoringParameters("any", "A", "m", "n");
+
+        assertEquals("int", table.get(getMethod(types[1], "m", "int")));
+        assertEquals("string", table.get(getMethod(types[0], "m", "java.lang.String")));
+        assertEquals("any", table.get(getMethod(types[0], "n")));
+        assertNull(new MethodTable<String>().put("b", "B", "n").get(getMethod(types[0], "n")));
+    }
+
+    @Test
+    public void returnsTheValuesOfAllTheMatchingSignatures() throws Exception {
+        final MethodTable<String> table = new MethodTable<String>()
+                .putIgnoringParameters("any", "A", "m", "n")
+                .put("int", "A", "m", "int");
+
+        assertEquals(Arrays.asList("any", "int"), table.getAll(getMethod(types[1], "m", "int")));
+        assertEquals(Collections.singletonList("any"), table.getAll(getMethod(types[0], "n")));
+        assertEquals(Collections.emptyList(), table.getAll(null));
+    }
+}
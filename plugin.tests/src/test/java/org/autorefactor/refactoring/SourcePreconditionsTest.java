@@ -0,0 +1,74 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import static org.autorefactor.refactoring.SourcePreconditions.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SourcePreconditionsTest {
+
+    private static final class Precondition implements SourcePrecondition {
+        private final String[] identifiers;
+
+        private Precondition(String... identifiers) {
+            this.identifiers = identifiers;
+        }
+
+        @Override
+        public String[] getRequiredIdentifiers() {
+            return identifiers;
+        }
+    }
+
+    @Test
+    public void containsIdentifierMatchesWholeWords() throws Exception {
+        final String source = "class A { void getView() { getViewType(); } }";
+        assertTrue(containsIdentifier(source, 0, source.length(), "getView"));
+        assertTrue(containsIdentifier(source, 0, source.length(), "getViewType"));
+        assertTrue(containsIdentifier(source, 0, source.length(), "A"));
+        assertFalse(containsIdentifier(source, 0, source.length(), "View"));
+    }
+
+    @Test
+    public void containsIdentifierOnlyLooksInTheRange() throws Exception {
+        final String source = "class A { void onDraw() {} } class B { void foo() {} }";
+        final int start = source.indexOf("class B");
+        assertFalse(containsIdentifier(source, start, source.length(), "onDraw"));
+        assertTrue(containsIdentifier(source, start, source.length(), "foo"));
+        assertFalse(containsIdentifier(source, 0, source.indexOf("foo") + 2, "foo"));
+    }
+
+    @Test
+    public void mayRefactorChecksTheRequiredIdentifiers() throws Exception {
+        final String source = "import android.util.FloatMath; class A {}";
+        assertTrue(mayRefactor(new Object(), source, 0, source.length()));
+        assertTrue(mayRefactor(new Precondition(), source, 0, source.length()));
+        assertTrue(mayRefactor(new Precondition("onDraw", "FloatMath"), source, 0, source.length()));
+        assertFalse(mayRefactor(new Precondition("onDraw", "getView"), source, 0, source.length()));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.autorefactor.test.TestHelper.*;
+import static org.junit.Assert.*;
+
+public class TypeHierarchyCacheTest {
+
+    private static final String SOURCE = "class A implements I {}\n"
+            + "class B extends A {}\n"
+            + "interface I extends J {}\n"
+            + "interface J {}\n";
+
+    @After
+    public void tearDown() {
+        TypeHierarchyCache.setCurrent(null);
+    }
+
+    @Test
+    public void returnsTheSuperTypesOfATypeAndCachesThem() throws Exception {
+        final ITypeBinding[] types = parseTypes(SOURCE);
+        final TypeHierarchyCache cache = new TypeHierarchyCache();
+
+        final Set<String> superTypeNames = cache.get(types[1]);
+        assertTrue(superTypeNames.contains("B"));
+        assertTrue(superTypeNames.contains("A"));
+        assertTrue(superTypeNames.contains("I"));
+        assertTrue(superTypeNames.contains("J"));
+        assertSame(superTypeNames, cache.get(types[1]));
+        assertFalse(cache.get(types[3]).contains("A"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedTypes() throws Exception {
+        final ITypeBinding[] types = parseTypes(SOURCE);
+        final TypeHierarchyCache cache = new TypeHierarchyCache(1);
+
+        final Set<String> superTypeNames = cache.get(types[0]);
+        assertSame(superTypeNames, cache.get(types[0]));
+        cache.get(types[1]);
+        assertNotSame(superTypeNames, cache.get(types[0]));
+    }
+
+    @Test
+    public void findImplementedTypeUsesTheCurrentCache() throws Exception {
+        final ITypeBinding[] types = parseTypes(SOURCE);
+        TypeHierarchyCache.setCurrent(new TypeHierarchyCache());
+
+        assertEquals("J", findImplementedType(types[1], "J").getQualifiedName());
+        assertTrue(instanceOf(types[1], "I"));
+        assertFalse(instanceOf(types[1], "K"));
+        assertFalse(instanceOf(types[0], "B"));
+    }
+}
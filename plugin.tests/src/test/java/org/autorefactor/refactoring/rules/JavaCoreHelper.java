@@ -25,6 +25,8 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import static org.autorefactor.test.TestHelper.readAll;
+
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,14 +58,32 @@ import org.w3c.dom.NodeList;
 public class JavaCoreHelper {
 
     private static final Path[] EMPTY_PATHS = new Path[0];
+    private static final String SAMPLES_SOURCE_DIR = "../samples/src/test/java";
+    /** Stubs of the libraries used by the samples which are missing from the Android jar. */
+    private static final String[] SAMPLES_STUBS = {
+        "android/support/v4/util/ArraySet.java",
+        "android/support/v7/widget/RecyclerView.java",
+        "android/util/ArrayMap.java"
+    };
 
     public static IPackageFragment getPackageFragment() throws Exception {
         final IJavaProject javaProject = createJavaProject("projectName", "bin");
         final IPackageFragmentRoot root = addSourceContainer(javaProject, "/testRoot");
         addToClasspath(javaProject, getClasspathEntries(root));
+        addSamplesStubs(root);
         return root.createPackageFragment("org.autorefactor", true, null);
     }
 
+    private static void addSamplesStubs(IPackageFragmentRoot root) throws Exception {
+        for (String stub : SAMPLES_STUBS) {
+            final int lastSlash = stub.lastIndexOf('/');
+            final IPackageFragment packageFragment =
+                    root.createPackageFragment(stub.substring(0, lastSlash).replace('/', '.'), true, null);
+            packageFragment.createCompilationUnit(
+                    stub.substring(lastSlash + 1), readAll(new File(SAMPLES_SOURCE_DIR, stub)), true, null);
+        }
+    }
+
     private static List<IClasspathEntry> getClasspathEntries(final IPackageFragmentRoot root) throws Exception {
         final List<IClasspathEntry> entries = new ArrayList<IClasspathEntry>();
         final IClasspathEntry srcEntry = JavaCore.newSourceEntry(root.getPath(), EMPTY_PATHS, EMPTY_PATHS, null);
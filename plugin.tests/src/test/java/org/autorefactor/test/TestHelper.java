@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import org.autorefactor.AutoRefactorPlugin;
@@ -41,8 +42,19 @@ import org.autorefactor.refactoring.Release;
 import org.autorefactor.refactoring.rules.AllRefactoringRulesTest;
 import org.autorefactor.refactoring.rules.EndsWithFileFilter;
 import org.autorefactor.ui.JavaProjectOptionsImpl;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ITypeBinding;
 
 public final class TestHelper {
+    /**
+     * Minimum Android API level of the samples: recent enough for the rules to use the platform APIs,
+     * except ArraySet (API 23), so the samples also cover the fallback to the support library.
+     */
+    private static final int SAMPLES_ANDROID_MIN_SDK_VERSION = 19;
 
     private TestHelper() {
     }
@@ -85,9 +97,54 @@ public final class TestHelper {
         final JavaProjectOptionsImpl options = new JavaProjectOptionsImpl();
         options.setTabSize(tabSize);
         options.setJavaSERelease(javaSE);
+        options.setAndroidMinSdkVersion(SAMPLES_ANDROID_MIN_SDK_VERSION);
         return options;
     }
 
+    /**
+     * Parses the provided source as the compilation unit "A.java" at the Java 1.6 compliance level,
+     * with the bindings resolved against the running JRE.
+     *
+     * @param source the source of the compilation unit
+     * @return the parsed compilation unit
+     */
+    public static CompilationUnit parse(String source) {
+        final ASTParser parser = ASTParser.newParser(AST.JLS4);
+        @SuppressWarnings("unchecked")
+        final Map<String, String> compilerOptions = JavaCore.getOptions();
+        JavaCore.setComplianceOptions(JavaCore.VERSION_1_6, compilerOptions);
+        parser.setCompilerOptions(compilerOptions);
+        parser.setEnvironment(null, null, null, true);
+        parser.setUnitName("A.java");
+        parser.setSource(source.toCharArray());
+        parser.setResolveBindings(true);
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    /**
+     * Parses the provided source like {@link #parse(String)} and returns the bindings of its top level types.
+     *
+     * @param source the source of the compilation unit
+     * @return the bindings of the top level types, in declaration order
+     */
+    public static ITypeBinding[] parseTypes(String source) {
+        final List<?> types = parse(source).types();
+        final ITypeBinding[] results = new ITypeBinding[types.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = ((AbstractTypeDeclaration) types.get(i)).resolveBinding();
+        }
+        return results;
+    }
+
+    /**
+     * Returns the java project options matching the sources parsed by {@link #parse(String)}.
+     *
+     * @return the java project options matching the sources parsed by {@link #parse(String)}
+     */
+    public static JavaProjectOptions newJavaProjectOptions() {
+        return newJavaProjectOptions(Release.javaSE("1.6"), 4);
+    }
+
     public static String normalizeJavaSourceCode(String s) {
         return s.replaceAll("\t", "    ")
                 .replaceAll("(\r\n|\r|\n)", "\n")
@@ -0,0 +1,53 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AndroidProjectsTest {
+
+    @Test
+    public void parseGradleMinSdkVersion() throws Exception {
+        assertEquals(16, AndroidProjects.parseGradleMinSdkVersion(
+                "android {\n    defaultConfig {\n        minSdkVersion 16\n        targetSdkVersion 28\n    }\n}"));
+        assertEquals(21, AndroidProjects.parseGradleMinSdkVersion("defaultConfig { minSdk = 21 }"));
+        assertEquals(19, AndroidProjects.parseGradleMinSdkVersion("defaultConfig { minSdkVersion(19) }"));
+        assertEquals(14, AndroidProjects.parseGradleMinSdkVersion("// minSdkVersion 9\nminSdkVersion 14"));
+        assertEquals(0, AndroidProjects.parseGradleMinSdkVersion("minSdkVersion rootProject.ext.minSdk"));
+        assertEquals(0, AndroidProjects.parseGradleMinSdkVersion(null));
+    }
+
+    @Test
+    public void parseManifestMinSdkVersion() throws Exception {
+        assertEquals(15, AndroidProjects.parseManifestMinSdkVersion(
+                "<manifest><uses-sdk android:minSdkVersion=\"15\" android:targetSdkVersion=\"23\" /></manifest>"));
+        assertEquals(8, AndroidProjects.parseManifestMinSdkVersion(
+                "<!-- <uses-sdk android:minSdkVersion=\"4\" /> -->\n<uses-sdk android:minSdkVersion='8' />"));
+        assertEquals(0, AndroidProjects.parseManifestMinSdkVersion("<manifest package=\"a.b\" />"));
+    }
+}
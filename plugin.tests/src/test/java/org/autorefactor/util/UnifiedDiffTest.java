@@ -0,0 +1,102 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.util;
+
+import static org.autorefactor.util.UnifiedDiff.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class UnifiedDiffTest {
+
+    @Test
+    public void equalTexts() throws Exception {
+        assertEquals("", diff("a", "b", "line1\nline2\n", "line1\nline2\n"));
+    }
+
+    @Test
+    public void changedLineWithContext() throws Exception {
+        final String oldText = "1\n2\n3\n4\n5\n6\n7\n8\n9\n";
+        final String newText = "1\n2\n3\n4\nfive\n6\n7\n8\n9\n";
+        assertEquals(""
+                + "--- a/A.java\n"
+                + "+++ b/A.java\n"
+                + "@@ -2,7 +2,7 @@\n"
+                + " 2\n"
+                + " 3\n"
+                + " 4\n"
+                + "-5\n"
+                + "+five\n"
+                + " 6\n"
+                + " 7\n"
+                + " 8\n",
+                diff("a/A.java", "b/A.java", oldText, newText));
+    }
+
+    @Test
+    public void distantChangesAreInSeparateHunks() throws Exception {
+        final String oldText = "1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n";
+        final String newText = "one\n2\n3\n4\n5\n6\n7\n8\n9\n";
+        assertEquals(""
+                + "--- a\n"
+                + "+++ b\n"
+                + "@@ -1,4 +1,4 @@\n"
+                + "-1\n"
+                + "+one\n"
+                + " 2\n"
+                + " 3\n"
+                + " 4\n"
+                + "@@ -7,4 +7,3 @@\n"
+                + " 7\n"
+                + " 8\n"
+                + " 9\n"
+                + "-10\n",
+                diff("a", "b", oldText, newText));
+    }
+
+    @Test
+    public void insertionInEmptyText() throws Exception {
+        assertEquals(""
+                + "--- a\n"
+                + "+++ b\n"
+                + "@@ -0,0 +1 @@\n"
+                + "+new\n",
+                diff("a", "b", "", "new\n"));
+    }
+
+    @Test
+    public void noNewlineAtEndOfFile() throws Exception {
+        assertEquals(""
+                + "--- a\n"
+                + "+++ b\n"
+                + "@@ -1,2 +1,2 @@\n"
+                + " 1\n"
+                + "-2\n"
+                + "\\ No newline at end of file\n"
+                + "+2\n",
+                diff("a", "b", "1\n2", "1\n2\n"));
+    }
+}
@@ -48,6 +48,8 @@ public class AutoRefactorPlugin extends AbstractUIPlugin {
     private static AutoRefactorPlugin plugin;
 
     private static Preferences preferenceHelper;
+    /** The log used when running outside of Eclipse, where there is no workspace log. */
+    private static ILog standaloneLog;
     private static Vector<Job> jobs = new Vector<Job>();
 
     @Override
@@ -67,15 +69,42 @@ public class AutoRefactorPlugin extends AbstractUIPlugin {
     }
 
     private static void log(int severity, String message, Exception e) {
-        if (getPreferenceHelper().debugModeOn()) {
+        // fail fast in debug mode, or outside of Eclipse when the caller did not provide any log
+        if (plugin == null ? standaloneLog == null : getPreferenceHelper().debugModeOn()) {
             if (e instanceof RuntimeException) {
                 throw (RuntimeException) e;
             }
             throw new UnhandledException(null, message, e);
         }
 
-        final ILog log = getDefault().getLog();
-        log.log(new Status(severity, PLUGIN_ID, message, e));
+        getCurrentLog().log(new Status(severity, PLUGIN_ID, message, e));
+    }
+
+    private static ILog getCurrentLog() {
+        return plugin != null ? plugin.getLog() : standaloneLog;
+    }
+
+    /**
+     * Sets the log used when running outside of Eclipse, for example by the benchmarks.
+     * Without such a log, warnings and errors are thrown as exceptions outside of Eclipse.
+     * <p>
+     * This method is only for internal use.
+     *
+     * @param log the log to use outside of Eclipse, or null to throw warnings and errors
+     */
+    public static void setStandaloneLog(ILog log) {
+        standaloneLog = log;
+    }
+
+    /**
+     * Logs an information message into Eclipse workspace logs.
+     * <p>
+     * Contrary to warnings and errors, information messages never fail in debug mode.
+     *
+     * @param message the message to log
+     */
+    public static void logInfo(String message) {
+        getCurrentLog().log(new Status(IStatus.INFO, PLUGIN_ID, message));
     }
 
     /**
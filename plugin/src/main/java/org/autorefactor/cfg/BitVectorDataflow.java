@@ -0,0 +1,136 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.BitSet;
+
+/**
+ * Worklist solver for the dataflow problems which transfer function is {@code out = gen | (in & ~kill)}.
+ * <p>
+ * Blocks are processed in reverse postorder for forward problems and in postorder for backward problems,
+ * so that acyclic regions converge in a single pass.
+ */
+final class BitVectorDataflow {
+    private final ControlFlowGraph cfg;
+    private final boolean forward;
+    private final boolean union;
+    private final BitSet[] gen;
+    private final BitSet[] kill;
+    private final int nbFacts;
+
+    /**
+     * Builds a dataflow problem.
+     *
+     * @param cfg the control flow graph
+     * @param forward true for a forward problem, false for a backward problem
+     * @param union true if facts hold when they hold on any path (may problems),
+     *        false if they must hold on all paths (must problems)
+     * @param gen the facts generated by each block, indexed by block number
+     * @param kill the facts killed by each block, indexed by block number
+     * @param nbFacts the number of facts, used as the initial value of must problems
+     */
+    BitVectorDataflow(ControlFlowGraph cfg, boolean forward, boolean union, BitSet[] gen, BitSet[] kill,
+            int nbFacts) {
+        this.cfg = cfg;
+        this.forward = forward;
+        this.union = union;
+        this.gen = gen;
+        this.kill = kill;
+        this.nbFacts = nbFacts;
+    }
+
+    /**
+     * Solves this dataflow problem.
+     * <p>
+     * No facts hold at the boundary, i.e. when entering the entry block of forward problems
+     * and when leaving the blocks without successors of backward problems.
+     *
+     * @return the facts holding before each block is processed, indexed by block number:
+     *         the facts holding on block entry for forward problems, on block exit for backward problems
+     */
+    BitSet[] solve() {
+        final int nbBlocks = cfg.getNbBlocks();
+        final BitSet[] before = new BitSet[nbBlocks];
+        final BitSet[] after = new BitSet[nbBlocks];
+        for (int i = 0; i < nbBlocks; i++) {
+            before[i] = new BitSet(nbFacts);
+            after[i] = new BitSet(nbFacts);
+            if (!union) {
+                after[i].set(0, nbFacts);
+            }
+        }
+
+        // worklist ordered by processing order: a circular buffer of block numbers
+        final int[] worklist = new int[nbBlocks];
+        final boolean[] queued = new boolean[nbBlocks];
+        for (int i = 0; i < nbBlocks; i++) {
+            worklist[i] = forward ? i : nbBlocks - 1 - i;
+            queued[i] = true;
+        }
+        int head = 0;
+        int size = nbBlocks;
+        while (size > 0) {
+            final int block = worklist[head];
+            head = (head + 1) % nbBlocks;
+            size--;
+            queued[block] = false;
+
+            final BitSet in = meet(block, after);
+            before[block] = in;
+            final BitSet out = (BitSet) in.clone();
+            out.andNot(kill[block]);
+            out.or(gen[block]);
+            if (!out.equals(after[block])) {
+                after[block] = out;
+                for (int next : forward ? cfg.getSuccessors(block) : cfg.getPredecessors(block)) {
+                    if (!queued[next]) {
+                        queued[next] = true;
+                        worklist[(head + size) % nbBlocks] = next;
+                        size++;
+                    }
+                }
+            }
+        }
+        return before;
+    }
+
+    private BitSet meet(int block, BitSet[] after) {
+        final int[] previous = forward ? cfg.getPredecessors(block) : cfg.getSuccessors(block);
+        final BitSet result = new BitSet(nbFacts);
+        if (previous.length == 0) {
+            return result;
+        }
+        result.or(after[previous[0]]);
+        for (int i = 1; i < previous.length; i++) {
+            if (union) {
+                result.or(after[previous[i]]);
+            } else {
+                result.and(after[previous[i]]);
+            }
+        }
+        return result;
+    }
+}
@@ -25,8 +25,10 @@
  */
 package org.autorefactor.cfg;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.autorefactor.util.IllegalArgumentException;
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -54,6 +56,8 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
     /** true means entry block, false means exit block, null means neither entry nor exit block. */
     private final Boolean isEntryBlock;
     private final LineAndColumn lineAndColumn;
+    /** The AST nodes evaluated in this block, starting with {@link #node}. */
+    private final List<ASTNode> nodes = new ArrayList<ASTNode>(1);
     private final Collection<CFGEdge> incomingEdges = new LinkedList<CFGEdge>();
     private final Collection<Object> outgoingEdgesAndVariableAccesses = new LinkedList<Object>();
 
@@ -65,6 +69,9 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
         this.isDecision = isDecision;
         this.isEntryBlock = isEntryBlock;
         this.lineAndColumn = lineAndColumn;
+        if (!isExitBlock()) {
+            this.nodes.add(node);
+        }
     }
 
     /**
@@ -125,6 +132,26 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
         return node;
     }
 
+    /**
+     * Returns the AST nodes (statements or expressions) evaluated in this basic block,
+     * starting with the node which led to the creation of this basic block.
+     * The exit block does not contain any node.
+     *
+     * @return the AST nodes evaluated in this basic block
+     */
+    public List<ASTNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Adds an AST node evaluated in this basic block.
+     *
+     * @param node the AST node to add to this basic block
+     */
+    public void addNode(ASTNode node) {
+        this.nodes.add(node);
+    }
+
     /**
      * Returns whether this block is a decision block.
      *
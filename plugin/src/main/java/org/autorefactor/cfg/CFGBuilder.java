@@ -194,7 +194,8 @@ public class CFGBuilder {
         }
 
         private LivenessState nextStmtsAreDeadCode() {
-            return copyLiveEdges();
+            // the edge falling through the current block must not be built
+            return new LivenessState();
         }
 
         private boolean requireNewBlock() {
@@ -883,11 +884,16 @@ public class CFGBuilder {
      */
     public LivenessState buildCFG(WhileStatement node, LivenessState state, ThrowerBlocks throwers) {
         final CFGBasicBlock conditionBlock = getCFGBasicBlock(node.getExpression(), state.nextStmtWillCreateNewBlock());
+        conditionBlock.addNode(node);
         addVariableAccess(conditionBlock, node.getExpression(), READ, throwers);
 
         final CFGEdgeBuilder liveEdge = new CFGEdgeBuilder(node.getExpression(), true, conditionBlock);
-        final LivenessState liveAfterStmt = buildCFG(node.getBody(), LivenessState.of(liveEdge), throwers);
-        liveAfterStmt.add(new CFGEdgeBuilder(node.getExpression(), false, conditionBlock));
+        final LivenessState liveAfterBody = buildCFG(node.getBody(), LivenessState.of(liveEdge), throwers);
+        // the end of the body loops back to the condition
+        buildEdges(liveAfterBody, conditionBlock);
+
+        final LivenessState liveAfterStmt = LivenessState.of(
+                new CFGEdgeBuilder(node.getExpression(), false, conditionBlock));
         buildEdgesAfterBranchableStmt(node, liveAfterStmt, conditionBlock);
         return liveAfterStmt.nextStmtWillCreateNewBlock();
     }
@@ -1591,6 +1597,7 @@ public class CFGBuilder {
      */
     public LivenessState buildCFG(ForStatement node, LivenessState state, ThrowerBlocks throwers) {
         final CFGBasicBlock initBlock = getCFGBasicBlock(initializers(node), state);
+        initBlock.addNode(node);
         final LivenessState initLiveBlock = LivenessState.of(new CFGEdgeBuilder(initBlock));
         final CFGBasicBlock exprBlock = getCFGBasicBlock(node.getExpression(), initLiveBlock, true);
         final CFGBasicBlock updatersBlock = getCFGBasicBlock(updaters(node), new LivenessState());
@@ -1675,9 +1682,8 @@ public class CFGBuilder {
         }
         if (!state.requireNewBlock()) {
             final CFGBasicBlock basicBlock = state.liveBasicBlock;
-            // TODO JNR add nodes to the basicBlock they belong to
-            // and adapt the CFGDotPrinter to display "..." after the first node
-            // basicBlock.addNode(node);
+            // TODO JNR adapt the CFGDotPrinter to display "..." after the first node
+            basicBlock.addNode(node);
             return basicBlock;
         }
         final LineAndColumn lineCol = getLineAndColumn(node);
@@ -1693,6 +1699,9 @@ public class CFGBuilder {
             final LineAndColumn lineCol = getLineAndColumn(firstExpr.getStartPosition());
             final CFGBasicBlock basicBlock = new CFGBasicBlock(expressions.get(0),
                     getFileName(firstExpr), codeExcerpt(expressions), false, lineCol);
+            for (Expression expr : expressions.subList(1, expressions.size())) {
+                basicBlock.addNode(expr);
+            }
             buildEdges(state, basicBlock);
             return basicBlock;
         }
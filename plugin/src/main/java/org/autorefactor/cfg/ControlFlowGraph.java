@@ -0,0 +1,412 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+
+/**
+ * Compact view of the control flow graph reachable from an entry block.
+ * <p>
+ * Blocks are numbered from 0 in reverse postorder, so the entry block is numbered 0
+ * and, loops excepted, a block is numbered before its successors.
+ * Analyses can then store their per block results in arrays indexed by block numbers.
+ * <p>
+ * This class also answers path queries (dominance, post-dominance, reachability)
+ * in linear time or better, without enumerating the paths.
+ * Paths are considered to end when reaching the exit block or a block without successors,
+ * like a throw statement, and are assumed to eventually leave the loops.
+ */
+public final class ControlFlowGraph {
+    private static final int[] NO_BLOCKS = new int[0];
+
+    private final CFGBasicBlock[] blocks;
+    private final Map<CFGBasicBlock, Integer> indexes;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    private Map<ASTNode, Integer> nodeIndexes;
+    private DominatorTree dominators;
+    private DominatorTree postDominators;
+
+    private ControlFlowGraph(List<CFGBasicBlock> reversePostOrder) {
+        final int nbBlocks = reversePostOrder.size();
+        this.blocks = reversePostOrder.toArray(new CFGBasicBlock[nbBlocks]);
+        this.indexes = new IdentityHashMap<CFGBasicBlock, Integer>(nbBlocks);
+        for (int i = 0; i < nbBlocks; i++) {
+            indexes.put(blocks[i], i);
+        }
+
+        this.successors = new int[nbBlocks][];
+        final int[] nbPredecessors = new int[nbBlocks];
+        for (int i = 0; i < nbBlocks; i++) {
+            final List<CFGBasicBlock> targets = getTargetBlocks(blocks[i]);
+            final int[] succs = new int[targets.size()];
+            for (int j = 0; j < succs.length; j++) {
+                succs[j] = indexes.get(targets.get(j));
+                nbPredecessors[succs[j]]++;
+            }
+            successors[i] = succs;
+        }
+
+        this.predecessors = new int[nbBlocks][];
+        for (int i = 0; i < nbBlocks; i++) {
+            predecessors[i] = nbPredecessors[i] > 0 ? new int[nbPredecessors[i]] : NO_BLOCKS;
+            nbPredecessors[i] = 0;
+        }
+        for (int i = 0; i < nbBlocks; i++) {
+            for (int succ : successors[i]) {
+                predecessors[succ][nbPredecessors[succ]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Builds the control flow graph made of the blocks reachable from the provided entry block.
+     *
+     * @param entryBlock the entry block, as returned by {@link CFGBuilder#buildCFG(
+     *        org.eclipse.jdt.core.dom.MethodDeclaration)}
+     * @return the control flow graph made of the blocks reachable from the provided entry block
+     */
+    public static ControlFlowGraph of(CFGBasicBlock entryBlock) {
+        // iterative depth first search: methods can have thousands of blocks
+        final List<CFGBasicBlock> postOrder = new ArrayList<CFGBasicBlock>();
+        final Map<CFGBasicBlock, Boolean> visited = new IdentityHashMap<CFGBasicBlock, Boolean>();
+        final List<CFGBasicBlock> stack = new ArrayList<CFGBasicBlock>();
+        final List<List<CFGBasicBlock>> pendingTargets = new ArrayList<List<CFGBasicBlock>>();
+        visited.put(entryBlock, Boolean.TRUE);
+        stack.add(entryBlock);
+        pendingTargets.add(getTargetBlocks(entryBlock));
+        while (!stack.isEmpty()) {
+            final int top = stack.size() - 1;
+            final List<CFGBasicBlock> targets = pendingTargets.get(top);
+            if (targets.isEmpty()) {
+                postOrder.add(stack.remove(top));
+                pendingTargets.remove(top);
+            } else {
+                final CFGBasicBlock target = targets.remove(targets.size() - 1);
+                if (visited.put(target, Boolean.TRUE) == null) {
+                    stack.add(target);
+                    pendingTargets.add(getTargetBlocks(target));
+                }
+            }
+        }
+
+        final List<CFGBasicBlock> reversePostOrder = new ArrayList<CFGBasicBlock>(postOrder.size());
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            reversePostOrder.add(postOrder.get(i));
+        }
+        return new ControlFlowGraph(reversePostOrder);
+    }
+
+    private static List<CFGBasicBlock> getTargetBlocks(CFGBasicBlock block) {
+        final List<CFGBasicBlock> results = new ArrayList<CFGBasicBlock>();
+        for (Object edgeOrVarAccess : block.getOutgoingEdgesAndVariableAccesses()) {
+            if (edgeOrVarAccess instanceof CFGEdge) {
+                results.add(((CFGEdge) edgeOrVarAccess).getTargetBlock());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of blocks in this control flow graph.
+     *
+     * @return the number of blocks in this control flow graph
+     */
+    public int getNbBlocks() {
+        return blocks.length;
+    }
+
+    /**
+     * Returns the entry block of this control flow graph.
+     *
+     * @return the entry block of this control flow graph
+     */
+    public CFGBasicBlock getEntryBlock() {
+        return blocks[0];
+    }
+
+    /**
+     * Returns the block with the provided number.
+     *
+     * @param index the block number
+     * @return the block with the provided number
+     */
+    public CFGBasicBlock getBlock(int index) {
+        return blocks[index];
+    }
+
+    /**
+     * Returns the number of the provided block.
+     *
+     * @param block the block
+     * @return the number of the provided block, or -1 if it is not reachable from the entry block
+     */
+    public int getIndex(CFGBasicBlock block) {
+        final Integer index = indexes.get(block);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns the numbers of the successors of the block with the provided number.
+     * The returned array must not be modified.
+     *
+     * @param index the block number
+     * @return the numbers of the successors of the block with the provided number
+     */
+    public int[] getSuccessors(int index) {
+        return successors[index];
+    }
+
+    /**
+     * Returns the numbers of the predecessors of the block with the provided number.
+     * The returned array must not be modified.
+     *
+     * @param index the block number
+     * @return the numbers of the predecessors of the block with the provided number
+     */
+    public int[] getPredecessors(int index) {
+        return predecessors[index];
+    }
+
+    /**
+     * Returns the number of the block evaluating the provided AST node.
+     *
+     * @param node an AST node of the method
+     * @return the number of the block evaluating the provided AST node,
+     *         or -1 if it is not evaluated in a block reachable from the entry block,
+     *         for example if it is inside an anonymous class
+     */
+    public int getBlockIndex(ASTNode node) {
+        if (nodeIndexes == null) {
+            nodeIndexes = new IdentityHashMap<ASTNode, Integer>();
+            for (int i = 0; i < blocks.length; i++) {
+                for (ASTNode blockNode : blocks[i].getNodes()) {
+                    if (!nodeIndexes.containsKey(blockNode)) {
+                        nodeIndexes.put(blockNode, i);
+                    }
+                }
+            }
+        }
+        for (ASTNode n = node; n != null; n = n.getParent()) {
+            final Integer index = nodeIndexes.get(n);
+            if (index != null) {
+                return index;
+            } else if (n instanceof BodyDeclaration || n instanceof AnonymousClassDeclaration) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the first block dominates the second block,
+     * i.e. whether all the paths from the entry block to the second block go through the first block.
+     * A block dominates itself.
+     *
+     * @param dominator the number of the potential dominator block
+     * @param index the block number
+     * @return true if the first block dominates the second block, false otherwise
+     */
+    public boolean dominates(int dominator, int index) {
+        return getDominators().dominates(dominator, index);
+    }
+
+    /**
+     * Returns the immediate dominator of the provided block.
+     *
+     * @param index the block number
+     * @return the number of the immediate dominator of the provided block, or -1 for the entry block
+     */
+    public int getImmediateDominator(int index) {
+        return getDominators().getImmediateDominator(index);
+    }
+
+    private DominatorTree getDominators() {
+        if (dominators == null) {
+            dominators = new DominatorTree(0, successors, predecessors);
+        }
+        return dominators;
+    }
+
+    /**
+     * Returns whether the first block post-dominates the second block,
+     * i.e. whether all the paths from the second block to the end of the method go through the first block.
+     * A block post-dominates itself.
+     *
+     * @param postDominator the number of the potential post-dominator block
+     * @param index the block number
+     * @return true if the first block post-dominates the second block, false otherwise,
+     *         or if the second block cannot reach the end of the method
+     */
+    public boolean postDominates(int postDominator, int index) {
+        return getPostDominators().dominates(postDominator, index);
+    }
+
+    /**
+     * Returns the immediate post-dominator of the provided block.
+     *
+     * @param index the block number
+     * @return the number of the immediate post-dominator of the provided block,
+     *         or -1 if the provided block ends the method or cannot reach the end of the method
+     */
+    public int getImmediatePostDominator(int index) {
+        final int result = getPostDominators().getImmediateDominator(index);
+        return result < blocks.length ? result : -1;
+    }
+
+    private DominatorTree getPostDominators() {
+        if (postDominators == null) {
+            // reverse graph, where a virtual node ending the method succeeds
+            // the exit block and all the blocks without successors
+            final int virtualEnd = blocks.length;
+            final int[][] reverseSuccessors = new int[blocks.length + 1][];
+            final int[][] reversePredecessors = new int[blocks.length + 1][];
+            final int[] ends = getEnds();
+            for (int i = 0; i < blocks.length; i++) {
+                reverseSuccessors[i] = predecessors[i];
+                reversePredecessors[i] = successors[i];
+            }
+            for (int end : ends) {
+                final int[] succs = successors[end];
+                final int[] preds = new int[succs.length + 1];
+                System.arraycopy(succs, 0, preds, 0, succs.length);
+                preds[succs.length] = virtualEnd;
+                reversePredecessors[end] = preds;
+            }
+            reverseSuccessors[virtualEnd] = ends;
+            reversePredecessors[virtualEnd] = NO_BLOCKS;
+            postDominators = new DominatorTree(virtualEnd, reverseSuccessors, reversePredecessors);
+        }
+        return postDominators;
+    }
+
+    private int[] getEnds() {
+        int nbEnds = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            if (isEnd(i)) {
+                nbEnds++;
+            }
+        }
+        final int[] results = new int[nbEnds];
+        nbEnds = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            if (isEnd(i)) {
+                results[nbEnds++] = i;
+            }
+        }
+        return results;
+    }
+
+    private boolean isEnd(int index) {
+        return successors[index].length == 0 || blocks[index].isExitBlock();
+    }
+
+    /**
+     * Returns whether a path goes from the first block to the second block.
+     * A block can always reach itself.
+     *
+     * @param from the number of the starting block
+     * @param to the number of the block to reach
+     * @return true if a path goes from the first block to the second block, false otherwise
+     */
+    public boolean isReachable(int from, int to) {
+        final BitSet target = new BitSet(blocks.length);
+        target.set(to);
+        return isReachable(from, target);
+    }
+
+    /**
+     * Returns whether a path goes from the provided block to any of the target blocks.
+     *
+     * @param from the number of the starting block
+     * @param targets the numbers of the blocks to reach
+     * @return true if a path goes from the provided block to any of the target blocks, false otherwise
+     */
+    public boolean isReachable(int from, BitSet targets) {
+        final BitSet visited = new BitSet(blocks.length);
+        final int[] worklist = new int[blocks.length];
+        int size = 0;
+        worklist[size++] = from;
+        visited.set(from);
+        while (size > 0) {
+            final int index = worklist[--size];
+            if (targets.get(index)) {
+                return true;
+            }
+            for (int succ : successors[index]) {
+                if (!visited.get(succ)) {
+                    visited.set(succ);
+                    worklist[size++] = succ;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether all the paths from the provided block to the end of the method
+     * go through any of the target blocks.
+     * <p>
+     * For a single target block, this is the same as {@link #postDominates(int, int)},
+     * but this does not need to compute the post-dominator tree.
+     *
+     * @param from the number of the starting block
+     * @param targets the numbers of the blocks to reach
+     * @return true if all the paths from the provided block go through any of the target blocks,
+     *         false otherwise
+     */
+    public boolean allPathsReach(int from, BitSet targets) {
+        // look for a path reaching the end of the method while avoiding the targets
+        final BitSet visited = new BitSet(blocks.length);
+        final int[] worklist = new int[blocks.length];
+        int size = 0;
+        worklist[size++] = from;
+        visited.set(from);
+        while (size > 0) {
+            final int index = worklist[--size];
+            if (targets.get(index)) {
+                continue;
+            } else if (isEnd(index)) {
+                return false;
+            }
+            for (int succ : successors[index]) {
+                if (!visited.get(succ)) {
+                    visited.set(succ);
+                    worklist[size++] = succ;
+                }
+            }
+        }
+        return true;
+    }
+}
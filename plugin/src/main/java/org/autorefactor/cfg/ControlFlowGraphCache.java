@@ -0,0 +1,158 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.util.NotImplementedException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+/**
+ * Lazily builds and caches the control flow graphs and the dataflow information of the methods
+ * of a compilation unit, so they are shared by all the refactoring rules visiting it.
+ * <p>
+ * The cached information describe the code as it was parsed:
+ * they must be {@link #invalidate(ASTNode) invalidated} when a method is refactored.
+ */
+public final class ControlFlowGraphCache {
+    private final String source;
+    private final JavaProjectOptions options;
+    /** Null values for the methods which control flow graph cannot be built. */
+    private final Map<MethodDeclaration, ControlFlowGraph> cfgs = new HashMap<MethodDeclaration, ControlFlowGraph>();
+    private final Map<MethodDeclaration, MethodDataflow> dataflows = new HashMap<MethodDeclaration, MethodDataflow>();
+    private int nbHits;
+    private int nbMisses;
+    private int nbInvalidations;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param source the source of the compilation unit
+     * @param options the Java project options used to compile the project
+     */
+    public ControlFlowGraphCache(String source, JavaProjectOptions options) {
+        this.source = source;
+        this.options = options;
+    }
+
+    /**
+     * Returns the control flow graph of the provided method, built the first time it is requested.
+     *
+     * @param node the method declaration
+     * @return the control flow graph of the provided method,
+     *         or null if the method has no body or its control flow graph cannot be built
+     */
+    public ControlFlowGraph getControlFlowGraph(MethodDeclaration node) {
+        if (cfgs.containsKey(node)) {
+            nbHits++;
+            return cfgs.get(node);
+        }
+        nbMisses++;
+        ControlFlowGraph cfg = null;
+        if (node.getBody() != null) {
+            try {
+                cfg = ControlFlowGraph.of(new CFGBuilder(source, options).buildCFG(node));
+            } catch (NotImplementedException e) {
+                // the CFG builder does not support all the Java constructs yet
+                cfg = null;
+            }
+        }
+        cfgs.put(node, cfg);
+        return cfg;
+    }
+
+    /**
+     * Returns the dataflow information of the provided method, computed the first time it is requested.
+     *
+     * @param node the method declaration
+     * @return the dataflow information of the provided method,
+     *         or null if the method has no body or its control flow graph cannot be built
+     */
+    public MethodDataflow getDataflow(MethodDeclaration node) {
+        MethodDataflow dataflow = dataflows.get(node);
+        if (dataflow == null) {
+            final ControlFlowGraph cfg = getControlFlowGraph(node);
+            if (cfg == null) {
+                return null;
+            }
+            dataflow = new MethodDataflow(cfg);
+            dataflows.put(node, dataflow);
+        }
+        return dataflow;
+    }
+
+    /**
+     * Discards the information cached for the methods enclosing the provided node.
+     *
+     * @param node a node which has been refactored
+     */
+    public void invalidate(ASTNode node) {
+        for (ASTNode n = node; n != null; n = n.getParent()) {
+            if (n instanceof MethodDeclaration && cfgs.containsKey(n)) {
+                cfgs.remove(n);
+                dataflows.remove(n);
+                nbInvalidations++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of requests answered from the cache
+     */
+    public int getNbHits() {
+        return nbHits;
+    }
+
+    /**
+     * Returns the number of requests which had to build a control flow graph.
+     *
+     * @return the number of requests which had to build a control flow graph
+     */
+    public int getNbMisses() {
+        return nbMisses;
+    }
+
+    /**
+     * Returns the number of control flow graphs discarded because their method has been refactored.
+     *
+     * @return the number of control flow graphs discarded because their method has been refactored
+     */
+    public int getNbInvalidations() {
+        return nbInvalidations;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[hits=" + nbHits + ", misses=" + nbMisses
+                + ", invalidations=" + nbInvalidations + "]";
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+
+/**
+ * Dominator tree of a graph which nodes are numbered from 0,
+ * computed with the iterative algorithm described by Cooper, Harvey and Kennedy in
+ * "A Simple, Fast Dominance Algorithm".
+ * <p>
+ * The tree nodes are then numbered in preorder and postorder,
+ * so dominance queries are answered in constant time.
+ */
+final class DominatorTree {
+    private static final int UNDEFINED = -1;
+
+    private final int root;
+    /** Immediate dominator of each node, {@link #UNDEFINED} for the root and the unreachable nodes. */
+    private final int[] idoms;
+    private final int[] preorder;
+    private final int[] postorder;
+
+    /**
+     * Computes the dominator tree of the provided graph.
+     *
+     * @param root the root node, which dominates all the other reachable nodes
+     * @param successors the successors of each node
+     * @param predecessors the predecessors of each node
+     */
+    DominatorTree(int root, int[][] successors, int[][] predecessors) {
+        final int nbNodes = successors.length;
+        this.root = root;
+        final int[] reversePostOrder = reversePostOrder(root, successors);
+        final int[] rpoNumbers = new int[nbNodes];
+        Arrays.fill(rpoNumbers, UNDEFINED);
+        for (int i = 0; i < reversePostOrder.length; i++) {
+            rpoNumbers[reversePostOrder[i]] = i;
+        }
+
+        final int[] doms = new int[nbNodes];
+        Arrays.fill(doms, UNDEFINED);
+        doms[root] = root;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < reversePostOrder.length; i++) {
+                final int node = reversePostOrder[i];
+                int newIdom = UNDEFINED;
+                for (int pred : predecessors[node]) {
+                    if (doms[pred] != UNDEFINED) {
+                        newIdom = newIdom == UNDEFINED ? pred : intersect(pred, newIdom, doms, rpoNumbers);
+                    }
+                }
+                if (doms[node] != newIdom) {
+                    doms[node] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+        doms[root] = UNDEFINED;
+        this.idoms = doms;
+
+        this.preorder = new int[nbNodes];
+        this.postorder = new int[nbNodes];
+        numberTree(reversePostOrder);
+    }
+
+    private static int intersect(int node1, int node2, int[] doms, int[] rpoNumbers) {
+        int finger1 = node1;
+        int finger2 = node2;
+        while (finger1 != finger2) {
+            while (rpoNumbers[finger1] > rpoNumbers[finger2]) {
+                finger1 = doms[finger1];
+            }
+            while (rpoNumbers[finger2] > rpoNumbers[finger1]) {
+                finger2 = doms[finger2];
+            }
+        }
+        return finger1;
+    }
+
+    private static int[] reversePostOrder(int root, int[][] successors) {
+        final int nbNodes = successors.length;
+        final int[] postOrder = new int[nbNodes];
+        int nbVisited = 0;
+        final boolean[] visited = new boolean[nbNodes];
+        final int[] stack = new int[nbNodes];
+        final int[] nextSuccessor = new int[nbNodes];
+        int top = 0;
+        stack[0] = root;
+        visited[root] = true;
+        while (top >= 0) {
+            final int node = stack[top];
+            if (nextSuccessor[node] < successors[node].length) {
+                final int succ = successors[node][nextSuccessor[node]++];
+                if (!visited[succ]) {
+                    visited[succ] = true;
+                    stack[++top] = succ;
+                }
+            } else {
+                postOrder[nbVisited++] = node;
+                top--;
+            }
+        }
+
+        final int[] results = new int[nbVisited];
+        for (int i = 0; i < nbVisited; i++) {
+            results[i] = postOrder[nbVisited - 1 - i];
+        }
+        return results;
+    }
+
+    /** Numbers the dominator tree nodes in preorder and postorder with an iterative depth first search. */
+    private void numberTree(int[] reachableNodes) {
+        final int nbNodes = idoms.length;
+        final int[] nbChildren = new int[nbNodes];
+        for (int node : reachableNodes) {
+            if (idoms[node] != UNDEFINED) {
+                nbChildren[idoms[node]]++;
+            }
+        }
+        final int[][] children = new int[nbNodes][];
+        for (int node = 0; node < nbNodes; node++) {
+            children[node] = new int[nbChildren[node]];
+            nbChildren[node] = 0;
+        }
+        for (int node : reachableNodes) {
+            if (idoms[node] != UNDEFINED) {
+                children[idoms[node]][nbChildren[idoms[node]]++] = node;
+            }
+        }
+
+        Arrays.fill(preorder, UNDEFINED);
+        Arrays.fill(postorder, UNDEFINED);
+        final int[] stack = new int[nbNodes];
+        final int[] nextChild = new int[nbNodes];
+        int preNumber = 0;
+        int postNumber = 0;
+        int top = 0;
+        stack[0] = root;
+        preorder[root] = preNumber++;
+        while (top >= 0) {
+            final int node = stack[top];
+            if (nextChild[node] < children[node].length) {
+                final int child = children[node][nextChild[node]++];
+                preorder[child] = preNumber++;
+                stack[++top] = child;
+            } else {
+                postorder[node] = postNumber++;
+                top--;
+            }
+        }
+    }
+
+    /**
+     * Returns the immediate dominator of the provided node.
+     *
+     * @param node the node
+     * @return the immediate dominator of the provided node, or -1 for the root and the unreachable nodes
+     */
+    int getImmediateDominator(int node) {
+        return idoms[node];
+    }
+
+    /**
+     * Returns whether the first node dominates the second node, i.e. whether all the paths
+     * from the root to the second node go through the first node.
+     *
+     * @param dominator the potential dominator
+     * @param node the node
+     * @return true if the first node dominates the second node, false otherwise
+     *         or if one of the nodes is not reachable from the root
+     */
+    boolean dominates(int dominator, int node) {
+        if (preorder[dominator] == UNDEFINED || preorder[node] == UNDEFINED) {
+            return false;
+        }
+        return preorder[dominator] <= preorder[node] && postorder[node] <= postorder[dominator];
+    }
+}
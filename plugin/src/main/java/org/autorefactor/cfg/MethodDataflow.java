@@ -0,0 +1,550 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.autorefactor.util.IllegalArgumentException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
+import org.eclipse.jdt.core.dom.VariableDeclaration;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.PrefixExpression.Operator.*;
+
+/**
+ * Liveness, reaching definitions and definite assignment of the local variables of a method,
+ * computed over the control flow graph built by {@link CFGBuilder}.
+ * <p>
+ * Local variables and their definitions are numbered, so each analysis is a bit vector problem
+ * solved with a worklist. Each analysis is only computed the first time it is queried,
+ * and only the per block results are kept: queries about a variable access replay the accesses
+ * of its block from the block boundary.
+ * <p>
+ * The results are as precise as the control flow graph: for example exceptional edges are not built yet.
+ * Local variables used from anonymous or local classes are always considered live.
+ */
+public final class MethodDataflow {
+    private static final int[] NO_EVENTS = new int[0];
+
+    private final ControlFlowGraph cfg;
+    private final List<IVariableBinding> variables = new ArrayList<IVariableBinding>();
+    private final Map<IVariableBinding, Integer> variableIndexes = new HashMap<IVariableBinding, Integer>();
+    /** Local variables used from anonymous or local classes, where their accesses are not recorded. */
+    private final BitSet capturedVariables = new BitSet();
+    /** Defining nodes: assignments, variable declarations, increments and decrements. */
+    private final List<ASTNode> definitions = new ArrayList<ASTNode>();
+    private final List<BitSet> definitionsByVariable = new ArrayList<BitSet>();
+    /** For each block, the variable index of each access, in evaluation order. */
+    private final int[][] eventVariables;
+    /** For each block, the definition index of each write access, or -1 for read accesses. */
+    private final int[][] eventDefinitions;
+    /** For each accessed name, its block number and the indexes of its first and last accesses in this block. */
+    private final Map<SimpleName, int[]> eventsByName = new IdentityHashMap<SimpleName, int[]>();
+
+    private BitSet[] liveOnExit;
+    private BitSet[] reachingOnEntry;
+    private BitSet[] assignedOnEntry;
+
+    /**
+     * Builds the dataflow information of the method which control flow graph starts with the provided block.
+     *
+     * @param entryBlock the entry block, as returned by {@link CFGBuilder#buildCFG(MethodDeclaration)}
+     */
+    public MethodDataflow(CFGBasicBlock entryBlock) {
+        this(ControlFlowGraph.of(entryBlock));
+    }
+
+    /**
+     * Builds the dataflow information of the method represented by the provided control flow graph.
+     *
+     * @param cfg the control flow graph of the method
+     */
+    public MethodDataflow(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        final int nbBlocks = cfg.getNbBlocks();
+        this.eventVariables = new int[nbBlocks][];
+        this.eventDefinitions = new int[nbBlocks][];
+        for (int i = 0; i < nbBlocks; i++) {
+            final List<Event> events = new ArrayList<Event>();
+            for (Object edgeOrVarAccess : cfg.getBlock(i).getOutgoingEdgesAndVariableAccesses()) {
+                if (edgeOrVarAccess instanceof VariableAccess) {
+                    addEvents(events, (VariableAccess) edgeOrVarAccess);
+                }
+            }
+            indexEvents(i, events);
+        }
+        if (cfg.getEntryBlock().getNode() instanceof MethodDeclaration) {
+            collectCapturedVariables((MethodDeclaration) cfg.getEntryBlock().getNode());
+        }
+    }
+
+    private void addEvents(List<Event> events, VariableAccess varAccess) {
+        final ASTNode node = varAccess.getAstNode();
+        if (node instanceof VariableDeclaration) {
+            if ((varAccess.getAccessType() & VariableAccess.DECL_INIT) != 0) {
+                final VariableDeclaration varDecl = (VariableDeclaration) node;
+                final IVariableBinding binding = getLocalVariable(varDecl.resolveBinding());
+                if (binding != null) {
+                    events.add(Event.write(varDecl.getName(), getVariableIndex(binding), varDecl));
+                }
+            }
+            return;
+        }
+
+        final SimpleName name = getLeftmostName(varAccess.getName());
+        final IVariableBinding binding = name != null ? getLocalVariable(name.resolveBinding()) : null;
+        if (binding == null) {
+            return;
+        }
+        final int variable = getVariableIndex(binding);
+        ASTNode expr = name;
+        while (expr.getParent() instanceof ParenthesizedExpression) {
+            expr = expr.getParent();
+        }
+        final ASTNode parent = expr.getParent();
+        if (parent instanceof Assignment && ((Assignment) parent).getLeftHandSide() == expr) {
+            if (((Assignment) parent).getOperator() != Assignment.Operator.ASSIGN) {
+                events.add(Event.read(name, variable));
+            }
+            events.add(Event.write(name, variable, parent));
+        } else {
+            // also covers the names qualifying a written field or indexing a written array element
+            events.add(Event.read(name, variable));
+            if (isIncrementOrDecrement(parent)) {
+                events.add(Event.write(name, variable, parent));
+            }
+        }
+    }
+
+    private static SimpleName getLeftmostName(Name name) {
+        Name result = name;
+        while (result instanceof QualifiedName) {
+            result = ((QualifiedName) result).getQualifier();
+        }
+        return (SimpleName) result;
+    }
+
+    private static boolean isIncrementOrDecrement(ASTNode node) {
+        if (node instanceof PostfixExpression) {
+            return true;
+        } else if (node instanceof PrefixExpression) {
+            final PrefixExpression.Operator operator = ((PrefixExpression) node).getOperator();
+            return INCREMENT.equals(operator) || DECREMENT.equals(operator);
+        }
+        return false;
+    }
+
+    private static IVariableBinding getLocalVariable(IBinding binding) {
+        if (binding instanceof IVariableBinding && !((IVariableBinding) binding).isField()) {
+            return ((IVariableBinding) binding).getVariableDeclaration();
+        }
+        return null;
+    }
+
+    private int getVariableIndex(IVariableBinding binding) {
+        final Integer index = variableIndexes.get(binding);
+        if (index != null) {
+            return index;
+        }
+        final int newIndex = variables.size();
+        variables.add(binding);
+        variableIndexes.put(binding, newIndex);
+        definitionsByVariable.add(new BitSet());
+        return newIndex;
+    }
+
+    private void indexEvents(int block, List<Event> events) {
+        if (events.isEmpty()) {
+            eventVariables[block] = NO_EVENTS;
+            eventDefinitions[block] = NO_EVENTS;
+            return;
+        }
+        Collections.sort(events);
+        final int[] vars = new int[events.size()];
+        final int[] defs = new int[events.size()];
+        for (int i = 0; i < vars.length; i++) {
+            final Event event = events.get(i);
+            vars[i] = event.variable;
+            if (event.definition != null) {
+                defs[i] = definitions.size();
+                definitions.add(event.definition);
+                definitionsByVariable.get(event.variable).set(defs[i]);
+            } else {
+                defs[i] = -1;
+            }
+            final int[] nameEvents = eventsByName.get(event.name);
+            if (nameEvents == null) {
+                eventsByName.put(event.name, new int[] { block, i, i });
+            } else {
+                nameEvents[2] = i;
+            }
+        }
+        eventVariables[block] = vars;
+        eventDefinitions[block] = defs;
+    }
+
+    private void collectCapturedVariables(MethodDeclaration node) {
+        if (node.getBody() == null) {
+            return;
+        }
+        node.getBody().accept(new ASTVisitor() {
+            private int depth;
+
+            @Override
+            public boolean visit(AnonymousClassDeclaration node) {
+                depth++;
+                return VISIT_SUBTREE;
+            }
+
+            @Override
+            public void endVisit(AnonymousClassDeclaration node) {
+                depth--;
+            }
+
+            @Override
+            public boolean visit(TypeDeclarationStatement node) {
+                depth++;
+                return VISIT_SUBTREE;
+            }
+
+            @Override
+            public void endVisit(TypeDeclarationStatement node) {
+                depth--;
+            }
+
+            @Override
+            public boolean visit(SimpleName node) {
+                if (depth > 0) {
+                    final Integer index = variableIndexes.get(getLocalVariable(node.resolveBinding()));
+                    if (index != null) {
+                        capturedVariables.set(index);
+                    }
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+    }
+
+    /**
+     * Returns the control flow graph of the method.
+     *
+     * @return the control flow graph of the method
+     */
+    public ControlFlowGraph getControlFlowGraph() {
+        return cfg;
+    }
+
+    /**
+     * Returns the local variables and parameters accessed in the method.
+     *
+     * @return the local variables and parameters accessed in the method
+     */
+    public List<IVariableBinding> getLocalVariables() {
+        return Collections.unmodifiableList(variables);
+    }
+
+    // Liveness
+
+    /**
+     * Returns whether the value of the accessed local variable may be read after the provided access,
+     * before being overwritten.
+     * <p>
+     * For a write, this tells whether the written value is ever used.
+     * For a read, this tells whether it is not the last use of the current value.
+     *
+     * @param access a name accessing a local variable, or the name of a local variable declaration
+     * @return true if the value of the local variable may be read after the provided access, false otherwise
+     */
+    public boolean isLiveAfter(SimpleName access) {
+        final int variable = getVariable(access);
+        final int[] nameEvents = eventsByName.get(access);
+        if (nameEvents == null || capturedVariables.get(variable)) {
+            return true;
+        }
+        final int block = nameEvents[0];
+        return liveAfter(block, nameEvents[2]).get(variable);
+    }
+
+    /**
+     * Returns whether the provided local variable may be read after entering the provided block,
+     * before being overwritten.
+     *
+     * @param block a block of the control flow graph
+     * @param variable a local variable or parameter
+     * @return true if the provided local variable is live on entry of the provided block, false otherwise
+     */
+    public boolean isLiveOnEntry(CFGBasicBlock block, IVariableBinding variable) {
+        return isLive(block, variable, -1);
+    }
+
+    /**
+     * Returns whether the provided local variable may be read after leaving the provided block,
+     * before being overwritten.
+     *
+     * @param block a block of the control flow graph
+     * @param variable a local variable or parameter
+     * @return true if the provided local variable is live on exit of the provided block, false otherwise
+     */
+    public boolean isLiveOnExit(CFGBasicBlock block, IVariableBinding variable) {
+        return isLive(block, variable, Integer.MAX_VALUE);
+    }
+
+    private boolean isLive(CFGBasicBlock block, IVariableBinding variable, int afterEvent) {
+        final int blockIndex = getBlockIndex(block);
+        final Integer index = variableIndexes.get(variable);
+        if (index == null) {
+            return false;
+        } else if (capturedVariables.get(index)) {
+            return true;
+        }
+        final int lastEvent = Math.min(afterEvent, eventVariables[blockIndex].length - 1);
+        return liveAfter(blockIndex, lastEvent).get(index);
+    }
+
+    private BitSet liveAfter(int block, int event) {
+        if (liveOnExit == null) {
+            liveOnExit = solveLiveness();
+        }
+        final BitSet live = (BitSet) liveOnExit[block].clone();
+        final int[] vars = eventVariables[block];
+        final int[] defs = eventDefinitions[block];
+        for (int i = vars.length - 1; i > event; i--) {
+            if (defs[i] >= 0) {
+                live.clear(vars[i]);
+            } else {
+                live.set(vars[i]);
+            }
+        }
+        return live;
+    }
+
+    private BitSet[] solveLiveness() {
+        final int nbBlocks = cfg.getNbBlocks();
+        final BitSet[] use = new BitSet[nbBlocks];
+        final BitSet[] def = new BitSet[nbBlocks];
+        for (int i = 0; i < nbBlocks; i++) {
+            use[i] = new BitSet();
+            def[i] = new BitSet();
+            final int[] vars = eventVariables[i];
+            final int[] defs = eventDefinitions[i];
+            for (int j = 0; j < vars.length; j++) {
+                if (defs[j] >= 0) {
+                    def[i].set(vars[j]);
+                } else if (!def[i].get(vars[j])) {
+                    use[i].set(vars[j]);
+                }
+            }
+        }
+        return new BitVectorDataflow(cfg, false, true, use, def, variables.size()).solve();
+    }
+
+    // Reaching definitions
+
+    /**
+     * Returns the definitions of the accessed local variable which may reach the provided access.
+     * <p>
+     * Definitions are the variable declarations with an initializer (or the parameter declarations),
+     * the assignments, and the increment and decrement expressions.
+     *
+     * @param access a name accessing a local variable
+     * @return the definitions of the accessed local variable which may reach the provided access
+     */
+    public List<ASTNode> getReachingDefinitions(SimpleName access) {
+        final int variable = getVariable(access);
+        final int[] nameEvents = eventsByName.get(access);
+        final BitSet reaching;
+        if (nameEvents == null) {
+            reaching = (BitSet) definitionsByVariable.get(variable).clone();
+        } else {
+            if (reachingOnEntry == null) {
+                reachingOnEntry = solveReachingDefinitions();
+            }
+            final int block = nameEvents[0];
+            reaching = (BitSet) reachingOnEntry[block].clone();
+            final int[] vars = eventVariables[block];
+            final int[] defs = eventDefinitions[block];
+            for (int i = 0; i < nameEvents[1]; i++) {
+                if (defs[i] >= 0) {
+                    reaching.andNot(definitionsByVariable.get(vars[i]));
+                    reaching.set(defs[i]);
+                }
+            }
+            reaching.and(definitionsByVariable.get(variable));
+        }
+
+        final List<ASTNode> results = new ArrayList<ASTNode>(reaching.cardinality());
+        for (int i = reaching.nextSetBit(0); i >= 0; i = reaching.nextSetBit(i + 1)) {
+            results.add(definitions.get(i));
+        }
+        return results;
+    }
+
+    private BitSet[] solveReachingDefinitions() {
+        final int nbBlocks = cfg.getNbBlocks();
+        final BitSet[] gen = new BitSet[nbBlocks];
+        final BitSet[] kill = new BitSet[nbBlocks];
+        for (int i = 0; i < nbBlocks; i++) {
+            gen[i] = new BitSet();
+            kill[i] = new BitSet();
+            final int[] vars = eventVariables[i];
+            final int[] defs = eventDefinitions[i];
+            for (int j = 0; j < vars.length; j++) {
+                if (defs[j] >= 0) {
+                    final BitSet varDefs = definitionsByVariable.get(vars[j]);
+                    gen[i].andNot(varDefs);
+                    gen[i].set(defs[j]);
+                    kill[i].or(varDefs);
+                }
+            }
+        }
+        return new BitVectorDataflow(cfg, true, true, gen, kill, definitions.size()).solve();
+    }
+
+    // Definite assignment
+
+    /**
+     * Returns whether the accessed local variable has been assigned on every path leading to the provided access.
+     *
+     * @param access a name accessing a local variable
+     * @return true if the accessed local variable is definitely assigned before the provided access,
+     *         false otherwise
+     */
+    public boolean isDefinitelyAssigned(SimpleName access) {
+        final int variable = getVariable(access);
+        final int[] nameEvents = eventsByName.get(access);
+        if (nameEvents == null) {
+            return false;
+        }
+        if (assignedOnEntry == null) {
+            assignedOnEntry = solveDefiniteAssignment();
+        }
+        final int block = nameEvents[0];
+        if (assignedOnEntry[block].get(variable)) {
+            return true;
+        }
+        final int[] vars = eventVariables[block];
+        final int[] defs = eventDefinitions[block];
+        for (int i = 0; i < nameEvents[1]; i++) {
+            if (defs[i] >= 0 && vars[i] == variable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private BitSet[] solveDefiniteAssignment() {
+        final int nbBlocks = cfg.getNbBlocks();
+        final BitSet[] gen = new BitSet[nbBlocks];
+        final BitSet[] kill = new BitSet[nbBlocks];
+        for (int i = 0; i < nbBlocks; i++) {
+            gen[i] = new BitSet();
+            kill[i] = new BitSet();
+            final int[] vars = eventVariables[i];
+            final int[] defs = eventDefinitions[i];
+            for (int j = 0; j < vars.length; j++) {
+                if (defs[j] >= 0) {
+                    gen[i].set(vars[j]);
+                }
+            }
+        }
+        return new BitVectorDataflow(cfg, true, false, gen, kill, variables.size()).solve();
+    }
+
+    private int getVariable(SimpleName access) {
+        final Integer index = variableIndexes.get(getLocalVariable(access.resolveBinding()));
+        if (index == null) {
+            throw new IllegalArgumentException(access,
+                    "Expected a name accessing a local variable of this method, but got: " + access);
+        }
+        return index;
+    }
+
+    private int getBlockIndex(CFGBasicBlock block) {
+        final int index = cfg.getIndex(block);
+        if (index < 0) {
+            throw new IllegalArgumentException(block.getNode(),
+                    "Expected a block reachable from the entry block, but got: " + block);
+        }
+        return index;
+    }
+
+    /** An access to a local variable, sorted in evaluation order. */
+    private static final class Event implements Comparable<Event> {
+        private final SimpleName name;
+        private final int variable;
+        /** The defining node for a write, null for a read. */
+        private final ASTNode definition;
+        private final int position;
+
+        private Event(SimpleName name, int variable, ASTNode definition, int position) {
+            this.name = name;
+            this.variable = variable;
+            this.definition = definition;
+            this.position = position;
+        }
+
+        private static Event read(SimpleName name, int variable) {
+            return new Event(name, variable, null, name.getStartPosition());
+        }
+
+        /** The variable is written once its defining node has been evaluated, e.g. after the assigned value. */
+        private static Event write(SimpleName name, int variable, ASTNode definition) {
+            return new Event(name, variable, definition,
+                    definition.getStartPosition() + definition.getLength());
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            if (position != o.position) {
+                return position < o.position ? -1 : 1;
+            }
+            // reads happen before writes ending at the same position
+            if ((definition == null) != (o.definition == null)) {
+                return definition == null ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+}
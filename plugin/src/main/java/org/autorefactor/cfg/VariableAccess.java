@@ -73,6 +73,42 @@ public class VariableAccess {
         this(astNode, astNode instanceof Name ? (Name) astNode : null, null, accessType);
     }
 
+    /**
+     * Returns the AST node of the variable.
+     *
+     * @return the AST node of the variable
+     */
+    public ASTNode getAstNode() {
+        return astNode;
+    }
+
+    /**
+     * Returns the name of the variable.
+     *
+     * @return the name of the variable
+     */
+    public Name getName() {
+        return name;
+    }
+
+    /**
+     * Returns the type of the variable.
+     *
+     * @return the type of the variable, may be null
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the access type to the variable.
+     *
+     * @return the access type to the variable
+     */
+    public int getAccessType() {
+        return accessType;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -46,7 +46,31 @@ public enum PreferenceConstants {
     REMOVE_THIS_FOR_NON_STATIC_METHOD_ACCESS(
             "remove_this_for_non_static_method_access",
             "Remove 'this' qualifier for non static method accesses",
-            Boolean.TRUE);
+            Boolean.TRUE),
+
+    /** Preference that configures whether to close the Android resources in try statements. */
+    CLOSE_RESOURCES_IN_TRY_STATEMENTS(
+            "close_resources_in_try_statements",
+            "Close Android resources with try-with-resources or try/finally statements (Java 7 projects)",
+            Boolean.FALSE),
+
+    /** Preference that turns profiling of the refactoring rules on or off. */
+    PROFILING_ON(
+            "profiling_on",
+            "Profile the refactoring rules and write a report to the workspace logs (for developers only)",
+            Boolean.FALSE),
+
+    /** Preference that configures the number of workers applying the refactorings in parallel. */
+    NB_WORKERS(
+            "nb_workers",
+            "Number of parallel workers (0 uses all the available processors)",
+            Integer.valueOf(0)),
+
+    /** Preference that turns on or off the cache of the files where no refactoring applies. */
+    RESULTS_CACHE_ON(
+            "results_cache_on",
+            "Skip the unchanged files where no refactoring applied on a previous run",
+            Boolean.FALSE);
 
     /** TODO use this for preferences initialization. */
     private static final String JDT_ALWAYS_USE_THIS_FOR_NON_STATIC_METHOD_ACCESS =
@@ -51,4 +51,35 @@ public interface Preferences {
      */
     boolean addCurlyBracketsToStatementBodies();
 
+    /**
+     * Returns whether to close the Android resources in try-with-resources or try/finally statements
+     * rather than before each exit of their live range.
+     *
+     * @return true if the Android resources must be closed in try statements, false otherwise
+     */
+    boolean closeResourcesInTryStatements();
+
+    /**
+     * Returns whether profiling of the refactoring rules is on.
+     *
+     * @return true if profiling of the refactoring rules is on, false otherwise
+     */
+    boolean profilingOn();
+
+    /**
+     * Returns the number of workers applying the refactorings in parallel.
+     *
+     * @return the number of workers applying the refactorings in parallel,
+     *         or 0 to use as many workers as there are available processors
+     */
+    int nbWorkers();
+
+    /**
+     * Returns whether to skip the unchanged files where no refactoring applied on a previous run.
+     *
+     * @return true if the unchanged files where no refactoring applied on a previous run must be skipped,
+     *         false otherwise
+     */
+    boolean resultsCacheOn();
+
 }
@@ -225,7 +225,13 @@ public class ASTBuilder {
         return case0(null);
     }
 
-    private Type type(String typeName) {
+    /**
+     * Builds a new {@link Type} instance from a primitive type name or a simple type name.
+     *
+     * @param typeName the primitive type name or the simple type name
+     * @return a new type
+     */
+    public Type type(String typeName) {
         final String[] names = typeName.split("\\.");
         if (names.length == 1) {
             final String name = names[0];
@@ -91,6 +91,10 @@ public class ASTCommentRewriter {
     }
 
     private String findRecommendedLineSeparator(CompilationUnit astRoot) {
+        if (astRoot.getTypeRoot() == null) {
+            // AST parsed from a source string, outside of the java model
+            return null;
+        }
         try {
             return astRoot.getTypeRoot().findRecommendedLineSeparator();
         } catch (JavaModelException e) {
@@ -887,6 +887,27 @@ public final class ASTHelper {
         return getAncestor(parent, ancestorClazz);
     }
 
+    /**
+     * Returns the first ancestor of the provided node which has the required type.
+     *
+     * @param <T> the required ancestor's type
+     * @param node the start node
+     * @param ancestorClazz the required ancestor's type
+     * @return the first ancestor of the provided node which has the required type,
+     *         or {@code null} if no such ancestor exists
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends ASTNode> T getAncestorOrNull(ASTNode node, Class<T> ancestorClazz) {
+        if (node == null) {
+            return null;
+        }
+        final ASTNode parent = node.getParent();
+        if (parent == null || ancestorClazz.isAssignableFrom(parent.getClass())) {
+            return (T) parent;
+        }
+        return getAncestorOrNull(parent, ancestorClazz);
+    }
+
     /**
      * Returns the enclosing type of the provided node.
      * <p>
@@ -1358,6 +1379,13 @@ public final class ASTHelper {
                 || qualifiedTypeName.equals(typeErasure.getQualifiedName())) {
             return typeBinding;
         }
+        final TypeHierarchyCache cache = TypeHierarchyCache.getCurrent();
+        if (cache != null
+                && TypeHierarchyCache.isCacheable(typeBinding)
+                && !cache.get(typeBinding).contains(qualifiedTypeName)) {
+            // most lookups fail, the cache answers them without walking the hierarchy
+            return null;
+        }
         final Set<String> visitedClasses = new HashSet<String>();
         visitedClasses.add(typeErasure.getQualifiedName());
         return findImplementedType(typeBinding, qualifiedTypeName, visitedClasses);
@@ -60,4 +60,12 @@ public interface JavaProjectOptions {
      */
     int getCommentLineLength();
 
+    /**
+     * Returns the minimum Android API level supported by the current project,
+     * as declared by its build.gradle or AndroidManifest.xml file.
+     *
+     * @return the minimum Android API level supported by the current project, or 0 when it is unknown
+     */
+    int getAndroidMinSdkVersion();
+
 }
@@ -0,0 +1,261 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import static org.autorefactor.refactoring.ASTHelper.isMethod;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+
+/**
+ * Matches method bindings against method signatures registered once, typically in a static field of a rule.
+ * <p>
+ * The signatures are indexed by method name, then by number of parameters, then by declaring type.
+ * A lookup probes the index with the name and the number of parameters of the method binding,
+ * then with each supertype of its declaring class, so its cost does not depend on the number of signatures.
+ * The parameter types of the candidate signatures are then compared with
+ * {@link ASTHelper#isMethod(IMethodBinding, String, String, String...)},
+ * and the result is memoized per method binding.
+ * Method bindings are canonical for a given AST, so this work is done once per method and per AST.
+ * <p>
+ * Matchers are shared by the workers refactoring in parallel: each thread has its own memo,
+ * so the lookups do not contend on a lock. All the signatures must be registered
+ * before the matcher is shared between threads.
+ */
+public class MethodMatcher {
+    /** The index returned when no signature matches a method binding. */
+    public static final int NO_MATCH = -1;
+    /** The key of the signatures ignoring the parameters in the index by number of parameters. */
+    private static final int ANY_ARITY = -1;
+    private static final int[] NO_MATCHES = new int[0];
+
+    private static final class Signature {
+        private final String typeQualifiedName;
+        private final String methodName;
+        /** The parameter types qualified names, or null when the parameters are ignored. */
+        private final String[] parameterTypesQualifiedNames;
+
+        private Signature(String typeQualifiedName, String methodName, String[] parameterTypesQualifiedNames) {
+            this.typeQualifiedName = typeQualifiedName;
+            this.methodName = methodName;
+            this.parameterTypesQualifiedNames = parameterTypesQualifiedNames;
+        }
+
+        private int getArity() {
+            return parameterTypesQualifiedNames != null ? parameterTypesQualifiedNames.length : ANY_ARITY;
+        }
+
+        /** Checks the parameter types, the method name and declaring type have already been matched. */
+        private boolean matchesParameters(IMethodBinding methodBinding) {
+            return parameterTypesQualifiedNames == null
+                    || isMethod(methodBinding, typeQualifiedName, methodName, parameterTypesQualifiedNames);
+        }
+    }
+
+    private final List<Signature> signatures = new ArrayList<Signature>();
+    /** Method name => number of parameters => declaring type qualified name => signature indexes. */
+    private final Map<String, Map<Integer, Map<String, List<Integer>>>> index =
+            new HashMap<String, Map<Integer, Map<String, List<Integer>>>>();
+    /** The memo of the current thread. Weak keys let the method bindings be garbage collected with their AST. */
+    private final ThreadLocal<Map<IMethodBinding, int[]>> matches = new ThreadLocal<Map<IMethodBinding, int[]>>() {
+        @Override
+        protected Map<IMethodBinding, int[]> initialValue() {
+            return new WeakHashMap<IMethodBinding, int[]>();
+        }
+    };
+
+    /**
+     * Registers a method signature. Its index is the number of signatures registered before it.
+     *
+     * @param typeQualifiedName the qualified name of the type declaring the method
+     * @param methodName the method name
+     * @param parameterTypesQualifiedNames the qualified names of the parameter types
+     * @return this method matcher
+     */
+    public MethodMatcher add(String typeQualifiedName, String methodName, String... parameterTypesQualifiedNames) {
+        return add(new Signature(typeQualifiedName, methodName, parameterTypesQualifiedNames));
+    }
+
+    /**
+     * Registers one method signature per provided method name, matching any parameters.
+     *
+     * @param typeQualifiedName the qualified name of the type declaring the methods
+     * @param methodNames the method names
+     * @return this method matcher
+     */
+    public MethodMatcher addIgnoringParameters(String typeQualifiedName, String... methodNames) {
+        for (String methodName : methodNames) {
+            add(new Signature(typeQualifiedName, methodName, null));
+        }
+        return this;
+    }
+
+    private MethodMatcher add(Signature signature) {
+        Map<Integer, Map<String, List<Integer>>> byArity = index.get(signature.methodName);
+        if (byArity == null) {
+            byArity = new HashMap<Integer, Map<String, List<Integer>>>();
+            index.put(signature.methodName, byArity);
+        }
+        Map<String, List<Integer>> byType = byArity.get(signature.getArity());
+        if (byType == null) {
+            byType = new HashMap<String, List<Integer>>();
+            byArity.put(signature.getArity(), byType);
+        }
+        List<Integer> indexes = byType.get(signature.typeQualifiedName);
+        if (indexes == null) {
+            indexes = new ArrayList<Integer>();
+            byType.put(signature.typeQualifiedName, indexes);
+        }
+        indexes.add(signatures.size());
+        signatures.add(signature);
+        matches.remove();
+        return this;
+    }
+
+    /**
+     * Returns the indexes of all the registered signatures matching the provided method binding.
+     *
+     * @param methodBinding the method binding to match, can be null
+     * @return the indexes of the matching signatures in ascending order, never null.
+     *         The returned array must not be modified.
+     */
+    public int[] indexesOf(IMethodBinding methodBinding) {
+        if (methodBinding == null) {
+            return NO_MATCHES;
+        }
+        final Map<Integer, Map<String, List<Integer>>> byArity = index.get(methodBinding.getName());
+        if (byArity == null) {
+            return NO_MATCHES;
+        }
+        final Map<String, List<Integer>> sameArity = byArity.get(methodBinding.getParameterTypes().length);
+        final Map<String, List<Integer>> anyArity = byArity.get(ANY_ARITY);
+        if ((sameArity == null && anyArity == null) || methodBinding.getDeclaringClass() == null) {
+            return NO_MATCHES;
+        }
+        final Map<IMethodBinding, int[]> memo = matches.get();
+        int[] results = memo.get(methodBinding);
+        if (results == null) {
+            results = findMatches(methodBinding, sameArity, anyArity);
+            memo.put(methodBinding, results);
+        }
+        return results;
+    }
+
+    private int[] findMatches(IMethodBinding methodBinding,
+            Map<String, List<Integer>> sameArity, Map<String, List<Integer>> anyArity) {
+        final Set<Integer> results = new TreeSet<Integer>();
+        for (String superTypeName : TypeHierarchyCache.getSuperTypeNames(methodBinding.getDeclaringClass())) {
+            if (sameArity != null) {
+                addMatches(results, sameArity.get(superTypeName), methodBinding);
+            }
+            if (anyArity != null) {
+                addMatches(results, anyArity.get(superTypeName), methodBinding);
+            }
+        }
+        if (results.isEmpty()) {
+            return NO_MATCHES;
+        }
+        final int[] array = new int[results.size()];
+        int i = 0;
+        for (Integer result : results) {
+            array[i++] = result;
+        }
+        return array;
+    }
+
+    private void addMatches(Set<Integer> results, List<Integer> candidates, IMethodBinding methodBinding) {
+        if (candidates != null) {
+            for (Integer candidate : candidates) {
+                if (signatures.get(candidate).matchesParameters(methodBinding)) {
+                    results.add(candidate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first registered signature matching the provided method binding.
+     *
+     * @param methodBinding the method binding to match, can be null
+     * @return the index of the first matching signature, or {@link #NO_MATCH} if no signature matches
+     */
+    public int indexOf(IMethodBinding methodBinding) {
+        final int[] results = indexesOf(methodBinding);
+        return results.length > 0 ? results[0] : NO_MATCH;
+    }
+
+    /**
+     * Returns the index of the first registered signature matching the method invoked by the provided node.
+     *
+     * @param node the method invocation to match, can be null
+     * @return the index of the first matching signature, or {@link #NO_MATCH} if no signature matches
+     */
+    public int indexOf(MethodInvocation node) {
+        return node != null ? indexOf(node.resolveMethodBinding()) : NO_MATCH;
+    }
+
+    /**
+     * Returns whether any registered signature matches the provided method binding.
+     *
+     * @param methodBinding the method binding to match, can be null
+     * @return true if a registered signature matches the provided method binding, false otherwise
+     */
+    public boolean matches(IMethodBinding methodBinding) {
+        return indexOf(methodBinding) != NO_MATCH;
+    }
+
+    /**
+     * Returns whether any registered signature matches the method invoked by the provided node.
+     *
+     * @param node the method invocation to match, can be null
+     * @return true if a registered signature matches the invoked method, false otherwise
+     */
+    public boolean matches(MethodInvocation node) {
+        return indexOf(node) != NO_MATCH;
+    }
+
+    /**
+     * Returns the qualified names of the types declaring the registered signatures.
+     *
+     * @return the qualified names of the types declaring the registered signatures, in registration order
+     */
+    public Set<String> getDeclaringTypeNames() {
+        final Set<String> results = new LinkedHashSet<String>();
+        for (Signature signature : signatures) {
+            results.add(signature.typeQualifiedName);
+        }
+        return results;
+    }
+}
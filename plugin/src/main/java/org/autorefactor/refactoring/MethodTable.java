@@ -0,0 +1,117 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+
+/**
+ * Declarative table associating method signatures with values, like the action a rule must take
+ * for the methods matching them.
+ * Lookups are dispatched through the index of a {@link MethodMatcher}.
+ *
+ * @param <V> the type of the values associated with the method signatures
+ */
+public class MethodTable<V> {
+    private final MethodMatcher matcher = new MethodMatcher();
+    /** The values, at the index of their signatures in the matcher. */
+    private final List<V> values = new ArrayList<V>();
+
+    /**
+     * Associates a value with a method signature.
+     *
+     * @param value the value to associate with the method signature
+     * @param typeQualifiedName the qualified name of the type declaring the method
+     * @param methodName the method name
+     * @param parameterTypesQualifiedNames the qualified names of the parameter types
+     * @return this method table
+     */
+    public MethodTable<V> put(V value, String typeQualifiedName, String methodName,
+            String... parameterTypesQualifiedNames) {
+        matcher.add(typeQualifiedName, methodName, parameterTypesQualifiedNames);
+        values.add(value);
+        return this;
+    }
+
+    /**
+     * Associates a value with the provided methods, whatever their parameters.
+     *
+     * @param value the value to associate with the methods
+     * @param typeQualifiedName the qualified name of the type declaring the methods
+     * @param methodNames the method names
+     * @return this method table
+     */
+    public MethodTable<V> putIgnoringParameters(V value, String typeQualifiedName, String... methodNames) {
+        matcher.addIgnoringParameters(typeQualifiedName, methodNames);
+        for (int i = 0; i < methodNames.length; i++) {
+            values.add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the value associated with the first signature matching the provided method binding.
+     *
+     * @param methodBinding the method binding to look up, can be null
+     * @return the value associated with the first matching signature, or null if no signature matches
+     */
+    public V get(IMethodBinding methodBinding) {
+        final int index = matcher.indexOf(methodBinding);
+        return index != MethodMatcher.NO_MATCH ? values.get(index) : null;
+    }
+
+    /**
+     * Returns the value associated with the first signature matching the method invoked by the provided node.
+     *
+     * @param node the method invocation to look up, can be null
+     * @return the value associated with the first matching signature, or null if no signature matches
+     */
+    public V get(MethodInvocation node) {
+        return node != null ? get(node.resolveMethodBinding()) : null;
+    }
+
+    /**
+     * Returns the values associated with all the signatures matching the provided method binding.
+     *
+     * @param methodBinding the method binding to look up, can be null
+     * @return the values associated with the matching signatures, in registration order
+     */
+    public List<V> getAll(IMethodBinding methodBinding) {
+        final int[] indexes = matcher.indexesOf(methodBinding);
+        if (indexes.length == 0) {
+            return Collections.emptyList();
+        }
+        final List<V> results = new ArrayList<V>(indexes.length);
+        for (int index : indexes) {
+            results.add(values.get(index));
+        }
+        return results;
+    }
+}
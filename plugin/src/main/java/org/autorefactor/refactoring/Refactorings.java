@@ -25,6 +25,7 @@
  */
 package org.autorefactor.refactoring;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -37,8 +38,11 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
+import org.autorefactor.AutoRefactorPlugin;
 import org.autorefactor.util.Pair;
 import org.autorefactor.util.UnhandledException;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.BlockComment;
@@ -53,6 +57,7 @@ import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.text.edits.TextEdit;
+import org.eclipse.ui.PlatformUI;
 
 /**
  * Class aggregating all the refactorings performed by a refactoring rule until
@@ -61,6 +66,11 @@ import org.eclipse.text.edits.TextEdit;
 public class Refactorings {
 
     private boolean hasRefactorings;
+    private final CompilationUnit astRoot;
+    /** The java SE release used to parse the compilation unit, or null if it is unknown. */
+    private final Release javaSERelease;
+    /** Whether the new code uses a syntax which the formatter only parses with the java SE release. */
+    private boolean usesJavaSESyntax;
     private final ASTRewrite rewrite;
     private final Map<Pair<ASTNode, ChildListPropertyDescriptor>, ListRewrite> listRewriteCache =
             new HashMap<Pair<ASTNode, ChildListPropertyDescriptor>, ListRewrite>();
@@ -68,6 +78,17 @@ public class Refactorings {
     private final SourceRewriter sourceRewriter = new SourceRewriter();
     /** Nodes that cannot be visited. */
     private final Set<ASTNode> refactoredNodes = new HashSet<ASTNode>();
+    private final List<RefactoredNodeListener> listeners = new ArrayList<RefactoredNodeListener>(1);
+
+    /** Listener notified when a node becomes the target of a refactoring. */
+    public interface RefactoredNodeListener {
+        /**
+         * Called when the provided node, and therefore all its ancestors, have been refactored.
+         *
+         * @param node the refactored node
+         */
+        void nodeRefactored(ASTNode node);
+    }
 
     /**
      * Builds an instance of this class.
@@ -75,6 +96,19 @@ public class Refactorings {
      * @param astRoot the compilation unit, root of the AST
      */
     public Refactorings(CompilationUnit astRoot) {
+        this(astRoot, null);
+    }
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param astRoot the compilation unit, root of the AST
+     * @param javaSERelease the java SE release used to parse the compilation unit,
+     *        also used to format the new code, or null if it is unknown
+     */
+    public Refactorings(CompilationUnit astRoot, Release javaSERelease) {
+        this.astRoot = astRoot;
+        this.javaSERelease = javaSERelease;
         this.rewrite = ASTRewrite.create(astRoot.getAST());
         this.commentRewriter = new ASTCommentRewriter(astRoot);
     }
@@ -98,11 +132,22 @@ public class Refactorings {
         return refactoredNodes.contains(node);
     }
 
+    /**
+     * Adds a listener notified when a node becomes the target of a refactoring.
+     *
+     * @param listener the listener to add
+     */
+    public void addRefactoredNodeListener(RefactoredNodeListener listener) {
+        listeners.add(listener);
+    }
+
     private void addRefactoredNodes(ASTNode node) {
         hasRefactorings = true;
-        refactoredNodes.add(node);
-        if (node.getParent() != null) {
-            addRefactoredNodes(node.getParent());
+        for (ASTNode n = node; n != null; n = n.getParent()) {
+            refactoredNodes.add(n);
+        }
+        for (RefactoredNodeListener listener : listeners) {
+            listener.nodeRefactored(node);
         }
     }
 
@@ -297,6 +342,15 @@ public class Refactorings {
         return hasRefactorings;
     }
 
+    /**
+     * Records that the new code uses a syntax introduced after Java 1.4, like try-with-resources statements.
+     * The formatter then parses the new code with the java SE release of the compilation unit,
+     * otherwise the rewrite falls back to unformatted code.
+     */
+    public void usesJavaSESyntax() {
+        usesJavaSESyntax = true;
+    }
+
     /**
      * Inserts the provided node at a specified location in a node.
      *
@@ -373,18 +427,66 @@ public class Refactorings {
 
     /**
      * Applies the accumulated refactorings to the provided document.
+     * <p>
+     * The document may be displayed by an open editor, so the edits are applied on the SWT Display Thread.
      *
      * @param document the document to refactor
      * @throws BadLocationException if trying to access a non existing position
+     * @see #applyTo(IDocument, boolean)
      */
     public void applyTo(final IDocument document) throws BadLocationException {
-        final TextEdit edits = getRewrite().rewriteAST(document, null);
+        applyTo(document, true);
+    }
+
+    /**
+     * Applies the accumulated refactorings to the provided document.
+     * <p>
+     * Documents which cannot be displayed by an open editor, like in-memory documents
+     * or file buffers only connected by the caller, are modified directly on the current thread.
+     * This lets several jobs refactor files in parallel instead of all waiting on the SWT Display Thread.
+     *
+     * @param document the document to refactor
+     * @param mayBeOpenInEditor whether the document may be displayed by an open editor,
+     *        in which case it is only modified on the SWT Display Thread
+     * @throws BadLocationException if trying to access a non existing position
+     */
+    public void applyTo(final IDocument document, boolean mayBeOpenInEditor) throws BadLocationException {
+        final TextEdit edits = getRewrite().rewriteAST(document, getFormatterOptions());
         commentRewriter.addEdits(document, edits);
         sourceRewriter.addEdits(document, edits);
-        applyEditsToDocument(edits, document);
+        if (mayBeOpenInEditor) {
+            applyEditsToDocument(edits, document);
+        } else {
+            edits.apply(document);
+        }
+    }
+
+    /**
+     * Returns the options of the formatter used for the new code, or null to use the default options.
+     *
+     * @see #usesJavaSESyntax()
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> getFormatterOptions() {
+        if (!usesJavaSESyntax || javaSERelease == null) {
+            return null;
+        }
+        final IJavaElement javaElement = astRoot.getJavaElement();
+        final Map<String, String> options = new HashMap<String, String>(javaElement != null
+                ? javaElement.getJavaProject().getOptions(true)
+                : JavaCore.getOptions());
+        JavaCore.setComplianceOptions(javaSERelease.getMajorVersion() + "." + javaSERelease.getMinorVersion(), options);
+        return options;
     }
 
     private void applyEditsToDocument(final TextEdit edits, final IDocument document) throws BadLocationException {
+        if (AutoRefactorPlugin.getDefault() == null || !PlatformUI.isWorkbenchRunning()) {
+            // headless mode or outside of Eclipse:
+            // there is no GUI to update and no SWT Display Thread to run on
+            edits.apply(document);
+            return;
+        }
+
         // Call this operation on the SWT Display Thread with syncExec(),
         // because it changes or adds something to the GUI.
         // Otherwise it would throw an Invalid thread access Exception.
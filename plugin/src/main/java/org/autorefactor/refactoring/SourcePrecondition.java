@@ -0,0 +1,56 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+/**
+ * Optional interface for the refactoring rules which can only refactor code mentioning some identifiers,
+ * like the name of an overridden method or of a called API.
+ * <p>
+ * It allows to skip compilation units before parsing them and resolving their bindings,
+ * and to skip type declarations before visiting them.
+ *
+ * @see SourcePreconditions
+ */
+public interface SourcePrecondition {
+
+    /**
+     * Returns the identifiers (type names, method names, etc.) where at least one must appear
+     * in the source of a compilation unit or of a type declaration for this rule to refactor it.
+     * <p>
+     * Identifiers are matched as whole words against the source text: first against the whole compilation unit,
+     * including the import declarations, then against the source range of each type declaration,
+     * which excludes them. So the implementations must return the identifiers written in the code they refactor,
+     * like the name of an overridden method, and not only the identifiers of the imported types.
+     * <p>
+     * Type hierarchies are not resolved: a subtype declared in another file, like {@code BaseHandler}
+     * extending {@code Handler}, does not match the identifier of its supertype. The rules refactoring
+     * the subtypes of some types must declare a {@link TypeHierarchyPrecondition} instead.
+     *
+     * @return the identifiers where at least one must appear in the source,
+     *         or an empty array if this rule can refactor any code
+     */
+    String[] getRequiredIdentifiers();
+}
@@ -0,0 +1,107 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Helper class evaluating the {@link SourcePrecondition}s of the refactoring rules. */
+public final class SourcePreconditions {
+
+    private SourcePreconditions() {
+    }
+
+    /**
+     * Returns the refactoring rules which may refactor the provided source.
+     *
+     * @param rules the refactoring rules
+     * @param source the source of a compilation unit
+     * @return the refactoring rules which may refactor the provided source,
+     *         or the provided list itself if all the rules may refactor the provided source
+     */
+    public static List<RefactoringRule> getApplicableRules(List<RefactoringRule> rules, String source) {
+        List<RefactoringRule> results = null;
+        for (int i = 0; i < rules.size(); i++) {
+            final RefactoringRule rule = rules.get(i);
+            final boolean applicable = mayRefactor(rule, source, 0, source.length());
+            if (!applicable && results == null) {
+                results = new ArrayList<RefactoringRule>(rules.subList(0, i));
+            } else if (applicable && results != null) {
+                results.add(rule);
+            }
+        }
+        return results != null ? results : rules;
+    }
+
+    /**
+     * Returns whether the provided object may refactor the provided range of source.
+     *
+     * @param refactoring the refactoring rule or visitor
+     * @param source the source of a compilation unit
+     * @param start the start position (inclusive) of the range of source
+     * @param end the end position (exclusive) of the range of source
+     * @return false if the provided object declares a {@link SourcePrecondition}
+     *         and none of its required identifiers appear in the range of source, true otherwise
+     */
+    public static boolean mayRefactor(Object refactoring, String source, int start, int end) {
+        if (!(refactoring instanceof SourcePrecondition)) {
+            return true;
+        }
+        final String[] identifiers = ((SourcePrecondition) refactoring).getRequiredIdentifiers();
+        if (identifiers == null || identifiers.length == 0) {
+            return true;
+        }
+        for (String identifier : identifiers) {
+            if (containsIdentifier(source, start, end, identifier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the provided identifier appears as a whole word in the provided range of source.
+     * Comments and string literals are not skipped: they can only produce false positives.
+     *
+     * @param source the source of a compilation unit
+     * @param start the start position (inclusive) of the range of source
+     * @param end the end position (exclusive) of the range of source
+     * @param identifier the identifier to look for
+     * @return true if the identifier appears as a whole word in the range of source, false otherwise
+     */
+    static boolean containsIdentifier(String source, int start, int end, String identifier) {
+        int idx = source.indexOf(identifier, start);
+        while (idx != -1 && idx + identifier.length() <= end) {
+            final int idxEnd = idx + identifier.length();
+            if ((idx == 0 || !Character.isJavaIdentifierPart(source.charAt(idx - 1)))
+                    && (idxEnd == source.length() || !Character.isJavaIdentifierPart(source.charAt(idxEnd)))) {
+                return true;
+            }
+            idx = source.indexOf(identifier, idx + 1);
+        }
+        return false;
+    }
+}
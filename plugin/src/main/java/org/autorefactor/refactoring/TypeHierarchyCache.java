@@ -0,0 +1,187 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+/**
+ * Cache of the supertypes of the types of a java project, shared by all the workers refactoring this project.
+ * <p>
+ * The supertypes are identified by the qualified names of their erasure, which are interned,
+ * so the deep hierarchies of the Android views only hold one copy of each name.
+ * Types are identified by the key of their erasure, which is stable across the ASTs of a project.
+ * The least recently used entries are evicted first.
+ * <p>
+ * Each worker thread makes the cache of the project it currently refactors available
+ * through {@link #setCurrent(TypeHierarchyCache)}, so the static helpers of {@link ASTHelper} can use it.
+ */
+public final class TypeHierarchyCache {
+    /** Default maximum number of types kept in a cache. */
+    public static final int DEFAULT_MAX_SIZE = 20000;
+
+    private static final ThreadLocal<TypeHierarchyCache> CURRENT = new ThreadLocal<TypeHierarchyCache>();
+
+    private final Map<String, Set<String>> superTypeNames;
+    private final Map<String, String> internedNames = new HashMap<String, String>();
+
+    /** Builds a cache holding at most {@link #DEFAULT_MAX_SIZE} types. */
+    public TypeHierarchyCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Builds a cache holding at most the provided number of types.
+     *
+     * @param maxSize the maximum number of types kept in this cache
+     */
+    public TypeHierarchyCache(final int maxSize) {
+        this.superTypeNames = new LinkedHashMap<String, Set<String>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String, Set<String>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache of the java project refactored by the current thread.
+     *
+     * @return the cache of the java project refactored by the current thread, or null if there is none
+     */
+    public static TypeHierarchyCache getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the cache of the java project refactored by the current thread.
+     *
+     * @param cache the cache of the java project refactored by the current thread, or null if there is none
+     */
+    public static void setCurrent(TypeHierarchyCache cache) {
+        if (cache != null) {
+            CURRENT.set(cache);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Returns the erasure qualified names of the provided type and of all its supertypes,
+     * using the cache of the current thread when there is one.
+     *
+     * @param typeBinding the type binding
+     * @return the erasure qualified names of the provided type and of all its supertypes
+     */
+    public static Set<String> getSuperTypeNames(ITypeBinding typeBinding) {
+        final TypeHierarchyCache cache = getCurrent();
+        return cache != null ? cache.get(typeBinding) : findSuperTypeNames(typeBinding.getErasure());
+    }
+
+    /**
+     * Returns whether the provided type can be looked up in this cache:
+     * type variables, wildcards, captures and arrays are not cached.
+     *
+     * @param typeBinding the type binding
+     * @return true if the provided type can be looked up in this cache, false otherwise
+     */
+    public static boolean isCacheable(ITypeBinding typeBinding) {
+        return typeBinding != null
+                && (typeBinding.isClass() || typeBinding.isInterface() || typeBinding.isEnum())
+                && !typeBinding.isCapture()
+                && !typeBinding.isTypeVariable()
+                && !typeBinding.isWildcardType();
+    }
+
+    /**
+     * Returns the erasure qualified names of the provided type and of all its supertypes.
+     *
+     * @param typeBinding the type binding
+     * @return the erasure qualified names of the provided type and of all its supertypes
+     */
+    public Set<String> get(ITypeBinding typeBinding) {
+        final ITypeBinding erasure = typeBinding.getErasure();
+        final String key = erasure.getKey();
+        synchronized (this) {
+            final Set<String> results = superTypeNames.get(key);
+            if (results != null) {
+                return results;
+            }
+        }
+        // walk the bindings outside the lock, they may be lazily resolved
+        final Set<String> names = findSuperTypeNames(erasure);
+        synchronized (this) {
+            Set<String> results = superTypeNames.get(key);
+            if (results == null) {
+                results = Collections.unmodifiableSet(intern(names));
+                superTypeNames.put(key, results);
+            }
+            return results;
+        }
+    }
+
+    /** Replaces the provided names with their interned copies. Must be called with the lock held. */
+    private Set<String> intern(Set<String> names) {
+        final Set<String> results = new HashSet<String>();
+        for (String name : names) {
+            final String interned = internedNames.get(name);
+            if (interned != null) {
+                results.add(interned);
+            } else {
+                internedNames.put(name, name);
+                results.add(name);
+            }
+        }
+        return results;
+    }
+
+    /** Walks the hierarchy of the provided type. */
+    private static Set<String> findSuperTypeNames(ITypeBinding typeBinding) {
+        final Set<String> results = new HashSet<String>();
+        final LinkedList<ITypeBinding> toVisit = new LinkedList<ITypeBinding>();
+        toVisit.add(typeBinding);
+        while (!toVisit.isEmpty()) {
+            final ITypeBinding type = toVisit.removeFirst();
+            if (results.add(type.getErasure().getQualifiedName())) {
+                if (type.getSuperclass() != null) {
+                    toVisit.add(type.getSuperclass());
+                }
+                Collections.addAll(toVisit, type.getInterfaces());
+            }
+        }
+        return results;
+    }
+}
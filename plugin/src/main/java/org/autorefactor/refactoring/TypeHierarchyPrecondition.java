@@ -0,0 +1,47 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+/**
+ * Optional interface for the refactoring rules which can only refactor the subtypes of some types,
+ * like the views, adapters or activities of the Android framework.
+ * <p>
+ * It allows to skip the compilation units which do not declare any of these subtypes before parsing them,
+ * according to an index built from the type hierarchies of the java project when scheduling the work.
+ *
+ * @see SourcePrecondition
+ */
+public interface TypeHierarchyPrecondition {
+
+    /**
+     * Returns the qualified names of the types where a compilation unit must declare a subtype of at least one,
+     * including a member, local or anonymous type, for this rule to refactor it.
+     *
+     * @return the qualified names of the types where at least one subtype must be declared,
+     *         or an empty array if this rule can refactor any code
+     */
+    String[] getRequiredSuperTypes();
+}
@@ -28,26 +28,30 @@ package org.autorefactor.refactoring.rules;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.autorefactor.preferences.Preferences;
 import org.autorefactor.refactoring.JavaRefactoringRule;
 import org.autorefactor.refactoring.RefactoringRule;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.SourcePrecondition;
+import org.autorefactor.refactoring.SourcePreconditions;
 import org.autorefactor.util.AutoRefactorException;
 import org.autorefactor.util.NotImplementedException;
 import org.autorefactor.util.UnhandledException;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
 import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
 import org.eclipse.jdt.core.dom.AnnotationTypeMemberDeclaration;
 import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
@@ -140,20 +144,51 @@ import static org.autorefactor.refactoring.ASTHelper.*;
  * Aggregates running several visitors into only one visitor to increase performances.
  * When one visitor refactors a subtree of the AST, visitors coming after will not be able to visit it.
  * Visitors throwing exceptions are isolated and ignored for the rest of a run for stability.
+ * Visitors declaring a {@link SourcePrecondition} do not visit the type declarations
+ * where none of their required identifiers appear.
  */
 public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRule {
 
-    private final Map<Class<?>, List<ASTVisitor>> visitorsMap = new HashMap<Class<?>, List<ASTVisitor>>();
-    private final Map<Class<?>, List<ASTVisitor>> endVisitorsMap = new HashMap<Class<?>, List<ASTVisitor>>();
-    private final Set<ASTVisitor> preVisitors = new LinkedHashSet<ASTVisitor>();
-    private final Set<ASTVisitor> preVisitors2 = new LinkedHashSet<ASTVisitor>();
-    private final Set<ASTVisitor> postVisitors = new LinkedHashSet<ASTVisitor>();
+    private static final ASTVisitor[] NO_VISITORS = new ASTVisitor[0];
+
+    /** Dispatch table shared by all the aggregate visitors running the same visitor classes. */
+    private final VisitorsDispatchTable dispatchTable;
+    /** Node type => visitors overriding the corresponding visit() method. */
+    private final ASTVisitor[][] visitorsByNodeType = new ASTVisitor[VisitorsDispatchTable.NB_NODE_TYPES][];
+    /** Node type => visitors overriding the corresponding endVisit() method. */
+    private final ASTVisitor[][] endVisitorsByNodeType = new ASTVisitor[VisitorsDispatchTable.NB_NODE_TYPES][];
+    private ASTVisitor[] preVisitors;
+    private ASTVisitor[] preVisitors2;
+    private ASTVisitor[] postVisitors;
+    /** Node type => whether the node and its subtree must be visited. */
+    private final boolean[] visitSubtree;
+    private final boolean checkRefactoredNodes;
 
     private final List<ASTVisitor> visitors;
+    /** Visitors disabled for the rest of this run because they are faulty. */
+    private final Set<ASTVisitor> disabledVisitors = new HashSet<ASTVisitor>();
+    /** Whether some visitors declare a {@link SourcePrecondition}. */
+    private final boolean hasSourcePreconditions;
+    /** Visitors skipped while visiting the current type declaration because they cannot refactor it. */
+    private Set<ASTVisitor> skippedVisitors = Collections.emptySet();
+    /** Type declarations being visited which added skipped visitors. */
+    private final List<ASTNode> skippingTypeDeclarations = new ArrayList<ASTNode>();
+    /** The skipped visitors before visiting each type declaration of {@link #skippingTypeDeclarations}. */
+    private final List<Set<ASTVisitor>> previousSkippedVisitors = new ArrayList<Set<ASTVisitor>>();
 
     private RefactoringContext ctx;
+    /** Source of the compilation unit being visited, lazily read. */
+    private String source;
     private final Set<ASTVisitor> visitorsContributingRefactoring = new HashSet<ASTVisitor>();
 
+    /** The profiler to report to, or null when profiling is off. */
+    private RefactoringRulesProfiler profiler;
+    /**
+     * Profiling data accumulated locally to avoid contention between workers:
+     * visitor => { nanoseconds, number of visits, number of refactorings }.
+     */
+    private Map<ASTVisitor, long[]> profilingData;
+
     /**
      * Builds an instance of this class.
      *
@@ -162,7 +197,58 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public AggregateASTVisitor(List<RefactoringRule> visitors) {
         this.visitors = (List) visitors;
-        analyzeVisitors();
+        this.dispatchTable = VisitorsDispatchTable.getDispatchTable(this.visitors);
+        this.visitSubtree = dispatchTable.visitSubtree;
+        this.checkRefactoredNodes = dispatchTable.checkRefactoredNodes;
+        this.hasSourcePreconditions = hasSourcePreconditions(this.visitors);
+        initDispatchArrays();
+    }
+
+    private static boolean hasSourcePreconditions(List<ASTVisitor> visitors) {
+        for (ASTVisitor v : visitors) {
+            if (v instanceof SourcePrecondition) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turns on profiling of the visitors.
+     *
+     * @param profiler the profiler where to report the profiling data
+     * @see #flushProfilingData()
+     */
+    public void setProfiler(RefactoringRulesProfiler profiler) {
+        this.profiler = profiler;
+        this.profilingData = new IdentityHashMap<ASTVisitor, long[]>();
+        for (ASTVisitor v : visitors) {
+            profilingData.put(v, new long[3]);
+        }
+    }
+
+    /** Reports the profiling data accumulated so far to the profiler, if any. */
+    public void flushProfilingData() {
+        if (profiler == null) {
+            return;
+        }
+        for (Entry<ASTVisitor, long[]> entry : profilingData.entrySet()) {
+            final long[] data = entry.getValue();
+            profiler.addRuleData(entry.getKey().getClass().getSimpleName(), data[0], data[1], data[2]);
+            Arrays.fill(data, 0);
+        }
+    }
+
+    private long startProfiling() {
+        return profiler != null ? System.nanoTime() : 0;
+    }
+
+    private void stopProfiling(ASTVisitor v, long startTime) {
+        if (profiler != null) {
+            final long[] data = profilingData.get(v);
+            data[0] += System.nanoTime() - startTime;
+            data[1]++;
+        }
     }
 
     @Override
@@ -180,74 +266,143 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
         return true;
     }
 
-    private void analyzeVisitors() {
-        for (ASTVisitor v : this.visitors) {
-            analyzeVisitor(v, v.getClass());
+    private void initDispatchArrays() {
+        for (int nodeType = 0; nodeType < VisitorsDispatchTable.NB_NODE_TYPES; nodeType++) {
+            visitorsByNodeType[nodeType] = getVisitors(dispatchTable.visitIndexes[nodeType]);
+            endVisitorsByNodeType[nodeType] = getVisitors(dispatchTable.endVisitIndexes[nodeType]);
         }
+        preVisitors = getVisitors(dispatchTable.preVisitIndexes);
+        preVisitors2 = getVisitors(dispatchTable.preVisit2Indexes);
+        postVisitors = getVisitors(dispatchTable.postVisitIndexes);
     }
 
-    private void analyzeVisitor(ASTVisitor v, Class<?> clazz) {
-        if (ASTVisitor.class.equals(clazz)) {
-            return;
+    /**
+     * Updates the dispatch arrays after the provided visitors have been disabled, skipped or restored.
+     * Only the entries where these visitors appear are replaced, with new arrays rather than modified ones,
+     * so the loops currently iterating over them are not disturbed.
+     */
+    private void updateDispatchArrays(Collection<ASTVisitor> changedVisitors) {
+        final BitSet changedIndexes = new BitSet(visitors.size());
+        final BitSet visitTypes = new BitSet(VisitorsDispatchTable.NB_NODE_TYPES);
+        final BitSet endVisitTypes = new BitSet(VisitorsDispatchTable.NB_NODE_TYPES);
+        for (ASTVisitor v : changedVisitors) {
+            final int index = visitors.indexOf(v);
+            changedIndexes.set(index);
+            set(visitTypes, dispatchTable.visitNodeTypes[index]);
+            set(endVisitTypes, dispatchTable.endVisitNodeTypes[index]);
         }
-        for (Method m : clazz.getDeclaredMethods()) {
-            if (is("preVisit", m)) {
-                preVisitors.add(v);
-            } else if (is("preVisit2", m)) {
-                preVisitors2.add(v);
-            } else if (is("postVisit", m)) {
-                postVisitors.add(v);
-            } else if (isVisit(m)) {
-                put(visitorsMap, m.getParameterTypes()[0], v);
-            } else if (isEndVisit(m)) {
-                put(endVisitorsMap, m.getParameterTypes()[0], v);
-            }
+        for (int type = visitTypes.nextSetBit(0); type >= 0; type = visitTypes.nextSetBit(type + 1)) {
+            visitorsByNodeType[type] = getVisitors(dispatchTable.visitIndexes[type]);
+        }
+        for (int type = endVisitTypes.nextSetBit(0); type >= 0; type = endVisitTypes.nextSetBit(type + 1)) {
+            endVisitorsByNodeType[type] = getVisitors(dispatchTable.endVisitIndexes[type]);
+        }
+        if (containsAny(dispatchTable.preVisitIndexes, changedIndexes)) {
+            preVisitors = getVisitors(dispatchTable.preVisitIndexes);
+        }
+        if (containsAny(dispatchTable.preVisit2Indexes, changedIndexes)) {
+            preVisitors2 = getVisitors(dispatchTable.preVisit2Indexes);
+        }
+        if (containsAny(dispatchTable.postVisitIndexes, changedIndexes)) {
+            postVisitors = getVisitors(dispatchTable.postVisitIndexes);
         }
-        analyzeVisitor(v, clazz.getSuperclass());
     }
 
-    private static boolean is(String methodName, Method m) {
-        return methodName.equals(m.getName())
-            && m.getParameterTypes().length == 1
-            && ASTNode.class.equals(m.getParameterTypes()[0]);
+    private static void set(BitSet bits, int[] indexes) {
+        for (int index : indexes) {
+            bits.set(index);
+        }
     }
 
-    private static boolean isVisit(Method m) {
-        return "visit".equals(m.getName())
-            && m.getParameterTypes().length == 1
-            && ASTNode.class.isAssignableFrom(m.getParameterTypes()[0])
-            && !Modifier.isAbstract(m.getParameterTypes()[0].getModifiers());
+    private static boolean containsAny(int[] indexes, BitSet bits) {
+        for (int index : indexes) {
+            if (bits.get(index)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static boolean isEndVisit(Method m) {
-        return "endVisit".equals(m.getName())
-            && m.getParameterTypes().length == 1
-            && ASTNode.class.isAssignableFrom(m.getParameterTypes()[0])
-            && !Modifier.isAbstract(m.getParameterTypes()[0].getModifiers());
+    private ASTVisitor[] getVisitors(int[] visitorIndexes) {
+        if (visitorIndexes.length == 0) {
+            return NO_VISITORS;
+        }
+        final List<ASTVisitor> results = new ArrayList<ASTVisitor>(visitorIndexes.length);
+        for (int index : visitorIndexes) {
+            final ASTVisitor v = visitors.get(index);
+            if (!disabledVisitors.contains(v) && !skippedVisitors.contains(v)) {
+                results.add(v);
+            }
+        }
+        return results.toArray(new ASTVisitor[results.size()]);
     }
 
-    private void put(Map<Class<?>, List<ASTVisitor>> map, Class<?> key, ASTVisitor value) {
-        List<ASTVisitor> visitors = map.get(key);
-        if (visitors == null) {
-            visitors = new ArrayList<ASTVisitor>(1);
-            map.put(key, visitors);
+    /** Disables the provided visitor for the rest of this run. */
+    private void disableVisitor(ASTVisitor v) {
+        if (disabledVisitors.add(v)) {
+            updateDispatchArrays(Collections.singleton(v));
         }
-        visitors.add(value);
     }
 
-    private List<ASTVisitor> getVisitors(Map<Class<?>, List<ASTVisitor>> map,
-            Class<? extends ASTNode> clazzKey) {
-        final List<ASTVisitor> result = map.get(clazzKey);
-        if (result != null) {
-            return result;
+    /**
+     * Skips the visitors which cannot refactor the provided type declaration
+     * until the end of its visit.
+     *
+     * @see SourcePreconditions#mayRefactor(Object, String, int, int)
+     */
+    private void enterTypeDeclaration(ASTNode node) {
+        if (source == null) {
+            source = ctx.getSource(node);
+        }
+        final int start = node.getStartPosition();
+        final int end = start + node.getLength();
+        List<ASTVisitor> newlySkippedVisitors = null;
+        for (ASTVisitor v : visitors) {
+            if (!skippedVisitors.contains(v)
+                    && !disabledVisitors.contains(v)
+                    && !SourcePreconditions.mayRefactor(v, source, start, end)) {
+                if (newlySkippedVisitors == null) {
+                    newlySkippedVisitors = new ArrayList<ASTVisitor>();
+                }
+                newlySkippedVisitors.add(v);
+            }
+        }
+        if (newlySkippedVisitors != null) {
+            final Set<ASTVisitor> newSkippedVisitors = new HashSet<ASTVisitor>(skippedVisitors);
+            newSkippedVisitors.addAll(newlySkippedVisitors);
+            skippingTypeDeclarations.add(node);
+            previousSkippedVisitors.add(skippedVisitors);
+            skippedVisitors = newSkippedVisitors;
+            updateDispatchArrays(newlySkippedVisitors);
+        }
+    }
+
+    /** Restores the visitors skipped by {@link #enterTypeDeclaration(ASTNode)} for the provided node. */
+    private void exitTypeDeclaration(ASTNode node) {
+        final int last = skippingTypeDeclarations.size() - 1;
+        if (last >= 0 && skippingTypeDeclarations.get(last) == node) {
+            skippingTypeDeclarations.remove(last);
+            final Set<ASTVisitor> previous = previousSkippedVisitors.remove(last);
+            final List<ASTVisitor> restoredVisitors = new ArrayList<ASTVisitor>(skippedVisitors);
+            restoredVisitors.removeAll(previous);
+            skippedVisitors = previous;
+            updateDispatchArrays(restoredVisitors);
         }
-        return Collections.emptyList();
     }
 
     @Override
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public void setRefactoringContext(RefactoringContext ctx) {
         this.ctx = ctx;
+        this.source = null;
+        if (!skippingTypeDeclarations.isEmpty()) {
+            // a previous visit was interrupted
+            skippingTypeDeclarations.clear();
+            previousSkippedVisitors.clear();
+            final Set<ASTVisitor> restoredVisitors = skippedVisitors;
+            skippedVisitors = Collections.emptySet();
+            updateDispatchArrays(restoredVisitors);
+        }
         for (RefactoringRule v : (List<RefactoringRule>) (List) visitors) {
             v.setRefactoringContext(ctx);
         }
@@ -285,6 +440,9 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
                 logBadlyBehavedVisitor(v, node);
             } else {
                 visitorsContributingRefactoring.add(v);
+                if (profiler != null) {
+                    profilingData.get(v)[2]++;
+                }
             }
             // changes will be made to this node.
             // no other visitors can make any more changes to it
@@ -336,28 +494,39 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
                 System.out.print(paramType.getSimpleName() + " node");
             }
             System.out.println(") {");
-            final boolean isVisit = isVisit(m);
-            final boolean isEndVisit = isEndVisit(m);
-            final boolean isPrevisit2 = is("preVisit2", m);
-            if (isVisit || isEndVisit) {
-                System.out.print("\tfinal List<ASTVisitor> visitorList = getVisitors(");
-                System.out.print((isVisit ? "visitorsMap" : "endVisitorsMap") + ", ");
-                System.out.println(m.getParameterTypes()[0].getSimpleName() + ".class);");
-            }
-            System.out.print("\tfor (Iterator<ASTVisitor> iter = ");
-            if (is("preVisit", m)) {
+            final boolean isVisit = VisitorsDispatchTable.isVisit(m);
+            final boolean isEndVisit = VisitorsDispatchTable.isEndVisit(m);
+            final boolean isPrevisit2 = VisitorsDispatchTable.is("preVisit2", m);
+            if (isPrevisit2) {
+                System.out.println("\tfinal int nodeType = node.getNodeType();");
+                System.out.println("\tif (nodeType < visitSubtree.length && !visitSubtree[nodeType]) {");
+                System.out.println("\t\t// no visitor is interested in this node nor in any node beneath it");
+                System.out.println("\t\treturn DO_NOT_VISIT_SUBTREE;");
+                System.out.println("\t}");
+                System.out.println("\tif (checkRefactoredNodes && ctx.getRefactorings().hasBeenRefactored(node)) {");
+                System.out.println("\t\t// only visit nodes that have not been refactored");
+                System.out.println("\t\t// to avoid trying to refactor twice the same node (or sub nodes)");
+                System.out.println("\t\treturn DO_NOT_VISIT_SUBTREE;");
+                System.out.println("\t}");
+                System.out.println("\tif (hasSourcePreconditions && node instanceof AbstractTypeDeclaration) {");
+                System.out.println("\t\tenterTypeDeclaration(node);");
+                System.out.println("\t}");
+            }
+            System.out.print("\tfor (ASTVisitor v : ");
+            if (VisitorsDispatchTable.is("preVisit", m)) {
                 System.out.print("preVisitors");
             } else if (isPrevisit2) {
                 System.out.print("preVisitors2");
-            } else if (is("postVisit", m)) {
+            } else if (VisitorsDispatchTable.is("postVisit", m)) {
                 System.out.print("postVisitors");
             } else if (isVisit || isEndVisit) {
-                System.out.print("visitorList");
+                System.out.print(isVisit ? "visitorsByNodeType" : "endVisitorsByNodeType");
+                System.out.print("[ASTNode." + toNodeTypeConstant(m.getParameterTypes()[0]) + "]");
             } else {
                 throw new NotImplementedException(null, "for method " + m);
             }
-            System.out.println(".iterator(); iter.hasNext();) {");
-            System.out.println("\t\tfinal ASTVisitor v = iter.next();");
+            System.out.println(") {");
+            System.out.println("\t\tfinal long startTime = startProfiling();");
             System.out.println("\t\ttry {");
             if (isPrevisit2) {
                 System.out.println("\t\t\tif (!v." + m.getName() + "(node)) {");
@@ -372,9 +541,16 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
             }
             System.out.println("\t\t} catch (Exception e) {");
             System.out.println("\t\t\tlogFaultyVisitor(v, node, e);");
-            System.out.println("\t\t\titer.remove();");
+            System.out.println("\t\t\tdisableVisitor(v);");
+            System.out.println("\t\t} finally {");
+            System.out.println("\t\t\tstopProfiling(v, startTime);");
             System.out.println("\t\t}");
             System.out.println("\t}");
+            if (VisitorsDispatchTable.is("postVisit", m)) {
+                System.out.println("\tif (hasSourcePreconditions) {");
+                System.out.println("\t\texitTypeDeclaration(node);");
+                System.out.println("\t}");
+            }
             if (Boolean.TYPE.equals(m.getReturnType())) {
                 System.out.println("\treturn VISIT_SUBTREE;");
             }
@@ -383,912 +559,981 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
         }
     }
 
+    private static String toNodeTypeConstant(Class<?> nodeClass) {
+        return nodeClass.getSimpleName().replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
+    }
+
     @Override
     public void endVisit(AnnotationTypeDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, AnnotationTypeDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ANNOTATION_TYPE_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(AnnotationTypeMemberDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, AnnotationTypeMemberDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ANNOTATION_TYPE_MEMBER_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(AnonymousClassDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, AnonymousClassDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ANONYMOUS_CLASS_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ArrayAccess node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ArrayAccess.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ARRAY_ACCESS]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ArrayCreation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ArrayCreation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ARRAY_CREATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ArrayInitializer node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ArrayInitializer.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ARRAY_INITIALIZER]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ArrayType node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ArrayType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ARRAY_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(AssertStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, AssertStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ASSERT_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(Assignment node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, Assignment.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ASSIGNMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(Block node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, Block.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.BLOCK]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(BlockComment node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, BlockComment.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.BLOCK_COMMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(BooleanLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, BooleanLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.BOOLEAN_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(BreakStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, BreakStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.BREAK_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(CastExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, CastExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.CAST_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(CatchClause node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, CatchClause.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.CATCH_CLAUSE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(CharacterLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, CharacterLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.CHARACTER_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ClassInstanceCreation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ClassInstanceCreation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.CLASS_INSTANCE_CREATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(CompilationUnit node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, CompilationUnit.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.COMPILATION_UNIT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ConditionalExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ConditionalExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.CONDITIONAL_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ConstructorInvocation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ConstructorInvocation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.CONSTRUCTOR_INVOCATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ContinueStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ContinueStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.CONTINUE_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(DoStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, DoStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.DO_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(EmptyStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, EmptyStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.EMPTY_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(EnhancedForStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, EnhancedForStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ENHANCED_FOR_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(EnumConstantDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, EnumConstantDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ENUM_CONSTANT_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(EnumDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, EnumDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.ENUM_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ExpressionStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ExpressionStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.EXPRESSION_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(FieldAccess node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, FieldAccess.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.FIELD_ACCESS]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(FieldDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, FieldDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.FIELD_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ForStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ForStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.FOR_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(IfStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, IfStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.IF_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ImportDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ImportDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.IMPORT_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(InfixExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, InfixExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.INFIX_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(Initializer node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, Initializer.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.INITIALIZER]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(InstanceofExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, InstanceofExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.INSTANCEOF_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(Javadoc node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, Javadoc.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.JAVADOC]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(LabeledStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, LabeledStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.LABELED_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(LineComment node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, LineComment.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.LINE_COMMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(MarkerAnnotation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, MarkerAnnotation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.MARKER_ANNOTATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(MemberRef node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, MemberRef.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.MEMBER_REF]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(MemberValuePair node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, MemberValuePair.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.MEMBER_VALUE_PAIR]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(MethodDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, MethodDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.METHOD_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(MethodInvocation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, MethodInvocation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.METHOD_INVOCATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(MethodRef node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, MethodRef.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.METHOD_REF]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(MethodRefParameter node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, MethodRefParameter.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.METHOD_REF_PARAMETER]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(Modifier node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, Modifier.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.MODIFIER]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(NormalAnnotation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, NormalAnnotation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.NORMAL_ANNOTATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(NullLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, NullLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.NULL_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(NumberLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, NumberLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.NUMBER_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(PackageDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, PackageDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.PACKAGE_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ParameterizedType node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ParameterizedType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.PARAMETERIZED_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ParenthesizedExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ParenthesizedExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.PARENTHESIZED_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(PostfixExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, PostfixExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.POSTFIX_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(PrefixExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, PrefixExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.PREFIX_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(PrimitiveType node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, PrimitiveType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.PRIMITIVE_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(QualifiedName node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, QualifiedName.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.QUALIFIED_NAME]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(QualifiedType node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, QualifiedType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.QUALIFIED_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ReturnStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ReturnStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.RETURN_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SimpleName node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SimpleName.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SIMPLE_NAME]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SimpleType node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SimpleType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SIMPLE_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SingleMemberAnnotation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SingleMemberAnnotation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SINGLE_MEMBER_ANNOTATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SingleVariableDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SingleVariableDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SINGLE_VARIABLE_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(StringLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, StringLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.STRING_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SuperConstructorInvocation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SuperConstructorInvocation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SUPER_CONSTRUCTOR_INVOCATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SuperFieldAccess node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SuperFieldAccess.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SUPER_FIELD_ACCESS]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
@@ -1296,307 +1541,348 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public void endVisit(SuperMethodInvocation node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SuperMethodInvocation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SUPER_METHOD_INVOCATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SwitchCase node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SwitchCase.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SWITCH_CASE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SwitchStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SwitchStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SWITCH_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(SynchronizedStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, SynchronizedStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.SYNCHRONIZED_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(TagElement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, TagElement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.TAG_ELEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(TextElement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, TextElement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.TEXT_ELEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ThisExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ThisExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.THIS_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(ThrowStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, ThrowStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.THROW_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(TryStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, TryStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.TRY_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(TypeDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, TypeDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.TYPE_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(TypeDeclarationStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, TypeDeclarationStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.TYPE_DECLARATION_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(TypeLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, TypeLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.TYPE_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(TypeParameter node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, TypeParameter.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.TYPE_PARAMETER]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(UnionType node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, UnionType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.UNION_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(VariableDeclarationExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, VariableDeclarationExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.VARIABLE_DECLARATION_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(VariableDeclarationFragment node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, VariableDeclarationFragment.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.VARIABLE_DECLARATION_FRAGMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(VariableDeclarationStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, VariableDeclarationStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.VARIABLE_DECLARATION_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(WhileStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, WhileStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.WHILE_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void endVisit(WildcardType node) {
-        final List<ASTVisitor> visitorList = getVisitors(endVisitorsMap, WildcardType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : endVisitorsByNodeType[ASTNode.WILDCARD_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 v.endVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public void postVisit(ASTNode node) {
-        for (Iterator<ASTVisitor> iter = postVisitors.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : postVisitors) {
+            final long startTime = startProfiling();
             try {
                 v.postVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
+        if (hasSourcePreconditions) {
+            exitTypeDeclaration(node);
+        }
     }
 
     @Override
     public void preVisit(ASTNode node) {
-        for (Iterator<ASTVisitor> iter = preVisitors.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : preVisitors) {
+            final long startTime = startProfiling();
             try {
                 v.preVisit(node);
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
     }
 
     @Override
     public boolean preVisit2(ASTNode node) {
-        for (Iterator<ASTVisitor> iter = preVisitors2.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        final int nodeType = node.getNodeType();
+        if (nodeType < visitSubtree.length && !visitSubtree[nodeType]) {
+            // no visitor is interested in this node nor in any node beneath it
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        if (checkRefactoredNodes && ctx.getRefactorings().hasBeenRefactored(node)) {
+            // only visit nodes that have not been refactored
+            // to avoid trying to refactor twice the same node (or sub nodes)
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        if (hasSourcePreconditions && node instanceof AbstractTypeDeclaration) {
+            enterTypeDeclaration(node);
+        }
+        for (ASTVisitor v : preVisitors2) {
+            final long startTime = startProfiling();
             try {
                 if (!v.preVisit2(node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1604,16 +1890,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(AnnotationTypeDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, AnnotationTypeDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ANNOTATION_TYPE_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1621,16 +1908,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(AnnotationTypeMemberDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, AnnotationTypeMemberDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ANNOTATION_TYPE_MEMBER_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1638,16 +1926,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(AnonymousClassDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, AnonymousClassDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ANONYMOUS_CLASS_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1655,16 +1944,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ArrayAccess node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ArrayAccess.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ARRAY_ACCESS]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1672,16 +1962,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ArrayCreation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ArrayCreation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ARRAY_CREATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1689,16 +1980,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ArrayInitializer node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ArrayInitializer.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ARRAY_INITIALIZER]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1706,16 +1998,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ArrayType node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ArrayType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ARRAY_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1723,16 +2016,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(AssertStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, AssertStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ASSERT_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1740,16 +2034,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(Assignment node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, Assignment.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ASSIGNMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1757,16 +2052,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(Block node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, Block.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.BLOCK]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1774,16 +2070,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(BlockComment node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, BlockComment.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.BLOCK_COMMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1791,16 +2088,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(BooleanLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, BooleanLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.BOOLEAN_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1808,16 +2106,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(BreakStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, BreakStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.BREAK_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1825,16 +2124,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(CastExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, CastExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.CAST_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1842,16 +2142,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(CatchClause node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, CatchClause.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.CATCH_CLAUSE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1859,16 +2160,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(CharacterLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, CharacterLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.CHARACTER_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1876,16 +2178,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ClassInstanceCreation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ClassInstanceCreation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.CLASS_INSTANCE_CREATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1893,16 +2196,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(CompilationUnit node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, CompilationUnit.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.COMPILATION_UNIT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1910,16 +2214,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ConditionalExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ConditionalExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.CONDITIONAL_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1927,16 +2232,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ConstructorInvocation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ConstructorInvocation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.CONSTRUCTOR_INVOCATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1944,16 +2250,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ContinueStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ContinueStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.CONTINUE_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1961,16 +2268,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(DoStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, DoStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.DO_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1978,16 +2286,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(EmptyStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, EmptyStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.EMPTY_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -1995,16 +2304,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(EnhancedForStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, EnhancedForStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ENHANCED_FOR_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2012,16 +2322,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(EnumConstantDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, EnumConstantDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ENUM_CONSTANT_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2029,16 +2340,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(EnumDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, EnumDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.ENUM_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2046,16 +2358,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ExpressionStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ExpressionStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.EXPRESSION_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2063,16 +2376,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(FieldAccess node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, FieldAccess.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.FIELD_ACCESS]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2080,16 +2394,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(FieldDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, FieldDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.FIELD_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2097,16 +2412,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ForStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ForStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.FOR_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2114,16 +2430,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(IfStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, IfStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.IF_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2131,16 +2448,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ImportDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ImportDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.IMPORT_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2148,16 +2466,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(InfixExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, InfixExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.INFIX_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2165,16 +2484,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(Initializer node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, Initializer.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.INITIALIZER]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2182,16 +2502,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(InstanceofExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, InstanceofExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.INSTANCEOF_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2199,16 +2520,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(Javadoc node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, Javadoc.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.JAVADOC]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2216,16 +2538,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(LabeledStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, LabeledStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.LABELED_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2233,16 +2556,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(LineComment node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, LineComment.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.LINE_COMMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2250,16 +2574,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(MarkerAnnotation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, MarkerAnnotation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.MARKER_ANNOTATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2267,16 +2592,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(MemberRef node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, MemberRef.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.MEMBER_REF]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2284,16 +2610,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(MemberValuePair node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, MemberValuePair.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.MEMBER_VALUE_PAIR]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2301,16 +2628,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(MethodDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, MethodDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.METHOD_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2318,16 +2646,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(MethodInvocation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, MethodInvocation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.METHOD_INVOCATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2335,16 +2664,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(MethodRef node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, MethodRef.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.METHOD_REF]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2352,16 +2682,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(MethodRefParameter node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, MethodRefParameter.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.METHOD_REF_PARAMETER]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2369,16 +2700,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(Modifier node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, Modifier.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.MODIFIER]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2386,16 +2718,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(NormalAnnotation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, NormalAnnotation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.NORMAL_ANNOTATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2403,16 +2736,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(NullLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, NullLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.NULL_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2420,16 +2754,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(NumberLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, NumberLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.NUMBER_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2437,16 +2772,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(PackageDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, PackageDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.PACKAGE_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2454,16 +2790,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ParameterizedType node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ParameterizedType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.PARAMETERIZED_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2471,16 +2808,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ParenthesizedExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ParenthesizedExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.PARENTHESIZED_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2488,16 +2826,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(PostfixExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, PostfixExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.POSTFIX_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2505,16 +2844,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(PrefixExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, PrefixExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.PREFIX_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2522,16 +2862,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(PrimitiveType node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, PrimitiveType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.PRIMITIVE_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2539,16 +2880,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(QualifiedName node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, QualifiedName.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.QUALIFIED_NAME]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2556,16 +2898,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(QualifiedType node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, QualifiedType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.QUALIFIED_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2573,16 +2916,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ReturnStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ReturnStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.RETURN_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2590,16 +2934,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SimpleName node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SimpleName.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SIMPLE_NAME]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2607,16 +2952,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SimpleType node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SimpleType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SIMPLE_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2624,16 +2970,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SingleMemberAnnotation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SingleMemberAnnotation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SINGLE_MEMBER_ANNOTATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2641,16 +2988,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SingleVariableDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SingleVariableDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SINGLE_VARIABLE_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2658,16 +3006,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(StringLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, StringLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.STRING_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2675,16 +3024,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SuperConstructorInvocation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SuperConstructorInvocation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SUPER_CONSTRUCTOR_INVOCATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2692,16 +3042,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SuperFieldAccess node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SuperFieldAccess.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SUPER_FIELD_ACCESS]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2709,16 +3060,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SuperMethodInvocation node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SuperMethodInvocation.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SUPER_METHOD_INVOCATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2726,16 +3078,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SwitchCase node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SwitchCase.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SWITCH_CASE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2743,16 +3096,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SwitchStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SwitchStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SWITCH_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2760,16 +3114,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(SynchronizedStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, SynchronizedStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.SYNCHRONIZED_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2777,16 +3132,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(TagElement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, TagElement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.TAG_ELEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2794,16 +3150,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(TextElement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, TextElement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.TEXT_ELEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2811,16 +3168,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ThisExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ThisExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.THIS_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2828,16 +3186,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(ThrowStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, ThrowStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.THROW_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2845,16 +3204,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(TryStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, TryStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.TRY_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2862,16 +3222,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(TypeDeclaration node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, TypeDeclaration.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.TYPE_DECLARATION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2879,16 +3240,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(TypeDeclarationStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, TypeDeclarationStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.TYPE_DECLARATION_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2896,16 +3258,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(TypeLiteral node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, TypeLiteral.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.TYPE_LITERAL]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2913,16 +3276,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(TypeParameter node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, TypeParameter.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.TYPE_PARAMETER]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2930,16 +3294,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(UnionType node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, UnionType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.UNION_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2947,16 +3312,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(VariableDeclarationExpression node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, VariableDeclarationExpression.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.VARIABLE_DECLARATION_EXPRESSION]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2964,16 +3330,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(VariableDeclarationFragment node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, VariableDeclarationFragment.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.VARIABLE_DECLARATION_FRAGMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2981,16 +3348,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(VariableDeclarationStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, VariableDeclarationStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.VARIABLE_DECLARATION_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -2998,16 +3366,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(WhileStatement node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, WhileStatement.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.WHILE_STATEMENT]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
@@ -3015,16 +3384,17 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean visit(WildcardType node) {
-        final List<ASTVisitor> visitorList = getVisitors(visitorsMap, WildcardType.class);
-        for (Iterator<ASTVisitor> iter = visitorList.iterator(); iter.hasNext();) {
-            final ASTVisitor v = iter.next();
+        for (ASTVisitor v : visitorsByNodeType[ASTNode.WILDCARD_TYPE]) {
+            final long startTime = startProfiling();
             try {
                 if (!continueVisiting(v.visit(node), v, node)) {
                     return DO_NOT_VISIT_SUBTREE;
                 }
             } catch (Exception e) {
                 logFaultyVisitor(v, node, e);
-                iter.remove();
+                disableVisitor(v);
+            } finally {
+                stopProfiling(v, startTime);
             }
         }
         return VISIT_SUBTREE;
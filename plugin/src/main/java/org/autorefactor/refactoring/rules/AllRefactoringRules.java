@@ -70,6 +70,7 @@ public final class AllRefactoringRules {
         		//Test
         		new FloatMathRefactoring(),
                 new RecycleRefactoring(),
+                new RecycleWithTryRefactoring(),
         		new UseSparseArrayRefactoring(),
         		new UseValueOfRefactoring(),
         		//new FloatPrimitiveRatherThanWrapperRefactoring(),
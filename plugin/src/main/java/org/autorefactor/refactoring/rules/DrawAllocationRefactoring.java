@@ -29,36 +29,71 @@ package org.autorefactor.refactoring.rules;
 
 import static org.autorefactor.refactoring.ASTHelper.DO_NOT_VISIT_SUBTREE;
 import static org.autorefactor.refactoring.ASTHelper.VISIT_SUBTREE;
-import static org.autorefactor.refactoring.ASTHelper.isMethod;
+import static org.autorefactor.refactoring.ASTHelper.arguments;
+import static org.autorefactor.refactoring.ASTHelper.expressions;
+import static org.autorefactor.refactoring.ASTHelper.extendedOperands;
+import static org.autorefactor.refactoring.ASTHelper.fragments;
+import static org.autorefactor.refactoring.ASTHelper.getAncestorOrNull;
+import static org.autorefactor.refactoring.ASTHelper.hasType;
+import static org.autorefactor.refactoring.ASTHelper.isSameLocalVariable;
+import static org.autorefactor.refactoring.ASTHelper.modifiers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodMatcher;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.SourcePrecondition;
+import org.autorefactor.refactoring.TypeHierarchyCache;
+import org.autorefactor.refactoring.TypeHierarchyPrecondition;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.ArrayCreation;
+import org.eclipse.jdt.core.dom.ArrayInitializer;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.Assignment.Operator;
 import org.eclipse.jdt.core.dom.Block;
 import org.eclipse.jdt.core.dom.CastExpression;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.Modifier.ModifierKeyword;
 import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NullLiteral;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
 import org.eclipse.jdt.core.dom.QualifiedName;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SimpleType;
 import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.ThisExpression;
+import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.internal.corext.dom.ASTNodes;
 
 /** See {@link #getDescription()} method. */
-public class DrawAllocationRefactoring extends AbstractRefactoringRule {
+public class DrawAllocationRefactoring extends AbstractRefactoringRule
+		implements SourcePrecondition, TypeHierarchyPrecondition {
 
 	@Override
 	public String getDescription() {
@@ -71,65 +106,160 @@ public class DrawAllocationRefactoring extends AbstractRefactoringRule {
 		return "DrawAllocationRefactoring";
 	}
 
+	/** The qualified names of the RecyclerView classes, from the support library and from AndroidX. */
+	static final String[] RECYCLER_VIEW_CLASSES = {
+		"android.support.v7.widget.RecyclerView",
+		"androidx.recyclerview.widget.RecyclerView"
+	};
+
+	/** The methods called on each frame by the Android framework. */
+	private static final MethodMatcher DRAWING_ROUTINES = new MethodMatcher()
+			.add("android.view.View", "onDraw", "android.graphics.Canvas")
+			.add("android.view.View", "onMeasure", "int", "int")
+			.add("android.view.View", "onLayout", "boolean", "int", "int", "int", "int")
+			.add("android.view.View", "dispatchDraw", "android.graphics.Canvas")
+			.add("android.view.View", "draw", "android.graphics.Canvas")
+			.add("android.graphics.drawable.Drawable", "draw", "android.graphics.Canvas")
+			.add("android.view.Choreographer.FrameCallback", "doFrame", "long")
+			.add("android.animation.ValueAnimator.AnimatorUpdateListener",
+					"onAnimationUpdate", "android.animation.ValueAnimator");
+	static {
+		for (String recyclerView : RECYCLER_VIEW_CLASSES) {
+			DRAWING_ROUTINES.add(recyclerView + ".ItemDecoration", "onDraw",
+					"android.graphics.Canvas", recyclerView, recyclerView + ".State");
+		}
+	}
+
+	/** The compilation unit for which {@link #drawPathHelpers} has been computed. */
+	private CompilationUnit drawPathHelpersRoot;
+	/** The keys of the private methods only called from the drawing routines of {@link #drawPathHelpersRoot}. */
+	private Set<String> drawPathHelpers;
+
+	@Override
+	public String[] getRequiredIdentifiers() {
+		return new String[] {
+			"onDraw", "onMeasure", "onLayout", "dispatchDraw", "draw", "doFrame", "onAnimationUpdate"
+		};
+	}
+
+	@Override
+	public String[] getRequiredSuperTypes() {
+		final Set<String> types = DRAWING_ROUTINES.getDeclaringTypeNames();
+		return types.toArray(new String[types.size()]);
+	}
+
 	/**
-	 * Method that determines when a method invocation is eligible for refactoring
-	 * 
-	 * @param methodBinding
-	 * @return
+	 * Method that determines when a method declaration is a drawing routine eligible for refactoring:
+	 * it must override one of the methods called on each frame by the Android framework.
+	 *
+	 * @param methodBinding the method binding to check
+	 * @return true if the method is a drawing routine, false otherwise
 	 */
 	public boolean isMethodEligible(IMethodBinding methodBinding) {
-		if( isMethod(
-				methodBinding,
-				"android.widget.TextView",
-				"onDraw",
-				"android.graphics.Canvas"
-		)|| isMethod(
-				methodBinding,
-				"android.view.View",
-				"onDraw",
-				"android.graphics.Canvas"
-		)|| isMethod(
-				methodBinding,
-				"android.widget.TextView",
-				"onMeasure",
-				"int","int"
-		)|| isMethod(
-				methodBinding,
-				"android.widget.LinearLayout",
-				"onMeasure",
-				"int","int"
-		)|| isMethod(
-				methodBinding,
-				"android.widget.LinearLayout",
-				"onLayout",
-				"boolean","int","int","int","int"
-		)|| isMethod(
-				methodBinding,
-				"android.widget.SeekBar",
-				"onDraw",
-				"android.graphics.Canvas"
-		)|| isMethod(
-				methodBinding,
-				"android.widget.EditText",
-				"onDraw",
-				"android.graphics.Canvas"
-		)|| isMethod(
-				methodBinding,
-				"android.view.SurfaceView",
-				"onDraw",
-				"android.graphics.Canvas"
-		)) return true;
-		return false;
+		return DRAWING_ROUTINES.matches(methodBinding);
 	}
-	
+
 	public boolean visit(MethodDeclaration node) {
 		IMethodBinding methodBinding = node.resolveBinding();
-		if(methodBinding!= null && isMethodEligible(methodBinding)){
+		// the allocations are hoisted to instance fields, which static methods cannot reference
+		if(methodBinding!= null
+				&& !Modifier.isStatic(methodBinding.getModifiers())
+				&& (isMethodEligible(methodBinding)
+						|| getDrawPathHelpers((CompilationUnit) node.getRoot())
+								.contains(methodBinding.getMethodDeclaration().getKey()))){
 			node.accept(new OnDrawTransformer(this.ctx, node));
 		}
 		return VISIT_SUBTREE;
 	}
-	
+
+	private Set<String> getDrawPathHelpers(CompilationUnit astRoot) {
+		if (drawPathHelpersRoot != astRoot) {
+			drawPathHelpersRoot = astRoot;
+			drawPathHelpers = findDrawPathHelpers(astRoot);
+		}
+		return drawPathHelpers;
+	}
+
+	/**
+	 * Returns the keys of the private methods transitively called only from drawing routines.
+	 * Only private methods are considered, because all their callers are in the compilation unit.
+	 */
+	private Set<String> findDrawPathHelpers(CompilationUnit astRoot) {
+		final Set<String> drawingRoutines = new HashSet<String>();
+		final Map<String, Set<String>> callers = new HashMap<String, Set<String>>();
+		astRoot.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				final IMethodBinding methodBinding = node.resolveBinding();
+				if (methodBinding != null && isMethodEligible(methodBinding)) {
+					drawingRoutines.add(methodBinding.getMethodDeclaration().getKey());
+				}
+				return VISIT_SUBTREE;
+			}
+
+			@Override
+			public boolean visit(SimpleName node) {
+				final IBinding binding = node.resolveBinding();
+				if (binding instanceof IMethodBinding
+						&& Modifier.isPrivate(binding.getModifiers())
+						&& !node.isDeclaration()) {
+					final String callee = ((IMethodBinding) binding).getMethodDeclaration().getKey();
+					Set<String> calleeCallers = callers.get(callee);
+					if (calleeCallers == null) {
+						calleeCallers = new HashSet<String>();
+						callers.put(callee, calleeCallers);
+					}
+					calleeCallers.add(getCallerKey(node));
+				}
+				return VISIT_SUBTREE;
+			}
+		});
+
+		final Set<String> results = new HashSet<String>();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Map.Entry<String, Set<String>> entry : callers.entrySet()) {
+				final String callee = entry.getKey();
+				if (!results.contains(callee) && !drawingRoutines.contains(callee)
+						&& isOnlyCalledFrom(entry.getValue(), drawingRoutines, results)) {
+					results.add(callee);
+					changed = true;
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the key of the method directly calling the provided method name,
+	 * or an empty string when it is not a plain invocation from a method body,
+	 * like method references or invocations from initializers.
+	 */
+	private static String getCallerKey(SimpleName methodName) {
+		if (!(methodName.getParent() instanceof MethodInvocation)
+				|| ((MethodInvocation) methodName.getParent()).getName() != methodName) {
+			return "";
+		}
+		final BodyDeclaration caller = getAncestorOrNull(methodName, BodyDeclaration.class);
+		if (caller instanceof MethodDeclaration) {
+			final IMethodBinding callerBinding = ((MethodDeclaration) caller).resolveBinding();
+			if (callerBinding != null) {
+				return callerBinding.getMethodDeclaration().getKey();
+			}
+		}
+		return "";
+	}
+
+	private static boolean isOnlyCalledFrom(Set<String> callers, Set<String> drawingRoutines, Set<String> helpers) {
+		for (String caller : callers) {
+			if (!drawingRoutines.contains(caller) && !helpers.contains(caller)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	static class OnDrawTransformer extends ASTVisitor{
 		private RefactoringContext ctx;
 		private MethodDeclaration methodDeclaration;
@@ -138,23 +268,64 @@ public class DrawAllocationRefactoring extends AbstractRefactoringRule {
 			rectClassList.add("Rect");
 			rectClassList.add("RectF");
 		}
+		private static final MethodMatcher DRAW_RECT = new MethodMatcher()
+				.add("android.graphics.Canvas", "drawRect", "android.graphics.Rect", "android.graphics.Paint")
+				.add("android.graphics.Canvas", "drawRect", "android.graphics.RectF", "android.graphics.Paint");
+		/** The graphics classes which cannot be modified once created, apart from their local matrix. */
+		private static final List<String> IMMUTABLE_GRAPHICS_CLASSES = Arrays.asList(
+				"android.graphics.LinearGradient",
+				"android.graphics.RadialGradient",
+				"android.graphics.SweepGradient",
+				"android.graphics.ComposeShader",
+				"android.graphics.BitmapShader",
+				"android.graphics.DashPathEffect",
+				"android.graphics.CornerPathEffect",
+				"android.graphics.DiscretePathEffect",
+				"android.graphics.PorterDuffXfermode",
+				"android.graphics.PorterDuffColorFilter",
+				"android.graphics.LightingColorFilter",
+				"android.graphics.BlurMaskFilter");
+		/** The mutable graphics classes which can be reset to the state of a new instance. */
+		private static final List<String> MUTABLE_GRAPHICS_CLASSES = Arrays.asList(
+				"android.graphics.Paint",
+				"android.graphics.Path",
+				"android.graphics.Matrix",
+				"android.graphics.Rect",
+				"android.graphics.RectF",
+				"android.graphics.Point",
+				"android.graphics.PointF");
+		/** The methods resetting the mutable graphics objects to the state of an instance built without arguments. */
+		private static final Map<String, String> RESET_METHODS = new HashMap<String, String>();
+		static {
+			RESET_METHODS.put("android.graphics.Paint", "reset");
+			RESET_METHODS.put("android.graphics.Path", "reset");
+			RESET_METHODS.put("android.graphics.Matrix", "reset");
+			RESET_METHODS.put("android.graphics.Rect", "setEmpty");
+			RESET_METHODS.put("android.graphics.RectF", "setEmpty");
+		}
+		/** The names of the fields added for the allocations hoisted out of this method. */
+		private final Set<String> hoistedNames = new HashSet<String>();
+		/** Whether only the graphics allocations which do not escape the method can be hoisted. */
+		private final boolean graphicsOnly;
 		
 		public OnDrawTransformer(RefactoringContext ctx, MethodDeclaration methodDeclaration){
+			this(ctx, methodDeclaration, false);
+		}
+
+		OnDrawTransformer(RefactoringContext ctx, MethodDeclaration methodDeclaration, boolean graphicsOnly){
 			this.ctx=ctx;
 			this.methodDeclaration = methodDeclaration;
+			this.graphicsOnly = graphicsOnly;
 		}
 		
 		public boolean isMethodBindingSubclassOf(ITypeBinding typeBinding, List<String> superClassStrings){
-			ITypeBinding superClass = typeBinding;
-			while(superClass!= null && !superClass.equals(ctx.getAST().resolveWellKnownType("java.lang.Object"))){
-				String className = superClass.getName();
-				if(className.contains("<")){
-					className = className.split("<",2)[0];
-				}
-				if(superClassStrings.contains(className)){
+			if (typeBinding == null) {
+				return false;
+			}
+			for (String superTypeName : TypeHierarchyCache.getSuperTypeNames(typeBinding)) {
+				if (superClassStrings.contains(superTypeName.substring(superTypeName.lastIndexOf('.') + 1))) {
 					return true;
 				}
-				superClass = superClass.getSuperclass();
 			}
 			return false;
 		}
@@ -172,6 +343,9 @@ public class DrawAllocationRefactoring extends AbstractRefactoringRule {
 				}
 				if(initializer.getNodeType() == ASTNode.CLASS_INSTANCE_CREATION){
 					ClassInstanceCreation classInstanceCreation = (ClassInstanceCreation) initializer;
+					if (hoistGraphicsAllocation(node, classInstanceCreation) || graphicsOnly) {
+						return DO_NOT_VISIT_SUBTREE;
+					}
 					InitializerVisitor initializerVisitor = new InitializerVisitor();
 					initializer.accept(initializerVisitor);
 					if(initializerVisitor.initializerCanBeExtracted){
@@ -222,6 +396,265 @@ public class DrawAllocationRefactoring extends AbstractRefactoringRule {
 			return DO_NOT_VISIT_SUBTREE;
 		}
 		
+		/**
+		 * Hoists the allocation of a graphics object which does not escape the current call to a field.
+		 * Immutable objects are only hoisted when their constructor arguments are invariant.
+		 * Mutable objects are reset on each call by statements replaying their construction.
+		 *
+		 * @return true if the allocation has been hoisted, false otherwise
+		 */
+		private boolean hoistGraphicsAllocation(VariableDeclarationFragment node, ClassInstanceCreation creation) {
+			final ITypeBinding type = creation.resolveTypeBinding();
+			if (type == null
+					|| node.getInitializer() != creation
+					|| creation.getAnonymousClassDeclaration() != null
+					|| !(node.getParent() instanceof VariableDeclarationStatement)
+					|| fragments((VariableDeclarationStatement) node.getParent()).size() != 1
+					|| !isFieldNameAvailable(node.getName().getIdentifier())) {
+				return false;
+			}
+			final String typeName = type.getErasure().getQualifiedName();
+			final boolean mutable = MUTABLE_GRAPHICS_CLASSES.contains(typeName);
+			if ((!mutable && !IMMUTABLE_GRAPHICS_CLASSES.contains(typeName))
+					|| escapes(node, mutable)) {
+				return false;
+			}
+			final boolean invariantArguments = areInvariant(arguments(creation));
+			final List<Statement> resetStmts;
+			if (mutable) {
+				resetStmts = getResetStatements(node.getName(), creation, type);
+				if (resetStmts == null) {
+					return false;
+				}
+			} else if (invariantArguments) {
+				resetStmts = Collections.emptyList();
+			} else {
+				return false;
+			}
+
+			final ASTBuilder b = this.ctx.getASTBuilder();
+			final Refactorings r = this.ctx.getRefactorings();
+			final AST ast = b.getAST();
+			final VariableDeclarationStatement declaration = (VariableDeclarationStatement) node.getParent();
+			final VariableDeclarationFragment fieldFragment = ast.newVariableDeclarationFragment();
+			fieldFragment.setName(b.copy(node.getName()));
+			fieldFragment.setInitializer(invariantArguments ? b.copy(creation) : b.new0(b.copy(creation.getType())));
+			final FieldDeclaration field = ast.newFieldDeclaration(fieldFragment);
+			field.setType(b.copy(declaration.getType()));
+			modifiers(field).add(ast.newModifier(ModifierKeyword.PRIVATE_KEYWORD));
+			modifiers(field).add(ast.newModifier(ModifierKeyword.FINAL_KEYWORD));
+			r.insertBefore(field, methodDeclaration);
+			for (Statement resetStmt : resetStmts) {
+				r.insertBefore(resetStmt, declaration);
+			}
+			r.remove(declaration);
+			hoistedNames.add(node.getName().getIdentifier());
+			return true;
+		}
+
+		/** Returns whether a field with the provided name would not hide any other field. */
+		private boolean isFieldNameAvailable(String name) {
+			final IMethodBinding methodBinding = methodDeclaration.resolveBinding();
+			if (methodBinding == null || hoistedNames.contains(name)) {
+				return false;
+			}
+			for (ITypeBinding enclosing = methodBinding.getDeclaringClass(); enclosing != null;
+					enclosing = enclosing.getDeclaringClass()) {
+				for (ITypeBinding type = enclosing; type != null; type = type.getSuperclass()) {
+					for (IVariableBinding field : type.getDeclaredFields()) {
+						if (field.getName().equals(name)) {
+							return false;
+						}
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns whether the provided local variable may outlive the current call:
+		 * when it is assigned, returned, captured by a local class,
+		 * or passed to a method which is not from the android.graphics package.
+		 * Immutable objects also escape when used as a method receiver, which may modify them.
+		 */
+		private boolean escapes(final VariableDeclarationFragment fragment, final boolean mutable) {
+			final boolean[] escapes = new boolean[1];
+			methodDeclaration.getBody().accept(new ASTVisitor() {
+				private int nbLocalClasses;
+
+				@Override
+				public boolean visit(AnonymousClassDeclaration node) {
+					nbLocalClasses++;
+					return VISIT_SUBTREE;
+				}
+
+				@Override
+				public void endVisit(AnonymousClassDeclaration node) {
+					nbLocalClasses--;
+				}
+
+				@Override
+				public boolean visit(TypeDeclarationStatement node) {
+					nbLocalClasses++;
+					return VISIT_SUBTREE;
+				}
+
+				@Override
+				public void endVisit(TypeDeclarationStatement node) {
+					nbLocalClasses--;
+				}
+
+				@Override
+				public boolean visit(SimpleName node) {
+					if (node != fragment.getName() && isSameLocalVariable(node, fragment.getName())
+							&& (nbLocalClasses > 0 || escapes(node))) {
+						escapes[0] = true;
+					}
+					return VISIT_SUBTREE;
+				}
+
+				private boolean escapes(SimpleName use) {
+					ASTNode expr = use;
+					while (expr.getParent() instanceof ParenthesizedExpression) {
+						expr = expr.getParent();
+					}
+					final ASTNode parent = expr.getParent();
+					if (parent instanceof MethodInvocation) {
+						final MethodInvocation mi = (MethodInvocation) parent;
+						return mi.getExpression() == expr ? !mutable : !isGraphicsMethod(mi.resolveMethodBinding());
+					} else if (parent instanceof ClassInstanceCreation) {
+						return !isGraphicsMethod(((ClassInstanceCreation) parent).resolveConstructorBinding());
+					}
+					return true;
+				}
+			});
+			return escapes[0];
+		}
+
+		private static boolean isGraphicsMethod(IMethodBinding methodBinding) {
+			return methodBinding != null
+					&& methodBinding.getDeclaringClass().getPackage() != null
+					&& "android.graphics".equals(methodBinding.getDeclaringClass().getPackage().getName());
+		}
+
+		private boolean areInvariant(List<Expression> exprs) {
+			for (Expression expr : exprs) {
+				if (!isInvariant(expr)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns whether the provided expression has the same value on every call of the drawing method,
+		 * and can be evaluated by a field initializer declared before the drawing method:
+		 * constants, or final fields already initialized at this point.
+		 */
+		private boolean isInvariant(Expression expr) {
+			if (expr.resolveConstantExpressionValue() != null || expr instanceof NullLiteral) {
+				return true;
+			}
+			switch (expr.getNodeType()) {
+			case ASTNode.PARENTHESIZED_EXPRESSION:
+				return isInvariant(((ParenthesizedExpression) expr).getExpression());
+			case ASTNode.CAST_EXPRESSION:
+				return isInvariant(((CastExpression) expr).getExpression());
+			case ASTNode.PREFIX_EXPRESSION:
+				final PrefixExpression pe = (PrefixExpression) expr;
+				return !PrefixExpression.Operator.INCREMENT.equals(pe.getOperator())
+						&& !PrefixExpression.Operator.DECREMENT.equals(pe.getOperator())
+						&& isInvariant(pe.getOperand());
+			case ASTNode.INFIX_EXPRESSION:
+				final InfixExpression ie = (InfixExpression) expr;
+				return isInvariant(ie.getLeftOperand())
+						&& isInvariant(ie.getRightOperand())
+						&& areInvariant(extendedOperands(ie));
+			case ASTNode.ARRAY_CREATION:
+				final ArrayInitializer arrayInitializer = ((ArrayCreation) expr).getInitializer();
+				return arrayInitializer != null && areInvariant(expressions(arrayInitializer));
+			case ASTNode.FIELD_ACCESS:
+				final FieldAccess fa = (FieldAccess) expr;
+				return fa.getExpression() instanceof ThisExpression && isInitializedFinalField(fa.resolveFieldBinding());
+			case ASTNode.SIMPLE_NAME:
+				final IBinding binding = ((SimpleName) expr).resolveBinding();
+				return binding instanceof IVariableBinding && isInitializedFinalField((IVariableBinding) binding);
+			case ASTNode.QUALIFIED_NAME:
+				final IBinding qualifiedBinding = ((QualifiedName) expr).resolveBinding();
+				return qualifiedBinding instanceof IVariableBinding
+						&& Modifier.isStatic(qualifiedBinding.getModifiers())
+						&& isInitializedFinalField((IVariableBinding) qualifiedBinding);
+			default:
+				return false;
+			}
+		}
+
+		private boolean isInitializedFinalField(IVariableBinding binding) {
+			if (binding == null || !binding.isField() || !Modifier.isFinal(binding.getModifiers())) {
+				return false;
+			} else if (Modifier.isStatic(binding.getModifiers())) {
+				return true;
+			}
+			final ASTNode declaration =
+					((CompilationUnit) methodDeclaration.getRoot()).findDeclaringNode(binding.getVariableDeclaration());
+			return declaration instanceof VariableDeclarationFragment
+					&& ((VariableDeclarationFragment) declaration).getInitializer() != null
+					&& declaration.getStartPosition() < methodDeclaration.getStartPosition();
+		}
+
+		/**
+		 * Returns the statements bringing a reused instance of a mutable graphics class
+		 * in the same state as the provided instance creation, or null if there is no such statement.
+		 */
+		private List<Statement> getResetStatements(SimpleName var, ClassInstanceCreation creation, ITypeBinding type) {
+			final ASTBuilder b = this.ctx.getASTBuilder();
+			final List<Expression> args = arguments(creation);
+			final IMethodBinding constructor = creation.resolveConstructorBinding();
+			final String typeName = type.getErasure().getQualifiedName();
+			final List<Statement> stmts = new ArrayList<Statement>();
+			if (args.isEmpty()) {
+				final String resetMethod = RESET_METHODS.get(typeName);
+				if (resetMethod == null) {
+					return null;
+				}
+				stmts.add(b.toStmt(b.invoke(b.copy(var), resetMethod)));
+			} else if (constructor == null) {
+				return null;
+			} else if ("android.graphics.Paint".equals(typeName) && args.size() == 1
+					&& hasType(constructor.getParameterTypes()[0], "int")) {
+				stmts.add(b.toStmt(b.invoke(b.copy(var), "reset")));
+				stmts.add(b.toStmt(b.invoke(b.copy(var), "setFlags", b.copy(args.get(0)))));
+			} else if (hasSetMethod(type, constructor.getParameterTypes())) {
+				final List<Expression> argCopies = new ArrayList<Expression>();
+				for (Expression arg : args) {
+					argCopies.add(b.copy(arg));
+				}
+				stmts.add(b.toStmt(b.invoke(b.copy(var), "set", argCopies)));
+			} else {
+				return null;
+			}
+			return stmts;
+		}
+
+		/** Returns whether the provided type has a set() method with the provided parameter types. */
+		private static boolean hasSetMethod(ITypeBinding type, ITypeBinding[] parameterTypes) {
+			for (IMethodBinding method : type.getDeclaredMethods()) {
+				if ("set".equals(method.getName())
+						&& Modifier.isPublic(method.getModifiers())
+						&& method.getParameterTypes().length == parameterTypes.length) {
+					boolean sameParameters = true;
+					for (int i = 0; i < parameterTypes.length; i++) {
+						sameParameters &= method.getParameterTypes()[i].getErasure()
+								.isEqualTo(parameterTypes[i].getErasure());
+					}
+					if (sameParameters) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
 		@Override
 		public boolean visit(MethodInvocation node) {
 			final Refactorings r = this.ctx.getRefactorings();
@@ -232,17 +665,7 @@ public class DrawAllocationRefactoring extends AbstractRefactoringRule {
 				return DO_NOT_VISIT_SUBTREE;
 			String methodExpressionString = methodExpression.toString();
 			node.getClass();
-			if(isMethod(
-					(IMethodBinding)node.getName().resolveBinding(),
-					"android.graphics.Canvas",
-					"drawRect",
-					"android.graphics.Rect", "android.graphics.Paint"
-			)||isMethod(
-					(IMethodBinding)node.getName().resolveBinding(),
-					"android.graphics.Canvas",
-					"drawRect",
-					"android.graphics.RectF", "android.graphics.Paint"
-			)){
+			if(DRAW_RECT.matches(node)){
 				List<Expression> argList = node.arguments();
 				if(argList.size()==2) {
 					Expression expr = argList.get(0);
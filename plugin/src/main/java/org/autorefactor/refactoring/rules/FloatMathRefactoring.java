@@ -4,16 +4,28 @@ import static org.autorefactor.refactoring.ASTHelper.DO_NOT_VISIT_SUBTREE;
 import static org.autorefactor.refactoring.ASTHelper.VISIT_SUBTREE;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.SourcePrecondition;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.CastExpression;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.SimpleName;
 
-public class FloatMathRefactoring extends AbstractRefactoringRule{
+public class FloatMathRefactoring extends AbstractRefactoringRule implements SourcePrecondition {
+	/**
+	 * The API level (Froyo) from which the JIT makes {@link Math} faster than {@code FloatMath}:
+	 * on older devices FloatMath stays the fastest option.
+	 */
+	private static final int MATH_INTRINSICS_API_LEVEL = 8;
+
 	@Override
 	public String getName() {
 		return "FloatMathRefactoring";
 	}
+
+	@Override
+	public String[] getRequiredIdentifiers() {
+		return new String[] { "FloatMath" };
+	}
 	
 	@Override
 	public String getDescription() {
@@ -22,7 +34,8 @@ public class FloatMathRefactoring extends AbstractRefactoringRule{
 	
     @Override
     public boolean visit(MethodInvocation node) {
-    	if(node.getExpression()!=null && "FloatMath".equals(node.getExpression().toString())) {
+    	if(node.getExpression()!=null && "FloatMath".equals(node.getExpression().toString())
+    			&& this.ctx.isAndroidApiAvailable(MATH_INTRINSICS_API_LEVEL)) {
     		refactorTypeCast(node);
     		return DO_NOT_VISIT_SUBTREE;
     	}
@@ -7,6 +7,7 @@ import java.util.List;
 
 import org.autorefactor.refactoring.ASTBuilder;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.TypeHierarchyPrecondition;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.Block;
@@ -29,7 +30,7 @@ import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 
-public class HandlerLeakRefactoring extends AbstractRefactoringRule {
+public class HandlerLeakRefactoring extends AbstractRefactoringRule implements TypeHierarchyPrecondition {
 	
 	CompilationUnit cu;
 	boolean flag=true;
@@ -44,6 +45,11 @@ public class HandlerLeakRefactoring extends AbstractRefactoringRule {
 	public String getName() {
 		return "HandlerLeakRefactoring";
 	}
+
+	@Override
+	public String[] getRequiredSuperTypes() {
+		return new String[] { "android.os.Handler" };
+	}
 	
 	@Override
 	public boolean visit(CompilationUnit node) {
@@ -29,35 +29,81 @@ package org.autorefactor.refactoring.rules;
 
 import static org.autorefactor.refactoring.ASTHelper.DO_NOT_VISIT_SUBTREE;
 import static org.autorefactor.refactoring.ASTHelper.VISIT_SUBTREE;
-import static org.autorefactor.refactoring.ASTHelper.findImplementedType;
+import static org.autorefactor.refactoring.ASTHelper.as;
+import static org.autorefactor.refactoring.ASTHelper.fragments;
 import static org.autorefactor.refactoring.ASTHelper.getAncestor;
 import static org.autorefactor.refactoring.ASTHelper.getAncestorOrNull;
 import static org.autorefactor.refactoring.ASTHelper.instanceOf;
-import static org.autorefactor.refactoring.ASTHelper.isMethod;
 import static org.autorefactor.refactoring.ASTHelper.isSameLocalVariable;
+import static org.autorefactor.refactoring.ASTHelper.removeParentheses;
+import static org.autorefactor.refactoring.ASTHelper.resources;
+import static org.autorefactor.refactoring.ASTHelper.statements;
 import static org.eclipse.jdt.core.dom.InfixExpression.Operator.NOT_EQUALS;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
+import org.autorefactor.cfg.ControlFlowGraph;
+import org.autorefactor.cfg.MethodDataflow;
+import org.autorefactor.preferences.Preferences;
 import org.autorefactor.refactoring.ASTBuilder;
 import org.autorefactor.refactoring.ASTHelper;
+import org.autorefactor.refactoring.MethodTable;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.refactoring.SourcePrecondition;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.Expression;
-import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.TryStatement;
+import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.internal.corext.dom.ASTNodes;
 
 /** See {@link #getDescription()} method. */
-public class RecycleRefactoring extends AbstractRefactoringRule {
+public class RecycleRefactoring extends AbstractRefactoringRule implements SourcePrecondition {
+
+	/**
+	 * The API level (KitKat) from which try-with-resources statements can be used on Android:
+	 * they call {@code Throwable.addSuppressed()}, older projects get try/finally statements instead.
+	 */
+	private static final int TRY_WITH_RESOURCES_API_LEVEL = 19;
+
+	/** Whether to close the resources in try statements rather than before each exit. */
+	private final boolean useTryStatements;
+	/** What the methods of the current compilation unit do with the resources passed to them. */
+	private ResourceSummaries summaries;
+
+	/** Builds an instance of this class, closing the resources before each exit of their live range. */
+	public RecycleRefactoring() {
+		this(false);
+	}
+
+	/**
+	 * Builds an instance of this class.
+	 *
+	 * @param useTryStatements whether to close the resources in try-with-resources or try/finally statements
+	 *        on projects supporting Java 7, rather than before each exit of their live range.
+	 *        Try-with-resources statements are only used on projects targeting Android KitKat or later
+	 */
+	protected RecycleRefactoring(boolean useTryStatements) {
+		this.useTryStatements = useTryStatements;
+	}
 
 	@Override
 	public String getDescription() {
@@ -71,129 +117,42 @@ public class RecycleRefactoring extends AbstractRefactoringRule {
 	public String getName() {
 		return "RecycleRefactoring";
 	}
-	
-	private static boolean isMethodIgnoringParameters(MethodInvocation node,
-			String typeQualifiedName, String methodName){
-		if (node == null) {
-            return false;
-        }
-        final IMethodBinding methodBinding = node.resolveMethodBinding();
-        if (methodBinding == null ||
-        		!methodName.equals(methodBinding.getName())){
-        	return false;
-        }
-        final ITypeBinding declaringClazz = methodBinding.getDeclaringClass();
-        final ITypeBinding implementedType =
-                findImplementedType(declaringClazz, typeQualifiedName);
-        return instanceOf(declaringClazz, typeQualifiedName);
+
+	@Override
+	public boolean isEnabled(Preferences preferences) {
+		return !preferences.closeResourcesInTryStatements();
 	}
-	
-	private static boolean isMethodIgnoringParameters(MethodInvocation node,
-			String typeQualifiedName, String[] methodNames){
-		boolean isSameMethod;
-		for(String methodName: methodNames){
-			isSameMethod = isMethodIgnoringParameters(node, typeQualifiedName, methodName);
-			if(isSameMethod){
-				return true;
-			}
-		}
-		return false;
+
+	@Override
+	public String[] getRequiredIdentifiers() {
+		return new String[] {
+			"query", "rawQuery", "queryWithFactory", "rawQueryWithFactory",
+			"obtain", "obtainMessage", "obtainNoHistory", "obtainAttributes",
+			"obtainStyledAttributes", "obtainTypedArray",
+			"acquireContentProviderClient"
+		};
 	}
+	
+	private static final String[] QUERY_METHODS = { "query", "rawQuery", "queryWithFactory", "rawQueryWithFactory" };
+	/** The methods acquiring a resource, associated with the name of the method releasing it. */
+	private static final MethodTable<String> CLEANUP_METHODS = new MethodTable<String>()
+			.putIgnoringParameters("close", "android.database.sqlite.SQLiteDatabase", QUERY_METHODS)
+			.putIgnoringParameters("close", "android.content.ContentProvider", QUERY_METHODS)
+			.putIgnoringParameters("close", "android.content.ContentResolver", QUERY_METHODS)
+			.putIgnoringParameters("close", "android.content.ContentProviderClient", QUERY_METHODS)
+			.putIgnoringParameters("recycle", "android.content.Context", "obtainStyledAttributes")
+			.putIgnoringParameters("recycle", "android.content.res.Resources",
+					"obtainTypedArray", "obtainAttributes", "obtainStyledAttributes")
+			.put("recycle", "android.view.VelocityTracker", "obtain")
+			.putIgnoringParameters("recycle", "android.os.Handler", "obtainMessage")
+			.putIgnoringParameters("recycle", "android.os.Message", "obtain")
+			.put("recycle", "android.view.MotionEvent", "obtainNoHistory", "android.view.MotionEvent")
+			.putIgnoringParameters("recycle", "android.view.MotionEvent", "obtain")
+			.put("recycle", "android.os.Parcel", "obtain")
+			.putIgnoringParameters("release", "android.content.ContentResolver", "acquireContentProviderClient");
 
 	private String methodNameToCleanupResource(MethodInvocation node){
-		if(isMethodIgnoringParameters(
-			node,
-			"android.database.sqlite.SQLiteDatabase",
-			new String[]{"query","rawQuery","queryWithFactory","rawQueryWithFactory"})
-		){
-			return "close";
-		}
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.content.ContentProvider",
-			new String[]{"query","rawQuery","queryWithFactory","rawQueryWithFactory"})
-		){
-			return "close";
-		}
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.content.ContentResolver",
-			new String[]{"query","rawQuery","queryWithFactory","rawQueryWithFactory"})
-		){
-			return "close";
-		}
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.content.ContentProviderClient",
-			new String[]{"query","rawQuery","queryWithFactory","rawQueryWithFactory"})
-		){
-			return "close";
-		}
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.content.Context",
-			"obtainStyledAttributes")
-		){
-			return "recycle";
-		}
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.content.res.Resources",
-			new String[]{"obtainTypedArray","obtainAttributes","obtainStyledAttributes"})
-		){
-			return "recycle";
-		}
-		else if(isMethod(
-			node,
-			"android.view.VelocityTracker",
-			"obtain")
-		){
-			return "recycle";
-		}
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.os.Handler",
-			"obtainMessage")
-		){
-			return "recycle";
-		}
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.os.Message",
-			"obtain")
-		){
-			return "recycle";
-		}
-		else if(isMethod(
-			node,
-			"android.view.MotionEvent",
-			"obtainNoHistory", "android.view.MotionEvent")
-		){
-			return "recycle";
-		}
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.view.MotionEvent",
-			"obtain")
-		){
-			return "recycle";
-		}
-		else if(isMethod(
-			node,
-			"android.os.Parcel",
-			"obtain")
-		){
-			return "recycle";
-		}
-
-		else if(isMethodIgnoringParameters(
-			node,
-			"android.content.ContentResolver",
-			"acquireContentProviderClient")
-		){
-			return "release";
-		}
-		return null;
+		return CLEANUP_METHODS.get(node);
 	}
 	
     @Override
@@ -201,6 +160,10 @@ public class RecycleRefactoring extends AbstractRefactoringRule {
 		final ASTBuilder b = this.ctx.getASTBuilder();
 		final Refactorings r = this.ctx.getRefactorings();
 		String recycleMethodName = methodNameToCleanupResource(node);
+		if (recycleMethodName != null && isTryResource(node)) {
+			// already closed by the try-with-resources statement
+			return VISIT_SUBTREE;
+		}
 		if(recycleMethodName != null){
 			SimpleName cursorExpression = null;
 			ASTNode variableAssignmentNode = null;
@@ -214,12 +177,36 @@ public class RecycleRefactoring extends AbstractRefactoringRule {
 				cursorExpression = (SimpleName) variableAssignment.getLeftHandSide();
 				variableAssignmentNode = variableAssignment;
 			}
+			if (summaries == null || !summaries.isFor(this.ctx)) {
+				summaries = new ResourceSummaries(this.ctx, (CompilationUnit) node.getRoot());
+			}
 			// Check whether it has been closed
 			ClosePresenceChecker closePresenceChecker = new ClosePresenceChecker(cursorExpression, recycleMethodName);
 			VisitorDecorator visitor = new VisitorDecorator(variableAssignmentNode, cursorExpression, closePresenceChecker);
     		Block block = (Block) ASTNodes.getParent(node, ASTNode.BLOCK);
     		block.accept(visitor);
-    		if(!closePresenceChecker.closePresent){
+    		if (closePresenceChecker.escapes) {
+    			// stored or closed somewhere else: the acquirer is not the one responsible for closing it
+    			return VISIT_SUBTREE;
+    		}
+    		final ControlFlowGraph cfg = getControlFlowGraph(node);
+    		final int acquisition = cfg != null ? cfg.getBlockIndex(variableAssignmentNode) : -1;
+    		final BitSet closeBlocks = acquisition >= 0 ? getBlocks(cfg, closePresenceChecker.closeInvocations) : null;
+    		final boolean closedOnAllPaths;
+    		if (closeBlocks != null) {
+    			closedOnAllPaths = !closeBlocks.isEmpty() && cfg.allPathsReach(acquisition, closeBlocks);
+    		} else {
+    			// without control flow graph, only refactor resources which are never closed
+    			closedOnAllPaths = closePresenceChecker.closePresent;
+    		}
+    		if (!closedOnAllPaths && !closePresenceChecker.closePresent && useTryStatements
+    				&& this.ctx.getJavaProjectOptions().getJavaSERelease().isCompatibleWith(Release.javaSE("1.7.0"))
+    				&& variableAssignmentNode instanceof VariableDeclarationFragment
+    				&& closeInTryStatement((VariableDeclarationFragment) variableAssignmentNode, node,
+    						closePresenceChecker, recycleMethodName)) {
+    			return DO_NOT_VISIT_SUBTREE;
+    		}
+    		if(!closedOnAllPaths){
 				Statement lastCursorAccess = closePresenceChecker.getLastCursorStatementInBlock(block);
 				if (closePresenceChecker.returns.size() > 0) {
 					closePresenceChecker.returns.size();
@@ -230,17 +217,19 @@ public class RecycleRefactoring extends AbstractRefactoringRule {
 					Expression returnExpr = returnStmt.getExpression();
 					if(returnExpr!=null) {
 						final ITypeBinding returnType = returnExpr.resolveTypeBinding();
-						if (returnType != cursorExpression.resolveTypeBinding()) {
+						if (returnType != cursorExpression.resolveTypeBinding()
+								&& mayCloseAt(cfg, closeBlocks, returnStmt)) {
 							Statement stmt = getCloseResourceStmt(recycleMethodName, cursorExpression, b);
 							r.insertBefore(stmt, returnStmt);
 						}
-					} else {
+					} else if (mayCloseAt(cfg, closeBlocks, returnStmt)) {
 						Statement stmt = getCloseResourceStmt(recycleMethodName, cursorExpression, b);
 						r.insertBefore(stmt, returnStmt);
 					}
 				}
 
-				if (lastCursorAccess.getNodeType() != ASTNode.RETURN_STATEMENT) {
+				if (lastCursorAccess.getNodeType() != ASTNode.RETURN_STATEMENT
+						&& mayCloseAt(cfg, closeBlocks, lastCursorAccess)) {
 					Statement stmt = getCloseResourceStmt(recycleMethodName, cursorExpression, b);
 					r.insertAfter(stmt, lastCursorAccess);
 					return DO_NOT_VISIT_SUBTREE;
@@ -250,6 +239,204 @@ public class RecycleRefactoring extends AbstractRefactoringRule {
     	return VISIT_SUBTREE;
     }
     
+	/** Returns whether the provided acquisition initializes the resource of a try-with-resources statement. */
+	private static boolean isTryResource(MethodInvocation acquisition) {
+		final ASTNode fragment = acquisition.getParent();
+		return fragment instanceof VariableDeclarationFragment
+				&& ((VariableDeclarationFragment) fragment).getInitializer() == acquisition
+				&& fragment.getParent() instanceof VariableDeclarationExpression
+				&& fragment.getParent().getParent() instanceof TryStatement;
+	}
+
+	/**
+	 * Wraps the live range of the resource in a try-with-resources statement,
+	 * or in a try/finally statement when the resource is only recycled.
+	 *
+	 * @return true if the live range has been wrapped, false if it cannot be wrapped in a try statement
+	 */
+	private boolean closeInTryStatement(VariableDeclarationFragment fragment, MethodInvocation acquisition,
+			ClosePresenceChecker closePresenceChecker, String recycleMethodName) {
+		final VariableDeclarationStatement declaration =
+				as((Statement) ASTNodes.getParent(fragment, ASTNode.VARIABLE_DECLARATION_STATEMENT),
+						VariableDeclarationStatement.class);
+		if (declaration == null
+				|| fragments(declaration).size() != 1
+				|| !declaration.modifiers().isEmpty()
+				|| !(declaration.getParent() instanceof Block)
+				|| removeParentheses(fragment.getInitializer()) != acquisition) {
+			return false;
+		}
+		for (ClosePresenceChecker.ReturnStatementExtra returnInfo : closePresenceChecker.returns) {
+			final Expression returnExpr = returnInfo.returnStmt.getExpression();
+			if (returnExpr != null && isSameLocalVariable(fragment.getName(), removeParentheses(returnExpr))) {
+				// the caller is responsible for closing the returned resource
+				return false;
+			}
+		}
+
+		final List<Statement> stmts = statements((Block) declaration.getParent());
+		final int start = stmts.indexOf(declaration) + 1;
+		final int end = getLiveRangeEnd(fragment, stmts, start);
+		if (end < start) {
+			return false;
+		}
+
+		final ASTBuilder b = this.ctx.getASTBuilder();
+		final Refactorings r = this.ctx.getRefactorings();
+		final Block body = b.block();
+		for (Statement stmt : stmts.subList(start, end + 1)) {
+			statements(body).add(b.move(stmt));
+		}
+		final TryStatement tryStmt = b.try0(body);
+		final ITypeBinding resourceType = fragment.getName().resolveTypeBinding();
+		if ("close".equals(recycleMethodName) && instanceOf(resourceType, "java.lang.AutoCloseable")
+				&& this.ctx.isAndroidApiAvailable(TRY_WITH_RESOURCES_API_LEVEL)) {
+			// move the type and the initializer: the rewrite cannot format a moved fragment in a resource
+			final VariableDeclarationFragment resourceFragment = b.getAST().newVariableDeclarationFragment();
+			resourceFragment.setName(b.copy(fragment.getName()));
+			resourceFragment.setInitializer(b.move(fragment.getInitializer()));
+			final VariableDeclarationExpression resource =
+					b.getAST().newVariableDeclarationExpression(resourceFragment);
+			resource.setType(b.move(declaration.getType()));
+			resources(tryStmt).add(resource);
+			r.remove(declaration);
+			r.usesJavaSESyntax();
+		} else {
+			tryStmt.setFinally(b.block(getCloseResourceStmt(recycleMethodName, fragment.getName(), b)));
+		}
+		r.insertAfter(tryStmt, declaration);
+		return true;
+	}
+
+	/**
+	 * Returns the index of the last statement of the live range of the resource,
+	 * i.e. of the last statement reading the acquired value according to the reaching definitions,
+	 * extended to the statements using the variables declared in the live range.
+	 * Returns -1 when the live range cannot be wrapped, for example when the variable is reassigned.
+	 */
+	private int getLiveRangeEnd(final VariableDeclarationFragment fragment, List<Statement> stmts, int start) {
+		final MethodDeclaration method = getAncestorOrNull(fragment, MethodDeclaration.class);
+		final MethodDataflow dataflow = method != null ? this.ctx.getDataflow(method) : null;
+		if (dataflow == null) {
+			return -1;
+		}
+		final List<SimpleName> uses = new ArrayList<SimpleName>();
+		method.getBody().accept(new ASTVisitor() {
+			@Override
+			public boolean visit(SimpleName node) {
+				if (node != fragment.getName() && isSameLocalVariable(node, fragment.getName())) {
+					uses.add(node);
+				}
+				return VISIT_SUBTREE;
+			}
+		});
+		int end = -1;
+		for (SimpleName use : uses) {
+			if (use.getParent() instanceof Assignment && ((Assignment) use.getParent()).getLeftHandSide() == use) {
+				// try-with-resources variables are final, and a finally block would close another resource
+				return -1;
+			}
+			if (dataflow.getReachingDefinitions(use).contains(fragment)) {
+				final int index = indexOfStatementContaining(stmts, use);
+				if (index < start) {
+					return -1;
+				}
+				end = Math.max(end, index);
+			}
+		}
+		return end >= start ? extendOverDeclarations(stmts, start, end) : -1;
+	}
+
+	private static int indexOfStatementContaining(List<Statement> stmts, ASTNode node) {
+		for (ASTNode n = node; n != null; n = n.getParent()) {
+			if (n instanceof Statement && stmts.contains(n)) {
+				return stmts.indexOf(n);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Extends the provided range of statements so the local variables it declares
+	 * are not used out of their scope once the range is wrapped in a try statement.
+	 */
+	private static int extendOverDeclarations(List<Statement> stmts, int start, int end) {
+		final Set<IBinding> declared = new HashSet<IBinding>();
+		for (Statement stmt : stmts.subList(start, end + 1)) {
+			if (stmt instanceof TypeDeclarationStatement) {
+				return -1;
+			}
+			final VariableDeclarationStatement vds = as(stmt, VariableDeclarationStatement.class);
+			if (vds != null) {
+				for (VariableDeclarationFragment vdf : fragments(vds)) {
+					declared.add(vdf.resolveBinding());
+				}
+			}
+		}
+		for (int i = stmts.size() - 1; i > end; i--) {
+			if (usesAny(stmts.get(i), declared)) {
+				return extendOverDeclarations(stmts, start, i);
+			}
+		}
+		return end;
+	}
+
+	private static boolean usesAny(Statement stmt, final Set<IBinding> bindings) {
+		final boolean[] result = new boolean[1];
+		stmt.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(SimpleName node) {
+				if (bindings.contains(node.resolveBinding())) {
+					result[0] = true;
+				}
+				return !result[0];
+			}
+		});
+		return result[0];
+	}
+
+	private ControlFlowGraph getControlFlowGraph(ASTNode node) {
+		final MethodDeclaration method = getAncestorOrNull(node, MethodDeclaration.class);
+		return method != null ? this.ctx.getControlFlowGraph(method) : null;
+	}
+
+	/**
+	 * Returns the blocks evaluating the provided nodes,
+	 * or null if one of them is not in the control flow graph, like in an anonymous class.
+	 */
+	private static BitSet getBlocks(ControlFlowGraph cfg, List<? extends ASTNode> nodes) {
+		final BitSet results = new BitSet(cfg.getNbBlocks());
+		for (ASTNode node : nodes) {
+			final int index = cfg.getBlockIndex(node);
+			if (index < 0) {
+				return null;
+			}
+			results.set(index);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns whether closing the resource at the provided statement cannot close it twice,
+	 * i.e. whether no path goes through both this statement and one of the existing close calls.
+	 */
+	private static boolean mayCloseAt(ControlFlowGraph cfg, BitSet closeBlocks, Statement stmt) {
+		if (closeBlocks == null || closeBlocks.isEmpty()) {
+			return true;
+		}
+		final int index = cfg.getBlockIndex(stmt);
+		if (index < 0 || cfg.isReachable(index, closeBlocks)) {
+			return false;
+		}
+		for (int closeBlock = closeBlocks.nextSetBit(0); closeBlock >= 0;
+				closeBlock = closeBlocks.nextSetBit(closeBlock + 1)) {
+			if (cfg.isReachable(closeBlock, index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private Statement getCloseResourceStmt(String recycleMethodName, SimpleName cursorExpression, final ASTBuilder b) {
 		MethodInvocation closeInvocation = b.invoke(b.copy(cursorExpression), recycleMethodName);
 		Statement stmt = b.if0(b.infixExpr(b.copy(cursorExpression), NOT_EQUALS, b.getAST().newNullLiteral()),
@@ -263,6 +450,10 @@ public class RecycleRefactoring extends AbstractRefactoringRule {
     	private SimpleName lastCursorUse;
     	private SimpleName cursorSimpleName;
 		private String recycleMethodName;
+		/** Whether the resource escapes, i.e. it is stored, aliased or only closed on some paths by a callee. */
+		private boolean escapes;
+		/** The close calls, including calls to methods of this compilation unit closing the resource. */
+		private final List<ASTNode> closeInvocations = new ArrayList<ASTNode>();
 		private ArrayList<ReturnStatementExtra> returns = new ArrayList<ReturnStatementExtra>();
 		private ArrayList<ReturnStatementExtra> returnsAfterCloseStatement = new ArrayList<ReturnStatementExtra>();
 
@@ -305,6 +496,7 @@ public class RecycleRefactoring extends AbstractRefactoringRule {
 			if (isSameLocalVariable(cursorSimpleName, node.getExpression())) {
 				if (this.recycleMethodName.equals(node.getName().getIdentifier())) {
 					this.closePresent = true;
+					this.closeInvocations.add(node);
 					return DO_NOT_VISIT_SUBTREE;
 				}
 			}
@@ -314,6 +506,17 @@ public class RecycleRefactoring extends AbstractRefactoringRule {
 		@Override
 		public boolean visit(SimpleName node) {
 			if (isSameLocalVariable(node, cursorSimpleName)) {
+				switch (summaries.getUseSummary(node, recycleMethodName)) {
+				case CLOSED:
+					this.closePresent = true;
+					this.closeInvocations.add(ResourceSummaries.getUser(node));
+					break;
+				case ESCAPED:
+					this.escapes = true;
+					break;
+				default:
+					break;
+				}
 				this.lastCursorUse = node;
 				returns.addAll(returnsAfterCloseStatement);
 				returnsAfterCloseStatement.clear();
@@ -0,0 +1,56 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import org.autorefactor.preferences.Preferences;
+
+/** See {@link #getDescription()} method. */
+public class RecycleWithTryRefactoring extends RecycleRefactoring {
+
+    /** Builds an instance of this class. */
+    public RecycleWithTryRefactoring() {
+        super(true);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Many resources, such as Cursors, TypedArrays, VelocityTrackers, etc., should be "
+                + "recycled (with a recycle()/close() call) after use. "
+                + "On Java 7 projects, the live range of the resource is wrapped in a try-with-resources statement, "
+                + "or in a try/finally statement for the resources which can only be recycled, "
+                + "so the resource is also released on the exception paths.";
+    }
+
+    @Override
+    public String getName() {
+        return "RecycleWithTryRefactoring";
+    }
+
+    @Override
+    public boolean isEnabled(Preferences preferences) {
+        return preferences.closeResourcesInTryStatements();
+    }
+}
@@ -25,6 +25,9 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import org.autorefactor.cfg.ControlFlowGraph;
+import org.autorefactor.cfg.ControlFlowGraphCache;
+import org.autorefactor.cfg.MethodDataflow;
 import org.autorefactor.refactoring.ASTBuilder;
 import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.Refactorings;
@@ -36,6 +39,7 @@ import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.Comment;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.autorefactor.refactoring.SourceLocation.*;
@@ -46,11 +50,15 @@ import static org.autorefactor.refactoring.SourceLocation.*;
 public class RefactoringContext {
 
     private final ICompilationUnit compilationUnit;
+    /** The source of the compilation unit when it does not come from the java model. */
+    private final String source;
     private final CompilationUnit astRoot;
     private final Refactorings refactorings;
     private final ASTBuilder astBuilder;
     private final JavaProjectOptions options;
     private final IProgressMonitor monitor;
+    /** Shared by all the refactoring rules of a pass, created on first use. */
+    private ControlFlowGraphCache cfgCache;
 
     /**
      * Builds an instance of this class.
@@ -62,10 +70,30 @@ public class RefactoringContext {
      */
     public RefactoringContext(ICompilationUnit compilationUnit, CompilationUnit astRoot,
             JavaProjectOptions options, IProgressMonitor monitor) {
+        this(compilationUnit, null, astRoot, options, monitor);
+    }
+
+    /**
+     * Builds an instance of this class for a compilation unit parsed from a source string,
+     * outside of the java model. {@link #getCompilationUnit()} returns null for such instances.
+     *
+     * @param source the source of the compilation unit to refactor
+     * @param astRoot the compilation unit, root of the AST
+     * @param options the Java project options used to compile the project
+     * @param monitor the progress monitor of the current job
+     */
+    public RefactoringContext(String source, CompilationUnit astRoot,
+            JavaProjectOptions options, IProgressMonitor monitor) {
+        this(null, source, astRoot, options, monitor);
+    }
+
+    private RefactoringContext(ICompilationUnit compilationUnit, String source, CompilationUnit astRoot,
+            JavaProjectOptions options, IProgressMonitor monitor) {
         this.compilationUnit = compilationUnit;
+        this.source = source;
         this.astRoot = astRoot;
         this.monitor = monitor;
-        this.refactorings = new Refactorings(astRoot);
+        this.refactorings = new Refactorings(astRoot, options != null ? options.getJavaSERelease() : null);
         this.astBuilder = new ASTBuilder(refactorings);
         this.options = options;
     }
@@ -91,7 +119,7 @@ public class RefactoringContext {
     /**
      * Returns the compilation unit to refactor.
      *
-     * @return the compilation unit to refactor
+     * @return the compilation unit to refactor, or null if it was parsed from a source string
      */
     public ICompilationUnit getCompilationUnit() {
         return compilationUnit;
@@ -106,6 +134,46 @@ public class RefactoringContext {
         return options;
     }
 
+    /**
+     * Returns the minimum Android API level supported by the project.
+     *
+     * @return the minimum Android API level supported by the project, or 0 when it is unknown
+     */
+    public int getAndroidMinSdkVersion() {
+        return options.getAndroidMinSdkVersion();
+    }
+
+    /**
+     * Returns whether the Android APIs introduced in the provided API level can be used by the project.
+     * They are assumed unavailable when the minimum API level of the project is unknown,
+     * since the refactored code would fail at runtime on older devices.
+     *
+     * @param apiLevel the API level introducing the Android APIs
+     * @return true if the Android APIs introduced in the provided API level can be used, false otherwise
+     */
+    public boolean isAndroidApiAvailable(int apiLevel) {
+        final int minSdkVersion = getAndroidMinSdkVersion();
+        return minSdkVersion != 0 && minSdkVersion >= apiLevel;
+    }
+
+    /**
+     * Returns whether the provided type is on the classpath of the project.
+     * It is assumed absent when the compilation unit was parsed from a source string.
+     *
+     * @param qualifiedTypeName the fully qualified name of the type
+     * @return true if the provided type is on the classpath of the project, false otherwise
+     */
+    public boolean isTypeOnClasspath(String qualifiedTypeName) {
+        if (compilationUnit == null) {
+            return false;
+        }
+        try {
+            return compilationUnit.getJavaProject().findType(qualifiedTypeName) != null;
+        } catch (JavaModelException e) {
+            throw new UnhandledException(astRoot, e);
+        }
+    }
+
     /**
      * Returns the progress monitor of the current job.
      *
@@ -124,7 +192,57 @@ public class RefactoringContext {
         return refactorings;
     }
 
+    /**
+     * Returns the control flow graph of the provided method, built the first time it is requested
+     * and shared by all the refactoring rules until the method is refactored.
+     *
+     * @param node the method declaration
+     * @return the control flow graph of the provided method,
+     *         or null if the method has no body or its control flow graph cannot be built
+     */
+    public ControlFlowGraph getControlFlowGraph(MethodDeclaration node) {
+        return getControlFlowGraphCache(node).getControlFlowGraph(node);
+    }
+
+    /**
+     * Returns the dataflow information of the provided method, computed the first time it is requested
+     * and shared by all the refactoring rules until the method is refactored.
+     *
+     * @param node the method declaration
+     * @return the dataflow information of the provided method,
+     *         or null if the method has no body or its control flow graph cannot be built
+     */
+    public MethodDataflow getDataflow(MethodDeclaration node) {
+        return getControlFlowGraphCache(node).getDataflow(node);
+    }
+
+    private ControlFlowGraphCache getControlFlowGraphCache(ASTNode node) {
+        if (cfgCache == null) {
+            final ControlFlowGraphCache cache = new ControlFlowGraphCache(getSource(node), options);
+            refactorings.addRefactoredNodeListener(new Refactorings.RefactoredNodeListener() {
+                @Override
+                public void nodeRefactored(ASTNode refactoredNode) {
+                    cache.invalidate(refactoredNode);
+                }
+            });
+            cfgCache = cache;
+        }
+        return cfgCache;
+    }
+
+    /**
+     * Returns the cache of control flow graphs shared by the refactoring rules, for statistics.
+     *
+     * @return the cache of control flow graphs, or null if no refactoring rule used it
+     */
+    public ControlFlowGraphCache getControlFlowGraphCache() {
+        return cfgCache;
+    }
+
     String getSource(ASTNode node) {
+        if (compilationUnit == null) {
+            return source;
+        }
         try {
             return compilationUnit.getSource();
         } catch (JavaModelException e) {
@@ -0,0 +1,202 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Collects profiling data about the refactoring rules: time spent in each rule, number of visited nodes
+ * and number of contributed refactorings, along with the number of fixpoint loops done for each file.
+ * <p>
+ * A single instance is shared by all the workers of a run, hence it is thread safe.
+ * Each {@link AggregateASTVisitor} accumulates its own data and reports it once per file
+ * to avoid contention.
+ */
+public class RefactoringRulesProfiler {
+    private static final int NB_FILES_IN_SUMMARY = 10;
+
+    /** Data about one file. */
+    private static final class FileData {
+        private final String path;
+        private final int nbLoops;
+        private final long nanos;
+        private final int nbSavesAvoided;
+
+        private FileData(String path, int nbLoops, long nanos, int nbSavesAvoided) {
+            this.path = path;
+            this.nbLoops = nbLoops;
+            this.nanos = nanos;
+            this.nbSavesAvoided = nbSavesAvoided;
+        }
+    }
+
+    private final long startTime = System.nanoTime();
+    /** Rule name => { nanoseconds, number of visits, number of refactorings }. */
+    private final Map<String, long[]> rulesData = new HashMap<String, long[]>();
+    private final List<FileData> filesData = new ArrayList<FileData>();
+
+    /**
+     * Adds profiling data for a refactoring rule.
+     *
+     * @param ruleName the refactoring rule name
+     * @param nanos the time spent in the refactoring rule, in nanoseconds
+     * @param nbVisits the number of nodes visited by the refactoring rule
+     * @param nbRefactorings the number of refactorings contributed by the refactoring rule
+     */
+    public synchronized void addRuleData(String ruleName, long nanos, long nbVisits, long nbRefactorings) {
+        long[] data = rulesData.get(ruleName);
+        if (data == null) {
+            data = new long[3];
+            rulesData.put(ruleName, data);
+        }
+        data[0] += nanos;
+        data[1] += nbVisits;
+        data[2] += nbRefactorings;
+    }
+
+    /**
+     * Adds profiling data for a refactored file.
+     *
+     * @param path the file path
+     * @param nbLoops the number of fixpoint loops done on the file, each one on a newly parsed compilation unit
+     * @param nanos the time spent refactoring the file, in nanoseconds
+     * @param nbSavesAvoided the number of intermediate saves of the file avoided by saving it only once
+     *        after the last loop, the number of parses being unchanged
+     */
+    public synchronized void addFileData(String path, int nbLoops, long nanos, int nbSavesAvoided) {
+        filesData.add(new FileData(path, nbLoops, nanos, nbSavesAvoided));
+    }
+
+    /**
+     * Returns a human readable summary of the profiling data.
+     *
+     * @return a human readable summary of the profiling data
+     */
+    public synchronized String getSummary() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Refactoring rules profile: ").append(filesData.size()).append(" files refactored in ")
+            .append(toMillis(System.nanoTime() - startTime)).append(" ms\n");
+        sb.append(String.format("%-45s %12s %12s %12s%n", "Rule", "Time (ms)", "Visits", "Refactorings"));
+        for (Entry<String, long[]> entry : getSortedRulesData()) {
+            final long[] data = entry.getValue();
+            sb.append(String.format("%-45s %12d %12d %12d%n", entry.getKey(), toMillis(data[0]), data[1], data[2]));
+        }
+
+        final List<FileData> sortedFiles = getSortedFilesData();
+        final int nbFiles = Math.min(NB_FILES_IN_SUMMARY, sortedFiles.size());
+        sb.append("Slowest files:\n");
+        sb.append(String.format("%-80s %12s %12s%n", "File", "Time (ms)", "Loops"));
+        for (FileData file : sortedFiles.subList(0, nbFiles)) {
+            sb.append(String.format("%-80s %12d %12d%n", file.path, toMillis(file.nanos), file.nbLoops));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the profiling data as JSON to the provided writer.
+     *
+     * @param writer the writer where to write the JSON data
+     * @throws IOException if an I/O problem occurs
+     */
+    public synchronized void writeJson(Writer writer) throws IOException {
+        writer.write("{\n  \"totalNanos\": " + (System.nanoTime() - startTime) + ",\n");
+        writer.write("  \"rules\": [");
+        boolean first = true;
+        for (Entry<String, long[]> entry : getSortedRulesData()) {
+            final long[] data = entry.getValue();
+            writer.write(first ? "\n" : ",\n");
+            writer.write("    { \"name\": " + toJsonString(entry.getKey())
+                + ", \"nanos\": " + data[0]
+                + ", \"visits\": " + data[1]
+                + ", \"refactorings\": " + data[2] + " }");
+            first = false;
+        }
+        writer.write("\n  ],\n  \"files\": [");
+        first = true;
+        for (FileData file : getSortedFilesData()) {
+            writer.write(first ? "\n" : ",\n");
+            writer.write("    { \"path\": " + toJsonString(file.path)
+                + ", \"nanos\": " + file.nanos
+                + ", \"loops\": " + file.nbLoops
+                + ", \"savesAvoided\": " + file.nbSavesAvoided + " }");
+            first = false;
+        }
+        writer.write("\n  ]\n}\n");
+    }
+
+    private List<Entry<String, long[]>> getSortedRulesData() {
+        final List<Entry<String, long[]>> results = new ArrayList<Entry<String, long[]>>(rulesData.entrySet());
+        Collections.sort(results, new Comparator<Entry<String, long[]>>() {
+            @Override
+            public int compare(Entry<String, long[]> e1, Entry<String, long[]> e2) {
+                return compareDescending(e1.getValue()[0], e2.getValue()[0]);
+            }
+        });
+        return results;
+    }
+
+    private List<FileData> getSortedFilesData() {
+        final List<FileData> results = new ArrayList<FileData>(filesData);
+        Collections.sort(results, new Comparator<FileData>() {
+            @Override
+            public int compare(FileData f1, FileData f2) {
+                return compareDescending(f1.nanos, f2.nanos);
+            }
+        });
+        return results;
+    }
+
+    private static int compareDescending(long l1, long l2) {
+        return l1 > l2 ? -1 : (l1 == l2 ? 0 : 1);
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    private static String toJsonString(String s) {
+        final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
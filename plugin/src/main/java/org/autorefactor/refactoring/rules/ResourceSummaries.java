@@ -0,0 +1,301 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.autorefactor.cfg.ControlFlowGraph;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.ArrayInitializer;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConditionalExpression;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/**
+ * Summarizes what the methods of a compilation unit do with the resources, like cursors or typed arrays,
+ * passed as arguments: whether they close them, let them escape, or only use them.
+ * <p>
+ * Summaries are computed on demand, following the calls to other methods of the same compilation unit,
+ * and cached for the compilation unit. Methods declared in other compilation units are assumed
+ * to only use their arguments. Recursive calls are assumed to let the resources escape,
+ * and the summaries relying on this assumption for another method than their own are not cached.
+ */
+final class ResourceSummaries {
+
+    /** What a method, or a single use of a variable, does with a resource. */
+    enum Summary {
+        /** The resource is only used, it remains open. */
+        USED,
+        /** The resource is closed, on all the paths for a method. */
+        CLOSED,
+        /**
+         * The resource may be stored, aliased, or only closed on some paths:
+         * whoever acquired it cannot decide where to close it.
+         */
+        ESCAPED
+    }
+
+    private final RefactoringContext ctx;
+    private final CompilationUnit astRoot;
+    /** Summaries keyed by method binding key, parameter index and cleanup method name. */
+    private final Map<String, Summary> summaries = new HashMap<String, Summary>();
+    /** Depth in the call chain of the summaries being computed, keyed like {@link #summaries}. */
+    private final Map<String, Integer> summariesInProgress = new HashMap<String, Integer>();
+    /** Lowest depth of the summaries in progress assumed by recursive calls while computing the current summary. */
+    private int assumedSummaryDepth = Integer.MAX_VALUE;
+
+    ResourceSummaries(RefactoringContext ctx, CompilationUnit astRoot) {
+        this.ctx = ctx;
+        this.astRoot = astRoot;
+    }
+
+    /**
+     * Returns whether these summaries were computed for the compilation unit of the provided context.
+     *
+     * @param ctx the current refactoring context
+     * @return true if these summaries can be used with the provided context, false otherwise
+     */
+    boolean isFor(RefactoringContext ctx) {
+        return this.ctx == ctx;
+    }
+
+    /**
+     * Returns the node using the provided variable access, ignoring parentheses, casts and conditional expressions.
+     *
+     * @param use a variable access
+     * @return the node using the provided variable access
+     */
+    static ASTNode getUser(SimpleName use) {
+        return getUsedExpression(use).getParent();
+    }
+
+    /** Returns the outermost expression evaluating to the value of the provided variable access. */
+    private static ASTNode getUsedExpression(SimpleName use) {
+        ASTNode expr = use;
+        while (expr.getParent() instanceof ParenthesizedExpression
+                || expr.getParent() instanceof CastExpression
+                || (expr.getParent() instanceof ConditionalExpression
+                        && ((ConditionalExpression) expr.getParent()).getExpression() != expr)) {
+            expr = expr.getParent();
+        }
+        return expr;
+    }
+
+    /**
+     * Returns what the provided use of a local variable holding a resource does with the resource.
+     * Returning the resource is reported as a simple use: callers decide how to handle it.
+     *
+     * @param use an access to a local variable holding a resource
+     * @param cleanupMethodName the name of the method closing the resource, like "close" or "recycle"
+     * @return what the provided use does with the resource
+     */
+    Summary getUseSummary(SimpleName use, String cleanupMethodName) {
+        if (isCaptured(use)) {
+            return Summary.ESCAPED;
+        }
+        final ASTNode expr = getUsedExpression(use);
+        final ASTNode user = expr.getParent();
+        if (user instanceof MethodInvocation) {
+            final MethodInvocation mi = (MethodInvocation) user;
+            if (mi.getExpression() == expr) {
+                return cleanupMethodName.equals(mi.getName().getIdentifier()) ? Summary.CLOSED : Summary.USED;
+            }
+            return getArgumentSummary(mi.resolveMethodBinding(), arguments(mi), expr, cleanupMethodName);
+        } else if (user instanceof SuperMethodInvocation) {
+            final SuperMethodInvocation smi = (SuperMethodInvocation) user;
+            return getArgumentSummary(smi.resolveMethodBinding(), arguments(smi), expr, cleanupMethodName);
+        } else if (user instanceof ClassInstanceCreation) {
+            final ClassInstanceCreation cic = (ClassInstanceCreation) user;
+            return getArgumentSummary(cic.resolveConstructorBinding(), arguments(cic), expr, cleanupMethodName);
+        } else if (user instanceof ConstructorInvocation) {
+            final ConstructorInvocation ci = (ConstructorInvocation) user;
+            return getArgumentSummary(ci.resolveConstructorBinding(), arguments(ci), expr, cleanupMethodName);
+        } else if (user instanceof SuperConstructorInvocation) {
+            final SuperConstructorInvocation sci = (SuperConstructorInvocation) user;
+            return getArgumentSummary(sci.resolveConstructorBinding(), arguments(sci), expr, cleanupMethodName);
+        } else if (user instanceof Assignment) {
+            // stored in a field, an array element or another variable
+            return ((Assignment) user).getLeftHandSide() != expr ? Summary.ESCAPED : Summary.USED;
+        } else if (user instanceof VariableDeclarationFragment) {
+            return ((VariableDeclarationFragment) user).getName() != expr ? Summary.ESCAPED : Summary.USED;
+        } else if (user instanceof ArrayInitializer) {
+            return Summary.ESCAPED;
+        }
+        return Summary.USED;
+    }
+
+    /** Whether the variable is used from an anonymous or local class, which may run at any time. */
+    private static boolean isCaptured(SimpleName use) {
+        final IVariableBinding binding = (IVariableBinding) use.resolveBinding();
+        final MethodDeclaration method = getAncestorOrNull(use, MethodDeclaration.class);
+        if (binding == null || method == null || binding.getDeclaringMethod() == null) {
+            return false;
+        }
+        return !binding.getDeclaringMethod().isEqualTo(method.resolveBinding());
+    }
+
+    private Summary getArgumentSummary(IMethodBinding method, List<Expression> arguments, ASTNode argument,
+            String cleanupMethodName) {
+        for (int i = 0; i < arguments.size(); i++) {
+            if (arguments.get(i) == argument) {
+                return getSummary(method, i, cleanupMethodName);
+            }
+        }
+        return Summary.USED;
+    }
+
+    /**
+     * Returns what the provided method does with the resource passed as the provided argument.
+     *
+     * @param method the invoked method
+     * @param argumentIndex the index of the argument holding the resource
+     * @param cleanupMethodName the name of the method closing the resource, like "close" or "recycle"
+     * @return what the provided method does with the resource passed as the provided argument
+     */
+    Summary getSummary(IMethodBinding method, int argumentIndex, String cleanupMethodName) {
+        if (method == null) {
+            return Summary.USED;
+        }
+        final ASTNode declaringNode = astRoot.findDeclaringNode(method.getMethodDeclaration());
+        if (!(declaringNode instanceof MethodDeclaration) || ((MethodDeclaration) declaringNode).getBody() == null) {
+            // declared in another compilation unit
+            return Summary.USED;
+        }
+        final MethodDeclaration methodDecl = (MethodDeclaration) declaringNode;
+        final int nbParameters = parameters(methodDecl).size();
+        if (argumentIndex >= nbParameters - 1 && methodDecl.isVarargs()) {
+            return Summary.ESCAPED;
+        }
+
+        final String key = method.getMethodDeclaration().getKey() + "#" + argumentIndex + "#" + cleanupMethodName;
+        final Summary cached = summaries.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final Integer depthInProgress = summariesInProgress.get(key);
+        if (depthInProgress != null) {
+            // recursive call: assume the worst until the summary is known
+            assumedSummaryDepth = Math.min(assumedSummaryDepth, depthInProgress);
+            return Summary.ESCAPED;
+        }
+        final int callerAssumedSummaryDepth = assumedSummaryDepth;
+        final int depth = summariesInProgress.size();
+        assumedSummaryDepth = Integer.MAX_VALUE;
+        summariesInProgress.put(key, depth);
+        final Summary summary;
+        try {
+            summary = computeSummary(methodDecl, argumentIndex, cleanupMethodName);
+        } finally {
+            summariesInProgress.remove(key);
+        }
+        if (assumedSummaryDepth >= depth) {
+            // at most its own summary was assumed: computing it again would give the same result
+            summaries.put(key, summary);
+            assumedSummaryDepth = callerAssumedSummaryDepth;
+        } else {
+            // relies on the assumed summary of a caller still in progress: do not cache it
+            assumedSummaryDepth = Math.min(assumedSummaryDepth, callerAssumedSummaryDepth);
+        }
+        return summary;
+    }
+
+    private Summary computeSummary(MethodDeclaration methodDecl, int parameterIndex, final String cleanupMethodName) {
+        final IVariableBinding parameter = parameters(methodDecl).get(parameterIndex).resolveBinding();
+        if (parameter == null) {
+            return Summary.ESCAPED;
+        }
+        final List<SimpleName> uses = new ArrayList<SimpleName>();
+        methodDecl.getBody().accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                if (parameter.isEqualTo(node.resolveBinding())) {
+                    uses.add(node);
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+
+        final List<ASTNode> closingNodes = new ArrayList<ASTNode>();
+        for (SimpleName use : uses) {
+            final ASTNode user = getUser(use);
+            if (user instanceof ReturnStatement
+                    || (user instanceof Assignment && ((Assignment) user).getLeftHandSide() == use)) {
+                // returned to the caller, or the parameter no longer holds the resource
+                return Summary.ESCAPED;
+            }
+            switch (getUseSummary(use, cleanupMethodName)) {
+            case ESCAPED:
+                return Summary.ESCAPED;
+            case CLOSED:
+                closingNodes.add(user);
+                break;
+            default:
+                break;
+            }
+        }
+        if (closingNodes.isEmpty()) {
+            return Summary.USED;
+        }
+        return isReachedOnAllPaths(methodDecl, closingNodes) ? Summary.CLOSED : Summary.ESCAPED;
+    }
+
+    private boolean isReachedOnAllPaths(MethodDeclaration methodDecl, List<ASTNode> nodes) {
+        final ControlFlowGraph cfg = ctx.getControlFlowGraph(methodDecl);
+        if (cfg == null) {
+            return false;
+        }
+        final BitSet blocks = new BitSet(cfg.getNbBlocks());
+        for (ASTNode node : nodes) {
+            final int index = cfg.getBlockIndex(node);
+            if (index < 0) {
+                return false;
+            }
+            blocks.set(index);
+        }
+        return cfg.allPathsReach(0, blocks);
+    }
+}
@@ -2,47 +2,161 @@ package org.autorefactor.refactoring.rules;
 
 import static org.autorefactor.refactoring.ASTHelper.DO_NOT_VISIT_SUBTREE;
 import static org.autorefactor.refactoring.ASTHelper.VISIT_SUBTREE;
+import static org.autorefactor.refactoring.ASTHelper.arguments;
+import static org.autorefactor.refactoring.ASTHelper.fragments;
+import static org.autorefactor.refactoring.ASTHelper.getAncestorOrNull;
+import static org.autorefactor.refactoring.ASTHelper.imports;
+import static org.autorefactor.refactoring.ASTHelper.initializers;
+import static org.autorefactor.refactoring.ASTHelper.statements;
+import static org.autorefactor.refactoring.ASTHelper.typeArguments;
+import static org.autorefactor.refactoring.ASTHelper.updaters;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.EQUALS;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.GREATER_EQUALS;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.LESS;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.NOT_EQUALS;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.SourcePrecondition;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.FieldAccess;
 import org.eclipse.jdt.core.dom.FieldDeclaration;
-import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
 import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
 import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.ThisExpression;
 import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.core.dom.WildcardType;
 
+/**
+ * Replaces the {@link java.util.HashMap}s and {@link java.util.HashSet}s created for local variables
+ * and private fields with their Android counterparts:
+ * <ul>
+ * <li>maps with {@link Integer} keys become {@code SparseArray}, {@code SparseIntArray},
+ * {@code SparseBooleanArray} or {@code SparseLongArray} depending on their values,</li>
+ * <li>maps with {@link Long} keys become {@code LongSparseArray},</li>
+ * <li>other maps become {@code ArrayMap}, and sets become {@code ArraySet},
+ * when they are created with a small constant initial capacity.</li>
+ * </ul>
+ * The sparse arrays do not implement {@link java.util.Map}: every use of the variable is analyzed,
+ * the call sites are rewritten to the sparse array API, and the loops over the keys, values or entries
+ * are rewritten to index based loops calling {@code keyAt()} and {@code valueAt()}.
+ * Variables with a use which cannot be rewritten are left alone.
+ * <p>
+ * The platform collections are used when the minimum API level of the project provides them,
+ * otherwise their support library backports when the project depends on the support library.
+ */
 @SuppressWarnings("unchecked")
 // We are extending the method from abstract refactoring rule to usesparse rule.
-public class UseSparseArrayRefactoring extends AbstractRefactoringRule {
+public class UseSparseArrayRefactoring extends AbstractRefactoringRule implements SourcePrecondition {
 
 	CompilationUnit cu = null;
 	boolean importFlag = true;
+	/** The support library collections imported in the current compilation unit. */
+	private final Set<String> supportImports = new HashSet<String>();
 
 	private static boolean USE_SIMPLE_TYPE_NAME = true;
-	static Map<String, String> subsClassMap;
-	// static is some value which stored in memory when we call the costructor in the class..
-	static {
-		subsClassMap = new HashMap<String, String>();
-		subsClassMap.put("java.util.HashMap<java.lang.Integer,java.lang.Object>", "SparseArray");
-		subsClassMap.put("java.util.HashMap<java.lang.Integer,java.lang.Integer>", "SparseIntArray");
-		subsClassMap.put("java.util.HashMap<java.lang.Integer,java.lang.Boolean>", "SparseBooleanArray");
-		subsClassMap.put("java.util.HashMap<java.lang.Integer,java.lang.Long>", "SparseLongArray");
-		subsClassMap.put("java.util.HashMap<java.lang.Long,java.lang.Object>", "LongSparseArray");
-		subsClassMap.put("java.util.HashMap<java.lang.Long,java.lang.Long>", "LongSparseLongArray");
+
+	/**
+	 * The largest initial capacity of the maps and sets replaced by {@code ArrayMap} and {@code ArraySet}.
+	 * Their lookups are binary searches and their insertions and removals shift arrays:
+	 * they save memory without noticeably slowing down only while they hold a few items.
+	 */
+	private static final int MAX_ARRAY_COLLECTION_CAPACITY = 100;
+
+	/** The Android collections replacing the java.util collections. */
+	private enum Replacement {
+		SPARSE_ARRAY("SparseArray", "int", false, 1),
+		SPARSE_INT_ARRAY("SparseIntArray", "int", true, 1),
+		SPARSE_BOOLEAN_ARRAY("SparseBooleanArray", "int", true, 1),
+		SPARSE_LONG_ARRAY("SparseLongArray", "int", true, 18),
+		LONG_SPARSE_ARRAY("LongSparseArray", "long", false, 16,
+				"androidx.collection.LongSparseArray", "android.support.v4.util.LongSparseArray"),
+		ARRAY_MAP("ArrayMap", null, false, 19,
+				"androidx.collection.ArrayMap", "android.support.v4.util.ArrayMap"),
+		ARRAY_SET("ArraySet", null, false, 23,
+				"androidx.collection.ArraySet", "android.support.v4.util.ArraySet");
+
+		/** The simple name of the Android collection, in the android.util package. */
+		private final String typeName;
+		/** The primitive type of the keys of a sparse array, null for the collections implementing java.util. */
+		private final String keyType;
+		/** Whether the values are primitives, in which case there is no null value for missing keys. */
+		private final boolean primitiveValues;
+		/** The Android API level introducing the collection in the android.util package. */
+		private final int apiLevel;
+		/** The qualified names of the support library backports of the collection, by order of preference. */
+		private final String[] supportTypeNames;
+
+		private Replacement(String typeName, String keyType, boolean primitiveValues, int apiLevel,
+				String... supportTypeNames) {
+			this.typeName = typeName;
+			this.keyType = keyType;
+			this.primitiveValues = primitiveValues;
+			this.apiLevel = apiLevel;
+			this.supportTypeNames = supportTypeNames;
+		}
+
+		private boolean isSparse() {
+			return keyType != null;
+		}
+
+		private boolean isGeneric() {
+			return !primitiveValues;
+		}
+	}
+
+	/** The {@link java.util.Map} methods, which all exist in {@code ArrayMap}. */
+	private static final Set<String> MAP_METHODS = new HashSet<String>(Arrays.asList(
+			"size", "isEmpty", "containsKey", "containsValue", "get", "put", "remove", "putAll", "clear",
+			"keySet", "values", "entrySet", "equals", "hashCode", "toString"));
+	/** The {@link java.util.Set} methods, which all exist in {@code ArraySet}. */
+	private static final Set<String> SET_METHODS = new HashSet<String>(Arrays.asList(
+			"size", "isEmpty", "contains", "iterator", "toArray", "add", "remove", "containsAll", "addAll",
+			"retainAll", "removeAll", "clear", "equals", "hashCode", "toString"));
+
+	/** The uses of a map to rewrite for a sparse array. */
+	private static final class CallSites {
+		private final Replacement replacement;
+		private final List<MethodInvocation> containsKeys = new ArrayList<MethodInvocation>();
+		private final List<MethodInvocation> removes = new ArrayList<MethodInvocation>();
+		private final List<MethodInvocation> isEmpties = new ArrayList<MethodInvocation>();
+		private final List<EnhancedForStatement> loops = new ArrayList<EnhancedForStatement>();
+
+		private CallSites(Replacement replacement) {
+			this.replacement = replacement;
+		}
 	}
 
 	@Override
@@ -55,228 +169,450 @@ public class UseSparseArrayRefactoring extends AbstractRefactoringRule {
 		return "UseSparseArrayRefactoring";
 	}
 
+	@Override
+	public String[] getRequiredIdentifiers() {
+		return new String[] { "HashMap", "HashSet" };
+	}
+
 	@Override
 	public boolean visit(CompilationUnit node) {
 		cu = node;
+		importFlag = true;
+		supportImports.clear();
 		return VISIT_SUBTREE;
 	}
 
 	/**
 	 * @see org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom.
-	 * VariableDeclarationStatement)
-	 * 
-	 * This method finds variable declaration fragment where HashMap<type, type> is
-	 * declared and applies refactoring.
+	 * VariableDeclarationFragment)
+	 *
+	 * This method finds the local variables and private fields initialized with a HashMap or a HashSet,
+	 * and replaces them when all their uses can be rewritten.
 	 */
 	@Override
-	//ariableDeclarationFragment is used to get the L.H.S declaration of any statement..e.g int x =new int();
 	public boolean visit(VariableDeclarationFragment fragment) {
-		// to get extra information regarding fragemente use reslove binding
-		IVariableBinding varBinding = fragment.resolveBinding();
-		if (varBinding != null) {
-			ITypeBinding typeBinding = varBinding.getType();
-			String typeName = typeBinding.getQualifiedName();
-			String typeClass = typeBinding.getTypeDeclaration().getQualifiedName();
-			if (typeClass.equals("java.util.Map"))
-				typeClass = "java.util.HashMap";
-			if (subsClassMap.containsKey(typeName)) {
-				refactorType(fragment, typeName);
-				return DO_NOT_VISIT_SUBTREE;
-			} else if (typeClass.equals("java.util.HashMap")) {
-				ITypeBinding[] typeArgs = typeBinding.getTypeArguments();
-				if (typeArgs.length == 2) {
-					String firstTypeArgQName = typeArgs[0].getQualifiedName();
-					if (firstTypeArgQName.equals("java.lang.Integer") || firstTypeArgQName.equals("java.lang.Long")) {
-						typeName = typeClass + "<" + firstTypeArgQName + ",java.lang.Object>";
-						refactorParameterizedType(fragment, typeName, typeArgs[1]);
-					}
-				}
-				return DO_NOT_VISIT_SUBTREE;
+		final IVariableBinding varBinding = fragment.resolveBinding();
+		final ASTNode parent = fragment.getParent();
+		final Type declaredType;
+		final ASTNode scope;
+		if (parent instanceof VariableDeclarationStatement) {
+			declaredType = ((VariableDeclarationStatement) parent).getType();
+			scope = parent.getParent();
+			if (fragments((VariableDeclarationStatement) parent).size() != 1) {
+				return VISIT_SUBTREE;
 			}
+		} else if (parent instanceof FieldDeclaration) {
+			declaredType = ((FieldDeclaration) parent).getType();
+			scope = cu;
+			if (fragments((FieldDeclaration) parent).size() != 1
+					|| !Modifier.isPrivate(((FieldDeclaration) parent).getModifiers())) {
+				return VISIT_SUBTREE;
+			}
+		} else {
+			return VISIT_SUBTREE;
 		}
-		return VISIT_SUBTREE;
+		if (varBinding == null || !(declaredType instanceof ParameterizedType)) {
+			return VISIT_SUBTREE;
+		}
+
+		final Replacement replacement = getReplacement(varBinding.getType());
+		final ClassInstanceCreation creation = getCreation(fragment.getInitializer(), replacement);
+		if (replacement == null || creation == null) {
+			return VISIT_SUBTREE;
+		}
+		final boolean declaredAsInterface = varBinding.getType().isInterface();
+		final CallSites callSites = new CallSites(replacement);
+		for (Expression access : getAccesses(scope, varBinding, fragment.getName())) {
+			if (!addCallSite(access, declaredAsInterface, callSites)) {
+				return VISIT_SUBTREE;
+			}
+		}
+
+		String typeName = getAvailableTypeName(replacement);
+		if (typeName == null) {
+			return VISIT_SUBTREE;
+		} else if (typeName.equals(replacement.typeName)) {
+			addImport();
+		} else {
+			typeName = addImport(typeName);
+		}
+		if (replacement.isSparse() || !declaredAsInterface) {
+			ctx.getRefactorings().replace(declaredType,
+					newType((ParameterizedType) declaredType, replacement, typeName));
+		}
+		ctx.getRefactorings().replace(creation.getType(),
+				newType((ParameterizedType) creation.getType(), replacement, typeName));
+		refactorCallSites(callSites);
+		return DO_NOT_VISIT_SUBTREE;
 	}
 
 	/**
-	 * @see org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom.
-	 * ClassInstanceCreation)
-	 * 
-	 * finds class instantiations where HashMap<type, type> is instantiated and
-	 * applies refactoring.
+	 * Returns the Android collection which can replace the provided java.util collection,
+	 * depending on its key and value types.
 	 */
-	@Override
-	public boolean visit(ClassInstanceCreation node) {
-		ITypeBinding typeBinding = node.resolveTypeBinding();
-		if (typeBinding != null) {
-			String typeName = typeBinding.getQualifiedName();
-			if (subsClassMap.containsKey(typeName)) {
-				refactorType(node, typeName);
-				return DO_NOT_VISIT_SUBTREE;
-			} else if (typeBinding.getTypeDeclaration().getQualifiedName().equals("java.util.HashMap")) {
-				ITypeBinding[] typeArgs = typeBinding.getTypeArguments();
-				if (typeArgs.length == 2) {
-					String firstTypeArgQName = typeArgs[0].getQualifiedName();
-					if (firstTypeArgQName.equals("java.lang.Integer") || firstTypeArgQName.equals("java.lang.Long")) {
-						typeName = "java.util.HashMap<" + firstTypeArgQName + ",java.lang.Object>";
-						refactorParameterizedType(node, typeName, typeArgs[1]);
-					}
+	private static Replacement getReplacement(ITypeBinding typeBinding) {
+		final String typeClass = typeBinding.getErasure().getQualifiedName();
+		final ITypeBinding[] typeArgs = typeBinding.getTypeArguments();
+		for (ITypeBinding typeArg : typeArgs) {
+			if (typeArg.isWildcardType()) {
+				return null;
+			}
+		}
+		if ((typeClass.equals("java.util.Map") || typeClass.equals("java.util.HashMap")) && typeArgs.length == 2) {
+			final String keyType = typeArgs[0].getQualifiedName();
+			final String valueType = typeArgs[1].getQualifiedName();
+			if (keyType.equals("java.lang.Integer")) {
+				if (valueType.equals("java.lang.Integer")) {
+					return Replacement.SPARSE_INT_ARRAY;
+				} else if (valueType.equals("java.lang.Boolean")) {
+					return Replacement.SPARSE_BOOLEAN_ARRAY;
+				} else if (valueType.equals("java.lang.Long")) {
+					return Replacement.SPARSE_LONG_ARRAY;
 				}
-				return DO_NOT_VISIT_SUBTREE;
+				return Replacement.SPARSE_ARRAY;
+			} else if (keyType.equals("java.lang.Long")) {
+				return Replacement.LONG_SPARSE_ARRAY;
 			}
+			return Replacement.ARRAY_MAP;
+		} else if ((typeClass.equals("java.util.Set") || typeClass.equals("java.util.HashSet"))
+				&& typeArgs.length == 1) {
+			return Replacement.ARRAY_SET;
 		}
-		return VISIT_SUBTREE;
+		return null;
 	}
 
 	/**
-	 * @see org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom.
-	 * MethodDeclaration)
-	 * 
-	 * finds method declarations where return type is HashMap and applies
-	 * refactoring.
+	 * Returns the name of the collection to use for the provided replacement:
+	 * the platform collection when the minimum API level of the project provides it,
+	 * otherwise the qualified name of its first support library backport on the classpath of the project,
+	 * or null when none of them can be used.
 	 */
-	@Override
-	public boolean visit(MethodDeclaration node) {
-		if (node.getReturnType2() != null) {
-			ITypeBinding typeBinding = node.getReturnType2().resolveBinding();
-			IMethodBinding methodBinding = node.resolveBinding();
-			if (methodBinding != null) {
-				String returnType = methodBinding.getReturnType().getQualifiedName();
-				String returnTypeClass = typeBinding.getTypeDeclaration().getQualifiedName();
-				if (returnTypeClass.equals("java.util.Map"))
-					returnTypeClass = "java.util.HashMap";
-				if (subsClassMap.containsKey(returnType)) {
-					refactorReturnType(node, returnType);
-					return DO_NOT_VISIT_SUBTREE;
-				} else if (returnTypeClass.equals("java.util.HashMap")) {
-					ITypeBinding[] typeArgs = typeBinding.getTypeArguments();
-					if (typeArgs.length == 2) {
-						String firstTypeArgQName = typeArgs[0].getQualifiedName();
-						if (firstTypeArgQName.equals("java.lang.Integer")
-								|| firstTypeArgQName.equals("java.lang.Long")) {
-							returnType = "java.util.HashMap<" + firstTypeArgQName + ",java.lang.Object>";
-							refactorParameterizedType(node, returnType, typeArgs[1]);
-						}
-					}
-					return DO_NOT_VISIT_SUBTREE;
-				}
+	private String getAvailableTypeName(Replacement replacement) {
+		if (ctx.isAndroidApiAvailable(replacement.apiLevel)) {
+			return replacement.typeName;
+		}
+		for (String supportTypeName : replacement.supportTypeNames) {
+			if (ctx.isTypeOnClasspath(supportTypeName)) {
+				return supportTypeName;
 			}
 		}
-		return VISIT_SUBTREE;
+		return null;
 	}
 
 	/**
-	 * replaces variable declaration of HashMap type using
-	 * parameterized SparseArray or LongSparseArray
-	 * 
-	 * @param fragment
-	 * @param typeName
-	 * @param typeArg
+	 * Returns the creation of the HashMap or HashSet initializing the variable,
+	 * or null if the initializer is not an instance creation having an equivalent Android constructor.
 	 */
-	private void refactorParameterizedType(VariableDeclarationFragment fragment, String typeName,
-			ITypeBinding typeArg) {
-		final AST ast = fragment.getAST();
-		final ASTBuilder b = this.ctx.getASTBuilder();
-		final Type type = b.type(subsClassMap.get(typeName));
-		final ParameterizedType parameterizedType = ast.newParameterizedType(type);
-		// Type genericType = ast.newSimpleType(ast.newSimpleName(typeArg.getName()));
-		Type genericType = typeFromBinding(ast, typeArg);
-		parameterizedType.typeArguments().add(genericType);
-		ASTNode parent = fragment.getParent();
-		addImport();
-		if (parent instanceof FieldDeclaration)
-			ctx.getRefactorings().replace(((FieldDeclaration) parent).getType(), parameterizedType);
-		else if (parent instanceof VariableDeclarationStatement)
-			ctx.getRefactorings().replace(((VariableDeclarationStatement) parent).getType(), parameterizedType);
+	private static ClassInstanceCreation getCreation(Expression initializer, Replacement replacement) {
+		while (initializer instanceof ParenthesizedExpression) {
+			initializer = ((ParenthesizedExpression) initializer).getExpression();
+		}
+		if (replacement == null || !(initializer instanceof ClassInstanceCreation)) {
+			return null;
+		}
+		final ClassInstanceCreation creation = (ClassInstanceCreation) initializer;
+		final ITypeBinding typeBinding = creation.resolveTypeBinding();
+		final String expectedClass = replacement == Replacement.ARRAY_SET ? "java.util.HashSet" : "java.util.HashMap";
+		final List<Expression> args = arguments(creation);
+		if (typeBinding == null
+				|| !expectedClass.equals(typeBinding.getErasure().getQualifiedName())
+				|| creation.getAnonymousClassDeclaration() != null
+				|| !(creation.getType() instanceof ParameterizedType)
+				|| args.size() > 1
+				// only the initial capacity is supported
+				|| (args.size() == 1 && !hasType(args.get(0), "int", "short", "char", "byte"))
+				// the collections without sparse keys are only worth it for the collections known to stay small
+				|| (!replacement.isSparse() && !hasSmallCapacity(args))) {
+			return null;
+		}
+		return creation;
+	}
+
+	private static boolean hasSmallCapacity(List<Expression> args) {
+		final Object capacity = args.size() == 1 ? args.get(0).resolveConstantExpressionValue() : null;
+		return capacity instanceof Number && ((Number) capacity).intValue() <= MAX_ARRAY_COLLECTION_CAPACITY;
 	}
 
 	/**
-	 * replaces variable declaration of HashMap type using type
-	 * defined in {@link #subsClassMap}
-	 * 
-	 * @param fragment
-	 * @param typeName
+	 * Returns the expressions accessing the provided variable in the provided scope:
+	 * the variable names, or the field accesses qualified with <code>this</code>.
 	 */
-	private void refactorType(final VariableDeclarationFragment fragment, String typeName) {
-		final ASTBuilder b = this.ctx.getASTBuilder();
-		final Type primitiveType = b.type(subsClassMap.get(typeName));
-		ASTNode parent = fragment.getParent();
-		addImport();
-		if (parent instanceof FieldDeclaration)
-			ctx.getRefactorings().replace(((FieldDeclaration) parent).getType(), primitiveType);
-		else if (parent instanceof VariableDeclarationStatement)
-			ctx.getRefactorings().replace(((VariableDeclarationStatement) parent).getType(), primitiveType);
+	private static List<Expression> getAccesses(ASTNode scope, final IVariableBinding varBinding,
+			final SimpleName declarationName) {
+		final List<Expression> accesses = new ArrayList<Expression>();
+		scope.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(SimpleName node) {
+				final IBinding binding = node.resolveBinding();
+				if (node != declarationName
+						&& binding instanceof IVariableBinding
+						&& varBinding.equals(((IVariableBinding) binding).getVariableDeclaration())) {
+					Expression access = node;
+					if (node.getParent() instanceof FieldAccess
+							&& ((FieldAccess) node.getParent()).getName() == node) {
+						access = (FieldAccess) node.getParent();
+					}
+					while (access.getParent() instanceof ParenthesizedExpression) {
+						access = (Expression) access.getParent();
+					}
+					accesses.add(access);
+				}
+				return VISIT_SUBTREE;
+			}
+		});
+		return accesses;
 	}
 
 	/**
-	 * replaces class instantiation of HashMap type using
-	 * parameterized SparseArray or LongSparseArray
-	 * 
-	 * @param node
-	 * @param typeName
-	 * @param typeArg
+	 * Records the rewrite needed for the provided access to the variable.
+	 *
+	 * @return true if the access can be rewritten for the replacement collection, false otherwise
 	 */
-	private void refactorParameterizedType(ClassInstanceCreation node, String typeName, ITypeBinding typeArg) {
-		final AST ast = node.getAST();
-		final ASTBuilder b = this.ctx.getASTBuilder();
-		final Type type = b.type(subsClassMap.get(typeName));
-		final ParameterizedType parameterizedType = ast.newParameterizedType(type);
-		Type genericType = typeFromBinding(ast, typeArg);
-		parameterizedType.typeArguments().add(genericType);
-		addImport();
-		ctx.getRefactorings().replace(node.getType(), parameterizedType);
+	private static boolean addCallSite(Expression access, boolean declaredAsInterface, CallSites callSites) {
+		final Replacement replacement = callSites.replacement;
+		if (access instanceof FieldAccess && !(((FieldAccess) access).getExpression() instanceof ThisExpression)) {
+			return false;
+		}
+		final ASTNode parent = access.getParent();
+		if (!replacement.isSparse()) {
+			if (declaredAsInterface) {
+				// only the instance creation changes
+				return true;
+			} else if (parent instanceof MethodInvocation && ((MethodInvocation) parent).getExpression() == access) {
+				final String methodName = ((MethodInvocation) parent).getName().getIdentifier();
+				return (replacement == Replacement.ARRAY_SET ? SET_METHODS : MAP_METHODS).contains(methodName);
+			}
+			return parent instanceof EnhancedForStatement && ((EnhancedForStatement) parent).getExpression() == access;
+		}
+
+		if (!(parent instanceof MethodInvocation) || ((MethodInvocation) parent).getExpression() != access) {
+			return false;
+		}
+		final MethodInvocation mi = (MethodInvocation) parent;
+		final String methodName = mi.getName().getIdentifier();
+		final List<Expression> args = arguments(mi);
+		if (args.isEmpty()) {
+			if ("size".equals(methodName) || "clear".equals(methodName)) {
+				return true;
+			} else if ("isEmpty".equals(methodName)) {
+				callSites.isEmpties.add(mi);
+				return true;
+			} else if ("keySet".equals(methodName) || "values".equals(methodName) || "entrySet".equals(methodName)) {
+				return addLoop(mi, callSites);
+			}
+			return false;
+		} else if (!isKey(args.get(0), replacement)) {
+			return false;
+		} else if ("put".equals(methodName)) {
+			// the sparse arrays do not return the previous value
+			return mi.getParent() instanceof ExpressionStatement;
+		} else if ("get".equals(methodName)) {
+			// missing keys are mapped to null, but to 0 or false by the sparse arrays of primitives
+			return args.size() == 1 && (!replacement.primitiveValues || mi.resolveUnboxing());
+		} else if ("containsKey".equals(methodName)) {
+			callSites.containsKeys.add(mi);
+			return true;
+		} else if ("remove".equals(methodName)) {
+			callSites.removes.add(mi);
+			return args.size() == 1 && mi.getParent() instanceof ExpressionStatement;
+		}
+		return false;
+	}
+
+	/**
+	 * Records the loop iterating over the keys, values or entries returned by the provided method invocation.
+	 *
+	 * @return true if the loop can be rewritten to an index based loop, false otherwise
+	 */
+	private static boolean addLoop(MethodInvocation mi, CallSites callSites) {
+		if (!(mi.getParent() instanceof EnhancedForStatement)
+				|| ((EnhancedForStatement) mi.getParent()).getExpression() != mi) {
+			return false;
+		}
+		final EnhancedForStatement loop = (EnhancedForStatement) mi.getParent();
+		if ("entrySet".equals(mi.getName().getIdentifier())) {
+			final SimpleName entry = loop.getParameter().getName();
+			for (Expression access : getAccesses(loop.getBody(), loop.getParameter().resolveBinding(), entry)) {
+				final ASTNode parent = access.getParent();
+				if (!(parent instanceof MethodInvocation)
+						|| ((MethodInvocation) parent).getExpression() != access
+						|| !arguments((MethodInvocation) parent).isEmpty()) {
+					return false;
+				}
+				final String methodName = ((MethodInvocation) parent).getName().getIdentifier();
+				if (!"getKey".equals(methodName) && !"getValue".equals(methodName)) {
+					return false;
+				}
+			}
+		}
+		callSites.loops.add(loop);
+		return true;
+	}
+
+	private static boolean isKey(Expression arg, Replacement replacement) {
+		if ("long".equals(replacement.keyType)) {
+			return hasType(arg, "long", "int", "short", "char", "byte", "java.lang.Long");
+		}
+		return hasType(arg, "int", "short", "char", "byte", "java.lang.Integer");
+	}
+
+	private static boolean hasType(Expression expr, String... qualifiedTypeNames) {
+		final ITypeBinding typeBinding = expr.resolveTypeBinding();
+		return typeBinding != null && Arrays.asList(qualifiedTypeNames).contains(typeBinding.getQualifiedName());
 	}
 
 	/**
-	 * replaces class instantiation of HashMap type using type
-	 * defined in {@link #subsClassMap}
-	 * 
-	 * @param node
-	 * @param typeName
+	 * Returns the type replacing the provided parameterized type:
+	 * the sparse arrays of objects only keep the value type argument,
+	 * the sparse arrays of primitives are not parameterized.
 	 */
-	private void refactorType(final ClassInstanceCreation node, String typeName) {
+	private Type newType(ParameterizedType type, Replacement replacement, String typeName) {
 		final ASTBuilder b = this.ctx.getASTBuilder();
-		final Type primitiveType = b.type(subsClassMap.get(typeName));
-		addImport();
-		ctx.getRefactorings().replace(node.getType(), primitiveType);
+		final Type newType = b.getAST().newSimpleType(b.getAST().newName(typeName));
+		if (!replacement.isGeneric()) {
+			return newType;
+		}
+		final ParameterizedType parameterizedType = b.getAST().newParameterizedType(newType);
+		final List<Type> typeArgs = typeArguments(type);
+		if (replacement.isSparse() && typeArgs.size() == 2) {
+			typeArguments(parameterizedType).add(b.copy(typeArgs.get(1)));
+		} else {
+			for (Type typeArg : typeArgs) {
+				typeArguments(parameterizedType).add(b.copy(typeArg));
+			}
+		}
+		return parameterizedType;
+	}
+
+	private void refactorCallSites(CallSites callSites) {
+		final ASTBuilder b = this.ctx.getASTBuilder();
+		final Refactorings r = this.ctx.getRefactorings();
+		for (MethodInvocation mi : callSites.containsKeys) {
+			replaceWithComparison(mi, b.invoke(b.copy(mi.getExpression()), "indexOfKey", b.copy(arguments(mi).get(0))),
+					GREATER_EQUALS, LESS);
+		}
+		for (MethodInvocation mi : callSites.isEmpties) {
+			replaceWithComparison(mi, b.invoke(b.copy(mi.getExpression()), "size"), EQUALS, NOT_EQUALS);
+		}
+		for (MethodInvocation mi : callSites.removes) {
+			r.replace(mi.getName(), b.simpleName("delete"));
+		}
+		for (EnhancedForStatement loop : callSites.loops) {
+			refactorLoop(loop, callSites.replacement);
+		}
 	}
 
 	/**
-	 * replaces method declaration of HashMap type using
-	 * parameterized SparseArray or LongSparseArray
-	 * 
-	 * @param node
-	 * @param returnType
-	 * @param typeArg
+	 * Replaces the provided boolean method invocation with a comparison of the provided expression to 0,
+	 * absorbing a negation of the method invocation.
 	 */
-	private void refactorParameterizedType(MethodDeclaration node, String returnType, ITypeBinding typeArg) {
-		final AST ast = node.getAST();
+	private void replaceWithComparison(MethodInvocation mi, Expression expr, InfixExpression.Operator operator,
+			InfixExpression.Operator negatedOperator) {
 		final ASTBuilder b = this.ctx.getASTBuilder();
-		final Type type = b.type(subsClassMap.get(returnType));
-		final ParameterizedType parameterizedType = ast.newParameterizedType(type);
-		// Type genericType = ast.newSimpleType(ast.newSimpleName(typeArg.getName()));
-		Type genericType = typeFromBinding(ast, typeArg);
-		parameterizedType.typeArguments().add(genericType);
-		addImport();
-		ctx.getRefactorings().replace(node.getReturnType2(), parameterizedType);
+		final Refactorings r = this.ctx.getRefactorings();
+		ASTNode toReplace = mi;
+		while (toReplace.getParent() instanceof ParenthesizedExpression) {
+			toReplace = toReplace.getParent();
+		}
+		if (toReplace.getParent() instanceof PrefixExpression
+				&& PrefixExpression.Operator.NOT.equals(((PrefixExpression) toReplace.getParent()).getOperator())) {
+			r.replace(toReplace.getParent(), b.infixExpr(expr, negatedOperator, b.int0(0)));
+		} else if (toReplace.getParent() instanceof InfixExpression || toReplace.getParent() instanceof PrefixExpression) {
+			r.replace(mi, b.parenthesize(b.infixExpr(expr, operator, b.int0(0))));
+		} else {
+			r.replace(mi, b.infixExpr(expr, operator, b.int0(0)));
+		}
 	}
 
 	/**
-	 * replaces method declaration of HashMap type using
-	 * type defined in {@link #subsClassMap}
-	 * 
-	 * @param node
-	 * @param returnTypeString
+	 * Replaces the provided loop over the keys, values or entries of a map with an index based loop
+	 * over the sparse array.
 	 */
-	private void refactorReturnType(MethodDeclaration node, String returnTypeString) {
+	private void refactorLoop(EnhancedForStatement loop, Replacement replacement) {
 		final ASTBuilder b = this.ctx.getASTBuilder();
-		final Type returnType = b.type(subsClassMap.get(returnTypeString));
-		addImport();
-		ctx.getRefactorings().replace(node.getReturnType2(), returnType);
+		final Refactorings r = this.ctx.getRefactorings();
+		final AST ast = b.getAST();
+		final MethodInvocation collection = (MethodInvocation) loop.getExpression();
+		final Expression sparseArray = collection.getExpression();
+		final String methodName = collection.getName().getIdentifier();
+		final String index = getIndexName(loop);
+
+		final VariableDeclarationFragment indexFragment = ast.newVariableDeclarationFragment();
+		indexFragment.setName(b.simpleName(index));
+		indexFragment.setInitializer(b.int0(0));
+		final VariableDeclarationExpression indexDeclaration = ast.newVariableDeclarationExpression(indexFragment);
+		indexDeclaration.setType(b.type("int"));
+		final PostfixExpression increment = ast.newPostfixExpression();
+		increment.setOperand(b.simpleName(index));
+		increment.setOperator(PostfixExpression.Operator.INCREMENT);
+		final ForStatement newLoop = ast.newForStatement();
+		initializers(newLoop).add(indexDeclaration);
+		newLoop.setExpression(b.infixExpr(b.simpleName(index), LESS, b.invoke(b.copy(sparseArray), "size")));
+		updaters(newLoop).add(increment);
+
+		final SingleVariableDeclaration parameter = loop.getParameter();
+		if ("entrySet".equals(methodName)) {
+			for (Expression access : getAccesses(loop.getBody(), parameter.resolveBinding(), parameter.getName())) {
+				final MethodInvocation entryCall = (MethodInvocation) access.getParent();
+				final String accessor = "getKey".equals(entryCall.getName().getIdentifier()) ? "keyAt" : "valueAt";
+				r.replace(entryCall, b.invoke(b.copy(sparseArray), accessor, b.simpleName(index)));
+			}
+			newLoop.setBody(b.move(loop.getBody()));
+		} else {
+			final String accessor = "keySet".equals(methodName) ? "keyAt" : "valueAt";
+			final Type varType = "keyAt".equals(accessor) && isOnlyUnboxed(loop)
+					? b.type(replacement.keyType)
+					: b.copy(parameter.getType());
+			final VariableDeclarationFragment varFragment = ast.newVariableDeclarationFragment();
+			varFragment.setName(b.copy(parameter.getName()));
+			varFragment.setInitializer(b.invoke(b.copy(sparseArray), accessor, b.simpleName(index)));
+			final VariableDeclarationStatement varDeclaration = ast.newVariableDeclarationStatement(varFragment);
+			varDeclaration.setType(varType);
+			if (loop.getBody() instanceof Block) {
+				final Block body = b.block(varDeclaration);
+				for (Statement stmt : statements((Block) loop.getBody())) {
+					statements(body).add(b.move(stmt));
+				}
+				newLoop.setBody(body);
+			} else {
+				newLoop.setBody(b.block(varDeclaration, b.move(loop.getBody())));
+			}
+		}
+		r.replace(loop, newLoop);
+	}
+
+	/** Returns whether the loop variable is only used as a primitive, so it does not need to be boxed. */
+	private static boolean isOnlyUnboxed(EnhancedForStatement loop) {
+		final SingleVariableDeclaration parameter = loop.getParameter();
+		for (Expression access : getAccesses(loop.getBody(), parameter.resolveBinding(), parameter.getName())) {
+			if (!access.resolveUnboxing()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns a name for the loop index which does not clash with the names used in the enclosing method. */
+	private static String getIndexName(EnhancedForStatement loop) {
+		final MethodDeclaration method = getAncestorOrNull(loop, MethodDeclaration.class);
+		final Set<String> names = new HashSet<String>();
+		(method != null ? method : loop).accept(new ASTVisitor() {
+			@Override
+			public boolean visit(SimpleName node) {
+				names.add(node.getIdentifier());
+				return VISIT_SUBTREE;
+			}
+		});
+		String name = "i";
+		for (int i = 1; names.contains(name); i++) {
+			name = "i" + i;
+		}
+		return name;
 	}
 
 	/**
 	 * converts ITypeBinding object to Type object
-	 * 
+	 *
 	 * @param ast
 	 * @param typeBinding
 	 * @return type
@@ -337,7 +673,7 @@ public class UseSparseArrayRefactoring extends AbstractRefactoringRule {
 	 * adds import android.util.*
 	 */
 	private void addImport() {
-		List<ImportDeclaration> importList = cu.imports();
+		List<ImportDeclaration> importList = imports(cu);
 		AST ast = cu.getAST();
 		ImportDeclaration id = ast.newImportDeclaration();
 		id.setName(ast.newName("android.util"));
@@ -347,9 +683,50 @@ public class UseSparseArrayRefactoring extends AbstractRefactoringRule {
 			if (imp.equalsIgnoreCase("import android.util.*;"))
 				importFlag = false;
 		}
-		if (importList.size() > 0 && importFlag) {
-			ctx.getRefactorings().insertAfter(id, importList.get(0));
+		if (importFlag) {
+			if (importList.size() > 0) {
+				ctx.getRefactorings().insertAfter(id, importList.get(0));
+			} else {
+				ctx.getRefactorings().insertAt(id, 0, CompilationUnit.IMPORTS_PROPERTY, cu);
+			}
 			importFlag = false;
 		}
 	}
+
+	/**
+	 * Imports the provided support library collection, and returns the name to use in the code:
+	 * its simple name, or its qualified name when the simple name already refers to another type.
+	 */
+	private String addImport(String qualifiedTypeName) {
+		final String simpleName = qualifiedTypeName.substring(qualifiedTypeName.lastIndexOf('.') + 1);
+		if (supportImports.contains(qualifiedTypeName)) {
+			return simpleName;
+		}
+		final List<ImportDeclaration> importList = imports(cu);
+		for (ImportDeclaration importDecl : importList) {
+			final String importName = importDecl.getName().getFullyQualifiedName();
+			if (importDecl.isStatic()) {
+				continue;
+			} else if (importDecl.isOnDemand()) {
+				if ("android.util".equals(importName)) {
+					// the simple name may already refer to the platform collection
+					return qualifiedTypeName;
+				}
+			} else if (importName.equals(qualifiedTypeName)) {
+				supportImports.add(qualifiedTypeName);
+				return simpleName;
+			} else if (importName.endsWith("." + simpleName)) {
+				return qualifiedTypeName;
+			}
+		}
+		final ImportDeclaration id = cu.getAST().newImportDeclaration();
+		id.setName(cu.getAST().newName(qualifiedTypeName));
+		if (importList.size() > 0) {
+			ctx.getRefactorings().insertAfter(id, importList.get(0));
+		} else {
+			ctx.getRefactorings().insertAt(id, 0, CompilationUnit.IMPORTS_PROPERTY, cu);
+		}
+		supportImports.add(qualifiedTypeName);
+		return simpleName;
+	}
 }
@@ -6,7 +6,6 @@ import static org.autorefactor.refactoring.ASTHelper.arg0;
 import static org.autorefactor.refactoring.ASTHelper.arguments;
 import static org.autorefactor.refactoring.ASTHelper.hasType;
 import static org.autorefactor.refactoring.ASTHelper.isField;
-import static org.autorefactor.refactoring.ASTHelper.isMethod;
 import static org.autorefactor.refactoring.ASTHelper.isPrimitive;
 import static org.autorefactor.refactoring.ASTHelper.removeParentheses;
 import static org.autorefactor.refactoring.ASTHelper.resolveTypeBinding;
@@ -15,6 +14,9 @@ import static org.autorefactor.util.Utils.*;
 import java.util.List;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodMatcher;
+import org.autorefactor.refactoring.MethodTable;
+import org.autorefactor.refactoring.SourcePrecondition;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.BooleanLiteral;
@@ -26,7 +28,30 @@ import org.eclipse.jdt.core.dom.QualifiedName;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 
-public class UseValueOfRefactoring extends AbstractRefactoringRule{
+public class UseValueOfRefactoring extends AbstractRefactoringRule implements SourcePrecondition {
+
+    private static final MethodMatcher PRIMITIVE_VALUE_OF = new MethodMatcher()
+            .add("java.lang.Boolean", "valueOf", "boolean")
+            .add("java.lang.Byte", "valueOf", "byte")
+            .add("java.lang.Character", "valueOf", "char")
+            .add("java.lang.Short", "valueOf", "short")
+            .add("java.lang.Integer", "valueOf", "int")
+            .add("java.lang.Long", "valueOf", "long")
+            .add("java.lang.Float", "valueOf", "float")
+            .add("java.lang.Double", "valueOf", "double");
+    /** The valueOf(String) methods, associated with the parse method returning a primitive. */
+    private static final MethodTable<String> PARSE_METHODS = new MethodTable<String>()
+            .put("parseBoolean", "java.lang.Boolean", "valueOf", "java.lang.String")
+            .put("parseByte", "java.lang.Byte", "valueOf", "java.lang.String")
+            .put("parseByte", "java.lang.Byte", "valueOf", "java.lang.String", "int")
+            .put("parseShort", "java.lang.Short", "valueOf", "java.lang.String")
+            .put("parseShort", "java.lang.Short", "valueOf", "java.lang.String", "int")
+            .put("parseInt", "java.lang.Integer", "valueOf", "java.lang.String")
+            .put("parseInt", "java.lang.Integer", "valueOf", "java.lang.String", "int")
+            .put("parseLong", "java.lang.Long", "valueOf", "java.lang.String")
+            .put("parseLong", "java.lang.Long", "valueOf", "java.lang.String", "int")
+            .put("parseFloat", "java.lang.Float", "valueOf", "java.lang.String")
+            .put("parseDouble", "java.lang.Double", "valueOf", "java.lang.String");
 
 	@Override
 	public String getDescription() {
@@ -38,6 +63,14 @@ public class UseValueOfRefactoring extends AbstractRefactoringRule{
 	public String getName() {
 		return "UseValueOfRefactoring";
 	}
+
+	@Override
+	public String[] getRequiredIdentifiers() {
+		return new String[] {
+			"valueOf", "Boolean", "Byte", "Character", "Short", "Integer",
+			"Long", "Float", "Double"
+		};
+	}
 	
 	private int getJavaMinorVersion() {
         return ctx.getJavaProjectOptions().getJavaSERelease().getMinorVersion();
@@ -65,36 +98,12 @@ public class UseValueOfRefactoring extends AbstractRefactoringRule{
             final ITypeBinding typeBinding = resolveTypeBinding((VariableDeclarationFragment) parent);
             if (typeBinding.isPrimitive()
                     && "valueOf".equals(node.getName().getIdentifier())) {
-                if (isMethod(node, "java.lang.Boolean", "valueOf", "boolean")
-                        || isMethod(node, "java.lang.Byte", "valueOf", "byte")
-                        || isMethod(node, "java.lang.Character", "valueOf", "char")
-                        || isMethod(node, "java.lang.Short", "valueOf", "short")
-                        || isMethod(node, "java.lang.Integer", "valueOf", "int")
-                        || isMethod(node, "java.lang.Long", "valueOf", "long")
-                        || isMethod(node, "java.lang.Float", "valueOf", "float")
-                        || isMethod(node, "java.lang.Double", "valueOf", "double")) {
+                if (PRIMITIVE_VALUE_OF.matches(node)) {
                     return replaceWithTheSingleArgument(node);
                 }
-                if (is(node, "java.lang.Byte")) {
-                    return replaceMethodName(node, "parseByte");
-                }
-                if (is(node, "java.lang.Short")) {
-                    return replaceMethodName(node, "parseShort");
-                }
-                if (is(node, "java.lang.Integer")) {
-                    return replaceMethodName(node, "parseInt");
-                }
-                if (is(node, "java.lang.Long")) {
-                    return replaceMethodName(node, "parseLong");
-                }
-                if (isMethod(node, "java.lang.Boolean", "valueOf", "java.lang.String")) {
-                    return replaceMethodName(node, "parseBoolean");
-                }
-                if (is(node, "java.lang.Float")) {
-                    return replaceMethodName(node, "parseFloat");
-                }
-                if (is(node, "java.lang.Double")) {
-                    return replaceMethodName(node, "parseDouble");
+                final String parseMethodName = PARSE_METHODS.get(node);
+                if (parseMethodName != null && isDecimal(node)) {
+                    return replaceMethodName(node, parseMethodName);
                 }
             }
         }
@@ -120,10 +129,10 @@ public class UseValueOfRefactoring extends AbstractRefactoringRule{
         return VISIT_SUBTREE;
     }
 
-    private boolean is(MethodInvocation node, String declaringTypeQualifiedName) {
-        return isMethod(node, declaringTypeQualifiedName, "valueOf", "java.lang.String")
-                || (isMethod(node, declaringTypeQualifiedName, "valueOf", "java.lang.String", "int")
-                        && equal(10, arguments(node).get(1).resolveConstantExpressionValue()));
+    /** Returns whether the provided valueOf() invocation has no radix, or a radix of 10. */
+    private boolean isDecimal(MethodInvocation node) {
+        return arguments(node).size() == 1
+                || equal(10, arguments(node).get(1).resolveConstantExpressionValue());
     }
 
     private boolean replaceMethodName(MethodInvocation node, String methodName) {
@@ -27,22 +27,34 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.FieldAccess;
 import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
 import org.eclipse.jdt.core.dom.Modifier.ModifierKeyword;
+import org.eclipse.jdt.core.dom.Name;
 import org.eclipse.jdt.core.dom.QualifiedName;
 import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
@@ -52,11 +64,19 @@ import org.eclipse.jdt.internal.corext.dom.ASTNodes;
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.eclipse.jdt.core.dom.ASTNode.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodMatcher;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.SourcePrecondition;
+import org.autorefactor.refactoring.TypeHierarchyPrecondition;
 
 /* 
  * TODO when findViewById is reusing a local variable,
@@ -65,7 +85,28 @@ import org.autorefactor.refactoring.Refactorings;
  */
 
 /** See {@link #getDescription()} method. */
-public class ViewHolderRefactoring extends AbstractRefactoringRule {
+public class ViewHolderRefactoring extends AbstractRefactoringRule
+		implements SourcePrecondition, TypeHierarchyPrecondition {
+
+	private static final MethodMatcher GET_VIEW = new MethodMatcher()
+			.add("android.widget.Adapter", "getView", "int", "android.view.View", "android.view.ViewGroup");
+	private static final MethodMatcher ON_BIND_VIEW_HOLDER = new MethodMatcher();
+	static {
+		for (String recyclerView : DrawAllocationRefactoring.RECYCLER_VIEW_CLASSES) {
+			ON_BIND_VIEW_HOLDER.add(recyclerView + ".Adapter", "onBindViewHolder", recyclerView + ".ViewHolder", "int");
+		}
+	}
+	private static final MethodMatcher INFLATE = new MethodMatcher()
+			.add("android.view.LayoutInflater", "inflate", "int", "android.view.ViewGroup")
+			.add("android.view.LayoutInflater", "inflate", "int", "android.view.ViewGroup", "boolean")
+			.add("android.view.LayoutInflater", "inflate", "org.xmlpull.v1.XmlPullParser", "android.view.ViewGroup")
+			.add("android.view.LayoutInflater", "inflate",
+					"org.xmlpull.v1.XmlPullParser", "android.view.ViewGroup", "boolean");
+	private static final MethodMatcher FIND_VIEW_BY_ID = new MethodMatcher()
+			.add("android.view.View", "findViewById", "int");
+
+	/** The lookups moved to view holder fields, keyed by view holder type and field name. */
+	private final Map<String, String> addedLookups = new HashMap<String, String>();
 
 	@Override
 	public String getDescription() {
@@ -78,6 +119,24 @@ public class ViewHolderRefactoring extends AbstractRefactoringRule {
 	public String getName() {
 		return "ViewHolderRefactoring";
 	}
+
+	@Override
+	public String[] getRequiredIdentifiers() {
+		return new String[] { "getView", "onBindViewHolder" };
+	}
+
+	@Override
+	public String[] getRequiredSuperTypes() {
+		final Set<String> types = new LinkedHashSet<String>(GET_VIEW.getDeclaringTypeNames());
+		types.addAll(ON_BIND_VIEW_HOLDER.getDeclaringTypeNames());
+		return types.toArray(new String[types.size()]);
+	}
+
+	@Override
+	public boolean visit(CompilationUnit node) {
+		addedLookups.clear();
+		return VISIT_SUBTREE;
+	}
 	
 	
     @Override
@@ -86,14 +145,12 @@ public class ViewHolderRefactoring extends AbstractRefactoringRule {
 		final Refactorings r = this.ctx.getRefactorings();
 		IMethodBinding methodBinding = node.resolveBinding();
 		
-		if(methodBinding!= null &&
-			isMethod(
-					methodBinding,
-					"android.widget.Adapter",
-					"getView",
-					"int","android.view.View","android.view.ViewGroup"
-			)
-		){
+		if (isOnBindViewHolder(methodBinding)) {
+			// keep visiting: there may have been nothing to refactor
+			refactorOnBindViewHolder(node);
+			return VISIT_SUBTREE;
+		}
+		if(GET_VIEW.matches(methodBinding)){
 			GetViewVisitor visitor = new GetViewVisitor();
 			Block body = node.getBody();
 			if(body != null){
@@ -203,12 +260,254 @@ public class ViewHolderRefactoring extends AbstractRefactoringRule {
     	return VISIT_SUBTREE;
     }
     
+    private static boolean isOnBindViewHolder(IMethodBinding methodBinding) {
+		return ON_BIND_VIEW_HOLDER.matches(methodBinding);
+	}
+
+	private static boolean isViewHolder(ITypeBinding typeBinding) {
+		for (String recyclerView : DrawAllocationRefactoring.RECYCLER_VIEW_CLASSES) {
+			if (instanceOf(typeBinding, recyclerView + ".ViewHolder")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the view lookups of the provided onBindViewHolder() method into the constructors of the view holder,
+	 * so they are done once per created view instead of once per bound item.
+	 * The graphics objects allocated on each bind are also hoisted to fields when they do not escape.
+	 */
+	private void refactorOnBindViewHolder(MethodDeclaration node) {
+		final Block body = node.getBody();
+		if (body == null) {
+			return;
+		}
+		final SingleVariableDeclaration holderParam = parameters(node).get(0);
+		final IVariableBinding holderBinding = holderParam.resolveBinding();
+		final TypeDeclaration holderDeclaration = getViewHolderDeclaration(node, holderBinding);
+		if (holderDeclaration != null && !isAssigned(body, holderBinding)) {
+			final List<VariableDeclarationFragment> lookups = new ArrayList<VariableDeclarationFragment>();
+			for (Statement stmt : statements(body)) {
+				final VariableDeclarationFragment lookup = getItemViewLookup(stmt, holderBinding);
+				if (lookup != null && isLookupAvailable(holderDeclaration, lookup)) {
+					lookups.add(lookup);
+				}
+			}
+			moveLookupsToViewHolder(holderDeclaration, holderParam, lookups);
+		}
+		body.accept(new DrawAllocationRefactoring.OnDrawTransformer(this.ctx, node, true));
+	}
+
+	/**
+	 * Returns the declaration of the view holder type,
+	 * if it is in the current compilation unit and all its constructors can receive view lookups.
+	 */
+	private TypeDeclaration getViewHolderDeclaration(MethodDeclaration node, IVariableBinding holderBinding) {
+		if (holderBinding == null || !isViewHolder(holderBinding.getType())) {
+			return null;
+		}
+		final ASTNode declaration =
+				((CompilationUnit) node.getRoot()).findDeclaringNode(holderBinding.getType().getTypeDeclaration());
+		if (!(declaration instanceof TypeDeclaration)) {
+			return null;
+		}
+		boolean hasConstructor = false;
+		for (MethodDeclaration method : ((TypeDeclaration) declaration).getMethods()) {
+			if (method.isConstructor()) {
+				hasConstructor = true;
+				if (method.getBody() == null
+						|| (getItemView(method) == null
+								&& !(getFirstStatement(method) instanceof ConstructorInvocation))) {
+					return null;
+				}
+			}
+		}
+		return hasConstructor ? (TypeDeclaration) declaration : null;
+	}
+
+	private static Statement getFirstStatement(MethodDeclaration method) {
+		final List<Statement> stmts = statements(method.getBody());
+		return stmts.isEmpty() ? null : stmts.get(0);
+	}
+
+	/**
+	 * Returns the constructor parameter passed as the item view to the super constructor,
+	 * or null if there is no such parameter.
+	 */
+	private static SingleVariableDeclaration getItemView(MethodDeclaration constructor) {
+		final Statement firstStmt = getFirstStatement(constructor);
+		if (firstStmt instanceof SuperConstructorInvocation) {
+			final List<Expression> args = arguments((SuperConstructorInvocation) firstStmt);
+			if (args.size() == 1 && args.get(0) instanceof SimpleName) {
+				final IBinding argBinding = ((SimpleName) args.get(0)).resolveBinding();
+				for (SingleVariableDeclaration param : parameters(constructor)) {
+					if (param.resolveBinding() != null && param.resolveBinding().equals(argBinding)) {
+						return param;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean isAssigned(Block body, final IVariableBinding variable) {
+		final boolean[] assigned = new boolean[1];
+		body.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(Assignment node) {
+				if (node.getLeftHandSide() instanceof SimpleName
+						&& variable.equals(((SimpleName) node.getLeftHandSide()).resolveBinding())) {
+					assigned[0] = true;
+				}
+				return VISIT_SUBTREE;
+			}
+		});
+		return assigned[0];
+	}
+
+	/**
+	 * Returns the variable declared by the provided statement
+	 * when it is initialized with a lookup of a constant id in the item view of the view holder,
+	 * or null otherwise.
+	 */
+	private static VariableDeclarationFragment getItemViewLookup(Statement stmt, IVariableBinding holderBinding) {
+		if (!(stmt instanceof VariableDeclarationStatement)
+				|| fragments((VariableDeclarationStatement) stmt).size() != 1) {
+			return null;
+		}
+		final VariableDeclarationFragment fragment = fragments((VariableDeclarationStatement) stmt).get(0);
+		final MethodInvocation mi = as(getLookupExpression(fragment), MethodInvocation.class);
+		if (fragment.getExtraDimensions() == 0
+				&& FIND_VIEW_BY_ID.matches(mi)
+				&& isItemViewOf(mi.getExpression(), holderBinding)
+				&& isConstantId(arguments(mi).get(0))) {
+			return fragment;
+		}
+		return null;
+	}
+
+	private static Expression getLookupExpression(VariableDeclarationFragment fragment) {
+		if (fragment.getInitializer() == null) {
+			return null;
+		}
+		final Expression initializer = removeParentheses(fragment.getInitializer());
+		if (initializer instanceof CastExpression) {
+			return removeParentheses(((CastExpression) initializer).getExpression());
+		}
+		return initializer;
+	}
+
+	private static boolean isItemViewOf(Expression expr, IVariableBinding holderBinding) {
+		if (expr instanceof QualifiedName) {
+			final QualifiedName qn = (QualifiedName) expr;
+			return "itemView".equals(qn.getName().getIdentifier())
+					&& holderBinding.equals(qn.getQualifier().resolveBinding());
+		} else if (expr instanceof FieldAccess) {
+			final FieldAccess fa = (FieldAccess) expr;
+			return "itemView".equals(fa.getName().getIdentifier())
+					&& fa.getExpression() instanceof SimpleName
+					&& holderBinding.equals(((SimpleName) fa.getExpression()).resolveBinding());
+		}
+		return false;
+	}
+
+	private static boolean isConstantId(Expression id) {
+		if (id.resolveConstantExpressionValue() != null) {
+			return true;
+		}
+		final IBinding binding = id instanceof Name ? ((Name) id).resolveBinding() : null;
+		return binding instanceof IVariableBinding
+				&& ((IVariableBinding) binding).isField()
+				&& Modifier.isStatic(binding.getModifiers())
+				&& Modifier.isFinal(binding.getModifiers());
+	}
+
+	/**
+	 * Returns whether the view holder can receive a field for the provided lookup:
+	 * no field with the same name must exist, unless it has been added for the same lookup.
+	 */
+	private boolean isLookupAvailable(TypeDeclaration holderDeclaration, VariableDeclarationFragment lookup) {
+		final String fieldKey = getFieldKey(holderDeclaration, lookup);
+		final String lookupKey = addedLookups.get(fieldKey);
+		if (lookupKey != null) {
+			return lookupKey.equals(getLookupKey(lookup));
+		}
+		for (ITypeBinding type = holderDeclaration.resolveBinding(); type != null; type = type.getSuperclass()) {
+			for (IVariableBinding field : type.getDeclaredFields()) {
+				if (field.getName().equals(lookup.getName().getIdentifier())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static String getFieldKey(TypeDeclaration holderDeclaration, VariableDeclarationFragment lookup) {
+		return holderDeclaration.resolveBinding().getKey() + "#" + lookup.getName().getIdentifier();
+	}
+
+	private static String getLookupKey(VariableDeclarationFragment lookup) {
+		return ((VariableDeclarationStatement) lookup.getParent()).getType() + " " + lookup.getInitializer();
+	}
+
+	private void moveLookupsToViewHolder(TypeDeclaration holderDeclaration, SingleVariableDeclaration holderParam,
+			List<VariableDeclarationFragment> lookups) {
+		final ASTBuilder b = this.ctx.getASTBuilder();
+		final Refactorings r = this.ctx.getRefactorings();
+		final AST ast = b.getAST();
+		MethodDeclaration firstConstructor = null;
+		for (MethodDeclaration method : holderDeclaration.getMethods()) {
+			if (method.isConstructor() && firstConstructor == null) {
+				firstConstructor = method;
+			}
+		}
+		for (VariableDeclarationFragment lookup : lookups) {
+			final String name = lookup.getName().getIdentifier();
+			final String fieldKey = getFieldKey(holderDeclaration, lookup);
+			if (!addedLookups.containsKey(fieldKey)) {
+				addedLookups.put(fieldKey, getLookupKey(lookup));
+				final VariableDeclarationFragment fieldFragment = ast.newVariableDeclarationFragment();
+				fieldFragment.setName(b.simpleName(name));
+				final FieldDeclaration field = ast.newFieldDeclaration(fieldFragment);
+				field.setType(b.copy(((VariableDeclarationStatement) lookup.getParent()).getType()));
+				modifiers(field).add(ast.newModifier(ModifierKeyword.FINAL_KEYWORD));
+				r.insertBefore(field, firstConstructor);
+				addLookupToConstructors(holderDeclaration, lookup);
+			}
+			r.replace(lookup.getInitializer(),
+					ast.newQualifiedName(b.simpleName(holderParam.getName().getIdentifier()), b.simpleName(name)));
+		}
+	}
+
+	private void addLookupToConstructors(TypeDeclaration holderDeclaration, VariableDeclarationFragment lookup) {
+		final ASTBuilder b = this.ctx.getASTBuilder();
+		final AST ast = b.getAST();
+		final MethodInvocation mi = (MethodInvocation) getLookupExpression(lookup);
+		for (MethodDeclaration method : holderDeclaration.getMethods()) {
+			final SingleVariableDeclaration itemView = method.isConstructor() ? getItemView(method) : null;
+			if (itemView != null) {
+				final FieldAccess field = ast.newFieldAccess();
+				field.setExpression(b.this0());
+				field.setName(b.simpleName(lookup.getName().getIdentifier()));
+				Expression value = b.invoke(
+						b.simpleName(itemView.getName().getIdentifier()), "findViewById", b.copy(arguments(mi).get(0)));
+				final Expression initializer = removeParentheses(lookup.getInitializer());
+				if (initializer instanceof CastExpression) {
+					final CastExpression cast = ast.newCastExpression();
+					cast.setType(b.copy(((CastExpression) initializer).getType()));
+					cast.setExpression(value);
+					value = cast;
+				}
+				// -1 appends after the statements already inserted for the previous lookups
+				this.ctx.getRefactorings().insertAt(b.toStmt(b.assign(field, Assignment.Operator.ASSIGN, value)),
+						-1, Block.STATEMENTS_PROPERTY, method.getBody());
+			}
+		}
+	}
+
     public static boolean isInflateMethod(MethodInvocation node){
-    	return 
-    			isMethod(node, "android.view.LayoutInflater", "inflate", "int", "android.view.ViewGroup")||
-    			isMethod(node, "android.view.LayoutInflater", "inflate", "int", "android.view.ViewGroup","boolean")||
-    			isMethod(node, "android.view.LayoutInflater", "inflate", "org.xmlpull.v1.XmlPullParser", "android.view.ViewGroup")||
-    			isMethod(node, "android.view.LayoutInflater", "inflate", "org.xmlpull.v1.XmlPullParser", "android.view.ViewGroup", "boolean");
+    	return INFLATE.matches(node);
 	}
     
 	public class GetViewVisitor extends ASTVisitor {
@@ -328,7 +627,7 @@ public class ViewHolderRefactoring extends AbstractRefactoringRule {
 	    @Override
 	    public boolean visit(MethodInvocation node) {
 			
-			if(isMethod(node, "android.view.View", "findViewById", "int")){
+			if(FIND_VIEW_BY_ID.matches(node)){
 				FindViewByIdItem item = new FindViewByIdItem(node);
 				items.add(item);
 			}
@@ -0,0 +1,340 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.ChildListPropertyDescriptor;
+import org.eclipse.jdt.core.dom.ChildPropertyDescriptor;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
+
+/**
+ * Dispatch table of an {@link AggregateASTVisitor}, indexed by {@link ASTNode#getNodeType()}.
+ * <p>
+ * For each node type, it holds the indexes of the visitors overriding the corresponding visit methods.
+ * It also tells for which node types the subtree must be visited at all:
+ * there is no need to visit a subtree when no visitor cares about any node type that can occur in it.
+ * <p>
+ * Analyzing the visitors classes is costly, so tables are computed once per list of visitor classes
+ * and shared by all the workers.
+ */
+final class VisitorsDispatchTable {
+    private static final ConcurrentMap<List<Class<?>>, VisitorsDispatchTable> TABLES =
+            new ConcurrentHashMap<List<Class<?>>, VisitorsDispatchTable>();
+    /** Highest node type value tried when looking for the node types supported by the running JDT. */
+    private static final int MAX_NODE_TYPE = 256;
+    /** Number of node types supported by the running JDT, plus one since node types start at 1. */
+    static final int NB_NODE_TYPES = computeNbNodeTypes();
+    private static final int[] NO_INDEXES = new int[0];
+
+    /** Node type => indexes of the visitors overriding the corresponding visit() method. */
+    final int[][] visitIndexes = new int[NB_NODE_TYPES][];
+    /** Node type => indexes of the visitors overriding the corresponding endVisit() method. */
+    final int[][] endVisitIndexes = new int[NB_NODE_TYPES][];
+    /** Visitor index => node types for which the visitor overrides the visit() method. */
+    final int[][] visitNodeTypes;
+    /** Visitor index => node types for which the visitor overrides the endVisit() method. */
+    final int[][] endVisitNodeTypes;
+    /** Indexes of the visitors overriding preVisit(). */
+    final int[] preVisitIndexes;
+    /**
+     * Indexes of the visitors overriding preVisit(),
+     * excluding the visitors only inheriting {@link AbstractRefactoringRule#preVisit2(ASTNode)}.
+     */
+    final int[] preVisit2Indexes;
+    /** Indexes of the visitors overriding postVisit(). */
+    final int[] postVisitIndexes;
+    /**
+     * Whether some visitors inherit {@link AbstractRefactoringRule#preVisit2(ASTNode)}:
+     * the check for refactored nodes is then done only once for all of them.
+     */
+    final boolean checkRefactoredNodes;
+    /** Node type => whether the node and its subtree must be visited. */
+    final boolean[] visitSubtree = new boolean[NB_NODE_TYPES];
+
+    private VisitorsDispatchTable(List<Class<?>> visitorClasses) {
+        final List<List<Integer>> visits = newListOfLists(NB_NODE_TYPES);
+        final List<List<Integer>> endVisits = newListOfLists(NB_NODE_TYPES);
+        final List<Integer> preVisits = new ArrayList<Integer>();
+        final List<Integer> preVisits2 = new ArrayList<Integer>();
+        final List<Integer> postVisits = new ArrayList<Integer>();
+        boolean needsRefactoredNodesCheck = false;
+        visitNodeTypes = new int[visitorClasses.size()][];
+        endVisitNodeTypes = new int[visitorClasses.size()][];
+
+        for (int i = 0; i < visitorClasses.size(); i++) {
+            final BitSet visitTypes = new BitSet();
+            final BitSet endVisitTypes = new BitSet();
+            boolean preVisit = false;
+            boolean preVisit2 = false;
+            boolean defaultPreVisit2 = false;
+            boolean postVisit = false;
+            for (Class<?> clazz = visitorClasses.get(i); !ASTVisitor.class.equals(clazz);
+                    clazz = clazz.getSuperclass()) {
+                for (Method m : clazz.getDeclaredMethods()) {
+                    if (is("preVisit", m)) {
+                        preVisit = true;
+                    } else if (is("preVisit2", m)) {
+                        if (AbstractRefactoringRule.class.equals(clazz)) {
+                            defaultPreVisit2 = !preVisit2;
+                        } else {
+                            preVisit2 = true;
+                        }
+                    } else if (is("postVisit", m)) {
+                        postVisit = true;
+                    } else if (isVisit(m)) {
+                        setNodeType(visitTypes, m.getParameterTypes()[0]);
+                    } else if (isEndVisit(m)) {
+                        setNodeType(endVisitTypes, m.getParameterTypes()[0]);
+                    }
+                }
+            }
+            for (int type = visitTypes.nextSetBit(0); type >= 0; type = visitTypes.nextSetBit(type + 1)) {
+                visits.get(type).add(i);
+            }
+            for (int type = endVisitTypes.nextSetBit(0); type >= 0; type = endVisitTypes.nextSetBit(type + 1)) {
+                endVisits.get(type).add(i);
+            }
+            visitNodeTypes[i] = toArray(visitTypes);
+            endVisitNodeTypes[i] = toArray(endVisitTypes);
+            addIf(preVisit, preVisits, i);
+            addIf(preVisit2, preVisits2, i);
+            addIf(postVisit, postVisits, i);
+            needsRefactoredNodesCheck |= defaultPreVisit2;
+        }
+
+        for (int type = 0; type < NB_NODE_TYPES; type++) {
+            visitIndexes[type] = toArray(visits.get(type));
+            endVisitIndexes[type] = toArray(endVisits.get(type));
+        }
+        preVisitIndexes = toArray(preVisits);
+        preVisit2Indexes = toArray(preVisits2);
+        postVisitIndexes = toArray(postVisits);
+        checkRefactoredNodes = needsRefactoredNodesCheck;
+        computeVisitSubtree(preVisitIndexes.length > 0 || preVisit2Indexes.length > 0 || postVisitIndexes.length > 0);
+    }
+
+    /**
+     * Returns the dispatch table for the provided visitors.
+     *
+     * @param visitors the visitors
+     * @return the dispatch table for the provided visitors
+     */
+    static VisitorsDispatchTable getDispatchTable(List<ASTVisitor> visitors) {
+        final List<Class<?>> visitorClasses = new ArrayList<Class<?>>(visitors.size());
+        for (ASTVisitor v : visitors) {
+            visitorClasses.add(v.getClass());
+        }
+        VisitorsDispatchTable table = TABLES.get(visitorClasses);
+        if (table == null) {
+            table = new VisitorsDispatchTable(visitorClasses);
+            final VisitorsDispatchTable existing = TABLES.putIfAbsent(visitorClasses, table);
+            if (existing != null) {
+                table = existing;
+            }
+        }
+        return table;
+    }
+
+    private static int computeNbNodeTypes() {
+        int maxNodeType = 0;
+        for (int type = 1; type <= MAX_NODE_TYPE; type++) {
+            if (getNodeClass(type) != null) {
+                maxNodeType = type;
+            }
+        }
+        return maxNodeType + 1;
+    }
+
+    private static Class<?> getNodeClass(int nodeType) {
+        try {
+            return ASTNode.nodeClassForType(nodeType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void setNodeType(BitSet nodeTypes, Class<?> nodeClass) {
+        for (int type = 1; type < NB_NODE_TYPES; type++) {
+            if (nodeClass.equals(getNodeClass(type))) {
+                nodeTypes.set(type);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Computes for which node types the subtree must be visited.
+     * The subtree must be visited when some visitor visits the node type
+     * or any node type which can appear beneath it.
+     */
+    private void computeVisitSubtree(boolean visitAllNodes) {
+        final BitSet visitedTypes = new BitSet();
+        for (int type = 0; type < NB_NODE_TYPES; type++) {
+            if (visitAllNodes || visitIndexes[type].length > 0 || endVisitIndexes[type].length > 0) {
+                visitedTypes.set(type);
+            }
+        }
+
+        final BitSet[] childTypes = new BitSet[NB_NODE_TYPES];
+        for (int type = 1; type < NB_NODE_TYPES; type++) {
+            childTypes[type] = getChildTypes(type);
+        }
+        for (int type = 1; type < NB_NODE_TYPES; type++) {
+            if (childTypes[type] == null) {
+                // unknown structure: be conservative
+                visitSubtree[type] = true;
+                continue;
+            }
+            final BitSet reachableTypes = new BitSet();
+            reachableTypes.set(type);
+            final List<Integer> toProcess = new ArrayList<Integer>();
+            toProcess.add(type);
+            while (!toProcess.isEmpty() && !reachableTypes.intersects(visitedTypes)) {
+                final BitSet children = childTypes[toProcess.remove(toProcess.size() - 1)];
+                if (children == null) {
+                    // unknown structure: be conservative
+                    reachableTypes.set(0, NB_NODE_TYPES);
+                    break;
+                }
+                for (int child = children.nextSetBit(0); child >= 0; child = children.nextSetBit(child + 1)) {
+                    if (!reachableTypes.get(child)) {
+                        reachableTypes.set(child);
+                        toProcess.add(child);
+                    }
+                }
+            }
+            visitSubtree[type] = reachableTypes.intersects(visitedTypes);
+        }
+    }
+
+    /**
+     * Returns the types of the nodes which can be direct children of nodes of the provided type.
+     *
+     * @param nodeType the node type
+     * @return the types of the direct children, or null if they cannot be determined
+     */
+    private static BitSet getChildTypes(int nodeType) {
+        final Class<?> nodeClass = getNodeClass(nodeType);
+        if (nodeClass == null) {
+            return null;
+        }
+        final List<?> properties;
+        try {
+            properties = (List<?>) nodeClass.getMethod("propertyDescriptors", int.class).invoke(null, AST.JLS4);
+        } catch (Exception e) {
+            return null;
+        }
+
+        final BitSet results = new BitSet();
+        for (Object property : properties) {
+            final Class<?> childClass;
+            if (property instanceof ChildPropertyDescriptor) {
+                childClass = ((ChildPropertyDescriptor) property).getChildType();
+            } else if (property instanceof ChildListPropertyDescriptor) {
+                childClass = ((ChildListPropertyDescriptor) property).getElementType();
+            } else if (property instanceof StructuralPropertyDescriptor) {
+                // simple property: not a node
+                continue;
+            } else {
+                return null;
+            }
+            for (int type = 1; type < NB_NODE_TYPES; type++) {
+                final Class<?> clazz = getNodeClass(type);
+                if (clazz != null && childClass.isAssignableFrom(clazz)) {
+                    results.set(type);
+                }
+            }
+        }
+        return results;
+    }
+
+    static boolean is(String methodName, Method m) {
+        return methodName.equals(m.getName())
+            && m.getParameterTypes().length == 1
+            && ASTNode.class.equals(m.getParameterTypes()[0]);
+    }
+
+    static boolean isVisit(Method m) {
+        return "visit".equals(m.getName())
+            && m.getParameterTypes().length == 1
+            && ASTNode.class.isAssignableFrom(m.getParameterTypes()[0])
+            && !Modifier.isAbstract(m.getParameterTypes()[0].getModifiers());
+    }
+
+    static boolean isEndVisit(Method m) {
+        return "endVisit".equals(m.getName())
+            && m.getParameterTypes().length == 1
+            && ASTNode.class.isAssignableFrom(m.getParameterTypes()[0])
+            && !Modifier.isAbstract(m.getParameterTypes()[0].getModifiers());
+    }
+
+    private static List<List<Integer>> newListOfLists(int size) {
+        final List<List<Integer>> results = new ArrayList<List<Integer>>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(new ArrayList<Integer>(0));
+        }
+        return results;
+    }
+
+    private static void addIf(boolean condition, List<Integer> indexes, int index) {
+        if (condition) {
+            indexes.add(index);
+        }
+    }
+
+    private static int[] toArray(List<Integer> indexes) {
+        if (indexes.isEmpty()) {
+            return NO_INDEXES;
+        }
+        final int[] results = new int[indexes.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = indexes.get(i);
+        }
+        return results;
+    }
+
+    private static int[] toArray(BitSet bits) {
+        if (bits.isEmpty()) {
+            return NO_INDEXES;
+        }
+        final int[] results = new int[bits.cardinality()];
+        int i = 0;
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            results[i++] = bit;
+        }
+        return results;
+    }
+}
@@ -53,13 +53,17 @@ import org.eclipse.jdt.internal.corext.dom.ASTNodes;
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.eclipse.jdt.core.dom.ASTNode.*;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
+import org.autorefactor.cfg.ControlFlowGraph;
 import org.autorefactor.refactoring.ASTBuilder;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.TypeHierarchyPrecondition;
 
 /** See {@link #getDescription()} method. */
-public class WakeLockRefactoring extends AbstractRefactoringRule {
+public class WakeLockRefactoring extends AbstractRefactoringRule implements TypeHierarchyPrecondition {
 
 	@Override
 	public String getDescription() {
@@ -74,6 +78,11 @@ public class WakeLockRefactoring extends AbstractRefactoringRule {
 		return "WakeLockRefactoring";
 	}
 
+	@Override
+	public String[] getRequiredSuperTypes() {
+		return new String[] { "android.app.Activity", "android.app.Service" };
+	}
+
     @Override
     public boolean visit(MethodInvocation node) {
     	if(isMethod(node, "android.os.PowerManager.WakeLock", "release")){
@@ -110,7 +119,7 @@ public class WakeLockRefactoring extends AbstractRefactoringRule {
     		TypeDeclaration typeDeclaration= (TypeDeclaration) ASTNodes.getParent(node, ASTNode.TYPE_DECLARATION);
     		ReleasePresenceChecker releasePresenceChecker = new ReleasePresenceChecker();
     		typeDeclaration.accept(releasePresenceChecker);
-			if(!releasePresenceChecker.releasePresent){
+			if(!isReleased(node, releasePresenceChecker.releases)){
 				Statement releaseNode = createWakelockReleaseNode(node);				
     			MethodDeclaration onPauseMethod = findMethodOfType("onPause", typeDeclaration);
     			if(onPauseMethod != null && node.getParent().getNodeType() == ASTNode.EXPRESSION_STATEMENT){
@@ -139,6 +148,31 @@ public class WakeLockRefactoring extends AbstractRefactoringRule {
     	return VISIT_SUBTREE;
     }
     
+	/**
+	 * Returns whether the wake lock acquired by the provided invocation is released,
+	 * either from another method like onPause(), or on all the paths following its acquisition.
+	 */
+	private boolean isReleased(MethodInvocation acquire, List<MethodInvocation> releases) {
+		if (releases.isEmpty()) {
+			return false;
+		}
+		final MethodDeclaration method = getAncestorOrNull(acquire, MethodDeclaration.class);
+		final ControlFlowGraph cfg = method != null ? this.ctx.getControlFlowGraph(method) : null;
+		final int acquisition = cfg != null ? cfg.getBlockIndex(acquire) : -1;
+		if (acquisition < 0) {
+			return true;
+		}
+		final BitSet releaseBlocks = new BitSet(cfg.getNbBlocks());
+		for (MethodInvocation release : releases) {
+			final int index = cfg.getBlockIndex(release);
+			if (getAncestorOrNull(release, MethodDeclaration.class) != method || index < 0) {
+				return true;
+			}
+			releaseBlocks.set(index);
+		}
+		return cfg.allPathsReach(acquisition, releaseBlocks);
+	}
+
     private Statement createWakelockReleaseNode(MethodInvocation methodInvocation){
     	final ASTBuilder b = this.ctx.getASTBuilder();
     	IfStatement ifStatement = b.getAST().newIfStatement();
@@ -199,10 +233,12 @@ public class WakeLockRefactoring extends AbstractRefactoringRule {
     
     public class ReleasePresenceChecker extends ASTVisitor {
     	public boolean releasePresent = false;
+    	public final List<MethodInvocation> releases = new ArrayList<MethodInvocation>();
     	@Override
         public boolean visit(MethodInvocation node) {
     		if(isMethod(node, "android.os.PowerManager.WakeLock", "release")){
     			this.releasePresent=true;
+    			this.releases.add(node);
     			return DO_NOT_VISIT_SUBTREE;
     		}
     		return VISIT_SUBTREE;
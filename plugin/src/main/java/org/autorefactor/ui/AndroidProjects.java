@@ -0,0 +1,158 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.autorefactor.AutoRefactorPlugin;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Reads the Android build settings of a project, as declared in its build files.
+ * <p>
+ * The build.gradle file takes precedence over the AndroidManifest.xml file,
+ * like the Android Gradle plugin which overrides the manifest with the values of the build script.
+ * Values computed by the build script, like {@code minSdkVersion rootProject.ext.minSdk}, are not resolved.
+ */
+final class AndroidProjects {
+    private static final String[] GRADLE_FILES = { "build.gradle", "build.gradle.kts" };
+    private static final String[] MANIFEST_FILES = { "AndroidManifest.xml", "src/main/AndroidManifest.xml" };
+    /** Matches {@code minSdkVersion 16}, {@code minSdkVersion(16)}, {@code minSdk = 16}, etc. */
+    private static final Pattern GRADLE_MIN_SDK_VERSION =
+            Pattern.compile("\\bminSdk(?:Version)?\\s*(?:=|\\()?\\s*(\\d+)\\b");
+    /** Matches {@code android:minSdkVersion="16"} in a {@code <uses-sdk>} element. */
+    private static final Pattern MANIFEST_MIN_SDK_VERSION =
+            Pattern.compile("\\bandroid:minSdkVersion\\s*=\\s*[\"'](\\d+)[\"']");
+
+    private AndroidProjects() {
+    }
+
+    /**
+     * Returns the minimum Android API level supported by the provided project.
+     *
+     * @param project the project
+     * @return the minimum Android API level supported by the provided project, or 0 when it is unknown
+     */
+    static int getMinSdkVersion(IProject project) {
+        final IPath location = project.getLocation();
+        if (location == null) {
+            return 0;
+        }
+        final File projectDir = location.toFile();
+        for (String fileName : GRADLE_FILES) {
+            final int result = parseMinSdkVersion(read(new File(projectDir, fileName)), GRADLE_MIN_SDK_VERSION);
+            if (result > 0) {
+                return result;
+            }
+        }
+        for (String fileName : MANIFEST_FILES) {
+            final int result = parseMinSdkVersion(read(new File(projectDir, fileName)), MANIFEST_MIN_SDK_VERSION);
+            if (result > 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the minimum Android API level declared in the provided build.gradle content.
+     *
+     * @param content the content of a build.gradle file, may be null
+     * @return the minimum Android API level declared in the content, or 0 when it is not declared
+     */
+    static int parseGradleMinSdkVersion(String content) {
+        return parseMinSdkVersion(content, GRADLE_MIN_SDK_VERSION);
+    }
+
+    /**
+     * Returns the minimum Android API level declared in the provided AndroidManifest.xml content.
+     *
+     * @param content the content of an AndroidManifest.xml file, may be null
+     * @return the minimum Android API level declared in the content, or 0 when it is not declared
+     */
+    static int parseManifestMinSdkVersion(String content) {
+        return parseMinSdkVersion(content, MANIFEST_MIN_SDK_VERSION);
+    }
+
+    private static int parseMinSdkVersion(String content, Pattern pattern) {
+        if (content == null) {
+            return 0;
+        }
+        final Matcher matcher = pattern.matcher(content);
+        while (matcher.find()) {
+            if (!isInComment(content, matcher.start())) {
+                try {
+                    return Integer.parseInt(matcher.group(1));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /** Returns whether the provided position follows a line comment, or is inside a block comment. */
+    private static boolean isInComment(String content, int position) {
+        final int lineStart = content.lastIndexOf('\n', position) + 1;
+        final String linePrefix = content.substring(lineStart, position);
+        if (linePrefix.contains("//")) {
+            return true;
+        }
+        final String before = content.substring(0, position);
+        return before.lastIndexOf("/*") > before.lastIndexOf("*/")
+                || before.lastIndexOf("<!--") > before.lastIndexOf("-->");
+    }
+
+    private static String read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            try {
+                final StringBuilder sb = new StringBuilder();
+                final char[] buffer = new char[8192];
+                int n;
+                while ((n = reader.read(buffer)) != -1) {
+                    sb.append(buffer, 0, n);
+                }
+                return sb.toString();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            AutoRefactorPlugin.logError("Could not read the Android build file " + file, e);
+            return null;
+        }
+    }
+}
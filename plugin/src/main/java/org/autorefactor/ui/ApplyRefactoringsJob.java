@@ -25,10 +25,16 @@
  */
 package org.autorefactor.ui;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -36,11 +42,14 @@ import org.autorefactor.AutoRefactorPlugin;
 import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.RefactoringRule;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.SourcePreconditions;
+import org.autorefactor.refactoring.TypeHierarchyCache;
 import org.autorefactor.refactoring.rules.AggregateASTVisitor;
 import org.autorefactor.refactoring.rules.RefactoringContext;
+import org.autorefactor.refactoring.rules.RefactoringRulesProfiler;
 import org.autorefactor.util.IllegalStateException;
 import org.autorefactor.util.OnEclipseVersionUpgrade;
-import org.autorefactor.util.UnhandledException;
+import org.autorefactor.util.UnifiedDiff;
 import org.eclipse.core.filebuffers.FileBuffers;
 import org.eclipse.core.filebuffers.ITextFileBuffer;
 import org.eclipse.core.filebuffers.ITextFileBufferManager;
@@ -48,14 +57,17 @@ import org.eclipse.core.filebuffers.LocationKind;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
@@ -67,8 +79,31 @@ import static org.autorefactor.refactoring.ASTHelper.*;
  * ({@link PrepareApplyRefactoringsJob}).
  */
 public class ApplyRefactoringsJob extends Job {
+    /** Maximum number of compilation units parsed together by a worker. */
+    private static final int BATCH_SIZE = 20;
+    /** Maximum number of loops applying refactorings to a compilation unit before giving up. */
+    private static final int MAX_NB_LOOPS = 100;
+
     private final Queue<RefactoringUnit> refactoringUnits;
     private final List<RefactoringRule> refactoringRulesToApply;
+    /** Maximum estimated cost of the work items parsed together, in nanoseconds. */
+    private final long maxBatchCost;
+    /** The profiler of the refactoring rules, or null when profiling is off. */
+    private final RefactoringRulesProfiler profiler;
+    /** The cache of the files where no refactoring applies, or null when it is turned off. */
+    private final RefactoringResultsCache resultsCache;
+    /**
+     * Where to write the unified diff of the changes in dry-run mode,
+     * or null to apply the changes to the files.
+     */
+    private final Writer diffOutput;
+    /**
+     * Where to count the files each refactoring rule would change in dry-run mode,
+     * or null to apply the changes to the files.
+     */
+    private final RefactoringReport report;
+    /** Work item already polled from the queue which will start the next batch. */
+    private RefactoringUnit nextUnit;
 
     /**
      * Builds an instance of this class.
@@ -78,10 +113,41 @@ public class ApplyRefactoringsJob extends Job {
      */
     public ApplyRefactoringsJob(
             Queue<RefactoringUnit> refactoringUnits, List<RefactoringRule> refactoringRulesToApply) {
+        this(refactoringUnits, refactoringRulesToApply, Long.MAX_VALUE, null, null, null, null);
+    }
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param refactoringUnits the units to automatically refactor
+     * @param refactoringRulesToApply the refactorings to apply
+     * @param maxBatchCost the maximum estimated cost of the work items parsed together, in nanoseconds
+     * @param profiler the profiler of the refactoring rules, or null when profiling is off
+     * @param resultsCache the cache where to record the files where no refactoring applies,
+     *        or null when it is turned off
+     * @param diffOutput where to write the unified diff of the changes without modifying the files (dry-run mode),
+     *        or null to apply the changes to the files
+     * @param report where to count the files each refactoring rule would change without modifying them
+     *        (dry-run mode), or null to apply the changes to the files
+     */
+    ApplyRefactoringsJob(Queue<RefactoringUnit> refactoringUnits, List<RefactoringRule> refactoringRulesToApply,
+            long maxBatchCost, RefactoringRulesProfiler profiler, RefactoringResultsCache resultsCache,
+            Writer diffOutput, RefactoringReport report) {
         super("Auto Refactor");
         setPriority(Job.LONG);
         this.refactoringUnits = refactoringUnits;
         this.refactoringRulesToApply = refactoringRulesToApply;
+        this.maxBatchCost = maxBatchCost;
+        this.profiler = profiler;
+        this.resultsCache = resultsCache;
+        this.diffOutput = diffOutput;
+        this.report = report;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean belongsTo(Object family) {
+        return AutoRefactorPlugin.PLUGIN_ID.equals(family);
     }
 
     @Override
@@ -111,28 +177,179 @@ public class ApplyRefactoringsJob extends Job {
 
         final SubMonitor loopMonitor = SubMonitor.convert(monitor, refactoringUnits.size());
         try {
-            RefactoringUnit toRefactor;
-            while ((toRefactor = refactoringUnits.poll()) != null) {
+            List<RefactoringUnit> batch;
+            while (!(batch = pollBatch()).isEmpty()) {
                 if (loopMonitor.isCanceled()) {
                     return Status.CANCEL_STATUS;
                 }
+                // all the work items of a batch come from the same java project
+                TypeHierarchyCache.setCurrent(batch.get(0).getTypeHierarchyCache());
+                try {
+                    applyRefactorings(batch, loopMonitor);
+                } finally {
+                    TypeHierarchyCache.setCurrent(null);
+                }
+            }
+        } catch (OperationCanceledException e) {
+            return Status.CANCEL_STATUS;
+        } finally {
+            loopMonitor.done();
+        }
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Polls the next batch of work items from the shared queue.
+     * All the work items of a batch share the same {@link JavaProjectOptions},
+     * i.e. they come from the same java project,
+     * and their total estimated cost is bounded by {@link #maxBatchCost}.
+     */
+    private List<RefactoringUnit> pollBatch() {
+        final List<RefactoringUnit> batch = new ArrayList<RefactoringUnit>();
+        long batchCost = 0;
+        RefactoringUnit unit = nextUnit != null ? nextUnit : refactoringUnits.poll();
+        nextUnit = null;
+        while (unit != null) {
+            if (!batch.isEmpty() && batch.get(0).getOptions() != unit.getOptions()) {
+                // belongs to another java project, it will start the next batch
+                nextUnit = unit;
+                break;
+            }
+            batch.add(unit);
+            batchCost += unit.getEstimatedCost();
+            if (batch.size() >= BATCH_SIZE || batchCost >= maxBatchCost) {
+                break;
+            }
+            unit = refactoringUnits.poll();
+        }
+        return batch;
+    }
+
+    /**
+     * Parses all the compilation units of the batch with a single call to
+     * {@link ASTParser#createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)}
+     * so the binding environment is shared across all of them
+     * and then applies the refactorings to each resulting AST.
+     * Compilation units which none of the refactoring rules can refactor are not parsed.
+     */
+    private void applyRefactorings(List<RefactoringUnit> batch, final SubMonitor loopMonitor) throws Exception {
+        final JavaProjectOptions options = batch.get(0).getOptions();
+        final List<ICompilationUnit> cusToParse = new ArrayList<ICompilationUnit>(batch.size());
+        final Map<ICompilationUnit, RefactoringUnit> units = new HashMap<ICompilationUnit, RefactoringUnit>();
+        final Map<ICompilationUnit, List<RefactoringRule>> rulesByUnit =
+                new HashMap<ICompilationUnit, List<RefactoringRule>>();
+        for (RefactoringUnit unit : batch) {
+            final ICompilationUnit compilationUnit = unit.getCompilationUnit();
+            final List<RefactoringRule> rules = getApplicableRules(unit);
+            if (rules.isEmpty()) {
+                // not parsed: its cost is unknown and must not be recorded as almost nothing
+                loopMonitor.worked(1);
+                recordUpToDate(compilationUnit, options);
+                continue;
+            }
+            cusToParse.add(compilationUnit);
+            units.put(compilationUnit, unit);
+            rulesByUnit.put(compilationUnit, rules);
+        }
+        if (cusToParse.isEmpty()) {
+            return;
+        }
+        final ICompilationUnit[] compilationUnits = cusToParse.toArray(new ICompilationUnit[cusToParse.size()]);
 
-                final ICompilationUnit compilationUnit = toRefactor.getCompilationUnit();
-                final JavaProjectOptions options = toRefactor.getOptions();
+        final ASTParser parser = ASTParser.newParser(AST.JLS4);
+        parser.setProject(compilationUnits[0].getJavaProject());
+        parser.setResolveBindings(true);
+        parser.setCompilerOptions(options.getCompilerOptions());
+        final Map<ICompilationUnit, Long> refactoringDurations = new HashMap<ICompilationUnit, Long>();
+        final long batchStartTime = System.nanoTime();
+        parser.createASTs(compilationUnits, new String[0], new ASTRequestor() {
+            @Override
+            public void acceptAST(ICompilationUnit compilationUnit, CompilationUnit astRoot) {
+                if (loopMonitor.isCanceled()) {
+                    throw new OperationCanceledException();
+                }
                 try {
                     loopMonitor.subTask("Applying refactorings to " + getClassName(compilationUnit));
-                    final AggregateASTVisitor refactoring = new AggregateASTVisitor(refactoringRulesToApply);
-                    applyRefactoring(compilationUnit, refactoring, options, loopMonitor.newChild(1));
+                    final long startTime = System.nanoTime();
+                    final AggregateASTVisitor refactoring =
+                            new AggregateASTVisitor(rulesByUnit.get(compilationUnit));
+                    if (profiler != null) {
+                        refactoring.setProfiler(profiler);
+                    }
+                    final IProgressMonitor monitor = loopMonitor.newChild(1);
+                    if (isDryRun()) {
+                        if (applyRefactoringDryRun(compilationUnit, astRoot, refactoring, options, monitor)) {
+                            recordUpToDate(compilationUnit, options);
+                        }
+                    } else if (applyRefactoring(compilationUnit, astRoot, refactoring, options, monitor)) {
+                        // the saved content is a fixpoint: no refactoring applies to it anymore
+                        recordUpToDate(compilationUnit, options);
+                    }
+                    refactoring.flushProfilingData();
+                    refactoringDurations.put(compilationUnit, System.nanoTime() - startTime);
+                } catch (OperationCanceledException e) {
+                    throw e;
                 } catch (Exception e) {
+                    // only give up on this file: the other files of the batch are already polled from the queue
                     final String msg = "Exception when applying refactorings to file \""
                             + compilationUnit.getPath() + "\": " + e.getMessage();
-                    throw new UnhandledException(null, msg, e);
+                    AutoRefactorPlugin.logError(msg, e);
                 }
             }
-        } finally {
-            loopMonitor.done();
+        }, null);
+        recordCosts(units.values(), refactoringDurations, System.nanoTime() - batchStartTime);
+    }
+
+    /**
+     * Records the cost of the refactored work items of a batch: the time spent refactoring each of them,
+     * plus a share of the time spent parsing the batch and resolving its bindings,
+     * proportional to their source length.
+     */
+    private static void recordCosts(Collection<RefactoringUnit> units, Map<ICompilationUnit, Long> refactoringDurations,
+            long batchDuration) {
+        long parseDuration = batchDuration;
+        long totalLength = 0;
+        for (RefactoringUnit unit : units) {
+            final Long refactoringDuration = refactoringDurations.get(unit.getCompilationUnit());
+            if (refactoringDuration != null) {
+                parseDuration -= refactoringDuration;
+            }
+            totalLength += unit.getSourceLength();
+        }
+        parseDuration = Math.max(0, parseDuration);
+        for (RefactoringUnit unit : units) {
+            final Long refactoringDuration = refactoringDurations.get(unit.getCompilationUnit());
+            if (refactoringDuration != null) {
+                final long parseShare = totalLength > 0
+                        ? (long) (parseDuration * ((double) unit.getSourceLength() / totalLength))
+                        : parseDuration / units.size();
+                RefactoringUnitCosts.record(unit, refactoringDuration + parseShare);
+            }
+        }
+    }
+
+    /**
+     * Returns the refactoring rules to apply which may refactor the compilation unit of the provided work item,
+     * according to the subtypes it declares and to the identifiers appearing in its source.
+     */
+    private List<RefactoringRule> getApplicableRules(RefactoringUnit unit) throws Exception {
+        final ICompilationUnit compilationUnit = unit.getCompilationUnit();
+        List<RefactoringRule> rules = refactoringRulesToApply;
+        if (unit.getSubtypesIndex() != null) {
+            rules = unit.getSubtypesIndex().getApplicableRules(rules, compilationUnit);
+        }
+        final String source = compilationUnit.getSource();
+        if (source == null) {
+            return rules;
+        }
+        return SourcePreconditions.getApplicableRules(rules, source);
+    }
+
+    private void recordUpToDate(ICompilationUnit compilationUnit, JavaProjectOptions options) throws Exception {
+        if (resultsCache != null) {
+            resultsCache.recordUpToDate(
+                    RefactoringResultsCache.getKey(compilationUnit, options, refactoringRulesToApply));
         }
-        return Status.OK_STATUS;
     }
 
     private String getClassName(final ICompilationUnit compilationUnit) {
@@ -141,8 +358,14 @@ public class ApplyRefactoringsJob extends Job {
         return compilationUnit.getParent().getElementName() + "." + simpleName;
     }
 
-    private void applyRefactoring(ICompilationUnit compilationUnit, AggregateASTVisitor refactoringToApply,
-            JavaProjectOptions options, IProgressMonitor monitor) throws Exception {
+    /**
+     * Applies the refactorings to the file buffer of the provided compilation unit.
+     *
+     * @return true if the refactorings were applied until no more refactoring applies, false otherwise
+     */
+    private boolean applyRefactoring(ICompilationUnit compilationUnit, CompilationUnit astRoot,
+            AggregateASTVisitor refactoringToApply, JavaProjectOptions options, IProgressMonitor monitor)
+            throws Exception {
         final ITextFileBufferManager bufferManager = FileBuffers.getTextFileBufferManager();
         final IPath path = compilationUnit.getPath();
         final LocationKind locationKind = LocationKind.NORMALIZE;
@@ -159,15 +382,57 @@ public class ApplyRefactoringsJob extends Job {
                 AutoRefactorPlugin.logError(
                     "File \"" + compilationUnit.getPath() + "\" is not synchronized with the file system."
                         + " Automated refactorings will not be applied to it.");
-                return;
+                return false;
             }
             final IDocument document = textFileBuffer.getDocument();
-            applyRefactoring(document, compilationUnit, refactoringToApply, options, monitor);
+            // an editor showing this file is another client connected to its buffer
+            final boolean mayBeOpenInEditor = textFileBuffer.isShared();
+            final int nbLoops = applyRefactoring(document, mayBeOpenInEditor, compilationUnit, astRoot,
+                    refactoringToApply, options, monitor);
+            return nbLoops <= MAX_NB_LOOPS;
         } finally {
             bufferManager.disconnect(path, locationKind, null);
         }
     }
 
+    /**
+     * Applies the refactorings to an in-memory copy of the provided compilation unit,
+     * then writes the unified diff of the changes to {@link #diffOutput}
+     * and counts the changed file in {@link #report}.
+     * Neither the file nor its shared buffer are modified,
+     * so no builder nor resource change listener is triggered.
+     *
+     * @return true if no refactoring applies to the compilation unit, false otherwise
+     */
+    private boolean applyRefactoringDryRun(ICompilationUnit compilationUnit, CompilationUnit astRoot,
+            AggregateASTVisitor refactoringToApply, JavaProjectOptions options, IProgressMonitor monitor)
+            throws Exception {
+        // the working copy has its own buffer, used to parse the refactored source with bindings
+        final ICompilationUnit workingCopy = compilationUnit.getWorkingCopy(null);
+        try {
+            final String source = workingCopy.getSource();
+            final IDocument document = new Document(source);
+            final int nbLoops =
+                    applyRefactoring(document, false, workingCopy, astRoot, refactoringToApply, options, monitor);
+            if (nbLoops > 0 && diffOutput != null) {
+                writeDiff(compilationUnit, source, document.get());
+            }
+            return nbLoops == 0;
+        } finally {
+            workingCopy.discardWorkingCopy();
+        }
+    }
+
+    private void writeDiff(ICompilationUnit compilationUnit, String oldSource, String newSource) throws IOException {
+        // paths relative to the workspace root, like "a/project/src/pkg/Type.java"
+        final String path = compilationUnit.getPath().makeRelative().toString();
+        final String diff = UnifiedDiff.diff("a/" + path, "b/" + path, oldSource, newSource);
+        synchronized (diffOutput) {
+            diffOutput.write(diff);
+            diffOutput.flush();
+        }
+    }
+
     /**
      * Applies the refactorings provided inside the {@link AggregateASTVisitor} to the provided
      * {@link ICompilationUnit}.
@@ -177,6 +442,8 @@ public class ApplyRefactoringsJob extends Job {
      * @param refactoring the {@link AggregateASTVisitor} to apply to the compilation unit
      * @param options the Java project options used to compile the project
      * @param monitor the progress monitor of the current job
+     * @return the number of intermediate saves avoided by keeping the compilation unit changes in memory
+     *         until the fixpoint is reached. The compilation unit is still re-parsed on each loop.
      * @throws Exception if any problem occurs
      *
      * @see <a
@@ -190,72 +457,119 @@ public class ApplyRefactoringsJob extends Job {
      * href="http://www.eclipse.org/articles/article.php?file=Article-JavaCodeManipulation_AST/index.html"
      * >Abstract Syntax Tree > Write it down</a>
      */
-    public void applyRefactoring(IDocument document, ICompilationUnit compilationUnit, AggregateASTVisitor refactoring,
+    public int applyRefactoring(IDocument document, ICompilationUnit compilationUnit, AggregateASTVisitor refactoring,
             JavaProjectOptions options, IProgressMonitor monitor) throws Exception {
         // creation of DOM/AST from a ICompilationUnit
         final ASTParser parser = ASTParser.newParser(AST.JLS4);
         resetParser(compilationUnit, parser, options);
+        final CompilationUnit astRoot = (CompilationUnit) parser.createAST(null);
+        // only documents from file buffers can be displayed by an editor
+        final boolean mayBeOpenInEditor =
+                FileBuffers.getTextFileBufferManager().getTextFileBuffer(document) != null;
+        final boolean hadUnsavedChanges = compilationUnit.hasUnsavedChanges();
+        final int nbLoops = applyRefactoring(document, mayBeOpenInEditor, compilationUnit, astRoot, refactoring,
+                options, monitor);
+        return getNbSavesAvoided(nbLoops, hadUnsavedChanges);
+    }
 
-        CompilationUnit astRoot = (CompilationUnit) parser.createAST(null);
+    /**
+     * Returns the number of saves avoided compared to saving the compilation unit on every loop,
+     * which is zero when the compilation unit is not saved at all.
+     */
+    private int getNbSavesAvoided(int nbLoops, boolean hadUnsavedChanges) {
+        return nbLoops > 1 && !hadUnsavedChanges && !isDryRun() ? nbLoops - 1 : 0;
+    }
 
+    /**
+     * Applies the refactorings until no more refactoring applies.
+     * <p>
+     * Unless the document may be displayed by an open editor,
+     * the changes are applied on the current worker thread rather than on the SWT Display Thread.
+     *
+     * @return the number of loops which applied refactorings,
+     *         greater than {@link #MAX_NB_LOOPS} if an infinite loop was detected
+     */
+    private int applyRefactoring(IDocument document, boolean mayBeOpenInEditor, ICompilationUnit compilationUnit,
+            CompilationUnit initialAstRoot, AggregateASTVisitor refactoring, JavaProjectOptions options,
+            IProgressMonitor monitor) throws Exception {
+        final long startTime = System.nanoTime();
+        final ASTParser parser = ASTParser.newParser(AST.JLS4);
+        CompilationUnit astRoot = initialAstRoot;
+
+        final boolean hadUnsavedChanges = compilationUnit.hasUnsavedChanges();
         int totalNbLoops = 0;
         Set<ASTVisitor> lastLoopVisitors = Collections.emptySet();
+        final Set<ASTVisitor> allLoopsVisitors = new HashSet<ASTVisitor>();
         int nbLoopsWithSameVisitors = 0;
-        while (true) {
-            if (totalNbLoops > 100) {
-                // Oops! Something went wrong.
-                final String errorMsg = "An infinite loop has been detected for file "
-                        + getFileName(astRoot) + "."
-                        + " A possible cause is that code is being incorrectly"
-                        + " refactored one way then refactored back to what it was."
-                        + " Fix the code before pursuing."
-                        + getPossibleCulprits(nbLoopsWithSameVisitors, lastLoopVisitors);
-                AutoRefactorPlugin.logError(errorMsg, new IllegalStateException(astRoot, errorMsg));
-                break;
-            }
+        try {
+            while (true) {
+                if (totalNbLoops > MAX_NB_LOOPS) {
+                    // Oops! Something went wrong.
+                    final String errorMsg = "An infinite loop has been detected for file "
+                            + getFileName(astRoot) + "."
+                            + " A possible cause is that code is being incorrectly"
+                            + " refactored one way then refactored back to what it was."
+                            + " Fix the code before pursuing."
+                            + getPossibleCulprits(nbLoopsWithSameVisitors, lastLoopVisitors);
+                    AutoRefactorPlugin.logError(errorMsg, new IllegalStateException(astRoot, errorMsg));
+                    break;
+                }
 
-            final RefactoringContext ctx = new RefactoringContext(compilationUnit, astRoot, options, monitor);
-            refactoring.setRefactoringContext(ctx);
+                final RefactoringContext ctx = new RefactoringContext(compilationUnit, astRoot, options, monitor);
+                refactoring.setRefactoringContext(ctx);
 
-            final Refactorings refactorings = refactoring.getRefactorings(astRoot);
-            if (!refactorings.hasRefactorings()) {
-                // no new refactorings have been applied,
-                // we are done with applying the refactorings.
-                return;
-            }
+                final Refactorings refactorings = refactoring.getRefactorings(astRoot);
+                if (!refactorings.hasRefactorings()) {
+                    // no new refactorings have been applied,
+                    // we are done with applying the refactorings.
+                    break;
+                }
 
-            // apply the refactorings and save the compilation unit
-            refactorings.applyTo(document);
-            final boolean hadUnsavedChanges = compilationUnit.hasUnsavedChanges();
-            compilationUnit.getBuffer().setContents(document.get());
-            // http://wiki.eclipse.org/FAQ_What_is_a_working_copy%3F
-            // compilationUnit.reconcile(AST.JLS4,
-            // ICompilationUnit.ENABLE_BINDINGS_RECOVERY |
-            // ICompilationUnit.ENABLE_STATEMENTS_RECOVERY |
-            // ICompilationUnit.FORCE_PROBLEM_DETECTION
-            // /** can be useful to back out a change that does not compile */
-            // , null, null);
-            if (!hadUnsavedChanges) {
-                compilationUnit.save(null, true);
+                // apply the refactorings to the in-memory buffer only:
+                // the compilation unit is saved once, after reaching the fixpoint.
+                // Parsing from the buffer gives back an AST with resolved bindings
+                // without triggering the builders and the resource change listeners
+                // on every loop.
+                refactorings.applyTo(document, mayBeOpenInEditor);
+                compilationUnit.getBuffer().setContents(document.get());
+                // I did not find any other way to directly modify the AST
+                // while still keeping the resolved type bindings working.
+                // Using astRoot.recordModifications() did not work:
+                // type bindings were lost. Is there a way to recover them?
+                // FIXME we should find a way to apply all the changes at
+                // the AST level and refresh the bindings
+                resetParser(compilationUnit, parser, options);
+                astRoot = (CompilationUnit) parser.createAST(null);
+                ++totalNbLoops;
+
+                final Set<ASTVisitor> thisLoopVisitors = refactoring.getVisitorsContributingRefactoring();
+                allLoopsVisitors.addAll(thisLoopVisitors);
+                if (!thisLoopVisitors.equals(lastLoopVisitors)) {
+                    lastLoopVisitors = new HashSet<ASTVisitor>(thisLoopVisitors);
+                    nbLoopsWithSameVisitors = 0;
+                } else {
+                    ++nbLoopsWithSameVisitors;
+                }
             }
-            // I did not find any other way to directly modify the AST
-            // while still keeping the resolved type bindings working.
-            // Using astRoot.recordModifications() did not work:
-            // type bindings were lost. Is there a way to recover them?
-            // FIXME we should find a way to apply all the changes at
-            // the AST level and refresh the bindings
-            resetParser(compilationUnit, parser, options);
-            astRoot = (CompilationUnit) parser.createAST(null);
-            ++totalNbLoops;
-
-            final Set<ASTVisitor> thisLoopVisitors = refactoring.getVisitorsContributingRefactoring();
-            if (!thisLoopVisitors.equals(lastLoopVisitors)) {
-                lastLoopVisitors = new HashSet<ASTVisitor>(thisLoopVisitors);
-                nbLoopsWithSameVisitors = 0;
-            } else {
-                ++nbLoopsWithSameVisitors;
+        } finally {
+            // also save the changes made before any failure, like it would have been
+            // done when saving on every loop
+            if (totalNbLoops > 0 && !hadUnsavedChanges && !isDryRun()) {
+                compilationUnit.save(null, true);
             }
         }
+        if (report != null && totalNbLoops > 0) {
+            report.addFile(allLoopsVisitors);
+        }
+        if (profiler != null) {
+            profiler.addFileData(compilationUnit.getPath().toString(), totalNbLoops + 1,
+                    System.nanoTime() - startTime, getNbSavesAvoided(totalNbLoops, hadUnsavedChanges));
+        }
+        return totalNbLoops;
+    }
+
+    private boolean isDryRun() {
+        return diffOutput != null || report != null;
     }
 
     private static void resetParser(ICompilationUnit cu, ASTParser parser, JavaProjectOptions options) {
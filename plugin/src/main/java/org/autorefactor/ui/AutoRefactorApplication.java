@@ -0,0 +1,392 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.autorefactor.AutoRefactorPlugin;
+import org.autorefactor.refactoring.RefactoringRule;
+import org.autorefactor.refactoring.rules.AllRefactoringRules;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * Headless Eclipse application applying the refactoring rules without any UI,
+ * for example on build servers.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * eclipse -nosplash -data &lt;workspace&gt; -application org.autorefactor.plugin.headless
+ *         -project &lt;project directory or name&gt; [-project ...]
+ *         [-source &lt;source folder, package directory or java file&gt;] [-source ...]
+ *         [-rules &lt;rule1,rule2,...&gt;] [-threads &lt;number of workers&gt;]
+ *         [-mode apply|diff|report] [-output &lt;diff file&gt;]
+ * </pre>
+ *
+ * Projects given as a directory are imported into the workspace if needed.
+ * When no source is provided, all the provided projects are refactored.
+ * Rules are matched against the rule names or the rule class simple names
+ * from {@link AllRefactoringRules#getAllRefactoringRules()}; all the rules are applied by default.
+ * <p>
+ * In diff mode, the files are left untouched and the changes are written as a unified diff
+ * to the output file, or to the standard output by default.
+ * The paths in the diff are relative to the workspace root, so it can be applied with {@code patch -p1}.
+ * <p>
+ * In report mode, the files are left untouched and the number of files each rule would change
+ * is printed to the standard output.
+ * <p>
+ * The preferences of the workspace apply. For example, nightly runs can skip the unchanged files
+ * by passing {@code -pluginCustomization <file>} where the file contains
+ * {@code org.autorefactor.plugin/results_cache_on=true}.
+ */
+public class AutoRefactorApplication implements IApplication {
+    /** Exit code used when the application cannot run or when refactorings failed. */
+    private static final Integer EXIT_ERROR = 1;
+
+    /** Output modes of this application. */
+    enum Mode {
+        /** Applies the refactorings to the files. */
+        APPLY,
+        /** Writes the refactorings as a unified diff without modifying the files (dry-run). */
+        DIFF,
+        /** Prints the number of files each rule would change without modifying the files (dry-run). */
+        REPORT
+    }
+
+    private final List<String> projectArgs = new ArrayList<String>();
+    private final List<String> sourceArgs = new ArrayList<String>();
+    private String rulesArg;
+    private int nbWorkers;
+    private Mode mode = Mode.APPLY;
+    private String outputArg;
+
+    /** {@inheritDoc} */
+    @Override
+    public Object start(IApplicationContext context) throws Exception {
+        final Map<?, ?> arguments = context.getArguments();
+        final String[] args = (String[]) arguments.get(IApplicationContext.APPLICATION_ARGS);
+        final String argsError = parseArguments(args != null ? args : new String[0]);
+        if (argsError != null) {
+            System.err.println(argsError);
+            printUsage();
+            return EXIT_ERROR;
+        }
+
+        final List<RefactoringRule> rules = getRefactoringRules();
+        if (rules == null) {
+            return EXIT_ERROR;
+        }
+        final List<IJavaElement> javaElements = getJavaElements();
+        if (javaElements == null) {
+            return EXIT_ERROR;
+        }
+
+        final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        final IWorkspaceDescription description = workspace.getDescription();
+        final boolean wasAutoBuilding = description.isAutoBuilding();
+        // bindings are resolved from the sources, there is no need to rebuild after each saved file
+        setAutoBuilding(workspace, false);
+        try {
+            return run(javaElements, rules);
+        } finally {
+            setAutoBuilding(workspace, wasAutoBuilding);
+            workspace.save(true, null);
+        }
+    }
+
+    private Object run(List<IJavaElement> javaElements, List<RefactoringRule> rules) throws Exception {
+        final List<IStatus> errors = new ArrayList<IStatus>();
+        final IJobManager jobManager = Job.getJobManager();
+        final JobChangeAdapter errorCollector = new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                final IStatus result = event.getResult();
+                if (event.getJob().belongsTo(AutoRefactorPlugin.PLUGIN_ID)
+                        && result != null && result.getSeverity() == IStatus.ERROR) {
+                    synchronized (errors) {
+                        errors.add(result);
+                    }
+                }
+            }
+        };
+
+        final long startTime = System.nanoTime();
+        final Writer diffOutput = mode == Mode.DIFF ? openDiffOutput() : null;
+        final RefactoringReport report = mode == Mode.REPORT ? new RefactoringReport() : null;
+        jobManager.addJobChangeListener(errorCollector);
+        try {
+            new PrepareApplyRefactoringsJob(javaElements, rules, nbWorkers, diffOutput, report).schedule();
+            jobManager.join(AutoRefactorPlugin.PLUGIN_ID, null);
+        } finally {
+            jobManager.removeJobChangeListener(errorCollector);
+            if (diffOutput != null) {
+                if (outputArg != null) {
+                    diffOutput.close();
+                } else {
+                    // do not close the standard output
+                    diffOutput.flush();
+                }
+            }
+        }
+        final long durationMs = (System.nanoTime() - startTime) / 1000000;
+
+        for (IStatus error : errors) {
+            System.err.println(error.getMessage());
+            if (error.getException() != null) {
+                error.getException().printStackTrace();
+            }
+        }
+        // in diff mode without output file, the standard output only contains the diff
+        final PrintStream out = mode == Mode.DIFF && outputArg == null ? System.err : System.out;
+        if (report != null) {
+            report.print(out);
+        }
+        out.println("Applied " + rules.size() + " refactoring rules in " + durationMs + " ms");
+        return errors.isEmpty() ? EXIT_OK : EXIT_ERROR;
+    }
+
+    private Writer openDiffOutput() throws Exception {
+        if (outputArg != null) {
+            return new OutputStreamWriter(new FileOutputStream(outputArg), "UTF-8");
+        }
+        return new OutputStreamWriter(System.out, "UTF-8");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stop() {
+        Job.getJobManager().cancel(AutoRefactorPlugin.PLUGIN_ID);
+    }
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the command line arguments
+     * @return an error message if the arguments are invalid, null otherwise
+     */
+    private String parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (i + 1 >= args.length) {
+                return "Missing value for argument " + arg;
+            }
+            final String value = args[++i];
+            if ("-project".equals(arg)) {
+                projectArgs.add(value);
+            } else if ("-source".equals(arg)) {
+                sourceArgs.add(value);
+            } else if ("-rules".equals(arg)) {
+                rulesArg = value;
+            } else if ("-threads".equals(arg)) {
+                try {
+                    nbWorkers = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    return "Expected a number for argument -threads, but got " + value;
+                }
+                if (nbWorkers < 0) {
+                    return "Expected a positive number for argument -threads, but got " + value;
+                }
+            } else if ("-mode".equals(arg)) {
+                mode = getMode(value);
+                if (mode == null) {
+                    return "Unknown mode " + value + ", expected one of " + getModeNames(", ");
+                }
+            } else if ("-output".equals(arg)) {
+                outputArg = value;
+            } else {
+                return "Unknown argument " + arg;
+            }
+        }
+        if (projectArgs.isEmpty()) {
+            return "At least one project must be provided";
+        }
+        if (outputArg != null && mode != Mode.DIFF) {
+            return "Argument -output can only be used with -mode diff";
+        }
+        return null;
+    }
+
+    /** Mode names are matched ignoring case, independently of the default locale. */
+    private static Mode getMode(String modeName) {
+        for (Mode m : Mode.values()) {
+            if (m.name().equalsIgnoreCase(modeName)) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    private static String getModeNames(String separator) {
+        final StringBuilder sb = new StringBuilder();
+        for (Mode m : Mode.values()) {
+            if (sb.length() > 0) {
+                sb.append(separator);
+            }
+            sb.append(m.name().toLowerCase(Locale.ROOT));
+        }
+        return sb.toString();
+    }
+
+    private List<RefactoringRule> getRefactoringRules() {
+        final List<RefactoringRule> allRules = AllRefactoringRules.getAllRefactoringRules();
+        if (rulesArg == null) {
+            return allRules;
+        }
+
+        final List<RefactoringRule> results = new ArrayList<RefactoringRule>();
+        for (String ruleName : rulesArg.split(",")) {
+            final RefactoringRule rule = findRefactoringRule(allRules, ruleName.trim());
+            if (rule == null) {
+                System.err.println("Unknown refactoring rule " + ruleName);
+                System.err.println("Available refactoring rules are:");
+                for (RefactoringRule r : allRules) {
+                    System.err.println("    " + r.getClass().getSimpleName() + " (" + r.getName() + ")");
+                }
+                return null;
+            }
+            results.add(rule);
+        }
+        return results;
+    }
+
+    private RefactoringRule findRefactoringRule(List<RefactoringRule> rules, String ruleName) {
+        for (RefactoringRule rule : rules) {
+            if (rule.getName().equalsIgnoreCase(ruleName)
+                    || rule.getClass().getSimpleName().equalsIgnoreCase(ruleName)
+                    || rule.getClass().getSimpleName().equalsIgnoreCase(ruleName + "Refactoring")) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private List<IJavaElement> getJavaElements() throws CoreException {
+        final List<IJavaProject> javaProjects = new ArrayList<IJavaProject>();
+        for (String projectArg : projectArgs) {
+            final IProject project = getProject(projectArg);
+            if (project == null) {
+                System.err.println("Cannot find project " + projectArg);
+                return null;
+            }
+            if (!project.isOpen()) {
+                project.open(null);
+            }
+            if (!project.hasNature(JavaCore.NATURE_ID)) {
+                System.err.println("Project " + projectArg + " is not a java project");
+                return null;
+            }
+            javaProjects.add(JavaCore.create(project));
+        }
+
+        final List<IJavaElement> results = new ArrayList<IJavaElement>();
+        if (sourceArgs.isEmpty()) {
+            results.addAll(javaProjects);
+            return results;
+        }
+        final IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        for (String sourceArg : sourceArgs) {
+            final IPath location = new Path(new File(sourceArg).getAbsolutePath());
+            final IResource resource = location.toFile().isFile()
+                    ? root.getFileForLocation(location)
+                    : root.getContainerForLocation(location);
+            final IJavaElement javaElement = resource != null ? JavaCore.create(resource) : null;
+            if (javaElement == null || !javaProjects.contains(javaElement.getJavaProject())) {
+                System.err.println("Source " + sourceArg + " is not a source folder, package or java file"
+                        + " of the provided projects");
+                return null;
+            }
+            results.add(javaElement);
+        }
+        return results;
+    }
+
+    private IProject getProject(String projectArg) throws CoreException {
+        final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        final File projectFile = new File(projectArg, IProjectDescription.DESCRIPTION_FILE_NAME);
+        if (!projectFile.isFile()) {
+            final IProject project = workspace.getRoot().getProject(projectArg);
+            return project.exists() ? project : null;
+        }
+
+        final IProjectDescription description =
+                workspace.loadProjectDescription(new Path(projectFile.getAbsolutePath()));
+        final IProject project = workspace.getRoot().getProject(description.getName());
+        if (!project.exists()) {
+            final IContainer parent = workspace.getRoot().getContainerForLocation(
+                    new Path(projectFile.getParentFile().getAbsolutePath()));
+            if (parent != null && parent.getType() == IResource.ROOT) {
+                // project located directly inside the workspace directory
+                description.setLocation(null);
+            }
+            project.create(description, null);
+        }
+        return project;
+    }
+
+    private void setAutoBuilding(IWorkspace workspace, boolean autoBuilding) throws CoreException {
+        final IWorkspaceDescription description = workspace.getDescription();
+        if (description.isAutoBuilding() != autoBuilding) {
+            description.setAutoBuilding(autoBuilding);
+            workspace.setDescription(description);
+        }
+    }
+
+    private void printUsage() {
+        System.err.println("Usage: -application " + AutoRefactorPlugin.PLUGIN_ID + ".headless"
+                + " -project <project directory or name> [-project ...]"
+                + " [-source <source folder, package directory or java file>] [-source ...]"
+                + " [-rules <rule1,rule2,...>] [-threads <number of workers>]"
+                + " [-mode " + getModeNames("|") + "] [-output <diff file>]");
+    }
+}
@@ -44,6 +44,7 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
 
     private final Map<String, String> options;
     private Release javaSERelease;
+    private int androidMinSdkVersion;
 
     /** Builds a new instance of this class. */
     public JavaProjectOptionsImpl() {
@@ -104,6 +105,12 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
         return result != null ? result : 80;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int getAndroidMinSdkVersion() {
+        return androidMinSdkVersion;
+    }
+
     /**
      * Sets the Java SE release.
      *
@@ -122,4 +129,13 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
         options.put(FORMATTER_INDENTATION_SIZE, String.valueOf(tabSize));
     }
 
+    /**
+     * Sets the minimum Android API level.
+     *
+     * @param androidMinSdkVersion the minimum Android API level, or 0 when it is unknown
+     */
+    public void setAndroidMinSdkVersion(int androidMinSdkVersion) {
+        this.androidMinSdkVersion = androidMinSdkVersion;
+    }
+
 }
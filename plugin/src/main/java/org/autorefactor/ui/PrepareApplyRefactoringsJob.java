@@ -25,23 +25,38 @@
  */
 package org.autorefactor.ui;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.autorefactor.AutoRefactorPlugin;
+import org.autorefactor.preferences.Preferences;
 import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.RefactoringRule;
+import org.autorefactor.refactoring.TypeHierarchyCache;
+import org.autorefactor.refactoring.rules.RefactoringRulesProfiler;
 import org.autorefactor.util.NotImplementedException;
 import org.autorefactor.util.UnhandledException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.IJobChangeListener;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
@@ -51,12 +66,32 @@ import org.eclipse.jdt.core.JavaModelException;
 
 /**
  * Eclipse job that prepares and partitions work for {@link ApplyRefactoringsJob}.
+ * <p>
+ * Work items are ordered by decreasing estimated cost in a queue shared by all the workers:
+ * each worker pulls the next most expensive work item as soon as it is done with the previous one.
+ * <p>
+ * The compilation units which declare none of the subtypes required by the rules to apply,
+ * according to a {@link SubtypesIndex} built once per java project, are not scheduled.
  */
 public class PrepareApplyRefactoringsJob extends Job {
 
     private final List<IJavaElement> javaElements;
     private final List<RefactoringRule> refactoringRulesToApply;
+    private final int maxNbWorkers;
+    private final Writer diffOutput;
+    private final RefactoringReport report;
     private final Map<IJavaElement, JavaProjectOptions> javaProjects = new HashMap<IJavaElement, JavaProjectOptions>();
+    /** The type hierarchy caches, one per java project, shared by all the workers. */
+    private final Map<JavaProjectOptions, TypeHierarchyCache> typeHierarchyCaches =
+            new HashMap<JavaProjectOptions, TypeHierarchyCache>();
+    /**
+     * The indexes of the compilation units declaring the subtypes required by the rules, one per java project.
+     * Null values mean that none of the rules to apply declare required subtypes.
+     */
+    private final Map<JavaProjectOptions, SubtypesIndex> subtypesIndexes =
+            new HashMap<JavaProjectOptions, SubtypesIndex>();
+    /** The cache of the files where no refactoring applies, or null when it is turned off. */
+    private RefactoringResultsCache resultsCache;
 
     /**
      * Builds an instance of this class.
@@ -65,10 +100,36 @@ public class PrepareApplyRefactoringsJob extends Job {
      * @param refactoringRulesToApply the refactorings to apply
      */
     public PrepareApplyRefactoringsJob(List<IJavaElement> javaElements, List<RefactoringRule> refactoringRulesToApply) {
+        this(javaElements, refactoringRulesToApply, 0, null, null);
+    }
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param javaElements the java elements selected for automatic refactoring
+     * @param refactoringRulesToApply the refactorings to apply
+     * @param maxNbWorkers the maximum number of workers applying the refactorings in parallel,
+     *        or 0 to use the number of workers configured in the preferences
+     * @param diffOutput where to write the unified diff of the changes without modifying the files (dry-run mode),
+     *        or null to apply the changes to the files
+     * @param report where to count the files each refactoring rule would change without modifying them
+     *        (dry-run mode), or null to apply the changes to the files
+     */
+    PrepareApplyRefactoringsJob(List<IJavaElement> javaElements, List<RefactoringRule> refactoringRulesToApply,
+            int maxNbWorkers, Writer diffOutput, RefactoringReport report) {
         super("Prepare Auto Refactor");
         setPriority(Job.SHORT);
         this.javaElements = javaElements;
         this.refactoringRulesToApply = refactoringRulesToApply;
+        this.maxNbWorkers = maxNbWorkers;
+        this.diffOutput = diffOutput;
+        this.report = report;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean belongsTo(Object family) {
+        return AutoRefactorPlugin.PLUGIN_ID.equals(family);
     }
 
     /** {@inheritDoc} */
@@ -90,18 +151,122 @@ public class PrepareApplyRefactoringsJob extends Job {
 
     private IStatus run0(IProgressMonitor monitor) throws Exception {
         if (!javaElements.isEmpty()) {
+            final Preferences preferences = AutoRefactorPlugin.getPreferenceHelper();
+            resultsCache = preferences.resultsCacheOn() ? RefactoringResultsCache.getInstance() : null;
             final Queue<RefactoringUnit> toRefactor = collectRefactoringUnits(javaElements);
-            final int nbCores = Runtime.getRuntime().availableProcessors();
-            final int nbWorkers = computeNbWorkers(toRefactor.size(), nbCores);
+            final int nbWorkers = computeNbWorkers(toRefactor.size(), getParallelism());
+            final long maxBatchCost = computeMaxBatchCost(toRefactor, nbWorkers);
+            final RefactoringRulesProfiler profiler = preferences.profilingOn() ? new RefactoringRulesProfiler() : null;
+            final List<ApplyRefactoringsJob> workers = new ArrayList<ApplyRefactoringsJob>(nbWorkers);
             for (int i = 0; i < nbWorkers; i++) {
-                new ApplyRefactoringsJob(
+                workers.add(new ApplyRefactoringsJob(
                         toRefactor,
-                        clone(refactoringRulesToApply)).schedule();
+                        clone(refactoringRulesToApply),
+                        maxBatchCost,
+                        profiler,
+                        resultsCache,
+                        diffOutput,
+                        report));
+            }
+            if (profiler != null || resultsCache != null) {
+                final AllWorkersDoneJob allWorkersDoneJob = new AllWorkersDoneJob(nbWorkers, profiler);
+                for (ApplyRefactoringsJob worker : workers) {
+                    worker.addJobChangeListener(allWorkersDoneJob.workerListener);
+                }
+                // scheduled before the workers so that joining the job family also waits for it
+                allWorkersDoneJob.schedule();
+            }
+            for (ApplyRefactoringsJob worker : workers) {
+                worker.schedule();
             }
         }
         return Status.OK_STATUS;
     }
 
+    /**
+     * Saves the results cache and reports the profiling data once all the workers are done.
+     * <p>
+     * The workers are counted down by a job change listener, which is also notified
+     * when a worker is canceled before it even started running.
+     * This job belongs to the same family as the workers
+     * so the headless application does not exit before the results are saved.
+     */
+    private final class AllWorkersDoneJob extends Job {
+        private final CountDownLatch nbRunningWorkers;
+        private final RefactoringRulesProfiler profiler;
+        private final IJobChangeListener workerListener = new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                nbRunningWorkers.countDown();
+            }
+        };
+
+        private AllWorkersDoneJob(int nbWorkers, RefactoringRulesProfiler profiler) {
+            super("Save Auto Refactor results");
+            setSystem(true);
+            this.nbRunningWorkers = new CountDownLatch(nbWorkers);
+            this.profiler = profiler;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean belongsTo(Object family) {
+            return AutoRefactorPlugin.PLUGIN_ID.equals(family);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            AutoRefactorPlugin.register(this);
+            try {
+                while (!nbRunningWorkers.await(100, TimeUnit.MILLISECONDS)) {
+                    if (monitor.isCanceled()) {
+                        return Status.CANCEL_STATUS;
+                    }
+                }
+                if (resultsCache != null) {
+                    resultsCache.save();
+                }
+                if (profiler != null) {
+                    reportProfilingData(profiler);
+                }
+                return Status.OK_STATUS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Status.CANCEL_STATUS;
+            } finally {
+                AutoRefactorPlugin.unregister(this);
+            }
+        }
+    }
+
+    private void reportProfilingData(RefactoringRulesProfiler profiler) {
+        final String fileName = "profile-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json";
+        final File jsonFile = AutoRefactorPlugin.getDefault().getStateLocation().append(fileName).toFile();
+        try {
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(jsonFile), "UTF-8");
+            try {
+                profiler.writeJson(writer);
+            } finally {
+                writer.close();
+            }
+            AutoRefactorPlugin.logInfo(profiler.getSummary() + "Profiling data written to " + jsonFile);
+        } catch (IOException e) {
+            AutoRefactorPlugin.logError("Could not write the profiling data to " + jsonFile, e);
+        }
+    }
+
+    private int getParallelism() {
+        if (maxNbWorkers > 0) {
+            return maxNbWorkers;
+        }
+        final int nbWorkersPref = AutoRefactorPlugin.getPreferenceHelper().nbWorkers();
+        if (nbWorkersPref > 0) {
+            return nbWorkersPref;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * Clones all the refactorings to apply.
      * In fairness, this method is only useful for stateful refactorings.
@@ -114,20 +279,29 @@ public class PrepareApplyRefactoringsJob extends Job {
         return res;
     }
 
-    private int computeNbWorkers(int nbWorkItems, int nbCores) {
-        final int nbPartitions = nbWorkItems / 10;
-        if (nbPartitions >= nbCores) {
-            return nbCores;
-        } else if (nbPartitions > 0) {
-            return nbPartitions;
-        } else {
-            return 1;
+    private int computeNbWorkers(int nbWorkItems, int parallelism) {
+        return Math.max(1, Math.min(nbWorkItems, parallelism));
+    }
+
+    /**
+     * Workers parse several work items at once: bound the cost of a batch
+     * so that each worker gets several batches, otherwise a worker could grab
+     * all the most expensive work items at once and leave the other workers idle.
+     */
+    private long computeMaxBatchCost(Queue<RefactoringUnit> toRefactor, int nbWorkers) {
+        long totalCost = 0;
+        for (RefactoringUnit unit : toRefactor) {
+            totalCost += unit.getEstimatedCost();
         }
+        return Math.max(1, totalCost / (4 * nbWorkers));
     }
 
     private Queue<RefactoringUnit> collectRefactoringUnits(List<IJavaElement> javaElements) {
         try {
-            final Queue<RefactoringUnit> results = new ConcurrentLinkedQueue<RefactoringUnit>();
+            // Dispatch the most expensive work items of each java project first
+            // so no worker is left alone with a huge compilation unit at the end
+            final Queue<RefactoringUnit> results =
+                    new PriorityBlockingQueue<RefactoringUnit>(11, RefactoringUnitCosts.LARGEST_FIRST);
             addAll(results, javaElements);
             return results;
         } catch (Exception e) {
@@ -167,9 +341,35 @@ public class PrepareApplyRefactoringsJob extends Job {
         if (!cu.isConsistent()) {
             cu.makeConsistent(null);
         }
-        if (!cu.isReadOnly()) {
-            results.add(new RefactoringUnit(cu, options));
+        final SubtypesIndex subtypesIndex = getSubtypesIndex(cu.getJavaProject(), options);
+        if (subtypesIndex != null && subtypesIndex.getApplicableRules(refactoringRulesToApply, cu).isEmpty()) {
+            // none of the rules can refactor this compilation unit
+            return;
+        }
+        if (!cu.isReadOnly() && (resultsCache == null
+                || !resultsCache.isUpToDate(RefactoringResultsCache.getKey(cu, options, refactoringRulesToApply)))) {
+            final long sourceLength = RefactoringUnitCosts.getSourceLength(cu);
+            final long estimatedCost = RefactoringUnitCosts.estimateCost(cu, sourceLength);
+            results.add(new RefactoringUnit(cu, options, sourceLength, estimatedCost,
+                    getTypeHierarchyCache(options), subtypesIndex));
+        }
+    }
+
+    private SubtypesIndex getSubtypesIndex(IJavaProject javaProject, JavaProjectOptions options)
+            throws JavaModelException {
+        if (!subtypesIndexes.containsKey(options)) {
+            subtypesIndexes.put(options, SubtypesIndex.build(javaProject, refactoringRulesToApply, null));
+        }
+        return subtypesIndexes.get(options);
+    }
+
+    private TypeHierarchyCache getTypeHierarchyCache(JavaProjectOptions options) {
+        TypeHierarchyCache cache = typeHierarchyCaches.get(options);
+        if (cache == null) {
+            cache = new TypeHierarchyCache();
+            typeHierarchyCaches.put(options, cache);
         }
+        return cache;
     }
 
     @SuppressWarnings("unchecked")
@@ -177,7 +377,9 @@ public class PrepareApplyRefactoringsJob extends Job {
         final IJavaProject javaProject = getIJavaProject(javaElement);
         JavaProjectOptions options = javaProjects.get(javaProject);
         if (options == null) {
-            options = new JavaProjectOptionsImpl(javaProject.getOptions(true));
+            final JavaProjectOptionsImpl projectOptions = new JavaProjectOptionsImpl(javaProject.getOptions(true));
+            projectOptions.setAndroidMinSdkVersion(AndroidProjects.getMinSdkVersion(javaProject.getProject()));
+            options = projectOptions;
             javaProjects.put(javaProject, options);
         }
         return options;
@@ -0,0 +1,71 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+
+/**
+ * Counts the files which each refactoring rule would change, without modifying them.
+ * <p>
+ * A single instance is shared by all the workers of a run, hence it is thread safe.
+ */
+final class RefactoringReport {
+    /** Rule name => number of files the rule would change, sorted by rule name. */
+    private final Map<String, Integer> nbFilesByRule = new TreeMap<String, Integer>();
+    private int nbFiles;
+
+    /**
+     * Records a file which would be changed.
+     *
+     * @param rules the refactoring rules which would change the file
+     */
+    synchronized void addFile(Collection<ASTVisitor> rules) {
+        ++nbFiles;
+        for (ASTVisitor rule : rules) {
+            final String ruleName = rule.getClass().getSimpleName();
+            final Integer nbRuleFiles = nbFilesByRule.get(ruleName);
+            nbFilesByRule.put(ruleName, nbRuleFiles != null ? nbRuleFiles + 1 : 1);
+        }
+    }
+
+    /**
+     * Prints the number of files each refactoring rule would change.
+     *
+     * @param out where to print the report
+     */
+    synchronized void print(PrintStream out) {
+        out.println(nbFiles + " files would be changed");
+        for (Entry<String, Integer> entry : nbFilesByRule.entrySet()) {
+            out.println("    " + entry.getKey() + ": " + entry.getValue() + " files");
+        }
+    }
+}
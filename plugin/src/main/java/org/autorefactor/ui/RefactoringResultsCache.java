@@ -0,0 +1,267 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.autorefactor.AutoRefactorPlugin;
+import org.autorefactor.preferences.Preferences;
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.RefactoringRule;
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Persistent cache of the compilation units where no refactoring applies,
+ * so they can be dropped before scheduling them on the next runs.
+ * <p>
+ * A compilation unit is identified by a key hashing its content, the compiler options
+ * and the minimum Android API level of its java project,
+ * the refactoring rules to apply and the version of this plugin.
+ * Changes to the other compilation units are not part of the key:
+ * a change to a dependency making a rule applicable to an unchanged compilation unit
+ * is only taken into account once this compilation unit changes.
+ * <p>
+ * The cache is stored in the state location of this plugin, inside the workspace metadata.
+ */
+final class RefactoringResultsCache {
+    private static final String FILE_NAME = "results-cache.txt";
+    private static final String HEADER = "# AutoRefactor results cache v1";
+    /** Maximum number of keys kept, the least recently used keys are evicted first. */
+    private static final int MAX_NB_KEYS = 100000;
+
+    private static RefactoringResultsCache instance;
+
+    private final File file;
+    /** Keys of the compilation units where no refactoring applies, in access order. */
+    private final Map<String, Boolean> keys = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<String, Boolean> eldest) {
+            return size() > MAX_NB_KEYS;
+        }
+    };
+    private boolean dirty;
+
+    private RefactoringResultsCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the cache of this workspace, loading it on first access.
+     *
+     * @return the cache of this workspace
+     */
+    static synchronized RefactoringResultsCache getInstance() {
+        if (instance == null) {
+            instance = new RefactoringResultsCache(
+                    AutoRefactorPlugin.getDefault().getStateLocation().append(FILE_NAME).toFile());
+            instance.load();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns whether no refactoring applies to the compilation unit with the provided key.
+     *
+     * @param key the key of a compilation unit, as returned by {@link #getKey(ICompilationUnit,
+     *        JavaProjectOptions, List)}
+     * @return true if no refactoring applies to the compilation unit with the provided key, false otherwise
+     */
+    synchronized boolean isUpToDate(String key) {
+        return key != null && keys.get(key) != null;
+    }
+
+    /**
+     * Records that no refactoring applies to the compilation unit with the provided key.
+     *
+     * @param key the key of a compilation unit, as returned by {@link #getKey(ICompilationUnit,
+     *        JavaProjectOptions, List)}
+     */
+    synchronized void recordUpToDate(String key) {
+        if (key != null && keys.put(key, Boolean.TRUE) == null) {
+            dirty = true;
+        }
+    }
+
+    private synchronized void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                if (!HEADER.equals(reader.readLine())) {
+                    // unknown format, it will be overwritten on next save
+                    return;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    keys.put(line, Boolean.TRUE);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            AutoRefactorPlugin.logError("Could not read the refactoring results cache " + file, e);
+            keys.clear();
+        }
+    }
+
+    /** Writes the cache to disk if it changed since it was loaded. */
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+            try {
+                writer.write(HEADER);
+                writer.write('\n');
+                for (String key : keys.keySet()) {
+                    writer.write(key);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            if ((file.exists() && !file.delete()) || !tmpFile.renameTo(file)) {
+                throw new IOException("Could not rename " + tmpFile + " to " + file);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            AutoRefactorPlugin.logError("Could not write the refactoring results cache " + file, e);
+        }
+    }
+
+    /**
+     * Returns the key identifying the provided compilation unit content
+     * refactored with the provided options, refactoring rules and AutoRefactor preferences.
+     *
+     * @param cu the compilation unit
+     * @param options the options of the java project of the compilation unit
+     * @param rules the refactoring rules to apply
+     * @return the key identifying the provided compilation unit, or null if its content cannot be read from disk
+     * @throws JavaModelException if the compilation unit does not exist
+     */
+    static String getKey(ICompilationUnit cu, JavaProjectOptions options, List<RefactoringRule> rules)
+            throws JavaModelException {
+        final IResource resource = cu.getResource();
+        final IPath location = resource != null ? resource.getLocation() : null;
+        if (location == null || cu.hasUnsavedChanges()) {
+            // the content on disk is not the content which will be refactored
+            return null;
+        }
+        final MessageDigest digest = newDigest();
+        update(digest, getPluginVersion());
+        final List<String> ruleNames = new ArrayList<String>(rules.size());
+        for (RefactoringRule rule : rules) {
+            ruleNames.add(rule.getClass().getName());
+        }
+        Collections.sort(ruleNames);
+        for (String ruleName : ruleNames) {
+            update(digest, ruleName);
+        }
+        for (Entry<String, String> option : new TreeMap<String, String>(options.getCompilerOptions()).entrySet()) {
+            update(digest, option.getKey());
+            update(digest, option.getValue());
+        }
+        update(digest, String.valueOf(options.getAndroidMinSdkVersion()));
+        // the preferences changing the output of the refactoring rules
+        final Preferences preferences = AutoRefactorPlugin.getPreferenceHelper();
+        update(digest, String.valueOf(preferences.removeThisForNonStaticMethodAccess()));
+        update(digest, String.valueOf(preferences.addCurlyBracketsToStatementBodies()));
+        update(digest, String.valueOf(preferences.closeResourcesInTryStatements()));
+        try {
+            final InputStream in = new FileInputStream(location.toFile());
+            try {
+                final byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return toHexString(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnhandledException(null, e);
+        }
+    }
+
+    private static String getPluginVersion() {
+        final AutoRefactorPlugin plugin = AutoRefactorPlugin.getDefault();
+        return plugin != null ? plugin.getBundle().getVersion().toString() : "";
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        try {
+            digest.update(String.valueOf(s).getBytes("UTF-8"));
+            // separator
+            digest.update((byte) 0);
+        } catch (IOException e) {
+            throw new UnhandledException(null, e);
+        }
+    }
+
+    private static String toHexString(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
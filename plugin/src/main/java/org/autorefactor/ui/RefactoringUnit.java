@@ -26,6 +26,7 @@
 package org.autorefactor.ui;
 
 import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.TypeHierarchyCache;
 import org.eclipse.jdt.core.ICompilationUnit;
 
 /**
@@ -35,10 +36,25 @@ class RefactoringUnit {
 
     private final ICompilationUnit compilationUnit;
     private final JavaProjectOptions options;
+    private final long sourceLength;
+    private final long estimatedCost;
+    /** The cache of the type hierarchies of the java project, or null if there is none. */
+    private final TypeHierarchyCache typeHierarchyCache;
+    /** The index of the subtypes declared in the java project, or null if there is none. */
+    private final SubtypesIndex subtypesIndex;
 
     RefactoringUnit(ICompilationUnit compilationUnit, JavaProjectOptions options) {
+        this(compilationUnit, options, 0, 0, null, null);
+    }
+
+    RefactoringUnit(ICompilationUnit compilationUnit, JavaProjectOptions options, long sourceLength,
+            long estimatedCost, TypeHierarchyCache typeHierarchyCache, SubtypesIndex subtypesIndex) {
         this.compilationUnit = compilationUnit;
         this.options = options;
+        this.sourceLength = sourceLength;
+        this.estimatedCost = estimatedCost;
+        this.typeHierarchyCache = typeHierarchyCache;
+        this.subtypesIndex = subtypesIndex;
     }
 
     ICompilationUnit getCompilationUnit() {
@@ -49,6 +65,28 @@ class RefactoringUnit {
         return options;
     }
 
+    TypeHierarchyCache getTypeHierarchyCache() {
+        return typeHierarchyCache;
+    }
+
+    SubtypesIndex getSubtypesIndex() {
+        return subtypesIndex;
+    }
+
+    long getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Returns the estimated cost of refactoring this unit, in nanoseconds.
+     *
+     * @return the estimated cost of refactoring this unit, in nanoseconds
+     * @see RefactoringUnitCosts
+     */
+    long getEstimatedCost() {
+        return estimatedCost;
+    }
+
     @Override
     public String toString() {
         return getCompilationUnit().toString();
@@ -0,0 +1,142 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Estimates the cost of refactoring the compilation units, so the most expensive work items
+ * can be scheduled first.
+ * <p>
+ * The cost of a compilation unit is the time it took to refactor it on a previous run, when known.
+ * Otherwise it is its source length multiplied by the average time per character measured so far.
+ */
+final class RefactoringUnitCosts {
+    /**
+     * Orders the work items by java project, then by decreasing estimated cost.
+     * Keeping the work items of a java project together lets the workers parse them in the same batches.
+     */
+    static final Comparator<RefactoringUnit> LARGEST_FIRST = new Comparator<RefactoringUnit>() {
+        @Override
+        public int compare(RefactoringUnit u1, RefactoringUnit u2) {
+            final int projectComparison = getProjectName(u1).compareTo(getProjectName(u2));
+            if (projectComparison != 0) {
+                return projectComparison;
+            }
+            final long c1 = u1.getEstimatedCost();
+            final long c2 = u2.getEstimatedCost();
+            return c1 > c2 ? -1 : (c1 == c2 ? 0 : 1);
+        }
+    };
+
+    /** Maximum number of durations kept, the least recently used durations are evicted first. */
+    private static final int MAX_NB_DURATIONS = 100000;
+    /** Compilation unit handle identifier => duration of its last refactoring, in nanoseconds, in access order. */
+    private static final Map<String, Long> PREVIOUS_DURATIONS = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Entry<String, Long> eldest) {
+                    return size() > MAX_NB_DURATIONS;
+                }
+            });
+    private static final AtomicLong TOTAL_DURATION = new AtomicLong();
+    private static final AtomicLong TOTAL_LENGTH = new AtomicLong();
+
+    private RefactoringUnitCosts() {
+    }
+
+    private static String getProjectName(RefactoringUnit unit) {
+        return unit.getCompilationUnit().getJavaProject().getElementName();
+    }
+
+    /**
+     * Returns the length of the source of the provided compilation unit,
+     * without reading it when the file size is available.
+     *
+     * @param cu the compilation unit
+     * @return the length of the source of the provided compilation unit
+     */
+    static long getSourceLength(ICompilationUnit cu) {
+        final IResource resource = cu.getResource();
+        final IPath location = resource != null ? resource.getLocation() : null;
+        if (location != null) {
+            final File file = location.toFile();
+            if (file.isFile()) {
+                return file.length();
+            }
+        }
+        try {
+            final String source = cu.getSource();
+            return source != null ? source.length() : 0;
+        } catch (JavaModelException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the estimated cost of refactoring the provided compilation unit, in nanoseconds.
+     *
+     * @param cu the compilation unit
+     * @param sourceLength the length of the source of the compilation unit
+     * @return the estimated cost of refactoring the provided compilation unit, in nanoseconds
+     */
+    static long estimateCost(ICompilationUnit cu, long sourceLength) {
+        final Long previousDuration = PREVIOUS_DURATIONS.get(cu.getHandleIdentifier());
+        if (previousDuration != null) {
+            return previousDuration;
+        }
+        final long totalLength = TOTAL_LENGTH.get();
+        if (totalLength == 0) {
+            return sourceLength;
+        }
+        return (long) (sourceLength * ((double) TOTAL_DURATION.get() / totalLength));
+    }
+
+    /**
+     * Records the time it took to refactor the provided work item, to refine the next estimates.
+     *
+     * @param unit the refactored work item
+     * @param durationNanos the time it took to refactor the work item, in nanoseconds
+     */
+    static void record(RefactoringUnit unit, long durationNanos) {
+        PREVIOUS_DURATIONS.put(unit.getCompilationUnit().getHandleIdentifier(), durationNanos);
+        TOTAL_DURATION.addAndGet(durationNanos);
+        TOTAL_LENGTH.addAndGet(unit.getSourceLength());
+    }
+}
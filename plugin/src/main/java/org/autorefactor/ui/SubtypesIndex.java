@@ -0,0 +1,165 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.autorefactor.refactoring.RefactoringRule;
+import org.autorefactor.refactoring.TypeHierarchyPrecondition;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Index of the compilation units of a java project declaring subtypes of the types
+ * required by the {@link TypeHierarchyPrecondition}s of the refactoring rules to apply.
+ * <p>
+ * It is built once per java project before scheduling the work, with one type hierarchy per required type,
+ * so the compilation units which no rule can refactor are not even scheduled,
+ * and the other compilation units are only refactored by the rules which can refactor them.
+ */
+final class SubtypesIndex {
+    /** The qualified names of the types whose subtypes have been indexed. */
+    private final Set<String> indexedTypes;
+    /** Compilation unit => qualified names of the indexed types it declares subtypes of. */
+    private final Map<ICompilationUnit, Set<String>> superTypesByUnit = new HashMap<ICompilationUnit, Set<String>>();
+
+    private SubtypesIndex(Set<String> indexedTypes) {
+        this.indexedTypes = indexedTypes;
+    }
+
+    /**
+     * Builds the index of the compilation units of the provided java project
+     * declaring subtypes of the types required by the provided refactoring rules.
+     *
+     * @param javaProject the java project
+     * @param rules the refactoring rules to apply
+     * @param monitor the progress monitor, can be null
+     * @return the index, or null if none of the refactoring rules declare a {@link TypeHierarchyPrecondition}
+     * @throws JavaModelException if the type hierarchies cannot be built
+     */
+    static SubtypesIndex build(IJavaProject javaProject, List<RefactoringRule> rules, IProgressMonitor monitor)
+            throws JavaModelException {
+        final Set<String> requiredTypes = new LinkedHashSet<String>();
+        for (RefactoringRule rule : rules) {
+            requiredTypes.addAll(getRequiredSuperTypes(rule));
+        }
+        if (requiredTypes.isEmpty()) {
+            return null;
+        }
+        final SubtypesIndex index = new SubtypesIndex(requiredTypes);
+        for (String requiredType : requiredTypes) {
+            final IType type = javaProject.findType(requiredType);
+            if (type == null) {
+                // not on the classpath: the java project cannot declare any subtype
+                continue;
+            }
+            final ITypeHierarchy hierarchy = type.newTypeHierarchy(javaProject, monitor);
+            for (IType subtype : hierarchy.getAllSubtypes(type)) {
+                final ICompilationUnit cu = subtype.getCompilationUnit();
+                if (cu != null) {
+                    index.add(cu.getPrimary(), requiredType);
+                }
+            }
+        }
+        return index;
+    }
+
+    private static List<String> getRequiredSuperTypes(RefactoringRule rule) {
+        if (rule instanceof TypeHierarchyPrecondition) {
+            final String[] types = ((TypeHierarchyPrecondition) rule).getRequiredSuperTypes();
+            if (types != null) {
+                return Arrays.asList(types);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private void add(ICompilationUnit cu, String superType) {
+        Set<String> superTypes = superTypesByUnit.get(cu);
+        if (superTypes == null) {
+            superTypes = new HashSet<String>();
+            superTypesByUnit.put(cu, superTypes);
+        }
+        superTypes.add(superType);
+    }
+
+    /**
+     * Returns the refactoring rules which may refactor the provided compilation unit.
+     *
+     * @param rules the refactoring rules
+     * @param cu the compilation unit
+     * @return the refactoring rules which may refactor the provided compilation unit,
+     *         or the provided list itself if all the rules may refactor it
+     */
+    List<RefactoringRule> getApplicableRules(List<RefactoringRule> rules, ICompilationUnit cu) {
+        List<RefactoringRule> results = null;
+        for (int i = 0; i < rules.size(); i++) {
+            final RefactoringRule rule = rules.get(i);
+            final boolean applicable = mayRefactor(rule, cu);
+            if (!applicable && results == null) {
+                results = new ArrayList<RefactoringRule>(rules.subList(0, i));
+            } else if (applicable && results != null) {
+                results.add(rule);
+            }
+        }
+        return results != null ? results : rules;
+    }
+
+    /**
+     * Returns whether the provided refactoring rule may refactor the provided compilation unit.
+     *
+     * @param rule the refactoring rule
+     * @param cu the compilation unit
+     * @return false if the provided rule declares a {@link TypeHierarchyPrecondition}
+     *         and the compilation unit declares no subtype of its required types, true otherwise
+     */
+    private boolean mayRefactor(RefactoringRule rule, ICompilationUnit cu) {
+        final List<String> requiredTypes = getRequiredSuperTypes(rule);
+        if (requiredTypes.isEmpty()) {
+            return true;
+        }
+        final Set<String> superTypes = superTypesByUnit.get(cu.getPrimary());
+        for (String requiredType : requiredTypes) {
+            if (!indexedTypes.contains(requiredType)
+                    || (superTypes != null && superTypes.contains(requiredType))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
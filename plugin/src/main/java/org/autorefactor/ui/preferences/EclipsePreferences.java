@@ -62,4 +62,24 @@ public class EclipsePreferences implements Preferences {
     public boolean addCurlyBracketsToStatementBodies() {
         return getBoolean(ADD_CURLY_BRACKETS_TO_STATEMENT_BODIES);
     }
+
+    @Override
+    public boolean closeResourcesInTryStatements() {
+        return getBoolean(CLOSE_RESOURCES_IN_TRY_STATEMENTS);
+    }
+
+    @Override
+    public boolean profilingOn() {
+        return getBoolean(PROFILING_ON);
+    }
+
+    @Override
+    public int nbWorkers() {
+        return preferenceStore.getInt(NB_WORKERS.getName());
+    }
+
+    @Override
+    public boolean resultsCacheOn() {
+        return getBoolean(RESULTS_CACHE_ON);
+    }
 }
@@ -29,6 +29,7 @@ import org.autorefactor.AutoRefactorPlugin;
 import org.autorefactor.preferences.PreferenceConstants;
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
@@ -52,7 +53,11 @@ public class WorkspacePreferencePage extends FieldEditorPreferencePage implement
     protected void createFieldEditors() {
         addBooleanField(REMOVE_THIS_FOR_NON_STATIC_METHOD_ACCESS);
         addBooleanField(ADD_CURLY_BRACKETS_TO_STATEMENT_BODIES);
+        addBooleanField(CLOSE_RESOURCES_IN_TRY_STATEMENTS);
+        addIntegerField(NB_WORKERS, 0, 256);
+        addBooleanField(RESULTS_CACHE_ON);
 
+        addBooleanField(PROFILING_ON);
         addBooleanField(DEBUG_MODE_ON);
     }
 
@@ -60,6 +65,13 @@ public class WorkspacePreferencePage extends FieldEditorPreferencePage implement
         addField(new BooleanFieldEditor(pref.getName(), pref.getDescription(), getFieldEditorParent()));
     }
 
+    private void addIntegerField(PreferenceConstants pref, int min, int max) {
+        final IntegerFieldEditor field =
+                new IntegerFieldEditor(pref.getName(), pref.getDescription(), getFieldEditorParent());
+        field.setValidRange(min, max);
+        addField(field);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void init(IWorkbench workbench) {
@@ -0,0 +1,289 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes unified diffs between two versions of a text, in the format understood by {@code patch} and {@code git}.
+ * <p>
+ * Lines are compared with the Myers O(ND) difference algorithm,
+ * after trimming the common leading and trailing lines.
+ *
+ * @see <a href="http://www.xmailserver.org/diff2.pdf">An O(ND) Difference Algorithm and Its Variations</a>
+ */
+public final class UnifiedDiff {
+    /** Number of unchanged lines shown around each change. */
+    private static final int NB_CONTEXT_LINES = 3;
+    /**
+     * Number of differences above which the changed lines are simply reported as
+     * all the old lines removed followed by all the new lines added,
+     * to bound the memory used by the algorithm.
+     */
+    private static final int MAX_NB_DIFFERENCES = 2000;
+
+    private static final char EQUAL = ' ';
+    private static final char DELETE = '-';
+    private static final char INSERT = '+';
+
+    /** A line of the edit script. */
+    private static final class Edit {
+        private final char type;
+        private final String line;
+
+        private Edit(char type, String line) {
+            this.type = type;
+            this.line = line;
+        }
+    }
+
+    private UnifiedDiff() {
+        // utility class ctor is private
+    }
+
+    /**
+     * Returns the unified diff between the two provided texts.
+     *
+     * @param oldName the name of the old text, output in the "---" header line
+     * @param newName the name of the new text, output in the "+++" header line
+     * @param oldText the old text
+     * @param newText the new text
+     * @return the unified diff between the two provided texts, or the empty string if they are equal
+     */
+    public static String diff(String oldName, String newName, String oldText, String newText) {
+        final StringBuilder sb = new StringBuilder();
+        try {
+            write(sb, oldName, newName, oldText, newText);
+        } catch (IOException e) {
+            // cannot happen with a StringBuilder
+            throw new UnhandledException(null, e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the unified diff between the two provided texts.
+     *
+     * @param out where to write the unified diff
+     * @param oldName the name of the old text, output in the "---" header line
+     * @param newName the name of the new text, output in the "+++" header line
+     * @param oldText the old text
+     * @param newText the new text
+     * @return true if the texts are different and a diff has been written, false otherwise
+     * @throws IOException if an I/O error occurs while writing the diff
+     */
+    public static boolean write(Appendable out, String oldName, String newName, String oldText, String newText)
+            throws IOException {
+        if (oldText.equals(newText)) {
+            return false;
+        }
+        final List<Edit> edits = computeEdits(splitLines(oldText), splitLines(newText));
+        // number of old and new lines before each edit
+        final int[] nbOldLinesBefore = new int[edits.size() + 1];
+        final int[] nbNewLinesBefore = new int[edits.size() + 1];
+        for (int i = 0; i < edits.size(); i++) {
+            final char type = edits.get(i).type;
+            nbOldLinesBefore[i + 1] = nbOldLinesBefore[i] + (type != INSERT ? 1 : 0);
+            nbNewLinesBefore[i + 1] = nbNewLinesBefore[i] + (type != DELETE ? 1 : 0);
+        }
+
+        out.append("--- ").append(oldName).append('\n');
+        out.append("+++ ").append(newName).append('\n');
+        int change = nextChange(edits, 0);
+        while (change < edits.size()) {
+            // merge the changes whose context lines overlap into the same hunk
+            int lastChange = change;
+            int next;
+            while ((next = nextChange(edits, lastChange + 1)) < edits.size()
+                    && next - lastChange <= 2 * NB_CONTEXT_LINES + 1) {
+                lastChange = next;
+            }
+            final int hunkStart = Math.max(0, change - NB_CONTEXT_LINES);
+            final int hunkEnd = Math.min(edits.size(), lastChange + NB_CONTEXT_LINES + 1);
+
+            out.append("@@ -")
+                .append(range(nbOldLinesBefore[hunkStart], nbOldLinesBefore[hunkEnd] - nbOldLinesBefore[hunkStart]))
+                .append(" +")
+                .append(range(nbNewLinesBefore[hunkStart], nbNewLinesBefore[hunkEnd] - nbNewLinesBefore[hunkStart]))
+                .append(" @@\n");
+            for (int i = hunkStart; i < hunkEnd; i++) {
+                final Edit edit = edits.get(i);
+                out.append(edit.type).append(edit.line);
+                if (!edit.line.endsWith("\n")) {
+                    out.append("\n\\ No newline at end of file\n");
+                }
+            }
+            change = next;
+        }
+        return true;
+    }
+
+    /** Returns the index of the first change in the edit script at or after the provided index. */
+    private static int nextChange(List<Edit> edits, int fromIndex) {
+        int i = fromIndex;
+        while (i < edits.size() && edits.get(i).type == EQUAL) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String range(int nbLinesBefore, int nbLines) {
+        if (nbLines == 0) {
+            return nbLinesBefore + ",0";
+        } else if (nbLines == 1) {
+            return String.valueOf(nbLinesBefore + 1);
+        }
+        return (nbLinesBefore + 1) + "," + nbLines;
+    }
+
+    /** Splits the provided text into lines, each line keeping its line terminator if any. */
+    private static List<String> splitLines(String text) {
+        final List<String> lines = new ArrayList<String>();
+        int start = 0;
+        int idx;
+        while ((idx = text.indexOf('\n', start)) != -1) {
+            lines.add(text.substring(start, idx + 1));
+            start = idx + 1;
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    private static List<Edit> computeEdits(List<String> a, List<String> b) {
+        int prefix = 0;
+        while (prefix < a.size() && prefix < b.size() && a.get(prefix).equals(b.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.size() - prefix && suffix < b.size() - prefix
+                && a.get(a.size() - 1 - suffix).equals(b.get(b.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        final List<Edit> edits = new ArrayList<Edit>(Math.max(a.size(), b.size()));
+        for (int i = 0; i < prefix; i++) {
+            edits.add(new Edit(EQUAL, a.get(i)));
+        }
+        final List<String> aMiddle = a.subList(prefix, a.size() - suffix);
+        final List<String> bMiddle = b.subList(prefix, b.size() - suffix);
+        if (!myers(aMiddle, bMiddle, edits)) {
+            for (String line : aMiddle) {
+                edits.add(new Edit(DELETE, line));
+            }
+            for (String line : bMiddle) {
+                edits.add(new Edit(INSERT, line));
+            }
+        }
+        for (int i = a.size() - suffix; i < a.size(); i++) {
+            edits.add(new Edit(EQUAL, a.get(i)));
+        }
+        return edits;
+    }
+
+    /**
+     * Adds the shortest edit script transforming a into b to the provided list of edits.
+     *
+     * @return true if the edit script has been added,
+     *         false if there are more than {@link #MAX_NB_DIFFERENCES} differences
+     */
+    private static boolean myers(List<String> a, List<String> b, List<Edit> results) {
+        final int n = a.size();
+        final int m = b.size();
+        final int max = Math.min(n + m, MAX_NB_DIFFERENCES);
+        // trace.get(d)[k + d] is the furthest x reached on diagonal k after d differences
+        final List<int[]> trace = new ArrayList<int[]>();
+        int[] previous = null;
+        for (int d = 0; d <= max; d++) {
+            final int[] v = new int[2 * d + 1];
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (d == 0) {
+                    x = 0;
+                } else if (k == -d || (k != d && get(previous, d - 1, k - 1) < get(previous, d - 1, k + 1))) {
+                    x = get(previous, d - 1, k + 1);
+                } else {
+                    x = get(previous, d - 1, k - 1) + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a.get(x).equals(b.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[k + d] = x;
+                if (x >= n && y >= m) {
+                    trace.add(v);
+                    backtrack(a, b, trace, results);
+                    return true;
+                }
+            }
+            trace.add(v);
+            previous = v;
+        }
+        return false;
+    }
+
+    private static int get(int[] v, int d, int k) {
+        return v[k + d];
+    }
+
+    private static void backtrack(List<String> a, List<String> b, List<int[]> trace, List<Edit> results) {
+        final List<Edit> edits = new ArrayList<Edit>();
+        int x = a.size();
+        int y = b.size();
+        for (int d = trace.size() - 1; d > 0; d--) {
+            final int[] previous = trace.get(d - 1);
+            final int k = x - y;
+            final int prevK;
+            if (k == -d || (k != d && get(previous, d - 1, k - 1) < get(previous, d - 1, k + 1))) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            final int prevX = get(previous, d - 1, prevK);
+            final int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                edits.add(new Edit(EQUAL, a.get(--x)));
+                y--;
+            }
+            if (x == prevX) {
+                edits.add(new Edit(INSERT, b.get(--y)));
+            } else {
+                edits.add(new Edit(DELETE, a.get(--x)));
+            }
+        }
+        while (x > 0 && y > 0) {
+            edits.add(new Edit(EQUAL, a.get(--x)));
+            y--;
+        }
+        Collections.reverse(edits);
+        results.addAll(edits);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package android.support.v7.widget;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Stub of the support library RecyclerView, which is not part of the Android jar the samples are compiled against.
+ * Only declares what the samples use.
+ */
+public class RecyclerView {
+
+    /** Stub of the RecyclerView adapter. */
+    public abstract static class Adapter<VH extends ViewHolder> {
+        public abstract VH onCreateViewHolder(ViewGroup parent, int viewType);
+
+        public abstract void onBindViewHolder(VH holder, int position);
+
+        public abstract int getItemCount();
+    }
+
+    /** Stub of the RecyclerView view holder. */
+    public abstract static class ViewHolder {
+        public final View itemView;
+
+        public ViewHolder(View itemView) {
+            this.itemView = itemView;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2016 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package android.util;
+
+import java.util.HashMap;
+
+/**
+ * Stub of the platform ArrayMap, added in API 19,
+ * which is not part of the Android jar the samples are compiled against.
+ * Only declares what the samples use.
+ */
+public final class ArrayMap<K, V> extends HashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    public ArrayMap() {
+        super();
+    }
+
+    public ArrayMap(int capacity) {
+        super(capacity);
+    }
+}
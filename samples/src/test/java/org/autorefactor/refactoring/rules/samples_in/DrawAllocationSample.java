@@ -10,8 +10,13 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
 import android.util.AttributeSet;
+import android.view.View;
 import android.widget.Button;
 /** Some test data for the JavaPerformanceDetector */
 @SuppressWarnings("unused")
@@ -87,4 +92,64 @@ public class DrawAllocationSample extends Button {
 	        return;
 	    }
     }
+
+    public static class HoistedAllocationsView extends View {
+
+        private final int startColor = 0xFF000000;
+        private final List<Paint> paints = new ArrayList<Paint>();
+
+        public HoistedAllocationsView(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            RectF bounds = new RectF(0, 0, getWidth(), getHeight());
+            LinearGradient gradient = new LinearGradient(0, 0, 0, 100, startColor, 0, Shader.TileMode.CLAMP);
+            paint.setShader(gradient);
+            canvas.drawRect(bounds, paint);
+
+            // escapes to a collection: not hoisted
+            Paint kept = new Paint(Paint.DITHER_FLAG);
+            paints.add(kept);
+
+            // depends on the current size: not hoisted
+            LinearGradient sized = new LinearGradient(0, 0, 0, getHeight(), startColor, 0, Shader.TileMode.CLAMP);
+            kept.setShader(sized);
+
+            drawBadge(canvas);
+            drawShadow(canvas);
+        }
+
+        private void drawBadge(Canvas canvas) {
+            // only called while drawing: hoisted
+            Paint badgePaint = new Paint();
+            badgePaint.setColor(startColor);
+            canvas.drawCircle(10, 10, 5, badgePaint);
+        }
+
+        private static void drawShadow(Canvas canvas) {
+            // static helper only called while drawing: not hoisted, a field cannot be used from it
+            Paint shadowPaint = new Paint();
+            shadowPaint.setColor(0x80000000);
+            canvas.drawCircle(12, 12, 5, shadowPaint);
+        }
+
+        private void initBounds() {
+            // also called from other places: not hoisted
+            RectF tmp = new RectF();
+            tmp.inset(1, 1);
+        }
+
+        @Override
+        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+            initBounds();
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            initBounds();
+        }
+    }
 }
@@ -124,5 +124,67 @@ public class RecycleSample {
             ContentProviderClient client = resolver.acquireContentProviderClient("test");
         }
     }
+
+    public class HelperTest {
+        private Cursor lastCursor;
+
+        public void closedByHelper(SQLiteDatabase db) {
+            Cursor cursor = db.query("TABLE_TRIPS", null, null, null, null, null, null);
+            readAndClose(cursor); // closed by the helper
+        }
+
+        public void usedByHelper(SQLiteDatabase db) {
+            Cursor cursor = db.query("TABLE_TRIPS", null, null, null, null, null, null);
+            read(cursor); // Not closed
+        }
+
+        public void escapesThroughHelper(SQLiteDatabase db) {
+            Cursor cursor = db.query("TABLE_TRIPS", null, null, null, null, null, null);
+            keep(cursor); // stored by the helper
+        }
+
+        public void passedToRecursiveHelper(SQLiteDatabase db) {
+            Cursor cursor = db.query("TABLE_TRIPS", null, null, null, null, null, null);
+            skipAndClose(cursor, 3); // recursive helpers are assumed to let it escape
+        }
+
+        public void passedToMutuallyRecursiveHelpers(SQLiteDatabase db) {
+            Cursor cursor = db.query("TABLE_TRIPS", null, null, null, null, null, null);
+            readEven(cursor, 4); // recursive helpers are assumed to let it escape
+        }
+
+        private void readAndClose(Cursor cursor) {
+            read(cursor);
+            cursor.close();
+        }
+
+        private void read(Cursor cursor) {
+            cursor.moveToFirst();
+        }
+
+        private void keep(Cursor cursor) {
+            lastCursor = cursor;
+        }
+
+        private void skipAndClose(Cursor cursor, int count) {
+            if (count > 0) {
+                cursor.moveToNext();
+                skipAndClose(cursor, count - 1);
+            } else {
+                cursor.close();
+            }
+        }
+
+        private void readEven(Cursor cursor, int count) {
+            if (count > 0) {
+                readOdd(cursor, count - 1);
+            }
+        }
+
+        private void readOdd(Cursor cursor, int count) {
+            cursor.moveToNext();
+            readEven(cursor, count - 1);
+        }
+    }
 }
 
@@ -0,0 +1,49 @@
+package org.autorefactor.refactoring.rules.samples_in;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.AttributeSet;
+
+public class RecycleWithTrySample {
+
+    public int countTrips(SQLiteDatabase db, String table, String whereClause) {
+        int total = 0;
+        Cursor cursor = db.query("TABLE_TRIPS", new String[] { "KEY_TRIP_ID" }, null, null, null, null, null);
+        if (!cursor.moveToFirst()) {
+            return 0;
+        }
+        while (cursor.moveToNext()) {
+            total += db.delete(table, whereClause + "=?", new String[] { Long.toString(cursor.getLong(0)) });
+        }
+        return total;
+    }
+
+    public long firstTrip(SQLiteDatabase db) {
+        Cursor cursor = db.query("TABLE_TRIPS", null, null, null, null, null, null);
+        cursor.moveToFirst();
+        long id = cursor.getLong(0);
+        System.out.println(id);
+        return id;
+    }
+
+    public int countAllTrips(SQLiteDatabase db) {
+        // already closed by a try-with-resources statement: left as is on the next passes
+        try (Cursor cursor = db.query("TABLE_TRIPS", null, null, null, null, null, null)) {
+            return cursor.getCount();
+        }
+    }
+
+    public Cursor getCursor(SQLiteDatabase db) {
+        Cursor cursor = db.query("TABLE_TRIPS", null, null, null, null, null, null);
+        cursor.moveToFirst();
+        return cursor;
+    }
+
+    public void readAttributes(Context context, AttributeSet attrs, int[] styleable) {
+        TypedArray a = context.obtainStyledAttributes(attrs, styleable);
+        String text = a.getString(0);
+        System.out.println(text);
+    }
+}
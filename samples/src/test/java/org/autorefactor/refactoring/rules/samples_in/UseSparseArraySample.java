@@ -0,0 +1,104 @@
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class UseSparseArraySample {
+
+    private final Map<Integer, String> names = new HashMap<Integer, String>();
+
+    public void putName(int id, String name) {
+        names.put(id, name);
+    }
+
+    public String getName(int id) {
+        if (names.containsKey(id)) {
+            return names.get(id);
+        }
+        return null;
+    }
+
+    public int sumCounts(int[] ids) {
+        HashMap<Integer, Integer> counts = new HashMap<Integer, Integer>();
+        for (int id : ids) {
+            int count = counts.containsKey(id) ? counts.get(id) : 0;
+            counts.put(id, count + 1);
+        }
+        int sum = 0;
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            sum += entry.getKey() * entry.getValue();
+        }
+        return sum;
+    }
+
+    public boolean hasFlags(int[] ids) {
+        Map<Integer, Boolean> flags = new HashMap<Integer, Boolean>(ids.length);
+        for (int id : ids) {
+            flags.put(id, true);
+        }
+        flags.remove(0);
+        return !flags.isEmpty();
+    }
+
+    public long sumTimestamps(long[] ids) {
+        Map<Long, String> events = new HashMap<Long, String>();
+        for (long id : ids) {
+            events.put(id, "event");
+        }
+        long sum = 0;
+        for (Long id : events.keySet()) {
+            sum += id;
+        }
+        return sum;
+    }
+
+    public int countWords(String[] words) {
+        Map<String, Integer> wordCounts = new HashMap<String, Integer>(8);
+        for (String word : words) {
+            Integer count = wordCounts.get(word);
+            wordCounts.put(word, count != null ? count + 1 : 1);
+        }
+        return wordCounts.size();
+    }
+
+    public boolean hasDuplicates(String[] words) {
+        // ArraySet needs API 23, this sample falls back to the support library
+        HashSet<String> seen = new HashSet<String>(4);
+        for (String word : words) {
+            if (!seen.add(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int doNotRefactorMapWithoutCapacity(String[] words) {
+        Map<String, String> labels = new HashMap<String, String>();
+        for (String word : words) {
+            labels.put(word, word.toUpperCase());
+        }
+        return labels.size();
+    }
+
+    public int doNotRefactorLargeSet(String[] words) {
+        Set<String> distinct = new HashSet<String>(1024);
+        for (String word : words) {
+            distinct.add(word);
+        }
+        return distinct.size();
+    }
+
+    public Map<Integer, String> doNotRefactorEscapingMap() {
+        Map<Integer, String> escaping = new HashMap<Integer, String>();
+        escaping.put(1, "one");
+        return escaping;
+    }
+
+    public String doNotRefactorMissingPrimitiveValue(int id) {
+        Map<Integer, Integer> values = new HashMap<Integer, Integer>();
+        values.put(1, 1);
+        return String.valueOf(values.get(id));
+    }
+}
@@ -1,5 +1,6 @@
 package org.autorefactor.refactoring.rules.samples_in;
 
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -103,12 +104,130 @@ public abstract class ViewHolderSample extends BaseAdapter {
         }
     }*/
     
+    public static class RecyclerAdapter extends RecyclerView.Adapter<RecyclerAdapter.Holder> {
+        static class Holder extends RecyclerView.ViewHolder {
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(LayoutInflater.from(parent.getContext()).inflate(R.layout.your_layout, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, int position) {
+            TextView text = (TextView) holder.itemView.findViewById(R.id.text);
+            text.setText("Position " + position);
+        }
+
+        @Override
+        public int getItemCount() {
+            return 0;
+        }
+    }
+
+    public static class RecyclerAdapterWithSeveralConstructors
+            extends RecyclerView.Adapter<RecyclerAdapterWithSeveralConstructors.Holder> {
+        static class Holder extends RecyclerView.ViewHolder {
+            boolean selectable;
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+
+            Holder(View itemView, boolean selectable) {
+                super(itemView);
+                this.selectable = selectable;
+            }
+
+            Holder(ViewGroup parent) {
+                this(LayoutInflater.from(parent.getContext()).inflate(R.layout.your_layout, parent, false));
+            }
+        }
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(parent);
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, int position) {
+            TextView text = (TextView) holder.itemView.findViewById(R.id.text);
+            TextView title = (TextView) holder.itemView.findViewById(R.id.title);
+            text.setText("Position " + position);
+            title.setEnabled(holder.selectable);
+        }
+
+        @Override
+        public int getItemCount() {
+            return 0;
+        }
+    }
+
+    public static class RecyclerAdapterWithNonConstantId
+            extends RecyclerView.Adapter<RecyclerAdapterWithNonConstantId.Holder> {
+        private final int[] textIds = { R.id.text, R.id.title };
+
+        static class Holder extends RecyclerView.ViewHolder {
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(LayoutInflater.from(parent.getContext()).inflate(R.layout.your_layout, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, int position) {
+            // the looked up view depends on the bound item
+            TextView text = (TextView) holder.itemView.findViewById(textIds[position % textIds.length]);
+            text.setText("Position " + position);
+        }
+
+        @Override
+        public int getItemCount() {
+            return 0;
+        }
+    }
+
+    public static class RecyclerAdapterWithHeldView extends RecyclerView.Adapter<RecyclerAdapterWithHeldView.Holder> {
+        static class Holder extends RecyclerView.ViewHolder {
+            TextView text;
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(LayoutInflater.from(parent.getContext()).inflate(R.layout.your_layout, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, int position) {
+            // the view holder already has a field with this name
+            TextView text = (TextView) holder.itemView.findViewById(R.id.text);
+            text.setText("Position " + position);
+        }
+
+        @Override
+        public int getItemCount() {
+            return 0;
+        }
+    }
+
     private static class R {
         public static class layout {
             public static final int your_layout = 2;
         }
         public static class id {
             public static final int text = 2;
+            public static final int title = 3;
         }
     }
 }
\ No newline at end of file
@@ -10,8 +10,13 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
 import android.util.AttributeSet;
+import android.view.View;
 import android.widget.Button;
 /** Some test data for the JavaPerformanceDetector */
 @SuppressWarnings("unused")
@@ -90,4 +95,69 @@ public class DrawAllocationSample extends Button {
 	        return;
 	    }
     }
+
+    public static class HoistedAllocationsView extends View {
+
+        private final int startColor = 0xFF000000;
+        private final List<Paint> paints = new ArrayList<Paint>();
+
+        public HoistedAllocationsView(Context context) {
+            super(context);
+        }
+
+        private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final RectF bounds = new RectF();
+        private final LinearGradient gradient = new LinearGradient(0, 0, 0, 100, startColor, 0, Shader.TileMode.CLAMP);
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            paint.reset();
+            paint.setFlags(Paint.ANTI_ALIAS_FLAG);
+            bounds.set(0, 0, getWidth(), getHeight());
+            paint.setShader(gradient);
+            canvas.drawRect(bounds, paint);
+
+            // escapes to a collection: not hoisted
+            Paint kept = new Paint(Paint.DITHER_FLAG);
+            paints.add(kept);
+
+            // depends on the current size: not hoisted
+            LinearGradient sized = new LinearGradient(0, 0, 0, getHeight(), startColor, 0, Shader.TileMode.CLAMP);
+            kept.setShader(sized);
+
+            drawBadge(canvas);
+            drawShadow(canvas);
+        }
+
+        private final Paint badgePaint = new Paint();
+
+        private void drawBadge(Canvas canvas) {
+            badgePaint.reset();
+            badgePaint.setColor(startColor);
+            canvas.drawCircle(10, 10, 5, badgePaint);
+        }
+
+        private static void drawShadow(Canvas canvas) {
+            // static helper only called while drawing: not hoisted, a field cannot be used from it
+            Paint shadowPaint = new Paint();
+            shadowPaint.setColor(0x80000000);
+            canvas.drawCircle(12, 12, 5, shadowPaint);
+        }
+
+        private void initBounds() {
+            // also called from other places: not hoisted
+            RectF tmp = new RectF();
+            tmp.inset(1, 1);
+        }
+
+        @Override
+        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+            initBounds();
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            initBounds();
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.HashMap;
+import android.support.v4.util.ArraySet;
+import android.util.*;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class UseSparseArraySample {
+
+    private final SparseArray<String> names = new SparseArray<String>();
+
+    public void putName(int id, String name) {
+        names.put(id, name);
+    }
+
+    public String getName(int id) {
+        if (names.indexOfKey(id) >= 0) {
+            return names.get(id);
+        }
+        return null;
+    }
+
+    public int sumCounts(int[] ids) {
+        SparseIntArray counts = new SparseIntArray();
+        for (int id : ids) {
+            int count = counts.indexOfKey(id) >= 0 ? counts.get(id) : 0;
+            counts.put(id, count + 1);
+        }
+        int sum = 0;
+        for (int i = 0; i < counts.size(); i++) {
+            sum += counts.keyAt(i) * counts.valueAt(i);
+        }
+        return sum;
+    }
+
+    public boolean hasFlags(int[] ids) {
+        SparseBooleanArray flags = new SparseBooleanArray(ids.length);
+        for (int id : ids) {
+            flags.put(id, true);
+        }
+        flags.delete(0);
+        return flags.size() != 0;
+    }
+
+    public long sumTimestamps(long[] ids) {
+        LongSparseArray<String> events = new LongSparseArray<String>();
+        for (long id : ids) {
+            events.put(id, "event");
+        }
+        long sum = 0;
+        for (int i = 0; i < events.size(); i++) {
+			long id = events.keyAt(i);
+			sum += id;
+		}
+        return sum;
+    }
+
+    public int countWords(String[] words) {
+        Map<String, Integer> wordCounts = new ArrayMap<String, Integer>(8);
+        for (String word : words) {
+            Integer count = wordCounts.get(word);
+            wordCounts.put(word, count != null ? count + 1 : 1);
+        }
+        return wordCounts.size();
+    }
+
+    public boolean hasDuplicates(String[] words) {
+        // ArraySet needs API 23, this sample falls back to the support library
+        ArraySet<String> seen = new ArraySet<String>(4);
+        for (String word : words) {
+            if (!seen.add(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int doNotRefactorMapWithoutCapacity(String[] words) {
+        Map<String, String> labels = new HashMap<String, String>();
+        for (String word : words) {
+            labels.put(word, word.toUpperCase());
+        }
+        return labels.size();
+    }
+
+    public int doNotRefactorLargeSet(String[] words) {
+        Set<String> distinct = new HashSet<String>(1024);
+        for (String word : words) {
+            distinct.add(word);
+        }
+        return distinct.size();
+    }
+
+    public Map<Integer, String> doNotRefactorEscapingMap() {
+        Map<Integer, String> escaping = new HashMap<Integer, String>();
+        escaping.put(1, "one");
+        return escaping;
+    }
+
+    public String doNotRefactorMissingPrimitiveValue(int id) {
+        Map<Integer, Integer> values = new HashMap<Integer, Integer>();
+        values.put(1, 1);
+        return String.valueOf(values.get(id));
+    }
+}